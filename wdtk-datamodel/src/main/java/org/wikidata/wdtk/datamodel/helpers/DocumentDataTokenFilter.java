@@ -0,0 +1,225 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+
+/**
+ * Jackson token filter that applies the restrictions of a
+ * {@link DocumentDataFilter} to the JSON serialization of an entity document
+ * while it is being parsed. Terms, statement groups and site links that are
+ * not included by the filter are skipped in the token stream, so that no
+ * objects are created for them. This yields the same documents as parsing
+ * everything and applying a {@link DatamodelFilter} afterwards, but is much
+ * cheaper when filters remove most of the data.
+ * <p>
+ * Statement groups are recognized by the id of their property. Properties
+ * in the filter that do not belong to the given site are ignored, just like
+ * they would never match any statement of a document from this site.
+ */
+public class DocumentDataTokenFilter extends TokenFilter {
+
+	/**
+	 * Filter for maps of terms that are keyed by language code.
+	 */
+	private final TokenFilter termFilter;
+
+	/**
+	 * Filter for maps of statement groups that are keyed by property id.
+	 */
+	private final TokenFilter statementFilter;
+
+	/**
+	 * Filter for the map of site links that is keyed by site key.
+	 */
+	private final TokenFilter siteLinkFilter;
+
+	/**
+	 * Filter for the lists of forms and senses of lexemes.
+	 */
+	private final TokenFilter subEntityListFilter;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param filter
+	 *            the filter that determines which data is kept
+	 * @param siteIri
+	 *            the IRI of the site that the parsed documents belong to
+	 */
+	public DocumentDataTokenFilter(DocumentDataFilter filter, String siteIri) {
+		this.termFilter = keyFilter(filter.getLanguageFilter());
+		this.siteLinkFilter = keyFilter(filter.getSiteLinkFilter());
+		if (filter.getPropertyFilter() == null) {
+			this.statementFilter = TokenFilter.INCLUDE_ALL;
+		} else {
+			Set<String> propertyIds = new HashSet<>();
+			for (PropertyIdValue propertyIdValue : filter.getPropertyFilter()) {
+				if (propertyIdValue.getSiteIri().equals(siteIri)) {
+					propertyIds.add(propertyIdValue.getId());
+				}
+			}
+			this.statementFilter = keyFilter(propertyIds);
+		}
+		this.subEntityListFilter = new SubEntityListFilter(
+				new SubEntityFilter(this.termFilter, this.statementFilter));
+	}
+
+	/**
+	 * Returns true if the filter does not restrict any data, so that
+	 * wrapping parsers is not needed.
+	 *
+	 * @param filter
+	 *            the filter to check
+	 * @return true if no language, property or site link filter is set
+	 */
+	public static boolean isTrivial(DocumentDataFilter filter) {
+		return filter.getLanguageFilter() == null
+				&& filter.getPropertyFilter() == null
+				&& filter.getSiteLinkFilter() == null;
+	}
+
+	/**
+	 * Wraps the given parser into a parser that only returns the tokens of
+	 * data that is included by this filter.
+	 *
+	 * @param parser
+	 *            the parser for the JSON serialization of an entity document
+	 * @return the filtering parser
+	 */
+	public JsonParser filter(JsonParser parser) {
+		return new FilteringParserDelegate(parser, this,
+				TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+	}
+
+	@Override
+	public TokenFilter includeProperty(String name) {
+		switch (name) {
+		case "labels":
+		case "descriptions":
+		case "aliases":
+		case "lemmas":
+			return this.termFilter;
+		case "claims":
+		case "statements":
+			return this.statementFilter;
+		case "sitelinks":
+			return this.siteLinkFilter;
+		case "forms":
+		case "senses":
+			return this.subEntityListFilter;
+		default:
+			return TokenFilter.INCLUDE_ALL;
+		}
+	}
+
+	/**
+	 * Creates a filter for JSON maps that only includes the given keys.
+	 *
+	 * @param keys
+	 *            the keys to include, or null if all keys should be included
+	 * @return the filter, or null if no key is included
+	 */
+	private static TokenFilter keyFilter(Set<String> keys) {
+		if (keys == null) {
+			return TokenFilter.INCLUDE_ALL;
+		} else if (keys.isEmpty()) {
+			return null;
+		} else {
+			return new KeyFilter(keys);
+		}
+	}
+
+	/**
+	 * Filter for JSON maps that includes the values of a fixed set of keys.
+	 */
+	private static class KeyFilter extends TokenFilter {
+
+		final Set<String> keys;
+
+		KeyFilter(Set<String> keys) {
+			this.keys = keys;
+		}
+
+		@Override
+		public TokenFilter includeProperty(String name) {
+			return this.keys.contains(name) ? TokenFilter.INCLUDE_ALL : null;
+		}
+	}
+
+	/**
+	 * Filter for the JSON array of forms or senses of a lexeme.
+	 */
+	private static class SubEntityListFilter extends TokenFilter {
+
+		final TokenFilter elementFilter;
+
+		SubEntityListFilter(TokenFilter elementFilter) {
+			this.elementFilter = elementFilter;
+		}
+
+		@Override
+		public TokenFilter includeElement(int index) {
+			return this.elementFilter;
+		}
+
+		@Override
+		public TokenFilter includeProperty(String name) {
+			// forms or senses may be given as an empty map
+			return null;
+		}
+	}
+
+	/**
+	 * Filter for the JSON serialization of a form or sense of a lexeme.
+	 */
+	private static class SubEntityFilter extends TokenFilter {
+
+		final TokenFilter termFilter;
+		final TokenFilter statementFilter;
+
+		SubEntityFilter(TokenFilter termFilter, TokenFilter statementFilter) {
+			this.termFilter = termFilter;
+			this.statementFilter = statementFilter;
+		}
+
+		@Override
+		public TokenFilter includeProperty(String name) {
+			switch (name) {
+			case "representations":
+			case "glosses":
+				return this.termFilter;
+			case "claims":
+				return this.statementFilter;
+			default:
+				return TokenFilter.INCLUDE_ALL;
+			}
+		}
+	}
+}
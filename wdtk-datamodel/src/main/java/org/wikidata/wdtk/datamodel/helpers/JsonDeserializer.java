@@ -20,12 +20,16 @@
 
 package org.wikidata.wdtk.datamodel.helpers;
 
+import java.io.IOException;
+import java.io.Reader;
+
 import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
 import org.wikidata.wdtk.datamodel.implementation.EntityRedirectDocumentImpl;
 import org.wikidata.wdtk.datamodel.implementation.ItemDocumentImpl;
 import org.wikidata.wdtk.datamodel.implementation.LexemeDocumentImpl;
 import org.wikidata.wdtk.datamodel.implementation.MediaInfoDocumentImpl;
 import org.wikidata.wdtk.datamodel.implementation.PropertyDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
 import org.wikidata.wdtk.datamodel.interfaces.EntityRedirectDocument;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
@@ -33,8 +37,10 @@ import org.wikidata.wdtk.datamodel.interfaces.LexemeDocument;
 import org.wikidata.wdtk.datamodel.interfaces.MediaInfoDocument;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
@@ -55,6 +61,7 @@ public class JsonDeserializer {
 	private ObjectReader lexemeReader;
 	private ObjectReader mediaInfoReader;
 	private ObjectReader entityRedirectReader;
+	private DocumentDataTokenFilter tokenFilter;
 	
 	/**
 	 * Constructs a new JSON deserializer for the 
@@ -64,6 +71,24 @@ public class JsonDeserializer {
 	 * 		Root IRI of the site to deserialize for
 	 */
 	public JsonDeserializer(String siteIri) {
+		this(siteIri, null);
+	}
+
+	/**
+	 * Constructs a new JSON deserializer for the
+	 * designated site, which only keeps the data that
+	 * is included by the given filter. Excluded terms,
+	 * statements and site links are skipped while parsing.
+	 *
+	 * @param siteIri
+	 * 		Root IRI of the site to deserialize for
+	 * @param filter
+	 * 		the filter to apply, or null to keep all data
+	 */
+	public JsonDeserializer(String siteIri, DocumentDataFilter filter) {
+		if (filter != null && !DocumentDataTokenFilter.isTrivial(filter)) {
+			tokenFilter = new DocumentDataTokenFilter(filter, siteIri);
+		}
 		DatamodelMapper mapper = new DatamodelMapper(siteIri);
 		entityDocumentReader = mapper.readerFor(EntityDocumentImpl.class)
 				.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
@@ -85,7 +110,7 @@ public class JsonDeserializer {
 			if the JSON payload is invalid
 	 */
 	public ItemDocument deserializeItemDocument(String json) throws JsonProcessingException {
-		return itemReader.readValue(json);
+		return readValue(itemReader, json);
 	}
 	
 	/**
@@ -94,7 +119,7 @@ public class JsonDeserializer {
 			if the JSON payload is invalid
 	 */
 	public PropertyDocument deserializePropertyDocument(String json) throws JsonProcessingException {
-		return propertyReader.readValue(json);
+		return readValue(propertyReader, json);
 	}
 
 	/**
@@ -103,7 +128,7 @@ public class JsonDeserializer {
 			if the JSON payload is invalid
 	 */
 	public LexemeDocument deserializeLexemeDocument(String json) throws JsonProcessingException {
-		return lexemeReader.readValue(json);
+		return readValue(lexemeReader, json);
 	}
 	
 	/**
@@ -112,7 +137,7 @@ public class JsonDeserializer {
 			if the JSON payload is invalid
 	 */
 	public MediaInfoDocument deserializeMediaInfoDocument(String json) throws JsonProcessingException {
-		return mediaInfoReader.readValue(json);
+		return readValue(mediaInfoReader, json);
 	}
 	
 	/**
@@ -121,7 +146,7 @@ public class JsonDeserializer {
 			if the JSON payload is invalid
 	 */
 	public EntityDocument deserializeEntityDocument(String json) throws JsonProcessingException {
-		return entityDocumentReader.readValue(json);
+		return readValue(entityDocumentReader, json);
 	}
 
 	/**
@@ -130,6 +155,77 @@ public class JsonDeserializer {
 	if the JSON payload is invalid
 	 */
 	public EntityRedirectDocument deserializeEntityRedirectDocument(String json) throws JsonProcessingException {
-		return entityRedirectReader.readValue(json);
+		return readValue(entityRedirectReader, json);
+	}
+
+	/**
+	 * Deserializes the JSON read from the given reader into an
+	 * {@link ItemDocument}. This avoids creating a string when the JSON is
+	 * held in another form, such as a character buffer.
+	 * @throws IOException
+			if the JSON payload is invalid or cannot be read
+	 */
+	public ItemDocument deserializeItemDocument(Reader json) throws IOException {
+		return readValue(itemReader, json);
+	}
+
+	/**
+	 * Deserializes the JSON read from the given reader into a
+	 * {@link PropertyDocument}.
+	 * @throws IOException
+			if the JSON payload is invalid or cannot be read
+	 */
+	public PropertyDocument deserializePropertyDocument(Reader json) throws IOException {
+		return readValue(propertyReader, json);
+	}
+
+	/**
+	 * Deserializes the JSON read from the given reader into a
+	 * {@link LexemeDocument}.
+	 * @throws IOException
+			if the JSON payload is invalid or cannot be read
+	 */
+	public LexemeDocument deserializeLexemeDocument(Reader json) throws IOException {
+		return readValue(lexemeReader, json);
+	}
+
+	/**
+	 * Deserializes the JSON read from the given reader into an
+	 * {@link EntityRedirectDocument}.
+	 * @throws IOException
+			if the JSON payload is invalid or cannot be read
+	 */
+	public EntityRedirectDocument deserializeEntityRedirectDocument(Reader json) throws IOException {
+		return readValue(entityRedirectReader, json);
+	}
+
+	/**
+	 * Reads a value from the given character stream with the given reader,
+	 * applying the filter if one was configured.
+	 */
+	private <T> T readValue(ObjectReader reader, Reader json) throws IOException {
+		if (tokenFilter == null) {
+			return reader.readValue(json);
+		}
+		try (JsonParser parser = tokenFilter.filter(reader.createParser(json))) {
+			return reader.readValue(parser);
+		}
+	}
+
+	/**
+	 * Reads a value with the given reader, applying the filter
+	 * if one was configured.
+	 */
+	private <T> T readValue(ObjectReader reader, String json) throws JsonProcessingException {
+		if (tokenFilter == null) {
+			return reader.readValue(json);
+		}
+		try (JsonParser parser = tokenFilter.filter(reader.createParser(json))) {
+			return reader.readValue(parser);
+		} catch (JsonProcessingException e) {
+			throw e;
+		} catch (IOException e) { // cannot happen when reading from a string
+			throw JsonMappingException.fromUnexpectedIOE(e);
+		}
 	}
 }
@@ -0,0 +1,142 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.wikidata.wdtk.datamodel.interfaces.WikimediaLanguageCodes;
+
+/**
+ * Returns shared instances of language codes and site keys, so that the
+ * terms, monolingual text values and site links of documents do not each
+ * keep their own copy of strings like "en" or "enwiki". The shared instances
+ * are the interned strings, which are also used by Jackson for the keys of
+ * the term and site link maps, so that comparisons of codes with these keys,
+ * or with string literals, usually succeed on identity.
+ * <p>
+ * The codes in {@link WikimediaLanguageCodes} and the keys of the Wikimedia
+ * sites in these languages are known in advance. Other codes are added to a
+ * pool of limited size when they are first seen.
+ */
+public class CanonicalCodes {
+
+	/**
+	 * Maximal number of codes that are added to the pool in addition to the
+	 * known codes.
+	 */
+	static final int MAX_POOL_SIZE = 1 << 12;
+
+	/**
+	 * Maximal length of codes that are added to the pool.
+	 */
+	static final int MAX_CODE_LENGTH = 64;
+
+	/**
+	 * Suffixes of the site keys of Wikimedia projects that exist in many
+	 * languages.
+	 */
+	static final String[] PROJECT_SUFFIXES = { "wiki", "wikibooks",
+			"wikinews", "wikiquote", "wikisource", "wikiversity",
+			"wikivoyage", "wiktionary" };
+
+	/**
+	 * Site keys of Wikimedia projects that are not specific to a language.
+	 */
+	static final String[] SPECIAL_SITE_KEYS = { "commonswiki", "metawiki",
+			"mediawikiwiki", "specieswiki", "wikidatawiki", "sourceswiki",
+			"wikimaniawiki", "outreachwiki", "wikifunctionswiki" };
+
+	/**
+	 * Codes that are known in advance. Not modified after initialization.
+	 */
+	static final Map<String, String> knownCodes = new HashMap<>();
+
+	/**
+	 * Codes that have been added when they were first seen.
+	 */
+	static final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+
+	static {
+		for (String languageCode : WikimediaLanguageCodes
+				.getKnownLanguageCodes()) {
+			add(languageCode);
+			String siteLanguage = languageCode.replace('-', '_');
+			for (String suffix : PROJECT_SUFFIXES) {
+				add(siteLanguage + suffix);
+			}
+		}
+		for (String siteKey : SPECIAL_SITE_KEYS) {
+			add(siteKey);
+		}
+	}
+
+	private CanonicalCodes() {
+	}
+
+	private static void add(String code) {
+		String interned = code.intern();
+		knownCodes.put(interned, interned);
+	}
+
+	/**
+	 * Returns the shared instance of the given language code.
+	 *
+	 * @param languageCode
+	 *            the language code, such as "en"; may be null
+	 * @return a string that is equal to the given code
+	 */
+	public static String getLanguageCode(String languageCode) {
+		return get(languageCode);
+	}
+
+	/**
+	 * Returns the shared instance of the given site key.
+	 *
+	 * @param siteKey
+	 *            the site key, such as "enwiki"; may be null
+	 * @return a string that is equal to the given key
+	 */
+	public static String getSiteKey(String siteKey) {
+		return get(siteKey);
+	}
+
+	private static String get(String code) {
+		if (code == null) {
+			return null;
+		}
+		String canonical = knownCodes.get(code);
+		if (canonical != null) {
+			return canonical;
+		}
+		canonical = pool.get(code);
+		if (canonical != null) {
+			return canonical;
+		}
+		if (code.length() > MAX_CODE_LENGTH || pool.size() >= MAX_POOL_SIZE) {
+			return code;
+		}
+		String interned = code.intern();
+		canonical = pool.putIfAbsent(interned, interned);
+		return canonical == null ? interned : canonical;
+	}
+}
@@ -0,0 +1,528 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.helpers.Equality;
+import org.wikidata.wdtk.datamodel.helpers.Hash;
+import org.wikidata.wdtk.datamodel.helpers.ToString;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.NoValueSnak;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.SiteLink;
+import org.wikidata.wdtk.datamodel.interfaces.Snak;
+import org.wikidata.wdtk.datamodel.interfaces.SnakGroup;
+import org.wikidata.wdtk.datamodel.interfaces.SomeValueSnak;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Read-only implementation of {@link ItemDocument} that needs much less
+ * memory than {@link ItemDocumentImpl}, for applications that keep many
+ * items in memory. Statements are stored in arrays of primitive values: the
+ * numeric ids of the properties, the ranks, the kinds of main snaks and, for
+ * main snaks with an item value, the numeric id of the item. Statement ids
+ * are stored without the prefix that repeats the id of the item. Main snaks
+ * with other values, qualifiers and references are kept as objects, and
+ * terms and site links are kept as they are. The objects of the standard
+ * implementation are created whenever the statements are accessed.
+ * <p>
+ * Documents are created from another item document with
+ * {@link #CompactItemDocumentImpl(ItemDocument)}. All properties and item
+ * values must belong to the site of the item. Modifying methods such as
+ * {@link #withLabel(MonolingualTextValue)} return an {@link ItemDocumentImpl}.
+ * The document is serialized to JSON like an {@link ItemDocumentImpl}.
+ */
+public class CompactItemDocumentImpl implements ItemDocument {
+
+	static final int RANK_MASK = 0x3;
+
+	static final int KIND_SHIFT = 2;
+	static final int KIND_MASK = 0x3 << KIND_SHIFT;
+	static final int KIND_ITEM_VALUE = 0;
+	static final int KIND_NO_VALUE = 1 << KIND_SHIFT;
+	static final int KIND_SOME_VALUE = 2 << KIND_SHIFT;
+	static final int KIND_OTHER = 3 << KIND_SHIFT;
+
+	/**
+	 * Set if the prefix "Q&lt;id&gt;$" was removed from the statement id.
+	 */
+	static final int ID_PREFIX = 1 << 4;
+	/**
+	 * Set if the prefix "q&lt;id&gt;$", used by older statements, was removed
+	 * from the statement id.
+	 */
+	static final int ID_PREFIX_LOWER_CASE = 1 << 5;
+
+	static final StatementRank[] RANKS = StatementRank.values();
+
+	private final int numericId;
+	private final String siteIri;
+	private final long revisionId;
+
+	private final Map<String, MonolingualTextValue> labels;
+	private final Map<String, MonolingualTextValue> descriptions;
+	private final Map<String, List<MonolingualTextValue>> aliases;
+	private final Map<String, SiteLink> siteLinks;
+
+	/**
+	 * Numeric ids of the properties of the statement groups.
+	 */
+	private final int[] groupProperties;
+	/**
+	 * Index of the first statement of each statement group, followed by the
+	 * total number of statements.
+	 */
+	private final int[] groupStarts;
+	/**
+	 * Rank, kind of main snak and kind of statement id of each statement.
+	 */
+	private final byte[] flags;
+	/**
+	 * Numeric id of the item value of each statement with an item value.
+	 */
+	private final int[] itemValues;
+	/**
+	 * The statement ids, without the prefix if one of the id flags is set.
+	 */
+	private final String[] statementIds;
+	/**
+	 * Main snaks of kind {@link #KIND_OTHER}, or null if there are none.
+	 */
+	private final Snak[] otherMainSnaks;
+	/**
+	 * Non-empty qualifiers of each statement, or null if there are none.
+	 */
+	private final List<SnakGroup>[] qualifiers;
+	/**
+	 * Non-empty references of each statement, or null if there are none.
+	 */
+	private final List<Reference>[] references;
+
+	/**
+	 * Creates a compact copy of the given document.
+	 *
+	 * @param document
+	 *            the document to copy
+	 * @throws IllegalArgumentException
+	 *             if the document refers to properties or uses ids of another
+	 *             site
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public CompactItemDocumentImpl(ItemDocument document) {
+		ItemIdValue itemId = document.getEntityId();
+		this.numericId = numericId(itemId.getId(), 'Q');
+		if (this.numericId < 0) {
+			throw new IllegalArgumentException("Unsupported item id: "
+					+ itemId.getId());
+		}
+		this.siteIri = itemId.getSiteIri();
+		this.revisionId = document.getRevisionId();
+		this.labels = document.getLabels();
+		this.descriptions = document.getDescriptions();
+		this.aliases = document.getAliases();
+		this.siteLinks = document.getSiteLinks();
+
+		List<StatementGroup> groups = document.getStatementGroups();
+		int count = 0;
+		for (StatementGroup group : groups) {
+			count += group.size();
+		}
+		this.groupProperties = new int[groups.size()];
+		this.groupStarts = new int[groups.size() + 1];
+		this.flags = new byte[count];
+		this.itemValues = new int[count];
+		this.statementIds = new String[count];
+		Snak[] otherMainSnaks = null;
+		List<SnakGroup>[] qualifiers = null;
+		List<Reference>[] references = null;
+
+		String idPrefix = itemId.getId() + "$";
+		String lowerCaseIdPrefix = "q" + idPrefix.substring(1);
+		int i = 0;
+		for (int g = 0; g < groups.size(); g++) {
+			PropertyIdValue property = groups.get(g).getProperty();
+			this.groupProperties[g] = numericId(property.getId(), 'P');
+			if (this.groupProperties[g] < 0
+					|| !this.siteIri.equals(property.getSiteIri())) {
+				throw new IllegalArgumentException("Unsupported property: "
+						+ property);
+			}
+			this.groupStarts[g] = i;
+			for (Statement statement : groups.get(g)) {
+				int flag = statement.getRank().ordinal();
+				Snak mainSnak = statement.getMainSnak();
+				int itemValue = itemValue(mainSnak);
+				if (itemValue >= 0) {
+					this.itemValues[i] = itemValue;
+				} else if (mainSnak instanceof NoValueSnak) {
+					flag |= KIND_NO_VALUE;
+				} else if (mainSnak instanceof SomeValueSnak) {
+					flag |= KIND_SOME_VALUE;
+				} else {
+					flag |= KIND_OTHER;
+					if (otherMainSnaks == null) {
+						otherMainSnaks = new Snak[count];
+					}
+					otherMainSnaks[i] = mainSnak;
+				}
+
+				String statementId = statement.getStatementId();
+				if (statementId.startsWith(idPrefix)) {
+					flag |= ID_PREFIX;
+					statementId = statementId.substring(idPrefix.length());
+				} else if (statementId.startsWith(lowerCaseIdPrefix)) {
+					flag |= ID_PREFIX_LOWER_CASE;
+					statementId = statementId.substring(idPrefix.length());
+				}
+				this.statementIds[i] = statementId;
+				this.flags[i] = (byte) flag;
+
+				if (!statement.getQualifiers().isEmpty()) {
+					if (qualifiers == null) {
+						qualifiers = new List[count];
+					}
+					qualifiers[i] = statement.getQualifiers();
+				}
+				if (!statement.getReferences().isEmpty()) {
+					if (references == null) {
+						references = new List[count];
+					}
+					references[i] = statement.getReferences();
+				}
+				i++;
+			}
+		}
+		this.groupStarts[groups.size()] = i;
+		this.otherMainSnaks = otherMainSnaks;
+		this.qualifiers = qualifiers;
+		this.references = references;
+	}
+
+	/**
+	 * Returns the numeric part of the given entity id, or -1 if the id does
+	 * not consist of the given letter followed by a positive number without
+	 * leading zeros.
+	 */
+	static int numericId(String id, char letter) {
+		if (id.length() < 2 || id.length() > 11 || id.charAt(0) != letter
+				|| id.charAt(1) == '0') {
+			return -1;
+		}
+		long result = 0;
+		for (int i = 1; i < id.length(); i++) {
+			char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			result = 10 * result + (c - '0');
+		}
+		return result > Integer.MAX_VALUE ? -1 : (int) result;
+	}
+
+	/**
+	 * Returns the numeric id of the item value of the given snak, or -1 if it
+	 * has no item value of the site of this document.
+	 */
+	private int itemValue(Snak snak) {
+		if (!(snak instanceof ValueSnak)) {
+			return -1;
+		}
+		return itemValue(((ValueSnak) snak).getValue());
+	}
+
+	/**
+	 * Returns the numeric id of the given value, or -1 if it is no item id
+	 * of the site of this document.
+	 */
+	private int itemValue(Value value) {
+		if (!(value instanceof ItemIdValue)
+				|| !this.siteIri.equals(((ItemIdValue) value).getSiteIri())) {
+			return -1;
+		}
+		return numericId(((ItemIdValue) value).getId(), 'Q');
+	}
+
+	@Override
+	public ItemIdValue getEntityId() {
+		return EntityIdValueInterner.getItemIdValue("Q" + this.numericId,
+				this.siteIri);
+	}
+
+	@Override
+	public long getRevisionId() {
+		return this.revisionId;
+	}
+
+	@Override
+	public Map<String, MonolingualTextValue> getLabels() {
+		return this.labels;
+	}
+
+	@Override
+	public Map<String, MonolingualTextValue> getDescriptions() {
+		return this.descriptions;
+	}
+
+	@Override
+	public Map<String, List<MonolingualTextValue>> getAliases() {
+		return this.aliases;
+	}
+
+	@Override
+	public Map<String, SiteLink> getSiteLinks() {
+		return this.siteLinks;
+	}
+
+	@Override
+	public List<StatementGroup> getStatementGroups() {
+		ItemIdValue subject = getEntityId();
+		List<StatementGroup> groups = new ArrayList<>(
+				this.groupProperties.length);
+		for (int g = 0; g < this.groupProperties.length; g++) {
+			groups.add(getStatementGroup(g, subject));
+		}
+		return groups;
+	}
+
+	/**
+	 * Finds a statement group by its property id, without creating the
+	 * other groups.
+	 */
+	@Override
+	public StatementGroup findStatementGroup(PropertyIdValue propertyIdValue) {
+		if (!this.siteIri.equals(propertyIdValue.getSiteIri())) {
+			return null;
+		}
+		return findStatementGroup(propertyIdValue.getId());
+	}
+
+	/**
+	 * Finds a statement group by its property id, without creating the
+	 * other groups.
+	 */
+	@Override
+	public StatementGroup findStatementGroup(String propertyId) {
+		int g = findGroup(propertyId);
+		return g < 0 ? null : getStatementGroup(g, getEntityId());
+	}
+
+	/**
+	 * Checks the item values of the statements without creating the
+	 * statements.
+	 */
+	@Override
+	public boolean hasStatementValue(PropertyIdValue propertyIdValue,
+			Set<? extends Value> values) {
+		if (!this.siteIri.equals(propertyIdValue.getSiteIri())) {
+			return false;
+		}
+		return hasStatementValue(propertyIdValue.getId(), values);
+	}
+
+	/**
+	 * Checks the item values of the statements without creating the
+	 * statements.
+	 */
+	@Override
+	public boolean hasStatementValue(String propertyId,
+			Set<? extends Value> values) {
+		int g = findGroup(propertyId);
+		if (g < 0) {
+			return false;
+		}
+		for (int i = this.groupStarts[g]; i < this.groupStarts[g + 1]; i++) {
+			switch (this.flags[i] & KIND_MASK) {
+			case KIND_ITEM_VALUE:
+				if (values.size() > 8) {
+					if (values.contains(EntityIdValueInterner.getItemIdValue(
+							"Q" + this.itemValues[i], this.siteIri))) {
+						return true;
+					}
+				} else {
+					for (Value value : values) {
+						if (itemValue(value) == this.itemValues[i]) {
+							return true;
+						}
+					}
+				}
+				break;
+			case KIND_OTHER:
+				if (values.contains(((ValueSnak) this.otherMainSnaks[i])
+						.getValue())) {
+					return true;
+				}
+				break;
+			default:
+				// statements without a value
+				if (values.contains(null)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private int findGroup(String propertyId) {
+		int property = numericId(propertyId, 'P');
+		if (property < 0) {
+			return -1;
+		}
+		for (int g = 0; g < this.groupProperties.length; g++) {
+			if (this.groupProperties[g] == property) {
+				return g;
+			}
+		}
+		return -1;
+	}
+
+	private StatementGroup getStatementGroup(int g, ItemIdValue subject) {
+		PropertyIdValue property = EntityIdValueInterner.getPropertyIdValue(
+				"P" + this.groupProperties[g], this.siteIri);
+		List<Statement> statements = new ArrayList<>(this.groupStarts[g + 1]
+				- this.groupStarts[g]);
+		for (int i = this.groupStarts[g]; i < this.groupStarts[g + 1]; i++) {
+			statements.add(getStatement(i, subject, property));
+		}
+		return new StatementGroupImpl(statements);
+	}
+
+	private Statement getStatement(int i, ItemIdValue subject,
+			PropertyIdValue property) {
+		int flag = this.flags[i];
+		Snak mainSnak;
+		switch (flag & KIND_MASK) {
+		case KIND_ITEM_VALUE:
+			mainSnak = new ValueSnakImpl(property,
+					EntityIdValueInterner.getItemIdValue("Q"
+							+ this.itemValues[i], this.siteIri));
+			break;
+		case KIND_NO_VALUE:
+			mainSnak = new NoValueSnakImpl(property);
+			break;
+		case KIND_SOME_VALUE:
+			mainSnak = new SomeValueSnakImpl(property);
+			break;
+		default:
+			mainSnak = this.otherMainSnaks[i];
+		}
+
+		String statementId = this.statementIds[i];
+		if ((flag & ID_PREFIX) != 0) {
+			statementId = subject.getId() + "$" + statementId;
+		} else if ((flag & ID_PREFIX_LOWER_CASE) != 0) {
+			statementId = "q" + this.numericId + "$" + statementId;
+		}
+
+		List<SnakGroup> statementQualifiers = this.qualifiers == null
+				|| this.qualifiers[i] == null ? Collections.emptyList()
+				: this.qualifiers[i];
+		List<Reference> statementReferences = this.references == null
+				|| this.references[i] == null ? Collections.emptyList()
+				: this.references[i];
+		return new StatementImpl(statementId, RANKS[flag & RANK_MASK],
+				mainSnak, statementQualifiers, statementReferences, subject);
+	}
+
+	/**
+	 * Returns a copy of this document in the standard implementation, which
+	 * is also used to serialize this document to JSON.
+	 *
+	 * @return the document as an {@link ItemDocumentImpl}
+	 */
+	@JsonValue
+	public ItemDocumentImpl toItemDocumentImpl() {
+		List<MonolingualTextValue> aliasList = new ArrayList<>();
+		for (List<MonolingualTextValue> languageAliases : this.aliases
+				.values()) {
+			aliasList.addAll(languageAliases);
+		}
+		return new ItemDocumentImpl(getEntityId(),
+				new ArrayList<>(this.labels.values()),
+				new ArrayList<>(this.descriptions.values()), aliasList,
+				getStatementGroups(), new ArrayList<>(this.siteLinks.values()),
+				this.revisionId);
+	}
+
+	@Override
+	public ItemDocument withEntityId(ItemIdValue newEntityId) {
+		return toItemDocumentImpl().withEntityId(newEntityId);
+	}
+
+	@Override
+	public ItemDocument withRevisionId(long newRevisionId) {
+		return toItemDocumentImpl().withRevisionId(newRevisionId);
+	}
+
+	@Override
+	public ItemDocument withLabel(MonolingualTextValue newLabel) {
+		return toItemDocumentImpl().withLabel(newLabel);
+	}
+
+	@Override
+	public ItemDocument withDescription(MonolingualTextValue newDescription) {
+		return toItemDocumentImpl().withDescription(newDescription);
+	}
+
+	@Override
+	public ItemDocument withAliases(String language,
+			List<MonolingualTextValue> aliases) {
+		return toItemDocumentImpl().withAliases(language, aliases);
+	}
+
+	@Override
+	public ItemDocument withStatement(Statement statement) {
+		return toItemDocumentImpl().withStatement(statement);
+	}
+
+	@Override
+	public ItemDocument withoutStatementIds(Set<String> statementIds) {
+		return toItemDocumentImpl().withoutStatementIds(statementIds);
+	}
+
+	@Override
+	public int hashCode() {
+		return Hash.hashCode(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return Equality.equalsItemDocument(this, obj);
+	}
+
+	@Override
+	public String toString() {
+		return ToString.toString(this);
+	}
+}
@@ -79,12 +79,12 @@ public class DataObjectFactoryImpl implements DataObjectFactory {
 
 	@Override
 	public ItemIdValue getItemIdValue(String id, String siteIri) {
-		return new ItemIdValueImpl(id, siteIri);
+		return EntityIdValueInterner.getItemIdValue(id, siteIri);
 	}
 
 	@Override
 	public PropertyIdValue getPropertyIdValue(String id, String siteIri) {
-		return new PropertyIdValueImpl(id, siteIri);
+		return EntityIdValueInterner.getPropertyIdValue(id, siteIri);
 	}
 
 	@Override
@@ -123,9 +123,9 @@ public abstract class EntityIdValueImpl extends ValueImpl implements
 	public static EntityIdValue fromId(String id, String siteIri) {
 		switch (guessEntityTypeFromId(id, true)) {
 			case EntityIdValueImpl.JSON_ENTITY_TYPE_ITEM:
-				return new ItemIdValueImpl(id, siteIri);
+				return EntityIdValueInterner.getItemIdValue(id, siteIri);
 			case EntityIdValueImpl.JSON_ENTITY_TYPE_PROPERTY:
-				return new PropertyIdValueImpl(id, siteIri);
+				return EntityIdValueInterner.getPropertyIdValue(id, siteIri);
 			case EntityIdValueImpl.JSON_ENTITY_TYPE_LEXEME:
 				return new LexemeIdValueImpl(id, siteIri);
 			case EntityIdValueImpl.JSON_ENTITY_TYPE_FORM:
@@ -260,7 +260,7 @@ public abstract class EntityIdValueImpl extends ValueImpl implements
 					throw new IllegalArgumentException("You should provide an id or an entity type and a numeric id");
 				} else {
 					this.id = buildIdFromNumericId(entityType, numericId);
-					this.entityType = entityType;
+					this.entityType = guessEntityTypeFromId(this.id, true);
 					this.numericId = numericId;
 				}
 			} else {
@@ -271,7 +271,8 @@ public abstract class EntityIdValueImpl extends ValueImpl implements
 				} else if(!id.equals(buildIdFromNumericId(entityType, numericId))) {
 					throw new IllegalArgumentException("Numerical id is different from the string id");
 				} else {
-					this.entityType = entityType;
+					// use the shared constant rather than the parsed string
+					this.entityType = guessEntityTypeFromId(id, true);
 					this.numericId = numericId;
 				}
 			}
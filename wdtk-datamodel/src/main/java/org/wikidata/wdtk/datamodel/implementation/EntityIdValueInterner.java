@@ -0,0 +1,207 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+
+/**
+ * Optional cache that lets equal item and property ids share one immutable
+ * {@link EntityIdValue} object. Entity ids are created for every snak, value,
+ * qualifier and reference in a dump, but a few of them, such as P31 or Q5,
+ * occur extremely often. When interning is enabled, ids that are created by
+ * JSON deserialization with {@link org.wikidata.wdtk.datamodel.helpers.DatamodelMapper},
+ * by {@link EntityIdValueImpl#fromId(String, String)} and by the factory
+ * methods of {@link org.wikidata.wdtk.datamodel.helpers.Datamodel} are
+ * looked up here, which greatly reduces the memory used by documents that
+ * are kept in memory.
+ * <p>
+ * Property ids are always cached, since there are only few of them. Item ids
+ * are cached in the order in which they are first seen until the cache holds
+ * {@link #getCapacity()} values; this favours the frequent items, which
+ * usually occur early. Interning is disabled by default, since it only saves
+ * memory when documents are retained.
+ */
+public class EntityIdValueInterner {
+
+	/**
+	 * Default number of values that are cached.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	static volatile boolean enabled = false;
+
+	static volatile int capacity = DEFAULT_CAPACITY;
+
+	/**
+	 * The cached values by their id. Values of other sites than the cached
+	 * value of the same id are not interned.
+	 */
+	static final ConcurrentHashMap<String, EntityIdValue> values = new ConcurrentHashMap<>();
+
+	private EntityIdValueInterner() {
+	}
+
+	/**
+	 * Returns true if entity ids are interned.
+	 *
+	 * @return true if interning is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets whether entity ids should be interned. Disabling interning also
+	 * empties the cache.
+	 *
+	 * @param enabled
+	 *            true if entity ids should be interned
+	 */
+	public static void setEnabled(boolean enabled) {
+		EntityIdValueInterner.enabled = enabled;
+		if (!enabled) {
+			values.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of values up to which item ids are added to the
+	 * cache.
+	 *
+	 * @return the capacity of the cache
+	 */
+	public static int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the number of values up to which item ids are added to the cache.
+	 * Property ids are added in any case.
+	 *
+	 * @param capacity
+	 *            the capacity of the cache
+	 */
+	public static void setCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException(
+					"The capacity must not be negative, but was " + capacity);
+		}
+		EntityIdValueInterner.capacity = capacity;
+	}
+
+	/**
+	 * Returns the number of values in the cache.
+	 *
+	 * @return the number of cached values
+	 */
+	public static int size() {
+		return values.size();
+	}
+
+	/**
+	 * Returns an item id value for the given id, which is shared with other
+	 * callers if interning is enabled.
+	 *
+	 * @param id
+	 *            the identifier of the item, such as "Q42"
+	 * @param siteIri
+	 *            the siteIRI that this value refers to
+	 * @return the item id value
+	 */
+	public static ItemIdValue getItemIdValue(String id, String siteIri) {
+		return get(id, siteIri, ItemIdValueImpl.class, ItemIdValueImpl::new);
+	}
+
+	/**
+	 * Returns a property id value for the given id, which is shared with
+	 * other callers if interning is enabled.
+	 *
+	 * @param id
+	 *            the identifier of the property, such as "P31"
+	 * @param siteIri
+	 *            the siteIRI that this value refers to
+	 * @return the property id value
+	 */
+	public static PropertyIdValue getPropertyIdValue(String id, String siteIri) {
+		return get(id, siteIri, PropertyIdValueImpl.class,
+				PropertyIdValueImpl::new);
+	}
+
+	/**
+	 * Returns the cached value that is equal to the given value, or the
+	 * given value itself, which is then cached if there is space. Values other
+	 * than item and property ids are returned unchanged.
+	 *
+	 * @param value
+	 *            the value to intern
+	 * @return a value that is equal to the given value
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends EntityIdValue> T intern(T value) {
+		if (!enabled || !(value instanceof ItemIdValueImpl
+				|| value instanceof PropertyIdValueImpl)) {
+			return value;
+		}
+		EntityIdValue cached = lookup(value.getId(), value.getSiteIri(),
+				value.getClass());
+		if (cached != null) {
+			return (T) cached;
+		}
+		return (T) add(value);
+	}
+
+	static <T extends EntityIdValue> T get(String id, String siteIri,
+			Class<T> type, BiFunction<String, String, T> constructor) {
+		if (!enabled) {
+			return constructor.apply(id, siteIri);
+		}
+		EntityIdValue cached = lookup(id, siteIri, type);
+		if (cached != null) {
+			return type.cast(cached);
+		}
+		return type.cast(add(constructor.apply(id, siteIri)));
+	}
+
+	private static EntityIdValue lookup(String id, String siteIri,
+			Class<?> type) {
+		EntityIdValue cached = values.get(id);
+		if (cached != null && cached.getClass() == type
+				&& cached.getSiteIri().equals(siteIri)) {
+			return cached;
+		}
+		return null;
+	}
+
+	private static EntityIdValue add(EntityIdValue value) {
+		if (value instanceof PropertyIdValue || values.size() < capacity) {
+			EntityIdValue previous = values.putIfAbsent(value.getId(), value);
+			if (previous != null && previous.equals(value)) {
+				return previous;
+			}
+		}
+		return value;
+	}
+}
@@ -126,7 +126,8 @@ public class FormDocumentImpl extends StatementDocumentImpl implements FormDocum
 	private List<ItemIdValue> constructGrammaticalFeatures(List<String> grammaticalFeatures, String siteIri) {
 		List<ItemIdValue> output = new ArrayList<>(grammaticalFeatures.size());
 		for(String grammaticalFeature : grammaticalFeatures) {
-			output.add(new ItemIdValueImpl(grammaticalFeature, siteIri));
+			output.add(EntityIdValueInterner.getItemIdValue(grammaticalFeature,
+					siteIri));
 		}
 		return output;
 	}
@@ -118,9 +118,11 @@ public class LexemeDocumentImpl extends StatementDocumentImpl implements LexemeD
 			@JacksonInject("siteIri") String siteIri) {
 		super(jsonId, claims, revisionId, siteIri);
 		Validate.notNull(lexicalCategory, "Lexeme lexical category should not be null");
-		this.lexicalCategory = new ItemIdValueImpl(lexicalCategory, siteIri);
+		this.lexicalCategory = EntityIdValueInterner.getItemIdValue(
+				lexicalCategory, siteIri);
 		Validate.notNull(language, "Lexeme language should not be null");
-		this.language = new ItemIdValueImpl(language, siteIri);
+		this.language = EntityIdValueInterner.getItemIdValue(language,
+				siteIri);
 		this.lemmas = (lemmas == null) ? Collections.emptyMap() : lemmas;
 		this.forms = (forms == null) ? Collections.emptyList() : forms;
 		this.senses = (senses == null) ? Collections.emptyList() : senses;
@@ -66,7 +66,7 @@ public class SiteLinkImpl implements SiteLink {
 		Validate.notNull(title);
 		this.title = title;
 		Validate.notNull(site);
-		this.site = site;
+		this.site = CanonicalCodes.getSiteKey(site);
 		this.badges = (badges == null) ? Collections.emptyList() : badges;
 		this.badges.sort(Comparator.comparing(EntityIdValue::getId));
 	}
@@ -92,7 +92,7 @@ public class SiteLinkImpl implements SiteLink {
 		Validate.notNull(title);
 		this.title = title;
 		Validate.notNull(site);
-		this.site = site;
+		this.site = CanonicalCodes.getSiteKey(site);
 		this.badges = (badges == null || badges.isEmpty())
 			? Collections.emptyList()
 			: constructBadges(badges, siteIri);
@@ -101,7 +101,7 @@ public class SiteLinkImpl implements SiteLink {
 	private List<ItemIdValue> constructBadges(List<String> badges, String siteIri) {
 		List<ItemIdValue> output = new ArrayList<>(badges.size());
 		for(String badge : badges) {
-			output.add(new ItemIdValueImpl(badge, siteIri));
+			output.add(EntityIdValueInterner.getItemIdValue(badge, siteIri));
 		}
 		return output;
 	}
@@ -85,7 +85,7 @@ public abstract class SnakImpl implements Snak {
 			String siteIri) {
 		Validate.notNull(id);
 		Validate.notNull(siteIri);
-		this.property = new PropertyIdValueImpl(id, siteIri);
+		this.property = EntityIdValueInterner.getPropertyIdValue(id, siteIri);
 	}
 
 	/**
@@ -56,6 +56,12 @@ abstract class StatementDocumentImpl extends EntityDocumentImpl implements State
 	 */
 	private List<StatementGroup> statementGroups;
 
+	/**
+	 * Index of {@link #statementGroups} by property. This member is
+	 * initialized when statement groups are looked up.
+	 */
+	private StatementGroupIndex statementGroupIndex;
+
 	/**
 	 * Constructor.
 	 *
@@ -136,15 +142,19 @@ abstract class StatementDocumentImpl extends EntityDocumentImpl implements State
 	}
 	
 	/**
-	 * Find a statement group by its property id, without checking for 
+	 * Find a statement group by its property id, without checking for
 	 * equality with the site IRI. More efficient implementation than
-	 * the default one.
+	 * the default one: groups are found in an index by the numeric id of
+	 * their property, and the same group objects as in
+	 * {@link #getStatementGroups()} are returned.
 	 */
+	@Override
 	public StatementGroup findStatementGroup(String propertyIdValue) {
-		if (this.claims.containsKey(propertyIdValue)) {
-			return new StatementGroupImpl(this.claims.get(propertyIdValue));
+		if (this.statementGroupIndex == null) {
+			this.statementGroupIndex = new StatementGroupIndex(
+					getStatementGroups());
 		}
-		return null;
+		return this.statementGroupIndex.get(propertyIdValue);
 	}
 
 	/**
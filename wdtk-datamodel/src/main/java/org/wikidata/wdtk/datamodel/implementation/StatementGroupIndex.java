@@ -0,0 +1,116 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+
+/**
+ * Index of the statement groups of a document by the numeric part of their
+ * property id. It is an open-addressing hash table over an int array, so
+ * that looking up a group neither creates objects nor compares strings.
+ * The indexed groups are returned as they are, so repeated lookups yield the
+ * same objects. If several groups have the same property id, the first one
+ * is found.
+ */
+final class StatementGroupIndex {
+
+	/**
+	 * Numeric property ids of the groups in the table, or 0 for free slots.
+	 */
+	private final int[] keys;
+
+	private final StatementGroup[] groups;
+
+	private final int mask;
+
+	/**
+	 * Groups whose property id has no numeric form. Normally empty.
+	 */
+	private final List<StatementGroup> otherGroups = new ArrayList<>(0);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param statementGroups
+	 *            the groups to index
+	 */
+	StatementGroupIndex(List<StatementGroup> statementGroups) {
+		int capacity = 2;
+		while (capacity < 2 * statementGroups.size()) {
+			capacity <<= 1;
+		}
+		this.keys = new int[capacity];
+		this.groups = new StatementGroup[capacity];
+		this.mask = capacity - 1;
+
+		for (StatementGroup group : statementGroups) {
+			int key = CompactItemDocumentImpl.numericId(group.getProperty()
+					.getId(), 'P');
+			if (key <= 0) {
+				this.otherGroups.add(group);
+				continue;
+			}
+			int slot = slot(key);
+			while (this.keys[slot] != 0 && this.keys[slot] != key) {
+				slot = (slot + 1) & this.mask;
+			}
+			if (this.keys[slot] == 0) {
+				this.keys[slot] = key;
+				this.groups[slot] = group;
+			}
+		}
+	}
+
+	/**
+	 * Returns the statement group for the property of the given id.
+	 *
+	 * @param propertyId
+	 *            the id of the property, such as "P31"
+	 * @return the group, or null if there is none
+	 */
+	StatementGroup get(String propertyId) {
+		int key = CompactItemDocumentImpl.numericId(propertyId, 'P');
+		if (key <= 0) {
+			for (StatementGroup group : this.otherGroups) {
+				if (propertyId.equals(group.getProperty().getId())) {
+					return group;
+				}
+			}
+			return null;
+		}
+		int slot = slot(key);
+		while (this.keys[slot] != 0) {
+			if (this.keys[slot] == key) {
+				return this.groups[slot];
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return null;
+	}
+
+	private int slot(int key) {
+		int hash = key * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & this.mask;
+	}
+}
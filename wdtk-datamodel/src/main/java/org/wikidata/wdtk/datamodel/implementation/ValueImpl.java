@@ -119,7 +119,11 @@ public abstract class ValueImpl implements Value {
 			JsonNode root = mapper.readTree(jsonParser);
 			Class<? extends ValueImpl> valueClass = getValueClass(root, jsonParser);
 
-			return mapper.treeToValue(root, valueClass);
+			ValueImpl value = mapper.treeToValue(root, valueClass);
+			if (value instanceof EntityIdValueImpl) {
+				return EntityIdValueInterner.intern((EntityIdValueImpl) value);
+			}
+			return value;
 		}
 
 		/**
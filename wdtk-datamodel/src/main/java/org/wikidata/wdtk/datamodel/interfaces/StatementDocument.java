@@ -63,6 +63,13 @@ public interface StatementDocument extends EntityDocument {
 	 * @return {@link StatementGroup} or null
 	 */
 	default StatementGroup findStatementGroup(PropertyIdValue propertyIdValue) {
+		// use the lookup by id, which implementations usually index
+		StatementGroup statementGroup = findStatementGroup(propertyIdValue
+				.getId());
+		if (statementGroup == null
+				|| propertyIdValue.equals(statementGroup.getProperty())) {
+			return statementGroup;
+		}
 		for (StatementGroup sg : getStatementGroups()) {
 			if (propertyIdValue.equals(sg.getProperty())) {
 				return sg;
@@ -78,7 +85,10 @@ public interface StatementDocument extends EntityDocument {
 	 * all data is known to come from a single site.
 	 * <p>
 	 * This is a convenience method for accessing the data that can be obtained
-	 * via {@link #getStatementGroups()}.
+	 * via {@link #getStatementGroups()}. The default implementation searches
+	 * the list of groups. Implementations should override this with a more
+	 * efficient lookup, which the other methods for finding statements by
+	 * property then use as well.
 	 *
 	 * @param propertyId
 	 *            the property to search for
@@ -0,0 +1,138 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.LexemeDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MediaInfoDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+public class DocumentDataTokenFilterTest {
+
+	private final JsonDeserializer unfiltered = new JsonDeserializer(Datamodel.SITE_WIKIDATA);
+
+	private String loadJson(String filename) throws IOException {
+		InputStream stream = DocumentDataTokenFilterTest.class.getClassLoader()
+				.getResourceAsStream("JsonDeserializer/" + filename);
+		return IOUtils.toString(stream, StandardCharsets.UTF_8);
+	}
+
+	private DocumentDataFilter makeFilter() {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(new HashSet<>(Arrays.asList("de", "fr")));
+		filter.setPropertyFilter(new HashSet<>(Arrays.asList(
+				Datamodel.makeWikidataPropertyIdValue("P31"),
+				Datamodel.makeWikidataPropertyIdValue("P180"),
+				Datamodel.makeWikidataPropertyIdValue("P5137"))));
+		filter.setSiteLinkFilter(Collections.singleton("enwiki"));
+		return filter;
+	}
+
+	private DocumentDataFilter makeExcludeAllFilter() {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(Collections.emptySet());
+		filter.setPropertyFilter(Collections.emptySet());
+		filter.setSiteLinkFilter(Collections.emptySet());
+		return filter;
+	}
+
+	@Test
+	public void testIsTrivial() {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		assertTrue(DocumentDataTokenFilter.isTrivial(filter));
+		filter.setSiteLinkFilter(Collections.emptySet());
+		assertFalse(DocumentDataTokenFilter.isTrivial(filter));
+	}
+
+	@Test
+	public void testFilterItemDocument() throws IOException {
+		String json = loadJson("item.json");
+		for (DocumentDataFilter filter : Arrays.asList(makeFilter(), makeExcludeAllFilter())) {
+			ItemDocument expected = new DatamodelFilter(new DataObjectFactoryImpl(), filter)
+					.filter(unfiltered.deserializeItemDocument(json));
+			ItemDocument actual = new JsonDeserializer(Datamodel.SITE_WIKIDATA, filter)
+					.deserializeItemDocument(json);
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testFilterItemDocumentKeepsSelectedData() throws IOException {
+		ItemDocument doc = new JsonDeserializer(Datamodel.SITE_WIKIDATA, makeFilter())
+				.deserializeItemDocument(loadJson("item.json"));
+		assertEquals(Collections.singleton("de"), doc.getLabels().keySet());
+		assertEquals(Collections.singleton("enwiki"), doc.getSiteLinks().keySet());
+		assertEquals(1, doc.getStatementGroups().size());
+		assertEquals("P31", doc.getStatementGroups().get(0).getProperty().getId());
+	}
+
+	@Test
+	public void testFilterPropertyDocument() throws IOException {
+		String json = loadJson("property.json");
+		for (DocumentDataFilter filter : Arrays.asList(makeFilter(), makeExcludeAllFilter())) {
+			PropertyDocument expected = new DatamodelFilter(new DataObjectFactoryImpl(), filter)
+					.filter(unfiltered.deserializePropertyDocument(json));
+			PropertyDocument actual = new JsonDeserializer(Datamodel.SITE_WIKIDATA, filter)
+					.deserializePropertyDocument(json);
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testFilterLexemeDocument() throws IOException {
+		String json = loadJson("lexeme.json");
+		for (DocumentDataFilter filter : Arrays.asList(makeFilter(), makeExcludeAllFilter())) {
+			LexemeDocument expected = new DatamodelFilter(new DataObjectFactoryImpl(), filter)
+					.filter(unfiltered.deserializeLexemeDocument(json));
+			LexemeDocument actual = new JsonDeserializer(Datamodel.SITE_WIKIDATA, filter)
+					.deserializeLexemeDocument(json);
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testFilterMediaInfoDocument() throws IOException {
+		String json = loadJson("mediainfo.json");
+		JsonDeserializer unfilteredCommons = new JsonDeserializer(Datamodel.SITE_WIKIMEDIA_COMMONS);
+		for (DocumentDataFilter filter : Arrays.asList(makeFilter(), makeExcludeAllFilter())) {
+			MediaInfoDocument expected = new DatamodelFilter(new DataObjectFactoryImpl(), filter)
+					.filter(unfilteredCommons.deserializeMediaInfoDocument(json));
+			MediaInfoDocument actual = new JsonDeserializer(Datamodel.SITE_WIKIMEDIA_COMMONS, filter)
+					.deserializeMediaInfoDocument(json);
+			assertEquals(expected, actual);
+		}
+	}
+}
@@ -22,6 +22,7 @@ package org.wikidata.wdtk.datamodel.helpers;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 
@@ -52,6 +53,13 @@ public class JsonDeserializerTest {
 		Assert.assertEquals(doc.getEntityId(), Datamodel.makeWikidataItemIdValue("Q34987"));
 	}
 	
+	@Test
+	public void testLoadItemDocumentFromReader() throws IOException {
+		String json = loadJson("item.json");
+		ItemDocument doc = SUT.deserializeItemDocument(new StringReader(json));
+		Assert.assertEquals(SUT.deserializeItemDocument(json), doc);
+	}
+
 	@Test
 	public void testLoadPropertyDocument() throws IOException {
 		PropertyDocument doc = SUT.deserializePropertyDocument(loadJson("property.json"));
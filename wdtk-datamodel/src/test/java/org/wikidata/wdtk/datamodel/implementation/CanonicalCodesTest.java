@@ -0,0 +1,80 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.interfaces.SiteLink;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CanonicalCodesTest {
+
+	private final ObjectMapper mapper = new DatamodelMapper("http://example.com/entity/");
+
+	@Test
+	public void testKnownCodes() {
+		assertSame("en", CanonicalCodes.getLanguageCode(new String("en")));
+		assertSame("zh-min-nan",
+				CanonicalCodes.getLanguageCode(new String("zh-min-nan")));
+		assertSame("enwiki", CanonicalCodes.getSiteKey(new String("enwiki")));
+		assertSame("zh_min_nanwiki",
+				CanonicalCodes.getSiteKey(new String("zh_min_nanwiki")));
+		assertSame("commonswiki",
+				CanonicalCodes.getSiteKey(new String("commonswiki")));
+		assertNull(CanonicalCodes.getLanguageCode(null));
+	}
+
+	@Test
+	public void testUnknownCodes() {
+		String code = CanonicalCodes.getLanguageCode(new String("x-unknown"));
+		assertEquals("x-unknown", code);
+		assertSame(code, CanonicalCodes.getLanguageCode(new String("x-unknown")));
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i <= CanonicalCodes.MAX_CODE_LENGTH; i++) {
+			sb.append('x');
+		}
+		String longCode = sb.toString();
+		assertSame(longCode, CanonicalCodes.getLanguageCode(longCode));
+		assertNotSame(longCode,
+				CanonicalCodes.getLanguageCode(new String(longCode)));
+	}
+
+	@Test
+	public void testDeserializedCodesAreShared() throws IOException {
+		TermImpl term = mapper.readValue(
+				"{\"language\":\"de\",\"value\":\"Haus\"}", TermImpl.class);
+		assertSame("de", term.getLanguageCode());
+
+		SiteLink siteLink = mapper.readValue(
+				"{\"site\":\"dewiki\",\"title\":\"Haus\",\"badges\":[]}",
+				SiteLinkImpl.class);
+		assertSame("dewiki", siteLink.getSiteKey());
+	}
+}
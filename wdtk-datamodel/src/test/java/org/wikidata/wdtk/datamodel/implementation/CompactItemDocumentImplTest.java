@@ -0,0 +1,151 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.SnakGroup;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+public class CompactItemDocumentImplTest {
+
+	private static final String SITE_IRI = "http://example.com/entity/";
+
+	private final ItemIdValue iid = new ItemIdValueImpl("Q42", SITE_IRI);
+	private final ItemIdValue q5 = new ItemIdValueImpl("Q5", SITE_IRI);
+	private final PropertyIdValue p31 = new PropertyIdValueImpl("P31", SITE_IRI);
+	private final PropertyIdValue p42 = new PropertyIdValueImpl("P42", SITE_IRI);
+	private final List<SnakGroup> qualifiers = Collections.singletonList(
+			new SnakGroupImpl(Collections.singletonList(new ValueSnakImpl(p42,
+					new StringValueImpl("qualifier")))));
+	private final List<Reference> references = Collections.singletonList(
+			new ReferenceImpl(qualifiers));
+
+	private final List<StatementGroup> statementGroups = Arrays.asList(
+			new StatementGroupImpl(Arrays.asList(
+					new StatementImpl("Q42$A", StatementRank.PREFERRED,
+							new ValueSnakImpl(p31, q5), qualifiers,
+							references, iid),
+					new StatementImpl("q42$B", StatementRank.DEPRECATED,
+							new NoValueSnakImpl(p31),
+							Collections.emptyList(), references, iid))),
+			new StatementGroupImpl(Arrays.asList(
+					new StatementImpl("MyId", StatementRank.NORMAL,
+							new ValueSnakImpl(p42, new StringValueImpl("foo")),
+							Collections.emptyList(), Collections.emptyList(), iid),
+					new StatementImpl("", StatementRank.NORMAL,
+							new SomeValueSnakImpl(p42), qualifiers,
+							Collections.emptyList(), iid))));
+
+	private final ItemDocument document = new ItemDocumentImpl(iid,
+			Collections.singletonList(new TermImpl("en", "label")),
+			Collections.singletonList(new TermImpl("fr", "description")),
+			Arrays.asList(new TermImpl("de", "alias1"), new TermImpl("de", "alias2")),
+			statementGroups,
+			Collections.singletonList(new SiteLinkImpl("Douglas Adams", "enwiki",
+					Collections.emptyList())),
+			1234);
+
+	private final ItemDocument compact = new CompactItemDocumentImpl(document);
+
+	@Test
+	public void testContentIsPreserved() {
+		assertEquals(document, compact);
+		assertEquals(compact, document);
+		assertEquals(document.hashCode(), compact.hashCode());
+		assertEquals(iid, compact.getEntityId());
+		assertEquals(1234, compact.getRevisionId());
+		assertEquals(statementGroups, compact.getStatementGroups());
+		assertEquals("alias2", compact.getAliases().get("de").get(1).getText());
+	}
+
+	@Test
+	public void testFindStatementGroup() {
+		assertEquals(statementGroups.get(1), compact.findStatementGroup("P42"));
+		assertEquals(statementGroups.get(0), compact.findStatementGroup(p31));
+		assertNull(compact.findStatementGroup("P1"));
+		assertNull(compact.findStatementGroup(
+				new PropertyIdValueImpl("P31", "http://example.org/")));
+	}
+
+	@Test
+	public void testHasStatementValue() {
+		assertTrue(compact.hasStatementValue("P31", q5));
+		assertTrue(compact.hasStatementValue(p31, q5));
+		assertFalse(compact.hasStatementValue("P31", iid));
+		assertFalse(compact.hasStatementValue("P31",
+				new ItemIdValueImpl("Q5", "http://example.org/")));
+		assertTrue(compact.hasStatementValue("P42", new StringValueImpl("foo")));
+		assertFalse(compact.hasStatementValue("P42", new StringValueImpl("bar")));
+
+		HashSet<Value> values = new HashSet<>();
+		for (int i = 1; i <= 10; i++) {
+			values.add(new ItemIdValueImpl("Q" + i, SITE_IRI));
+		}
+		assertTrue(compact.hasStatementValue("P31", values));
+		values.add(null);
+		assertTrue(compact.hasStatementValue("P42", values));
+	}
+
+	@Test
+	public void testJsonSerialization() throws JsonProcessingException {
+		assertEquals(JsonSerializer.getJsonString(document),
+				JsonSerializer.getJsonString(compact));
+	}
+
+	@Test
+	public void testModificationsUseStandardImplementation() {
+		ItemDocument modified = compact.withRevisionId(1235);
+		assertTrue(modified instanceof ItemDocumentImpl);
+		assertEquals(document.withRevisionId(1235), modified);
+
+		Statement statement = new StatementImpl("Q42$C", StatementRank.NORMAL,
+				new SomeValueSnakImpl(p31), Collections.emptyList(),
+				Collections.emptyList(), iid);
+		assertEquals(document.withStatement(statement),
+				compact.withStatement(statement));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPropertiesOfOtherSites() {
+		ItemIdValue otherSiteItem = new ItemIdValueImpl("Q42", "http://example.org/");
+		new CompactItemDocumentImpl(document.withEntityId(otherSiteItem));
+	}
+}
@@ -0,0 +1,102 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class EntityIdValueInternerTest {
+
+	private final ObjectMapper mapper = new DatamodelMapper(Datamodel.SITE_WIKIDATA);
+
+	private final String JSON_VALUE_SNAK = "{\"snaktype\":\"value\",\"property\":\"P31\",\"datatype\":\"wikibase-item\",\"datavalue\":{\"value\":{\"id\":\"Q5\",\"numeric-id\":5,\"entity-type\":\"item\"},\"type\":\"wikibase-entityid\"}}";
+
+	@Before
+	public void setUp() {
+		EntityIdValueInterner.setEnabled(true);
+	}
+
+	@After
+	public void tearDown() {
+		EntityIdValueInterner.setEnabled(false);
+		EntityIdValueInterner.setCapacity(EntityIdValueInterner.DEFAULT_CAPACITY);
+	}
+
+	@Test
+	public void testDeserializedIdsAreShared() throws IOException {
+		ValueSnak snak1 = mapper.readValue(JSON_VALUE_SNAK, ValueSnakImpl.class);
+		ValueSnak snak2 = mapper.readValue(JSON_VALUE_SNAK, ValueSnakImpl.class);
+		assertSame(snak1.getPropertyId(), snak2.getPropertyId());
+		assertSame(snak1.getValue(), snak2.getValue());
+		assertSame(Datamodel.makeWikidataItemIdValue("Q5"), snak1.getValue());
+		assertSame(Datamodel.makeWikidataPropertyIdValue("P31"),
+				EntityIdValueImpl.fromId("P31", Datamodel.SITE_WIKIDATA));
+	}
+
+	@Test
+	public void testDisabled() {
+		EntityIdValueInterner.setEnabled(false);
+		ItemIdValue id1 = Datamodel.makeWikidataItemIdValue("Q5");
+		ItemIdValue id2 = Datamodel.makeWikidataItemIdValue("Q5");
+		assertEquals(id1, id2);
+		assertNotSame(id1, id2);
+		assertEquals(0, EntityIdValueInterner.size());
+	}
+
+	@Test
+	public void testOtherSitesAreNotShared() {
+		ItemIdValue id1 = Datamodel.makeWikidataItemIdValue("Q5");
+		ItemIdValue id2 = Datamodel.makeItemIdValue("Q5",
+				"http://example.com/entity/");
+		assertEquals("http://example.com/entity/", id2.getSiteIri());
+		assertSame(id1, Datamodel.makeWikidataItemIdValue("Q5"));
+	}
+
+	@Test
+	public void testCapacityOnlyLimitsItems() {
+		EntityIdValueInterner.setCapacity(1);
+		ItemIdValue q5 = Datamodel.makeWikidataItemIdValue("Q5");
+		assertSame(q5, Datamodel.makeWikidataItemIdValue("Q5"));
+		assertNotSame(Datamodel.makeWikidataItemIdValue("Q42"),
+				Datamodel.makeWikidataItemIdValue("Q42"));
+		assertSame(Datamodel.makeWikidataPropertyIdValue("P31"),
+				Datamodel.makeWikidataPropertyIdValue("P31"));
+		assertEquals(2, EntityIdValueInterner.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeCapacity() {
+		EntityIdValueInterner.setCapacity(-1);
+	}
+}
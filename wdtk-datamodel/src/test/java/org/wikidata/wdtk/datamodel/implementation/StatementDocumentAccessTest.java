@@ -97,6 +97,33 @@ public class StatementDocumentAccessTest {
 		assertFalse(id.hasStatementValue("P2", q2));
 	}
 
+	@Test
+	public void testFindStatementGroupsOfManyProperties() {
+		ItemDocumentBuilder builder = ItemDocumentBuilder.forItemId(q1);
+		for (int i = 1; i <= 100; i += 3) {
+			builder.withStatement(StatementBuilder.forSubjectAndProperty(q1,
+					Datamodel.makeWikidataPropertyIdValue("P" + i))
+					.withValue(q2).build());
+		}
+		ItemDocument id = builder.build();
+
+		for (StatementGroup statementGroup : id.getStatementGroups()) {
+			PropertyIdValue property = statementGroup.getProperty();
+			assertSame(statementGroup, id.findStatementGroup(property));
+			assertSame(statementGroup, id.findStatementGroup(property.getId()));
+		}
+		assertEquals(34, id.getStatementGroups().size());
+		assertNull(id.findStatementGroup("P2"));
+		assertNull(id.findStatementGroup("P01"));
+		assertNull(id.findStatementGroup("Q1"));
+		assertNull(id.findStatementGroup(p2));
+		assertNull(id.findStatementGroup(Datamodel.makePropertyIdValue("P1",
+				"http://example.org/entity/")));
+		assertTrue(id.hasStatementValue(p1, q2));
+		assertFalse(id.hasStatementValue(Datamodel.makePropertyIdValue("P1",
+				"http://example.org/entity/"), q2));
+	}
+
 	@Test
 	public void testFindValueSnaks() {
 		Statement s1 = StatementBuilder.forSubjectAndProperty(q1, p1)
@@ -0,0 +1,633 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityRedirectDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.LexemeDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MediaInfoDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.util.DaemonThreadFactory;
+
+/**
+ * Entity document processor that hands documents over to another processor
+ * running in a thread of its own, so that a slow processor, such as one that
+ * writes to a database, does not hold up reading the dump. Documents are
+ * passed on in the order in which they were received, through a queue of
+ * bounded size. When the queue is full, the thread that delivers documents
+ * either waits ({@link QueueFullPolicy#BLOCK}) or writes further documents to
+ * a temporary file on disk ({@link QueueFullPolicy#SPILL}), from where they
+ * are read back once the queue has been emptied.
+ * <p>
+ * {@link #finish()} must be called when all documents have been delivered. It
+ * waits until the documents have been processed and reports errors of the
+ * wrapped processor. Such errors are also reported when further documents are
+ * delivered; documents that are still queued at that point are discarded.
+ * <p>
+ * The queue depth and other statistics can be read at any time, e.g., to
+ * find out which processor is the bottleneck.
+ * <p>
+ * When a checkpoint is taken, {@link #saveCheckpoint(DumpCheckpoint)} waits
+ * until all documents that have been delivered so far have been processed,
+ * so that the checkpoint does not cover documents that are still queued.
+ * Only then is the wrapped processor notified, if it is a
+ * {@link DumpCheckpointListener}.
+ */
+public class AsyncEntityDocumentProcessor implements EntityDocumentProcessor,
+		DumpCheckpointListener {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(AsyncEntityDocumentProcessor.class);
+
+	static final DaemonThreadFactory THREAD_FACTORY = new DaemonThreadFactory(
+			"wdtk-async-processor");
+
+	/**
+	 * What to do with a document when the queue of the processor is full.
+	 */
+	public enum QueueFullPolicy {
+		/**
+		 * Wait until there is space in the queue.
+		 */
+		BLOCK,
+		/**
+		 * Write the document to a temporary file.
+		 */
+		SPILL
+	}
+
+	/**
+	 * Marks the end of the documents in the queue or the spill file.
+	 */
+	static final Object END = new Object();
+
+	/**
+	 * Marks the point in the queue or the spill file up to which
+	 * {@link #flush()} waits for documents to be processed.
+	 */
+	static final Object BARRIER = new Object();
+
+	static final byte RECORD_ENTITY = 0;
+	static final byte RECORD_REDIRECT = 1;
+	static final byte RECORD_END = 2;
+	static final byte RECORD_BARRIER = 3;
+
+	final EntityDocumentProcessor entityDocumentProcessor;
+	final QueueFullPolicy queueFullPolicy;
+	final int queueCapacity;
+	final BlockingQueue<Object> queue;
+	final Thread consumerThread;
+
+	/**
+	 * Guards the spill file and the positions in it.
+	 */
+	final Object spillLock = new Object();
+	Path spillPath = null;
+	RandomAccessFile spillFile = null;
+	long spillWritePosition = 0;
+	long spillReadPosition = 0;
+
+	/**
+	 * Deserializers for spilled documents, by site IRI. Only used by the
+	 * consumer thread.
+	 */
+	final Map<String, JsonDeserializer> deserializers = new HashMap<>();
+
+	volatile Throwable failure = null;
+	boolean finished = false;
+
+	/**
+	 * Released by the consumer thread when it reaches the {@link #BARRIER}
+	 * that was last delivered.
+	 */
+	volatile CountDownLatch barrierLatch = null;
+
+	final AtomicInteger maxQueueDepth = new AtomicInteger();
+	final AtomicLong blockedNanos = new AtomicLong();
+	final AtomicInteger spillDepth = new AtomicInteger();
+	final AtomicLong spilledDocumentCount = new AtomicLong();
+	final AtomicLong processedDocumentCount = new AtomicLong();
+
+	/**
+	 * Constructor. Starts the thread that calls the given processor.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the processor to call asynchronously
+	 * @param queueCapacity
+	 *            the maximal number of documents in the queue
+	 * @param queueFullPolicy
+	 *            what to do when the queue is full
+	 * @throws IllegalArgumentException
+	 *             if the capacity is less than 1
+	 */
+	public AsyncEntityDocumentProcessor(
+			EntityDocumentProcessor entityDocumentProcessor, int queueCapacity,
+			QueueFullPolicy queueFullPolicy) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException(
+					"Queue capacity must be at least 1, but was "
+							+ queueCapacity);
+		}
+		this.entityDocumentProcessor = entityDocumentProcessor;
+		this.queueCapacity = queueCapacity;
+		this.queueFullPolicy = queueFullPolicy;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.consumerThread = THREAD_FACTORY.newThread(this::consume);
+		this.consumerThread.start();
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		submit(itemDocument);
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		submit(propertyDocument);
+	}
+
+	@Override
+	public void processLexemeDocument(LexemeDocument lexemeDocument) {
+		submit(lexemeDocument);
+	}
+
+	@Override
+	public void processMediaInfoDocument(MediaInfoDocument mediaInfoDocument) {
+		submit(mediaInfoDocument);
+	}
+
+	@Override
+	public void processEntityRedirectDocument(
+			EntityRedirectDocument entityRedirectDocument) {
+		submit(entityRedirectDocument);
+	}
+
+	/**
+	 * Waits until all documents have been processed and stops the thread of
+	 * the processor. No documents must be delivered after calling this
+	 * method. Calling it again has no effect.
+	 *
+	 * @throws RuntimeException
+	 *             if the wrapped processor failed
+	 */
+	public void finish() {
+		synchronized (this) {
+			if (this.finished) {
+				return;
+			}
+			this.finished = true;
+		}
+		try {
+			enqueue(END);
+			this.consumerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.consumerThread.interrupt();
+			throw new RuntimeException(
+					"Interrupted while waiting for documents to be processed",
+					e);
+		} finally {
+			closeSpillFile();
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Waits until all documents that have been delivered so far have been
+	 * processed, so that neither the queue nor the spill file hold any
+	 * documents. This must be called on the thread that delivers the
+	 * documents. Afterwards, this thread may access the wrapped processor
+	 * until it delivers the next document.
+	 *
+	 * @throws RuntimeException
+	 *             if the wrapped processor failed
+	 */
+	public void flush() {
+		checkFailure();
+		CountDownLatch latch = new CountDownLatch(1);
+		this.barrierLatch = latch;
+		try {
+			enqueue(BARRIER);
+			while (!latch.await(100, TimeUnit.MILLISECONDS)) {
+				if (!this.consumerThread.isAlive()) {
+					checkFailure();
+					throw new IllegalStateException(
+							"Asynchronous processor is no longer running");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"Interrupted while waiting for documents to be processed",
+					e);
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Waits until all documents delivered so far have been processed, see
+	 * {@link #flush()}, and then passes the checkpoint on to the wrapped
+	 * processor if it is a {@link DumpCheckpointListener}.
+	 */
+	@Override
+	public void saveCheckpoint(DumpCheckpoint checkpoint) throws IOException {
+		flush();
+		if (this.entityDocumentProcessor instanceof DumpCheckpointListener) {
+			((DumpCheckpointListener) this.entityDocumentProcessor)
+					.saveCheckpoint(checkpoint);
+		}
+	}
+
+	/**
+	 * Passes the checkpoint on to the wrapped processor if it is a
+	 * {@link DumpCheckpointListener}. This is called before any documents
+	 * are delivered, while the thread of the processor is idle.
+	 */
+	@Override
+	public void restoreCheckpoint(DumpCheckpoint checkpoint)
+			throws IOException {
+		if (this.entityDocumentProcessor instanceof DumpCheckpointListener) {
+			((DumpCheckpointListener) this.entityDocumentProcessor)
+					.restoreCheckpoint(checkpoint);
+		}
+	}
+
+	/**
+	 * Returns the processor that is called asynchronously.
+	 *
+	 * @return the wrapped processor
+	 */
+	public EntityDocumentProcessor getEntityDocumentProcessor() {
+		return this.entityDocumentProcessor;
+	}
+
+	/**
+	 * Returns the number of documents that fit into the queue.
+	 *
+	 * @return the capacity of the queue
+	 */
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+
+	/**
+	 * Returns the number of documents that are currently waiting in the
+	 * queue.
+	 *
+	 * @return the current depth of the queue
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * Returns the largest number of documents that have been waiting in the
+	 * queue at the same time.
+	 *
+	 * @return the maximal depth of the queue
+	 */
+	public int getMaxQueueDepth() {
+		return this.maxQueueDepth.get();
+	}
+
+	/**
+	 * Returns the number of documents that are currently waiting in the spill
+	 * file.
+	 *
+	 * @return the number of spilled documents not processed yet
+	 */
+	public int getSpillDepth() {
+		return this.spillDepth.get();
+	}
+
+	/**
+	 * Returns the number of documents that have been written to the spill
+	 * file because the queue was full.
+	 *
+	 * @return the total number of spilled documents
+	 */
+	public long getSpilledDocumentCount() {
+		return this.spilledDocumentCount.get();
+	}
+
+	/**
+	 * Returns how long threads that delivered documents have been waiting
+	 * for space in the queue.
+	 *
+	 * @return the total time in milliseconds
+	 */
+	public long getBlockedTime() {
+		return TimeUnit.NANOSECONDS.toMillis(this.blockedNanos.get());
+	}
+
+	/**
+	 * Returns the number of documents that have been processed. Documents
+	 * that are discarded after the wrapped processor failed are not counted.
+	 *
+	 * @return the number of processed documents
+	 */
+	public long getProcessedDocumentCount() {
+		return this.processedDocumentCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncEntityDocumentProcessor for "
+				+ this.entityDocumentProcessor + ": "
+				+ getProcessedDocumentCount() + " documents processed, queue "
+				+ getQueueDepth() + "/" + this.queueCapacity + " (max. "
+				+ getMaxQueueDepth() + "), " + getSpillDepth() + " of "
+				+ getSpilledDocumentCount() + " spilled documents waiting, "
+				+ getBlockedTime() + " ms blocked";
+	}
+
+	/**
+	 * Delivers a document to the queue.
+	 *
+	 * @param entityDocument
+	 *            the document
+	 */
+	void submit(EntityDocument entityDocument) {
+		checkFailure();
+		try {
+			enqueue(entityDocument);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"Interrupted while waiting for space in the queue", e);
+		}
+	}
+
+	/**
+	 * Adds a document or a marker to the queue, following the policy for
+	 * full queues.
+	 *
+	 * @param item
+	 *            the document, {@link #END} or {@link #BARRIER}
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 */
+	void enqueue(Object item) throws InterruptedException {
+		if (this.queueFullPolicy == QueueFullPolicy.SPILL) {
+			synchronized (this.spillLock) {
+				// once documents are spilled, later documents must be spilled
+				// as well, until the consumer has caught up
+				if (this.spillWritePosition > 0 || !this.queue.offer(item)) {
+					spill(item);
+					return;
+				}
+			}
+		} else if (!this.queue.offer(item)) {
+			long start = System.nanoTime();
+			while (!this.queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+				if (!this.consumerThread.isAlive()) {
+					checkFailure();
+					throw new IllegalStateException(
+							"Asynchronous processor is no longer running");
+				}
+			}
+			this.blockedNanos.addAndGet(System.nanoTime() - start);
+		}
+		this.maxQueueDepth.accumulateAndGet(this.queue.size(), Math::max);
+	}
+
+	/**
+	 * Writes a document or a marker to the spill file. Must be called while
+	 * holding {@link #spillLock}.
+	 *
+	 * @param item
+	 *            the document, {@link #END} or {@link #BARRIER}
+	 */
+	void spill(Object item) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0); // length of the record, set below
+			if (item == END) {
+				out.writeByte(RECORD_END);
+			} else if (item == BARRIER) {
+				out.writeByte(RECORD_BARRIER);
+			} else {
+				EntityDocument entityDocument = (EntityDocument) item;
+				out.writeByte(entityDocument instanceof EntityRedirectDocument ? RECORD_REDIRECT
+						: RECORD_ENTITY);
+				out.writeUTF(entityDocument.getEntityId().getSiteIri());
+				out.write(JsonSerializer.getJsonString(entityDocument)
+						.getBytes(StandardCharsets.UTF_8));
+			}
+			byte[] record = bytes.toByteArray();
+			int length = record.length - 4;
+			record[0] = (byte) (length >>> 24);
+			record[1] = (byte) (length >>> 16);
+			record[2] = (byte) (length >>> 8);
+			record[3] = (byte) length;
+
+			if (this.spillFile == null) {
+				this.spillPath = Files.createTempFile("wdtk-spill", ".tmp");
+				this.spillFile = new RandomAccessFile(this.spillPath.toFile(),
+						"rw");
+			}
+			this.spillFile.seek(this.spillWritePosition);
+			this.spillFile.write(record);
+			this.spillWritePosition += record.length;
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write document to spill file: "
+					+ e.getMessage(), e);
+		}
+		if (item != END && item != BARRIER) {
+			this.spillDepth.incrementAndGet();
+			this.spilledDocumentCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Takes the next document from the queue or, if the queue is empty, from
+	 * the spill file. The queue only contains documents that are older than
+	 * all spilled documents, so this order is preserved as long as nothing is
+	 * added in between, which is ensured by {@link #spillLock}.
+	 *
+	 * @return the document, {@link #END}, {@link #BARRIER}, or null if
+	 *         neither the queue nor the spill file hold further documents
+	 * @throws IOException
+	 *             if the spill file could not be read
+	 */
+	Object pollItem() throws IOException {
+		byte[] record;
+		synchronized (this.spillLock) {
+			Object item = this.queue.poll();
+			if (item != null
+					|| this.spillReadPosition == this.spillWritePosition) {
+				return item;
+			}
+			this.spillFile.seek(this.spillReadPosition);
+			record = new byte[this.spillFile.readInt()];
+			this.spillFile.readFully(record);
+			this.spillReadPosition += 4 + record.length;
+			if (this.spillReadPosition == this.spillWritePosition) {
+				// all spilled documents have been read, so that new documents
+				// can be queued again; the file is reused from the start
+				this.spillReadPosition = 0;
+				this.spillWritePosition = 0;
+			}
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				record));
+		byte recordType = in.readByte();
+		if (recordType == RECORD_END) {
+			return END;
+		} else if (recordType == RECORD_BARRIER) {
+			return BARRIER;
+		}
+		this.spillDepth.decrementAndGet();
+		String siteIri = in.readUTF();
+		String json = new String(record, record.length - in.available(),
+				in.available(), StandardCharsets.UTF_8);
+		JsonDeserializer deserializer = this.deserializers.computeIfAbsent(
+				siteIri, JsonDeserializer::new);
+		if (recordType == RECORD_REDIRECT) {
+			return deserializer.deserializeEntityRedirectDocument(json);
+		} else {
+			return deserializer.deserializeEntityDocument(json);
+		}
+	}
+
+	/**
+	 * Main loop of the thread that calls the wrapped processor.
+	 */
+	void consume() {
+		try {
+			while (true) {
+				Object item = pollItem();
+				if (item == null) {
+					item = this.queue.take();
+				}
+				if (item == END) {
+					return;
+				}
+				if (item == BARRIER) {
+					this.barrierLatch.countDown();
+					continue;
+				}
+				if (this.failure == null) {
+					try {
+						dispatch((EntityDocument) item);
+						this.processedDocumentCount.incrementAndGet();
+					} catch (RuntimeException | Error e) {
+						logger.error("Asynchronous processor "
+								+ this.entityDocumentProcessor + " failed: "
+								+ e.toString());
+						this.failure = e;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			this.failure = e;
+		} catch (IOException e) {
+			logger.error("Could not read spill file: " + e.toString());
+			this.failure = e;
+		}
+	}
+
+	/**
+	 * Passes a document to the method of the wrapped processor that matches
+	 * its type.
+	 *
+	 * @param entityDocument
+	 *            the document
+	 */
+	void dispatch(EntityDocument entityDocument) {
+		if (entityDocument instanceof ItemDocument) {
+			this.entityDocumentProcessor
+					.processItemDocument((ItemDocument) entityDocument);
+		} else if (entityDocument instanceof PropertyDocument) {
+			this.entityDocumentProcessor
+					.processPropertyDocument((PropertyDocument) entityDocument);
+		} else if (entityDocument instanceof LexemeDocument) {
+			this.entityDocumentProcessor
+					.processLexemeDocument((LexemeDocument) entityDocument);
+		} else if (entityDocument instanceof MediaInfoDocument) {
+			this.entityDocumentProcessor
+					.processMediaInfoDocument((MediaInfoDocument) entityDocument);
+		} else if (entityDocument instanceof EntityRedirectDocument) {
+			this.entityDocumentProcessor
+					.processEntityRedirectDocument((EntityRedirectDocument) entityDocument);
+		}
+	}
+
+	/**
+	 * Throws an exception if the wrapped processor has failed.
+	 */
+	void checkFailure() {
+		Throwable e = this.failure;
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		} else if (e != null) {
+			throw new RuntimeException("Asynchronous processing failed: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Closes and deletes the spill file, if there is one.
+	 */
+	void closeSpillFile() {
+		synchronized (this.spillLock) {
+			if (this.spillFile == null) {
+				return;
+			}
+			try {
+				this.spillFile.close();
+				Files.deleteIfExists(this.spillPath);
+			} catch (IOException e) {
+				logger.warn("Could not delete spill file " + this.spillPath
+						+ ": " + e.toString());
+			}
+			this.spillFile = null;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Interface for {@link MwRevisionProcessor} objects that can process the parts
+ * of a multi-part dump concurrently by using one instance per part. When such
+ * a processor is registered and the parts of a dump are processed with
+ * {@link DumpProcessingController#processDumpParts(java.util.List)}, a new
+ * instance is created for every part, and the instances are combined with the
+ * registered processor once all parts have been processed. When dumps are
+ * processed one by one, the registered processor is used directly.
+ *
+ * @param <T>
+ *            the type of the part instances
+ */
+public interface CombinableMwRevisionProcessor<T extends MwRevisionProcessor>
+		extends MwRevisionProcessor {
+
+	/**
+	 * Creates an instance that processes the revisions of one part of a dump.
+	 * This is called before any part is processed, and the instance is only
+	 * called by one thread.
+	 *
+	 * @return the new instance
+	 */
+	T createPartProcessor();
+
+	/**
+	 * Adds the results of an instance that has processed one part of a dump
+	 * to this processor. This is called on the thread that started the
+	 * processing, once for every part, in the order of the parts.
+	 *
+	 * @param partProcessor
+	 *            an instance that was created by {@link #createPartProcessor()}
+	 */
+	void combine(T partProcessor);
+}
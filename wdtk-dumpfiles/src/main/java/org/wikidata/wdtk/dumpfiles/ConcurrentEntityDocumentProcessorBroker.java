@@ -0,0 +1,221 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessorBroker;
+import org.wikidata.wdtk.datamodel.interfaces.EntityRedirectDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.LexemeDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MediaInfoDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.dumpfiles.AsyncEntityDocumentProcessor.QueueFullPolicy;
+
+/**
+ * Broker that distributes entity documents to multiple registered processors
+ * like {@link EntityDocumentProcessorBroker}, but calls every processor in a
+ * thread of its own. The time needed per document is thus determined by the
+ * slowest processor rather than by the sum of all processors. Documents are
+ * immutable and are shared by all processors.
+ * <p>
+ * Each processor receives the documents in the order in which they were
+ * delivered to the broker, through an {@link AsyncEntityDocumentProcessor}
+ * with a queue of bounded size. Delivering a document waits while the queue
+ * of any processor is full.
+ * <p>
+ * {@link #close()} must be called after the last document has been
+ * delivered. It waits until all processors have processed all documents, so
+ * that their results can be used afterwards.
+ */
+public class ConcurrentEntityDocumentProcessorBroker implements
+		EntityDocumentProcessor, AutoCloseable {
+
+	/**
+	 * Default capacity of the queue of each processor.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	final int queueCapacity;
+
+	final Map<EntityDocumentProcessor, AsyncEntityDocumentProcessor> processors = new IdentityHashMap<>();
+
+	/**
+	 * Array of the asynchronous processors, updated on registration, so that
+	 * documents can be distributed without locking.
+	 */
+	volatile AsyncEntityDocumentProcessor[] asyncProcessors = new AsyncEntityDocumentProcessor[0];
+
+	volatile boolean closed = false;
+
+	/**
+	 * Constructor. Uses queues of {@link #DEFAULT_QUEUE_CAPACITY} documents.
+	 */
+	public ConcurrentEntityDocumentProcessorBroker() {
+		this(DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param queueCapacity
+	 *            the number of documents that can wait for each processor
+	 *            before delivering further documents blocks
+	 * @throws IllegalArgumentException
+	 *             if the capacity is less than 1
+	 */
+	public ConcurrentEntityDocumentProcessorBroker(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException(
+					"Queue capacity must be at least 1, but was "
+							+ queueCapacity);
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Registers a processor which will be called for all entity documents
+	 * that are delivered afterwards. The method avoids duplicates in the sense
+	 * that the exact same object cannot be registered twice. A thread is
+	 * started for every new processor.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the processor to register
+	 * @throws IllegalStateException
+	 *             if the broker has been closed already
+	 */
+	public synchronized void registerEntityDocumentProcessor(
+			EntityDocumentProcessor entityDocumentProcessor) {
+		checkOpen();
+		if (this.processors.containsKey(entityDocumentProcessor)) {
+			return;
+		}
+		this.processors.put(entityDocumentProcessor,
+				new AsyncEntityDocumentProcessor(entityDocumentProcessor,
+						this.queueCapacity, QueueFullPolicy.BLOCK));
+		this.asyncProcessors = this.processors.values().toArray(
+				new AsyncEntityDocumentProcessor[0]);
+	}
+
+	/**
+	 * Returns the asynchronous wrappers of the registered processors, which
+	 * provide statistics such as the current queue depth.
+	 *
+	 * @return the asynchronous processors
+	 */
+	public synchronized List<AsyncEntityDocumentProcessor> getAsynchronousProcessors() {
+		return new ArrayList<>(this.processors.values());
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		for (AsyncEntityDocumentProcessor processor : getProcessors()) {
+			processor.processItemDocument(itemDocument);
+		}
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		for (AsyncEntityDocumentProcessor processor : getProcessors()) {
+			processor.processPropertyDocument(propertyDocument);
+		}
+	}
+
+	@Override
+	public void processLexemeDocument(LexemeDocument lexemeDocument) {
+		for (AsyncEntityDocumentProcessor processor : getProcessors()) {
+			processor.processLexemeDocument(lexemeDocument);
+		}
+	}
+
+	@Override
+	public void processMediaInfoDocument(MediaInfoDocument mediaInfoDocument) {
+		for (AsyncEntityDocumentProcessor processor : getProcessors()) {
+			processor.processMediaInfoDocument(mediaInfoDocument);
+		}
+	}
+
+	@Override
+	public void processEntityRedirectDocument(
+			EntityRedirectDocument entityRedirectDocument) {
+		for (AsyncEntityDocumentProcessor processor : getProcessors()) {
+			processor.processEntityRedirectDocument(entityRedirectDocument);
+		}
+	}
+
+	/**
+	 * Waits until all registered processors have processed all documents and
+	 * stops their threads. No documents must be delivered afterwards. Calling
+	 * this method again has no effect.
+	 *
+	 * @throws RuntimeException
+	 *             if one of the processors failed; the other processors are
+	 *             still finished
+	 */
+	@Override
+	public void close() {
+		List<AsyncEntityDocumentProcessor> processors;
+		synchronized (this) {
+			this.closed = true;
+			processors = new ArrayList<>(this.processors.values());
+		}
+
+		RuntimeException failure = null;
+		for (AsyncEntityDocumentProcessor processor : processors) {
+			try {
+				processor.finish();
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Returns the processors that documents are delivered to.
+	 *
+	 * @return the asynchronous processors
+	 * @throws IllegalStateException
+	 *             if the broker has been closed already
+	 */
+	AsyncEntityDocumentProcessor[] getProcessors() {
+		checkOpen();
+		return this.asyncProcessors;
+	}
+
+	/**
+	 * Throws an exception if the broker has been closed already.
+	 */
+	void checkOpen() {
+		if (this.closed) {
+			throw new IllegalStateException(
+					"Documents cannot be delivered after the broker was closed");
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.wikidata.wdtk.util.GzipMemberInputStream.MemberPosition;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream.BlockPosition;
+
+/**
+ * Position in a dump file up to which all records (pages or entities) have
+ * been processed. Checkpoints are written periodically while processing a
+ * dump, so that processing can be resumed at the last checkpoint after a
+ * crash instead of starting over.
+ * <p>
+ * Positions refer to the uncompressed content of the dump. For bzip2
+ * compressed dumps, the checkpoint may also store the position of the
+ * compressed block that contains the checkpoint, so that decompression can
+ * start there without reading the part of the file before it. Likewise, for
+ * gzip compressed dumps that consist of several members, the checkpoint may
+ * store the position of the member that contains the checkpoint.
+ */
+public class DumpCheckpoint {
+
+	static final String KEY_PROJECT_NAME = "projectName";
+	static final String KEY_DATE_STAMP = "dateStamp";
+	static final String KEY_CONTENT_TYPE = "dumpContentType";
+	static final String KEY_POSITION = "position";
+	static final String KEY_RECORD_COUNT = "recordCount";
+	static final String KEY_LAST_RECORD = "lastRecord";
+	static final String KEY_BLOCK_BIT_OFFSET = "blockBitOffset";
+	static final String KEY_BLOCK_UNCOMPRESSED_OFFSET = "blockUncompressedOffset";
+	static final String KEY_MEMBER_BYTE_OFFSET = "memberByteOffset";
+	static final String KEY_MEMBER_UNCOMPRESSED_OFFSET = "memberUncompressedOffset";
+
+	final String projectName;
+	final String dateStamp;
+	final DumpContentType dumpContentType;
+	final long position;
+	final long recordCount;
+	final String lastRecord;
+	final BlockPosition blockPosition;
+	final MemberPosition memberPosition;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dumpFile
+	 *            the dump that the checkpoint belongs to
+	 * @param position
+	 *            the position in the uncompressed dump where the first record
+	 *            that has not been processed yet starts
+	 * @param recordCount
+	 *            the number of records that have been processed before this
+	 *            position
+	 * @param lastRecord
+	 *            the title or id of the last record that has been processed,
+	 *            or null if unknown; only used for reporting
+	 * @param blockPosition
+	 *            the position of the bzip2 block that contains the position,
+	 *            or null if not known
+	 */
+	public DumpCheckpoint(MwDumpFile dumpFile, long position,
+			long recordCount, String lastRecord, BlockPosition blockPosition) {
+		this(dumpFile, position, recordCount, lastRecord, blockPosition, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dumpFile
+	 *            the dump that the checkpoint belongs to
+	 * @param position
+	 *            the position in the uncompressed dump where the first record
+	 *            that has not been processed yet starts
+	 * @param recordCount
+	 *            the number of records that have been processed before this
+	 *            position
+	 * @param lastRecord
+	 *            the title or id of the last record that has been processed,
+	 *            or null if unknown; only used for reporting
+	 * @param blockPosition
+	 *            the position of the bzip2 block that contains the position,
+	 *            or null if not known
+	 * @param memberPosition
+	 *            the position of the gzip member that contains the position,
+	 *            or null if not known
+	 */
+	public DumpCheckpoint(MwDumpFile dumpFile, long position,
+			long recordCount, String lastRecord, BlockPosition blockPosition,
+			MemberPosition memberPosition) {
+		this(dumpFile.getProjectName(), dumpFile.getDateStamp(), dumpFile
+				.getDumpContentType(), position, recordCount, lastRecord,
+				blockPosition, memberPosition);
+	}
+
+	DumpCheckpoint(String projectName, String dateStamp,
+			DumpContentType dumpContentType, long position, long recordCount,
+			String lastRecord, BlockPosition blockPosition,
+			MemberPosition memberPosition) {
+		this.projectName = projectName;
+		this.dateStamp = dateStamp;
+		this.dumpContentType = dumpContentType;
+		this.position = position;
+		this.recordCount = recordCount;
+		this.lastRecord = lastRecord;
+		this.blockPosition = blockPosition;
+		this.memberPosition = memberPosition;
+	}
+
+	/**
+	 * Returns the position in the uncompressed dump where processing should
+	 * be resumed.
+	 *
+	 * @return the position in bytes
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * Returns the number of records that have been processed before the
+	 * checkpoint.
+	 *
+	 * @return the number of records
+	 */
+	public long getRecordCount() {
+		return this.recordCount;
+	}
+
+	/**
+	 * Returns the title or id of the last record that was processed before
+	 * the checkpoint.
+	 *
+	 * @return the last record, or null if not known
+	 */
+	public String getLastRecord() {
+		return this.lastRecord;
+	}
+
+	/**
+	 * Returns the position of the bzip2 block where decompression can start
+	 * in order to resume at this checkpoint.
+	 *
+	 * @return the block position, or null if not known
+	 */
+	public BlockPosition getBlockPosition() {
+		return this.blockPosition;
+	}
+
+	/**
+	 * Returns the position of the gzip member where decompression can start
+	 * in order to resume at this checkpoint.
+	 *
+	 * @return the member position, or null if not known
+	 */
+	public MemberPosition getMemberPosition() {
+		return this.memberPosition;
+	}
+
+	/**
+	 * Checks if this checkpoint belongs to the given dump file.
+	 *
+	 * @param dumpFile
+	 *            the dump file to compare with
+	 * @return true if project name, date stamp and content type are the same
+	 */
+	public boolean matches(MwDumpFile dumpFile) {
+		return this.projectName.equals(dumpFile.getProjectName())
+				&& this.dateStamp.equals(dumpFile.getDateStamp())
+				&& this.dumpContentType == dumpFile.getDumpContentType();
+	}
+
+	/**
+	 * Loads a checkpoint from the given file.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the checkpoint, or null if the file does not exist
+	 * @throws IOException
+	 *             if the file could not be read or has an invalid format
+	 */
+	public static DumpCheckpoint load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+
+		try {
+			BlockPosition blockPosition = null;
+			if (properties.containsKey(KEY_BLOCK_BIT_OFFSET)) {
+				blockPosition = new BlockPosition(
+						getLong(properties, KEY_BLOCK_BIT_OFFSET), getLong(
+								properties, KEY_BLOCK_UNCOMPRESSED_OFFSET));
+			}
+			MemberPosition memberPosition = null;
+			if (properties.containsKey(KEY_MEMBER_BYTE_OFFSET)) {
+				memberPosition = new MemberPosition(getLong(properties,
+						KEY_MEMBER_BYTE_OFFSET), getLong(properties,
+						KEY_MEMBER_UNCOMPRESSED_OFFSET));
+			}
+			return new DumpCheckpoint(getString(properties, KEY_PROJECT_NAME),
+					getString(properties, KEY_DATE_STAMP),
+					DumpContentType.valueOf(getString(properties,
+							KEY_CONTENT_TYPE)), getLong(properties,
+							KEY_POSITION), getLong(properties,
+							KEY_RECORD_COUNT),
+					properties.getProperty(KEY_LAST_RECORD), blockPosition,
+					memberPosition);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid checkpoint file " + file + ": "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes this checkpoint to the given file. The file is replaced
+	 * atomically, so that an interrupted write does not destroy the previous
+	 * checkpoint.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void save(Path file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(KEY_PROJECT_NAME, this.projectName);
+		properties.setProperty(KEY_DATE_STAMP, this.dateStamp);
+		properties.setProperty(KEY_CONTENT_TYPE, this.dumpContentType.name());
+		properties.setProperty(KEY_POSITION, Long.toString(this.position));
+		properties.setProperty(KEY_RECORD_COUNT,
+				Long.toString(this.recordCount));
+		if (this.lastRecord != null) {
+			properties.setProperty(KEY_LAST_RECORD, this.lastRecord);
+		}
+		if (this.blockPosition != null) {
+			properties.setProperty(KEY_BLOCK_BIT_OFFSET,
+					Long.toString(this.blockPosition.getBitOffset()));
+			properties.setProperty(KEY_BLOCK_UNCOMPRESSED_OFFSET,
+					Long.toString(this.blockPosition.getUncompressedOffset()));
+		}
+		if (this.memberPosition != null) {
+			properties.setProperty(KEY_MEMBER_BYTE_OFFSET,
+					Long.toString(this.memberPosition.getByteOffset()));
+			properties.setProperty(KEY_MEMBER_UNCOMPRESSED_OFFSET,
+					Long.toString(this.memberPosition.getUncompressedOffset()));
+		}
+
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(tempFile)) {
+			properties.store(out, "Wikidata Toolkit dump processing checkpoint");
+		}
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return "checkpoint of " + this.projectName + "/"
+				+ this.dumpContentType.toString().toLowerCase() + "/"
+				+ this.dateStamp + " at byte " + this.position + " after "
+				+ this.recordCount + " records"
+				+ (this.lastRecord == null ? "" : " (last: " + this.lastRecord + ")");
+	}
+
+	private static String getString(Properties properties, String key) {
+		String value = properties.getProperty(key);
+		if (value == null) {
+			throw new IllegalArgumentException("missing value for " + key);
+		}
+		return value;
+	}
+
+	private static long getLong(Properties properties, String key) {
+		return Long.parseLong(getString(properties, key));
+	}
+}
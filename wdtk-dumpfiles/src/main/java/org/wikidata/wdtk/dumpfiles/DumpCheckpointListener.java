@@ -0,0 +1,59 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+/**
+ * Interface for processors that keep state of their own and want to persist
+ * it together with the checkpoints of dump processing. Registered
+ * {@link MwRevisionProcessor} and
+ * {@link org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor}
+ * objects that implement this interface are notified by the
+ * {@link DumpProcessingController} whenever a checkpoint is taken or
+ * restored.
+ */
+public interface DumpCheckpointListener {
+
+	/**
+	 * Called before a checkpoint is written. At this point, the processor has
+	 * received all records before the checkpoint and none after it. If this
+	 * method throws an exception, the checkpoint is not written.
+	 *
+	 * @param checkpoint
+	 *            the checkpoint that is about to be written
+	 * @throws IOException
+	 *             if the state of the processor could not be saved
+	 */
+	void saveCheckpoint(DumpCheckpoint checkpoint) throws IOException;
+
+	/**
+	 * Called before processing resumes at the given checkpoint. The processor
+	 * should restore the state that it had when the checkpoint was saved,
+	 * since it will only receive the records after it.
+	 *
+	 * @param checkpoint
+	 *            the checkpoint where processing resumes
+	 * @throws IOException
+	 *             if the state of the processor could not be restored
+	 */
+	void restoreCheckpoint(DumpCheckpoint checkpoint) throws IOException;
+}
@@ -0,0 +1,200 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.util.GzipMemberInputStream.MemberPosition;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream.BlockPosition;
+
+/**
+ * Helper for dump file processors that writes a {@link DumpCheckpoint} after
+ * every given number of processed records. Processors report their progress
+ * in terms of positions in the stream that they read. This stream may start
+ * with a prefix that does not belong to the dump, such as the header of an
+ * XML dump that is needed when resuming in the middle of the file, so the
+ * checkpointer maps stream positions to positions in the dump.
+ */
+class DumpCheckpointer {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(DumpCheckpointer.class);
+
+	final Path checkpointFile;
+	final long interval;
+	final MwDumpFile dumpFile;
+	final List<DumpCheckpointListener> listeners;
+
+	/**
+	 * The stream of the dump, used to find block positions of compressed
+	 * dumps, or null if not known.
+	 */
+	ResumableDumpInputStream dumpStream = null;
+	/**
+	 * Position in the dump that corresponds to position 0 of the stream that
+	 * is read by the processor. May be negative if the stream starts with a
+	 * prefix.
+	 */
+	long streamOrigin = 0;
+
+	long recordCount = 0;
+	String lastRecord = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param checkpointFile
+	 *            the file to write checkpoints to
+	 * @param interval
+	 *            the number of records between two checkpoints
+	 * @param dumpFile
+	 *            the dump that is processed
+	 * @param listeners
+	 *            the listeners to notify when taking or restoring checkpoints
+	 */
+	DumpCheckpointer(Path checkpointFile, long interval, MwDumpFile dumpFile,
+			List<DumpCheckpointListener> listeners) {
+		this.checkpointFile = checkpointFile;
+		this.interval = interval;
+		this.dumpFile = dumpFile;
+		this.listeners = new ArrayList<>(listeners);
+	}
+
+	/**
+	 * Adds a listener that is notified before all other listeners. Used by
+	 * processors that buffer records internally and need to pass them on
+	 * before the other listeners save their state.
+	 *
+	 * @param listener
+	 *            the listener to add
+	 */
+	void addFirstListener(DumpCheckpointListener listener) {
+		this.listeners.add(0, listener);
+	}
+
+	/**
+	 * Sets the stream that the dump is read from.
+	 *
+	 * @param dumpStream
+	 *            the stream of the dump, positioned at the start position
+	 * @param streamOrigin
+	 *            the position in the dump that corresponds to the start of
+	 *            the stream that is read by the processor
+	 */
+	void setDumpStream(InputStream dumpStream, long streamOrigin) {
+		if (dumpStream instanceof ResumableDumpInputStream) {
+			this.dumpStream = (ResumableDumpInputStream) dumpStream;
+		} else {
+			this.dumpStream = null;
+		}
+		this.streamOrigin = streamOrigin;
+	}
+
+	/**
+	 * Notifies all listeners that processing resumes at the given checkpoint,
+	 * and continues counting records from there.
+	 *
+	 * @param checkpoint
+	 *            the checkpoint to resume at
+	 * @throws IOException
+	 *             if a listener could not restore its state
+	 */
+	void restore(DumpCheckpoint checkpoint) throws IOException {
+		this.recordCount = checkpoint.getRecordCount();
+		this.lastRecord = checkpoint.getLastRecord();
+		for (DumpCheckpointListener listener : this.listeners) {
+			listener.restoreCheckpoint(checkpoint);
+		}
+	}
+
+	/**
+	 * Reports that records have been processed completely. A checkpoint is
+	 * written if the number of records since the last checkpoint has reached
+	 * the interval. Errors when writing checkpoints are logged but do not stop
+	 * processing.
+	 *
+	 * @param streamPosition
+	 *            the position in the stream where the first record that has
+	 *            not been processed yet starts
+	 * @param lastRecord
+	 *            the title or id of the last processed record, or null if
+	 *            it should not be updated
+	 * @param records
+	 *            the number of records that have been processed since the
+	 *            last call
+	 */
+	void recordProgress(long streamPosition, String lastRecord, int records) {
+		long previousCount = this.recordCount;
+		this.recordCount += records;
+		if (lastRecord != null) {
+			this.lastRecord = lastRecord;
+		}
+		if (this.recordCount / this.interval != previousCount / this.interval) {
+			saveCheckpoint(streamPosition);
+		}
+	}
+
+	/**
+	 * Writes a checkpoint for the given position after notifying all
+	 * listeners.
+	 *
+	 * @param streamPosition
+	 *            the position in the stream where the first record that has
+	 *            not been processed yet starts
+	 */
+	void saveCheckpoint(long streamPosition) {
+		long position = this.streamOrigin + streamPosition;
+		BlockPosition blockPosition = this.dumpStream == null ? null
+				: this.dumpStream.getBlockPosition(position);
+		MemberPosition memberPosition = this.dumpStream == null ? null
+				: this.dumpStream.getMemberPosition(position);
+		DumpCheckpoint checkpoint = new DumpCheckpoint(this.dumpFile,
+				position, this.recordCount, this.lastRecord, blockPosition,
+				memberPosition);
+		try {
+			for (DumpCheckpointListener listener : this.listeners) {
+				listener.saveCheckpoint(checkpoint);
+			}
+			checkpoint.save(this.checkpointFile);
+			logger.info("Saved " + checkpoint);
+		} catch (IOException e) {
+			logger.error("Could not save " + checkpoint + ": " + e.toString());
+		}
+	}
+
+	/**
+	 * Deletes the checkpoint file after the dump has been processed
+	 * completely.
+	 *
+	 * @throws IOException
+	 *             if the file could not be deleted
+	 */
+	void finish() throws IOException {
+		Files.deleteIfExists(this.checkpointFile);
+	}
+}
@@ -0,0 +1,243 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+import org.wikidata.wdtk.util.DirectoryManagerFactory;
+import org.wikidata.wdtk.util.GzipMemberInputStream;
+import org.wikidata.wdtk.util.GzipMemberInputStream.MemberPosition;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Reads single entities from a local JSON dump file, using a
+ * {@link JsonDumpIndex} to find them. For bzip2 compressed dumps, reading an
+ * entity only requires decompressing the block where it starts (and the
+ * following block if the entity continues there). The same holds for gzip
+ * files that consist of many members, while standard gzip files have to be
+ * decompressed from the start.
+ * <p>
+ * Every lookup opens the dump file anew, so lookups may be done from several
+ * threads at once.
+ */
+public class DumpEntityLookup {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(DumpEntityLookup.class);
+
+	final DirectoryManager directoryManager;
+	final String fileName;
+	final JsonDumpIndex index;
+	final ObjectReader documentReader;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directoryManager
+	 *            the directory that contains the dump file
+	 * @param fileName
+	 *            the name of the dump file
+	 * @param index
+	 *            the index that has been built for the dump file
+	 * @param siteIri
+	 *            the IRI of the site that the data comes from
+	 * @throws IllegalArgumentException
+	 *             if the index was built for a different kind of file
+	 */
+	public DumpEntityLookup(DirectoryManager directoryManager,
+			String fileName, JsonDumpIndex index, String siteIri) {
+		if (index.getCompressionType() != WmfDumpFile
+				.getDumpFileCompressionType(fileName)) {
+			throw new IllegalArgumentException("Index for "
+					+ index.getCompressionType() + " compressed file cannot be used for "
+					+ fileName);
+		}
+		this.directoryManager = directoryManager;
+		this.fileName = fileName;
+		this.index = index;
+		this.documentReader = new DatamodelMapper(siteIri)
+				.readerFor(EntityDocumentImpl.class)
+				.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
+	}
+
+	/**
+	 * Creates a lookup for a Wikidata JSON dump file. The index is loaded from
+	 * the given file; if it does not exist, the index is built and saved
+	 * there first, which requires reading the whole dump.
+	 *
+	 * @param dumpFile
+	 *            the path of the dump file
+	 * @param indexFile
+	 *            the path of the index file
+	 * @return the lookup
+	 * @throws IOException
+	 *             if the dump or the index could not be read, or the index
+	 *             could not be written
+	 */
+	public static DumpEntityLookup open(Path dumpFile, Path indexFile)
+			throws IOException {
+		Path directory = dumpFile.toAbsolutePath().getParent();
+		String fileName = dumpFile.getFileName().toString();
+		DirectoryManager directoryManager = DirectoryManagerFactory
+				.createDirectoryManager(directory, true);
+
+		JsonDumpIndex index = JsonDumpIndex.load(indexFile);
+		if (index == null) {
+			logger.info("Building index of " + dumpFile + " ...");
+			index = JsonDumpIndex.build(directoryManager, fileName);
+			index.save(indexFile);
+			logger.info("Indexed " + index.getEntityCount()
+					+ " entities in " + indexFile);
+		}
+		return new DumpEntityLookup(directoryManager, fileName, index,
+				Datamodel.SITE_WIKIDATA);
+	}
+
+	/**
+	 * Returns the index that is used for finding entities.
+	 *
+	 * @return the index
+	 */
+	public JsonDumpIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Reads the entity with the given id from the dump.
+	 *
+	 * @param entityId
+	 *            the id of the entity, such as "Q42"
+	 * @return the document of the entity, or null if the entity is not in
+	 *         the dump
+	 * @throws IOException
+	 *             if the dump could not be read or does not match the index
+	 */
+	public EntityDocument getEntityDocument(String entityId)
+			throws IOException {
+		byte[] line = readEntityLine(entityId);
+		if (line == null) {
+			return null;
+		}
+		return this.documentReader.readValue(line);
+	}
+
+	/**
+	 * Reads the JSON serialization of the entity with the given id from the
+	 * dump.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @return the UTF-8 encoded JSON, or null if the entity is not in the
+	 *         dump
+	 * @throws IOException
+	 *             if the dump could not be read or does not match the index
+	 */
+	byte[] readEntityLine(String entityId) throws IOException {
+		JsonDumpIndex.Location location = this.index.find(entityId);
+		if (location == null) {
+			return null;
+		}
+
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		try (InputStream in = openAtBlock(location.blockStart)) {
+			ResumableDumpInputStream.skipFully(in, location.offset);
+			// bzip2 blocks are read byte by byte, so that decompression stops
+			// at the end of the line
+			int b;
+			while ((b = in.read()) != -1 && b != '\n') {
+				line.write(b);
+			}
+		}
+
+		byte[] bytes = line.toByteArray();
+		int length = bytes.length;
+		while (length > 0
+				&& (bytes[length - 1] == '\r' || bytes[length - 1] == ',')) {
+			length--;
+		}
+		String foundId = JsonDumpLineFilter.findEntityId(bytes, 0, length);
+		if (!entityId.equals(foundId)) {
+			throw new IOException("Index does not match dump file "
+					+ this.fileName + ": expected entity " + entityId
+					+ " but found " + foundId);
+		}
+		return length == bytes.length ? bytes : Arrays.copyOf(
+				bytes, length);
+	}
+
+	/**
+	 * Opens the dump file and starts decompression at the given block.
+	 *
+	 * @param blockStart
+	 *            the start of the block, as stored in the index
+	 * @return the stream of decompressed data from the start of the block
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	InputStream openAtBlock(long blockStart) throws IOException {
+		InputStream compressed = this.directoryManager.getInputStreamForFile(
+				this.fileName, CompressionType.NONE);
+		try {
+			switch (this.index.getCompressionType()) {
+			case BZ2:
+				ResumableDumpInputStream.skipFully(compressed, blockStart / 8);
+				return ParallelBZip2CompressorInputStream.openAtBlock(
+						new BufferedInputStream(compressed), blockStart);
+			case GZIP:
+				ResumableDumpInputStream.skipFully(compressed, blockStart);
+				return new BufferedInputStream(new GzipMemberInputStream(
+						compressed, new MemberPosition(blockStart, 0)));
+			case ZSTD:
+				CompressionType.ZSTD.checkAvailable();
+				ResumableDumpInputStream.skipFully(compressed, blockStart);
+				return new BufferedInputStream(new ZstdCompressorInputStream(
+						new BufferedInputStream(compressed)));
+			case XZ:
+				return new BufferedInputStream(new XZCompressorInputStream(
+						new BufferedInputStream(compressed), true));
+			default:
+				return new BufferedInputStream(compressed);
+			}
+		} catch (IOException e) {
+			compressed.close();
+			throw e;
+		}
+	}
+}
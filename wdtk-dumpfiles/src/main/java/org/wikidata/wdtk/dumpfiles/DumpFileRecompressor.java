@@ -0,0 +1,190 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+import org.wikidata.wdtk.util.DirectoryManagerFactory;
+import org.wikidata.wdtk.util.SeekableZstdOutputStream;
+
+/**
+ * Recompresses a dump file into the seekable Zstandard format; see
+ * {@link SeekableZstdOutputStream}. Dumps are usually read many times after
+ * they have been downloaded, and Zstandard decompresses several times faster
+ * than bzip2 or gzip.
+ * <p>
+ * Frames end at line breaks whenever possible, so that each frame holds
+ * complete lines. {@link ShardedDumpInputStream} and {@link JsonDumpIndex}
+ * use the seek table of the file to start decompression at frames, which
+ * makes the file suitable for parallel processing and random access.
+ */
+public class DumpFileRecompressor {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(DumpFileRecompressor.class);
+
+	/**
+	 * Recompresses the given dump file into a Zstandard file in the same
+	 * directory, using the default compression level and frame size. The name
+	 * of the new file is determined by {@link #getTargetFileName(String)}.
+	 *
+	 * @param dumpFile
+	 *            the path of the dump file
+	 * @return the path of the new file
+	 * @throws IOException
+	 *             if the dump could not be read or the new file could not be
+	 *             written
+	 * @throws IllegalArgumentException
+	 *             if the dump is compressed with Zstandard already
+	 */
+	public static Path recompress(Path dumpFile) throws IOException {
+		Path directory = dumpFile.toAbsolutePath().getParent();
+		String fileName = dumpFile.getFileName().toString();
+		if (WmfDumpFile.getDumpFileCompressionType(fileName) == CompressionType.ZSTD) {
+			throw new IllegalArgumentException("Dump file " + dumpFile
+					+ " is compressed with Zstandard already");
+		}
+		String targetFileName = getTargetFileName(fileName);
+		DirectoryManager directoryManager = DirectoryManagerFactory
+				.createDirectoryManager(directory, false);
+
+		logger.info("Recompressing " + dumpFile + " to " + targetFileName
+				+ " ...");
+		long size = recompress(directoryManager, fileName, targetFileName,
+				SeekableZstdOutputStream.DEFAULT_LEVEL,
+				SeekableZstdOutputStream.DEFAULT_FRAME_SIZE);
+		logger.info("Recompressed " + size + " bytes of " + dumpFile);
+		return directory.resolve(targetFileName);
+	}
+
+	/**
+	 * Recompresses the given dump file of the directory into a Zstandard file
+	 * in the seekable format. The compression type of the dump is determined
+	 * from the file name extension.
+	 *
+	 * @param directoryManager
+	 *            the directory that contains the dump file and where the new
+	 *            file is written
+	 * @param fileName
+	 *            the name of the dump file
+	 * @param targetFileName
+	 *            the name of the new file
+	 * @param level
+	 *            the Zstandard compression level
+	 * @param frameSize
+	 *            the maximal size of the uncompressed data of a frame; only
+	 *            lines that are longer than this are split across frames
+	 * @return the size of the uncompressed dump in bytes
+	 * @throws IOException
+	 *             if the dump could not be read or the new file could not be
+	 *             written
+	 */
+	public static long recompress(DirectoryManager directoryManager,
+			String fileName, String targetFileName, int level, int frameSize)
+			throws IOException {
+		try (InputStream in = directoryManager.getInputStreamForFile(
+				fileName, WmfDumpFile.getDumpFileCompressionType(fileName));
+				SeekableZstdOutputStream out = new SeekableZstdOutputStream(
+						directoryManager.getOutputStreamForFile(targetFileName),
+						level, frameSize)) {
+			return copyLines(in, out, frameSize);
+		}
+	}
+
+	/**
+	 * Returns the name of the Zstandard file for the given dump file, which
+	 * replaces the extension of gzip, bzip2 or xz files by ".zst", or appends
+	 * it to the names of uncompressed files.
+	 *
+	 * @param fileName
+	 *            the name of the dump file
+	 * @return the name of the recompressed file
+	 */
+	public static String getTargetFileName(String fileName) {
+		switch (WmfDumpFile.getDumpFileCompressionType(fileName)) {
+		case NONE:
+			return fileName + ".zst";
+		default:
+			return fileName.substring(0, fileName.lastIndexOf('.')) + ".zst";
+		}
+	}
+
+	/**
+	 * Copies the data of the input stream to the output stream, ending a
+	 * frame before every line that would not fit into the current frame.
+	 *
+	 * @return the number of bytes copied
+	 */
+	static long copyLines(InputStream in, SeekableZstdOutputStream out,
+			int frameSize) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		// the start of the current line if it began in an earlier buffer
+		byte[] pending = new byte[0];
+		int pendingLength = 0;
+		long total = 0;
+		int count;
+		while ((count = in.read(buffer)) != -1) {
+			total += count;
+			int lineStart = 0;
+			for (int i = 0; i < count; i++) {
+				if (buffer[i] != '\n') {
+					continue;
+				}
+				int length = i + 1 - lineStart;
+				if (out.getFrameLength() + pendingLength + length > frameSize) {
+					out.endFrame();
+				}
+				if (pendingLength > 0) {
+					out.write(pending, 0, pendingLength);
+					pendingLength = 0;
+				}
+				out.write(buffer, lineStart, length);
+				lineStart = i + 1;
+			}
+
+			int rest = count - lineStart;
+			if (pendingLength + rest > pending.length) {
+				pending = Arrays.copyOf(pending,
+						Math.max(2 * pending.length, pendingLength + rest));
+			}
+			System.arraycopy(buffer, lineStart, pending, pendingLength, rest);
+			pendingLength += rest;
+			if (pendingLength >= frameSize) {
+				// the line is too long for a frame anyway
+				out.write(pending, 0, pendingLength);
+				pendingLength = 0;
+			}
+		}
+		if (out.getFrameLength() + pendingLength > frameSize) {
+			out.endFrame();
+		}
+		out.write(pending, 0, pendingLength);
+		return total;
+	}
+}
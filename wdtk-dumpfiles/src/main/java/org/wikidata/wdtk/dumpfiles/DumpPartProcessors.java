@@ -0,0 +1,213 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityRedirectDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.LexemeDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MediaInfoDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+/**
+ * Provides the registered processors to the parts of a dump that are
+ * processed concurrently. Processors that implement
+ * {@link ThreadSafeMwRevisionProcessor} are used directly, processors that
+ * implement {@link CombinableMwRevisionProcessor} get one instance per part,
+ * and all other processors are wrapped so that only one part calls them at a
+ * time.
+ * <p>
+ * This class is used by one thread to set up the parts, and by that same
+ * thread to combine their results.
+ */
+class DumpPartProcessors {
+
+	/**
+	 * Synchronized wrappers of processors that are shared by all parts.
+	 */
+	final Map<Object, Object> sharedProcessors = new IdentityHashMap<>();
+	/**
+	 * Instances of {@link CombinableMwRevisionProcessor} objects for the part
+	 * that is currently set up.
+	 */
+	final Map<MwRevisionProcessor, MwRevisionProcessor> partProcessors = new IdentityHashMap<>();
+	/**
+	 * Actions that combine the instances of all parts with the registered
+	 * processors, in the order of the parts.
+	 */
+	final List<Runnable> combinations = new ArrayList<>();
+
+	/**
+	 * Starts setting up the processors for the next part.
+	 */
+	void startPart() {
+		this.partProcessors.clear();
+	}
+
+	/**
+	 * Returns the processor that the current part should call instead of the
+	 * given registered processor.
+	 *
+	 * @param processor
+	 *            the registered processor
+	 * @return the processor for the part
+	 */
+	MwRevisionProcessor getPartProcessor(MwRevisionProcessor processor) {
+		if (processor instanceof ThreadSafeMwRevisionProcessor) {
+			return processor;
+		} else if (processor instanceof CombinableMwRevisionProcessor) {
+			return this.partProcessors.computeIfAbsent(processor,
+					p -> createPartProcessor((CombinableMwRevisionProcessor<?>) p));
+		} else {
+			return (MwRevisionProcessor) this.sharedProcessors.computeIfAbsent(
+					processor, p -> new SynchronizedMwRevisionProcessor(
+							(MwRevisionProcessor) p));
+		}
+	}
+
+	/**
+	 * Returns the processor that the current part should call instead of the
+	 * given registered processor.
+	 *
+	 * @param processor
+	 *            the registered processor
+	 * @return the processor for the part
+	 */
+	EntityDocumentProcessor getPartProcessor(EntityDocumentProcessor processor) {
+		return (EntityDocumentProcessor) this.sharedProcessors.computeIfAbsent(
+				processor, p -> new SynchronizedEntityDocumentProcessor(
+						(EntityDocumentProcessor) p));
+	}
+
+	/**
+	 * Combines the instances that have been created for the parts with the
+	 * registered processors. This must only be called once all parts have
+	 * been processed.
+	 */
+	void combine() {
+		for (Runnable combination : this.combinations) {
+			combination.run();
+		}
+		this.combinations.clear();
+	}
+
+	private <T extends MwRevisionProcessor> T createPartProcessor(
+			CombinableMwRevisionProcessor<T> processor) {
+		T partProcessor = processor.createPartProcessor();
+		this.combinations.add(() -> processor.combine(partProcessor));
+		return partProcessor;
+	}
+
+	/**
+	 * Calls an {@link MwRevisionProcessor} from one thread at a time.
+	 */
+	static class SynchronizedMwRevisionProcessor implements MwRevisionProcessor {
+
+		final MwRevisionProcessor mwRevisionProcessor;
+
+		SynchronizedMwRevisionProcessor(MwRevisionProcessor mwRevisionProcessor) {
+			this.mwRevisionProcessor = mwRevisionProcessor;
+		}
+
+		@Override
+		public void startRevisionProcessing(String siteName, String baseUrl,
+				Map<Integer, String> namespaces) {
+			synchronized (this.mwRevisionProcessor) {
+				this.mwRevisionProcessor.startRevisionProcessing(siteName,
+						baseUrl, namespaces);
+			}
+		}
+
+		@Override
+		public void processRevision(MwRevision mwRevision) {
+			synchronized (this.mwRevisionProcessor) {
+				this.mwRevisionProcessor.processRevision(mwRevision);
+			}
+		}
+
+		@Override
+		public void finishRevisionProcessing() {
+			synchronized (this.mwRevisionProcessor) {
+				this.mwRevisionProcessor.finishRevisionProcessing();
+			}
+		}
+	}
+
+	/**
+	 * Calls an {@link EntityDocumentProcessor} from one thread at a time.
+	 */
+	static class SynchronizedEntityDocumentProcessor implements
+			EntityDocumentProcessor {
+
+		final EntityDocumentProcessor entityDocumentProcessor;
+
+		SynchronizedEntityDocumentProcessor(
+				EntityDocumentProcessor entityDocumentProcessor) {
+			this.entityDocumentProcessor = entityDocumentProcessor;
+		}
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			synchronized (this.entityDocumentProcessor) {
+				this.entityDocumentProcessor.processItemDocument(itemDocument);
+			}
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			synchronized (this.entityDocumentProcessor) {
+				this.entityDocumentProcessor
+						.processPropertyDocument(propertyDocument);
+			}
+		}
+
+		@Override
+		public void processLexemeDocument(LexemeDocument lexemeDocument) {
+			synchronized (this.entityDocumentProcessor) {
+				this.entityDocumentProcessor
+						.processLexemeDocument(lexemeDocument);
+			}
+		}
+
+		@Override
+		public void processMediaInfoDocument(
+				MediaInfoDocument mediaInfoDocument) {
+			synchronized (this.entityDocumentProcessor) {
+				this.entityDocumentProcessor
+						.processMediaInfoDocument(mediaInfoDocument);
+			}
+		}
+
+		@Override
+		public void processEntityRedirectDocument(
+				EntityRedirectDocument entityRedirectDocument) {
+			synchronized (this.entityDocumentProcessor) {
+				this.entityDocumentProcessor
+						.processEntityRedirectDocument(entityRedirectDocument);
+			}
+		}
+	}
+}
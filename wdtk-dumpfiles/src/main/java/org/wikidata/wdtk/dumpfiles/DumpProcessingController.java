@@ -20,28 +20,51 @@ package org.wikidata.wdtk.dumpfiles;
  * #L%
  */
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javax.xml.stream.XMLInputFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
 import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessorBroker;
-import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessorFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.Sites;
+import org.wikidata.wdtk.dumpfiles.AsyncEntityDocumentProcessor.QueueFullPolicy;
+import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
 import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFileManager;
+import org.wikidata.wdtk.storage.datastructures.BitVector;
+import org.wikidata.wdtk.storage.datastructures.BitVectorImpl;
+import org.wikidata.wdtk.storage.datastructures.CompressedBitVector;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DaemonThreadFactory;
 import org.wikidata.wdtk.util.DirectoryManager;
 import org.wikidata.wdtk.util.DirectoryManagerFactory;
+import org.wikidata.wdtk.util.DirectoryManagerImpl;
 import org.wikidata.wdtk.util.WebResourceFetcher;
 import org.wikidata.wdtk.util.WebResourceFetcherImpl;
 
@@ -85,6 +108,18 @@ import org.wikidata.wdtk.util.WebResourceFetcherImpl;
  * <p>
  * The controller will also catch exceptions that may occur when trying to
  * download and read dump files. They will be turned into logged errors.
+ * <p>
+ * If a checkpoint file is set with {@link #setCheckpointFile(Path)}, the
+ * progress of processing a dump is saved periodically, and processing the
+ * same dump again resumes after the last checkpoint.
+ * <p>
+ * JSON dumps can also be split into shards that are processed independently,
+ * for example on several machines, by setting {@link #setShard(int, int)}.
+ * The results of all shards then need to be merged by the caller.
+ * <p>
+ * Entity document processors can be run in threads of their own by setting
+ * {@link #setAsynchronousProcessing(int, QueueFullPolicy)}, so that slow
+ * processors do not hold up reading the dump.
  *
  * @author Markus Kroetzsch
  *
@@ -182,6 +217,112 @@ public class DumpProcessingController {
 
 	final DocumentDataFilter filter = new DocumentDataFilter();
 
+	/**
+	 * Filter that selects lines of JSON dumps by entity type and id before
+	 * they are parsed.
+	 */
+	final JsonDumpLineFilter lineFilter = new JsonDumpLineFilter();
+
+	/**
+	 * Number of threads used to deserialize JSON dumps and revision dumps.
+	 */
+	int parallelism = 1;
+
+	/**
+	 * Default number of parts of a dump that are processed at the same time
+	 * by {@link #processDumpParts(List)}.
+	 */
+	public static final int DEFAULT_PART_PARALLELISM = 4;
+
+	/**
+	 * Number of parts of a dump that are processed at the same time.
+	 */
+	int partParallelism = DEFAULT_PART_PARALLELISM;
+
+	/**
+	 * Number of threads used to decompress bzip2 compressed dumps.
+	 */
+	int bz2DecompressionThreads = 1;
+
+	/**
+	 * Creates the bit vectors that store the ids of the pages and revisions
+	 * encountered in revision dumps.
+	 */
+	Supplier<? extends BitVector> bitVectorFactory = CompressedBitVector::new;
+
+	/**
+	 * Creates the factories for the XML readers that are used to read
+	 * revision dumps.
+	 */
+	Supplier<? extends XMLInputFactory> xmlInputFactorySupplier = XMLInputFactory::newInstance;
+
+	/**
+	 * Should documents be delivered in the order of the dump when processing
+	 * JSON dumps with several threads?
+	 */
+	boolean orderedDelivery = true;
+
+	/**
+	 * Should uncompressed local JSON dumps be mapped into memory instead of
+	 * being read through a stream?
+	 */
+	boolean memoryMapping = false;
+
+	/**
+	 * Should online dumps be processed while they are being downloaded?
+	 */
+	boolean streamingDownload = false;
+
+	/**
+	 * Should items from JSON dumps only be parsed as far as processors access
+	 * their data?
+	 */
+	boolean lazyItemDocuments = false;
+
+	/**
+	 * Capacity of the queue of each entity document processor, or 0 if
+	 * entity document processors are called synchronously.
+	 */
+	int asyncQueueCapacity = 0;
+
+	/**
+	 * What to do when the queue of an entity document processor is full.
+	 */
+	QueueFullPolicy asyncQueueFullPolicy = QueueFullPolicy.BLOCK;
+
+	/**
+	 * Asynchronous wrappers of the registered entity document processors
+	 * that are used by the current or the last processing run.
+	 */
+	final Map<EntityDocumentProcessor, AsyncEntityDocumentProcessor> asyncProcessors = new IdentityHashMap<>();
+
+	/**
+	 * Default number of records (pages or entities) between two checkpoints.
+	 */
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 100000;
+
+	/**
+	 * File where checkpoints are stored, or null if no checkpoints should be
+	 * written.
+	 */
+	Path checkpointFile = null;
+
+	/**
+	 * Number of records (pages or entities) between two checkpoints.
+	 */
+	long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+	/**
+	 * Index of the shard of JSON dumps that is processed.
+	 */
+	int shardIndex = 0;
+
+	/**
+	 * Number of shards that JSON dumps are split into, or 1 if dumps are
+	 * processed completely.
+	 */
+	int shardCount = 1;
+
 	/**
 	 * Creates a new DumpFileProcessingController for the project of the given
 	 * name. By default, the dump file directory will be assumed to be in the
@@ -221,6 +362,7 @@ public class DumpProcessingController {
 			throws IOException {
 		this.downloadDirectoryManager = DirectoryManagerFactory
 				.createDirectoryManager(downloadDirectory, false);
+		applyBz2DecompressionThreads();
 	}
 
 	/**
@@ -274,6 +416,333 @@ public class DumpProcessingController {
 		this.filter.setLanguageFilter(languageFilter);
 	}
 
+	/**
+	 * Sets an entity type filter for JSON dumps. If given, only entities of
+	 * the given types will be processed. Lines of other entities are skipped
+	 * before any parsing takes place, based on the "type" field found in the
+	 * raw JSON, so that processing only a small part of a dump is much faster.
+	 * This filter does not affect dumps that contain revisions.
+	 *
+	 * @param entityTypes
+	 *            IRIs of the entity types that should be retained, such as
+	 *            {@link EntityIdValue#ET_LEXEME}, or null to retain all types
+	 * @throws IllegalArgumentException
+	 *             if one of the types cannot occur in JSON dumps
+	 */
+	public void setEntityTypeFilter(Set<String> entityTypes) {
+		this.lineFilter.setEntityTypes(entityTypes);
+	}
+
+	/**
+	 * Adds a range of entity ids to the id filter for JSON dumps. Once a range
+	 * has been added, only entities with ids in one of the ranges will be
+	 * processed. As for {@link #setEntityTypeFilter(Set)}, lines of other
+	 * entities are skipped before any parsing takes place, and dumps that
+	 * contain revisions are not affected.
+	 *
+	 * @param firstId
+	 *            the first id of the range, such as "Q1000"
+	 * @param lastId
+	 *            the last id of the range (inclusive), such as "Q1999"; it must
+	 *            have the same prefix letter as the first id
+	 * @throws IllegalArgumentException
+	 *             if the given ids do not form a valid range
+	 */
+	public void addEntityIdRange(String firstId, String lastId) {
+		this.lineFilter.addIdRange(firstId, lastId);
+	}
+
+	/**
+	 * Sets the number of threads that are used to deserialize entity documents
+	 * when processing JSON dumps or revision dumps. The default is 1, where
+	 * all work happens on the thread that started the processing. Registered
+	 * {@link EntityDocumentProcessor} and {@link MwRevisionProcessor} objects
+	 * are always called from that thread only, so they do not need to be
+	 * thread-safe to benefit from this. Revisions are delivered in the order
+	 * of the dump.
+	 *
+	 * @see JsonDumpFileProcessor#setParallelism(int)
+	 * @see MwRevisionDumpFileProcessor#setParallelism(int)
+	 * @param parallelism
+	 *            the number of worker threads, at least 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least 1, but was " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets the number of parts of a dump that are processed at the same time
+	 * by {@link #processDumpParts(List)}. Every part is read by its own
+	 * thread, in addition to the threads set with {@link #setParallelism(int)}
+	 * that each part uses. The default is {@link #DEFAULT_PART_PARALLELISM}.
+	 *
+	 * @param partParallelism
+	 *            the number of parts, at least 1
+	 */
+	public void setPartParallelism(int partParallelism) {
+		if (partParallelism < 1) {
+			throw new IllegalArgumentException(
+					"Part parallelism must be at least 1, but was "
+							+ partParallelism);
+		}
+		this.partParallelism = partParallelism;
+	}
+
+	/**
+	 * Sets the number of threads that are used to decompress dumps that are
+	 * compressed with bzip2. The default is 1. For higher values, several
+	 * blocks of the file are decompressed at once, which helps if
+	 * decompression rather than processing limits the speed. The setting
+	 * applies to the download directory, and has no effect if its directory
+	 * manager is not a {@link DirectoryManagerImpl}.
+	 *
+	 * @see DirectoryManagerImpl#setBz2DecompressionThreads(int)
+	 * @param bz2DecompressionThreads
+	 *            the number of decompression threads, at least 1
+	 */
+	public void setBz2DecompressionThreads(int bz2DecompressionThreads) {
+		if (bz2DecompressionThreads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be at least 1, but was "
+							+ bz2DecompressionThreads);
+		}
+		this.bz2DecompressionThreads = bz2DecompressionThreads;
+		applyBz2DecompressionThreads();
+	}
+
+	/**
+	 * Passes the number of bzip2 decompression threads on to the directory
+	 * manager of the download directory.
+	 */
+	private void applyBz2DecompressionThreads() {
+		if (this.downloadDirectoryManager instanceof DirectoryManagerImpl) {
+			((DirectoryManagerImpl) this.downloadDirectoryManager)
+					.setBz2DecompressionThreads(this.bz2DecompressionThreads);
+		}
+	}
+
+	/**
+	 * Sets how the bit vectors are created that store the ids of the pages
+	 * and revisions encountered in revision dumps, which are used to filter
+	 * duplicate revisions and to find the most current revision of each page.
+	 * By default, {@link CompressedBitVector} objects are used, which only
+	 * need memory for the ids that are actually found. When processing a full
+	 * history dump where almost all ids occur, a {@link BitVectorImpl} of the
+	 * expected size may be faster, e.g.,
+	 * {@code () -> new BitVectorImpl(2500000000L)}.
+	 *
+	 * @param bitVectorFactory
+	 *            creates an empty bit vector whenever it is called
+	 */
+	public void setBitVectorFactory(
+			Supplier<? extends BitVector> bitVectorFactory) {
+		this.bitVectorFactory = bitVectorFactory;
+	}
+
+	/**
+	 * Sets how the StAX factories are created that are used to read XML
+	 * revision dumps. By default, the implementation found by
+	 * {@link XMLInputFactory#newInstance()} is used. Faster implementations
+	 * that are on the classpath can be plugged in here, e.g.,
+	 * {@code com.fasterxml.aalto.stax.InputFactoryImpl::new}. Every factory
+	 * is configured with
+	 * {@link MwRevisionDumpFileProcessor#configureXmlInputFactory(XMLInputFactory)}
+	 * before it is used. A new factory is requested for every dump file
+	 * processor, since factories need not be thread-safe.
+	 *
+	 * @param xmlInputFactorySupplier
+	 *            creates a new XML input factory whenever it is called
+	 */
+	public void setXmlInputFactorySupplier(
+			Supplier<? extends XMLInputFactory> xmlInputFactorySupplier) {
+		this.xmlInputFactorySupplier = xmlInputFactorySupplier;
+	}
+
+	/**
+	 * Sets whether registered entity document processors are called in
+	 * threads of their own. Every processor then gets a queue of the given
+	 * capacity, from which documents are passed to it in the order of the
+	 * dump; see {@link AsyncEntityDocumentProcessor}. Reading the dump and
+	 * processing the documents thus overlap, and a slow processor only holds
+	 * up reading when its queue is full and the policy is
+	 * {@link QueueFullPolicy#BLOCK}. With {@link QueueFullPolicy#SPILL},
+	 * further documents are written to a temporary file instead. The
+	 * processing methods of this class return when all documents have been
+	 * processed.
+	 * <p>
+	 * The queue depths can be monitored during processing with
+	 * {@link #getAsynchronousProcessors()}. When checkpoints are used,
+	 * reading pauses before each checkpoint until all queues and spill files
+	 * are empty, so that a checkpoint never covers documents that have not
+	 * been processed. Processors that implement
+	 * {@link DumpCheckpointListener} are notified while their thread is
+	 * idle.
+	 *
+	 * @param queueCapacity
+	 *            the capacity of the queue of each processor, or 0 to call
+	 *            processors synchronously (default)
+	 * @param queueFullPolicy
+	 *            what to do when a queue is full
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative
+	 */
+	public void setAsynchronousProcessing(int queueCapacity,
+			QueueFullPolicy queueFullPolicy) {
+		if (queueCapacity < 0) {
+			throw new IllegalArgumentException(
+					"Queue capacity must not be negative, but was "
+							+ queueCapacity);
+		}
+		this.asyncQueueCapacity = queueCapacity;
+		this.asyncQueueFullPolicy = queueFullPolicy;
+	}
+
+	/**
+	 * Returns the asynchronous wrappers of the registered entity document
+	 * processors that are used by the current processing run, or by the last
+	 * one if no dump is being processed. They provide statistics such as the
+	 * current and maximal queue depth.
+	 *
+	 * @return the asynchronous processors, or an empty list if processors are
+	 *         called synchronously
+	 */
+	public List<AsyncEntityDocumentProcessor> getAsynchronousProcessors() {
+		synchronized (this.asyncProcessors) {
+			return new ArrayList<>(this.asyncProcessors.values());
+		}
+	}
+
+	/**
+	 * Sets whether entity documents from JSON dumps must be delivered in the
+	 * order of the dump when a parallelism greater than 1 is used (default).
+	 * Unordered delivery can be faster if the order does not matter to any of
+	 * the registered processors.
+	 *
+	 * @see JsonDumpFileProcessor#setOrderedDelivery(boolean)
+	 * @param orderedDelivery
+	 *            true if the order of the dump should be preserved
+	 */
+	public void setOrderedDelivery(boolean orderedDelivery) {
+		this.orderedDelivery = orderedDelivery;
+	}
+
+	/**
+	 * Sets whether uncompressed JSON dumps that are given as
+	 * {@link MwLocalDumpFile} should be mapped into memory rather than read
+	 * through a stream. This is faster for dumps that have been decompressed
+	 * to a fast local disk, especially with a parallelism greater than 1.
+	 * Mapping is not used when processing shards or writing checkpoints, and
+	 * not for compressed files. The default is false.
+	 *
+	 * @see JsonDumpFileProcessor#processMappedDumpFile(Path, MwDumpFile)
+	 * @param memoryMapping
+	 *            true if files should be mapped into memory
+	 */
+	public void setMemoryMapping(boolean memoryMapping) {
+		this.memoryMapping = memoryMapping;
+	}
+
+	/**
+	 * Sets whether online dumps should be processed while they are being
+	 * downloaded. Processing then starts on the data that has already
+	 * arrived and only waits when it catches up with the download, rather
+	 * than after the download has completed. The downloaded file is still
+	 * kept for later runs. Streaming is not used when processing shards or
+	 * writing checkpoints, which need the complete file. The default is
+	 * false.
+	 *
+	 * @see MwDumpFile#getDumpFileStreamDuringDownload()
+	 * @param streamingDownload
+	 *            true if dumps should be processed during their download
+	 */
+	public void setStreamingDownload(boolean streamingDownload) {
+		this.streamingDownload = streamingDownload;
+	}
+
+	/**
+	 * Sets whether items from JSON dumps should only be parsed as far as the
+	 * registered processors use them. Labels, descriptions, aliases,
+	 * statements and site links of each item are then deserialized on first
+	 * access, which saves much of the parsing time if processors only look at
+	 * some of them. The default is false.
+	 *
+	 * @see JsonDumpFileProcessor#setLazyItemDocuments(boolean)
+	 * @param lazyItemDocuments
+	 *            true if items should be parsed on demand
+	 */
+	public void setLazyItemDocuments(boolean lazyItemDocuments) {
+		this.lazyItemDocuments = lazyItemDocuments;
+	}
+
+	/**
+	 * Sets the file where the progress of dump processing is saved. While a
+	 * dump is processed, a {@link DumpCheckpoint} is written to this file
+	 * after every few records (see {@link #setCheckpointInterval(long)}).
+	 * When processing of the dump is started again after a crash, the
+	 * records before the checkpoint are skipped. For bzip2 compressed dumps,
+	 * decompression also starts close to the checkpoint. The file is deleted
+	 * once the dump has been processed completely.
+	 * <p>
+	 * Registered processors that implement {@link DumpCheckpointListener} are
+	 * notified whenever a checkpoint is saved or restored, so that they can
+	 * save their own state consistently. The checkpoint file only refers to
+	 * one dump at a time; when processing several dumps with
+	 * {@link #processAllRecentRevisionDumps()}, the information about
+	 * revisions found in earlier dumps is not restored.
+	 *
+	 * @param checkpointFile
+	 *            the file to use, or null to disable checkpoints
+	 */
+	public void setCheckpointFile(Path checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+
+	/**
+	 * Sets the number of records (pages of revision dumps or entities of JSON
+	 * dumps) that are processed between two checkpoints. The default is
+	 * {@link #DEFAULT_CHECKPOINT_INTERVAL}.
+	 *
+	 * @param checkpointInterval
+	 *            the number of records, at least 1
+	 */
+	public void setCheckpointInterval(long checkpointInterval) {
+		if (checkpointInterval < 1) {
+			throw new IllegalArgumentException(
+					"Checkpoint interval must be at least 1, but was "
+							+ checkpointInterval);
+		}
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Sets the controller to process only one shard of JSON dumps. A dump is
+	 * split into the given number of shards, and every entity of the dump
+	 * belongs to exactly one of them. Bzip2 compressed and uncompressed dumps
+	 * are split into byte ranges of the dump file, so that each shard only
+	 * reads its part of the file; gzip compressed dumps are read completely
+	 * by every shard, which then only parses its share of the entities. See
+	 * {@link ShardedDumpInputStream} for details.
+	 * <p>
+	 * This allows processing one dump on several machines without any
+	 * coordination, by starting each of them with a different shard index.
+	 * Revision dumps cannot be split into shards, and checkpoints are not
+	 * written when processing a shard.
+	 *
+	 * @param shardIndex
+	 *            the index of the shard to process, starting at 0
+	 * @param shardCount
+	 *            the total number of shards, or 1 to process complete dumps
+	 */
+	public void setShard(int shardIndex, int shardCount) {
+		ShardedDumpInputStream.checkShard(shardIndex, shardCount);
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+	}
+
 	/**
 	 * Registers an MwRevisionProcessor, which will henceforth be notified of
 	 * all revisions that are encountered in the dump.
@@ -369,6 +838,10 @@ public class DumpProcessingController {
 	 * recent dumps will miss some (random) revisions, thus reflecting a state
 	 * that the wiki has never really been in. It might thus be preferable to
 	 * process only a single (main) dump file without any incremental dumps.
+	 * <p>
+	 * The dumps are processed one after the other. Use
+	 * {@link #processDumpParts(List)} to process the parts of a multi-part
+	 * dump concurrently.
 	 *
 	 * @see DumpProcessingController#processMostRecentMainDump()
 	 * @see DumpProcessingController#processDump(MwDumpFile)
@@ -380,12 +853,117 @@ public class DumpProcessingController {
 			return;
 		}
 
-		MwDumpFileProcessor dumpFileProcessor = getRevisionDumpFileProcessor();
+		startAsynchronousProcessing();
+		try {
+			MwDumpFileProcessor dumpFileProcessor = getRevisionDumpFileProcessor();
 
-		for (MwDumpFile dumpFile : wmfDumpFileManager
-				.findAllRelevantRevisionDumps(this.preferCurrent)) {
-			processDumpFile(dumpFile, dumpFileProcessor);
+			for (MwDumpFile dumpFile : wmfDumpFileManager
+					.findAllRelevantRevisionDumps(this.preferCurrent)) {
+				processDumpFile(dumpFile, dumpFileProcessor);
+			}
+		} finally {
+			finishAsynchronousProcessing();
+		}
+	}
+
+	/**
+	 * Processes the parts of a revision dump concurrently. Wikimedia publishes
+	 * the full history of large wikis as many files that each contain a
+	 * different range of pages, such as
+	 * "wikidatawiki-20240101-pages-meta-history1.xml-p1p154.bz2". These can be
+	 * given here as {@link MwLocalDumpFile} objects. Every part is read with
+	 * its own decompressor and XML parser; see
+	 * {@link #setPartParallelism(int)} for how many parts are processed at
+	 * once.
+	 * <p>
+	 * Registered {@link MwRevisionProcessor} objects that implement
+	 * {@link ThreadSafeMwRevisionProcessor} are called by all parts
+	 * concurrently, and those that implement
+	 * {@link CombinableMwRevisionProcessor} get an instance of their own for
+	 * every part, which is combined with the registered processor once all
+	 * parts are done. All other processors, including all
+	 * {@link EntityDocumentProcessor} objects, are called by one part at a
+	 * time, so that they receive the pages of different parts interleaved.
+	 * Revisions that occur in several parts are only reported once.
+	 * <p>
+	 * Checkpoints are not written when processing parts concurrently.
+	 *
+	 * @param dumpParts
+	 *            the parts of the dump; parts that contain revisions of the
+	 *            same page are not supported
+	 */
+	public void processDumpParts(List<MwDumpFile> dumpParts) {
+		if (dumpParts.isEmpty()) {
+			return;
+		}
+		if (this.checkpointFile != null) {
+			logger.warn("Checkpoints are not written when processing the parts of a dump concurrently.");
+		}
+
+		startAsynchronousProcessing();
+		try {
+			processDumpPartsConcurrently(dumpParts);
+		} finally {
+			finishAsynchronousProcessing();
+		}
+	}
+
+	/**
+	 * Processes the parts of a revision dump concurrently; see
+	 * {@link #processDumpParts(List)}.
+	 *
+	 * @param dumpParts
+	 *            the parts of the dump
+	 */
+	private void processDumpPartsConcurrently(List<MwDumpFile> dumpParts) {
+		JsonDeserializer jsonDeserializer = new JsonDeserializer(
+				Datamodel.SITE_WIKIDATA, this.filter);
+		DumpPartProcessors dumpPartProcessors = new DumpPartProcessors();
+		List<Callable<Void>> partTasks = new ArrayList<>();
+		BitVector encounteredPages = this.bitVectorFactory.get();
+		BitVector encounteredRevisions = this.bitVectorFactory.get();
+		for (MwDumpFile dumpPart : dumpParts) {
+			MwRevisionProcessorBroker broker = new MwRevisionProcessorBroker(
+					encounteredPages, encounteredRevisions);
+			dumpPartProcessors.startPart();
+			registerMwRevisionProcessors(broker, jsonDeserializer,
+					dumpPartProcessors);
+
+			MwRevisionDumpFileProcessor dumpFileProcessor = new MwRevisionDumpFileProcessor(
+					broker, createXmlInputFactory());
+			dumpFileProcessor.setParallelism(this.parallelism);
+			dumpFileProcessor.setOnlyCurrentRevisions(this.preferCurrent);
+			if (!this.entityDocumentProcessors.isEmpty()) {
+				dumpFileProcessor.setEntityDocumentDeserializer(jsonDeserializer);
+			}
+			partTasks.add(() -> {
+				processDumpPart(dumpPart, dumpFileProcessor);
+				return null;
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(this.partParallelism, partTasks.size()),
+				new DaemonThreadFactory("wdtk-dump-part"));
+		try {
+			for (Future<Void> future : executor.invokeAll(partTasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("Interrupted while processing dump parts.");
+			return;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Error when processing dump part: "
+					+ e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
+
+		dumpPartProcessors.combine();
 	}
 
 	/**
@@ -439,24 +1017,29 @@ public class DumpProcessingController {
 			return;
 		}
 
-		MwDumpFileProcessor dumpFileProcessor;
-		switch (dumpFile.getDumpContentType()) {
-		case CURRENT:
-		case DAILY:
-		case FULL:
-			dumpFileProcessor = getRevisionDumpFileProcessor();
-			break;
-		case JSON:
-			dumpFileProcessor = getJsonDumpFileProcessor();
-			break;
-		case SITES:
-		default:
-			logger.error("Dumps of type " + dumpFile.getDumpContentType()
-					+ " cannot be processed as entity-document dumps.");
-			return;
-		}
+		startAsynchronousProcessing();
+		try {
+			MwDumpFileProcessor dumpFileProcessor;
+			switch (dumpFile.getDumpContentType()) {
+			case CURRENT:
+			case DAILY:
+			case FULL:
+				dumpFileProcessor = getRevisionDumpFileProcessor();
+				break;
+			case JSON:
+				dumpFileProcessor = getJsonDumpFileProcessor();
+				break;
+			case SITES:
+			default:
+				logger.error("Dumps of type " + dumpFile.getDumpContentType()
+						+ " cannot be processed as entity-document dumps.");
+				return;
+			}
 
-		processDumpFile(dumpFile, dumpFileProcessor);
+			processDumpFile(dumpFile, dumpFileProcessor);
+		} finally {
+			finishAsynchronousProcessing();
+		}
 	}
 
 	/**
@@ -494,20 +1077,235 @@ public class DumpProcessingController {
 	 */
 	void processDumpFile(MwDumpFile dumpFile,
 			MwDumpFileProcessor dumpFileProcessor) {
-		try (InputStream inputStream = dumpFile.getDumpFileStream()) {
-			dumpFileProcessor.processDumpFileContents(inputStream, dumpFile);
-		} catch (FileAlreadyExistsException e) {
+		try {
+			if (this.shardCount > 1) {
+				processDumpFileShard(dumpFile, dumpFileProcessor);
+			} else if (this.checkpointFile != null
+					&& (dumpFileProcessor instanceof JsonDumpFileProcessor
+							|| dumpFileProcessor instanceof MwRevisionDumpFileProcessor)) {
+				processDumpFileWithCheckpoints(dumpFile, dumpFileProcessor);
+			} else if (this.memoryMapping
+					&& dumpFileProcessor instanceof JsonDumpFileProcessor
+					&& isMappable(dumpFile)) {
+				((JsonDumpFileProcessor) dumpFileProcessor)
+						.processMappedDumpFile(
+								((MwLocalDumpFile) dumpFile).getPath(), dumpFile);
+			} else {
+				try (InputStream inputStream = this.streamingDownload ? dumpFile
+						.getDumpFileStreamDuringDownload() : dumpFile
+						.getDumpFileStream()) {
+					dumpFileProcessor.processDumpFileContents(inputStream,
+							dumpFile);
+				}
+			}
+		} catch (IOException e) {
+			logProcessingError(dumpFile, e);
+		}
+	}
+
+	/**
+	 * Checks if the given dump file is an uncompressed file on the local disk
+	 * that can be mapped into memory.
+	 *
+	 * @param dumpFile
+	 *            the dump file to check
+	 * @return true if the file can be mapped
+	 */
+	private static boolean isMappable(MwDumpFile dumpFile) {
+		if (!(dumpFile instanceof MwLocalDumpFile) || !dumpFile.isAvailable()) {
+			return false;
+		}
+		Path path = ((MwLocalDumpFile) dumpFile).getPath();
+		return WmfDumpFile.getDumpFileCompressionType(path.toString()) == CompressionType.NONE
+				&& Files.isRegularFile(path);
+	}
+
+	/**
+	 * Processes one part of a dump with the given dump file processor,
+	 * handling exceptions appropriately. Checkpoints and shards are not
+	 * supported here.
+	 *
+	 * @param dumpPart
+	 *            the part of the dump to process
+	 * @param dumpFileProcessor
+	 *            the dump file processor to use
+	 */
+	private static void processDumpPart(MwDumpFile dumpPart,
+			MwDumpFileProcessor dumpFileProcessor) {
+		try (InputStream inputStream = dumpPart.getDumpFileStream()) {
+			dumpFileProcessor.processDumpFileContents(inputStream, dumpPart);
+		} catch (IOException e) {
+			logProcessingError(dumpPart, e);
+		}
+	}
+
+	/**
+	 * Logs an exception that occurred when processing a dump file.
+	 *
+	 * @param dumpFile
+	 *            the dump file that was processed
+	 * @param exception
+	 *            the exception
+	 */
+	private static void logProcessingError(MwDumpFile dumpFile,
+			IOException exception) {
+		if (exception instanceof FileAlreadyExistsException) {
+			FileAlreadyExistsException e = (FileAlreadyExistsException) exception;
 			logger.error("Dump file "
 					+ dumpFile.toString()
 					+ " could not be processed since file "
 					+ e.getFile()
 					+ " already exists. Try deleting the file or dumpfile directory to attempt a new download.");
-		} catch (IOException e) {
+		} else {
 			logger.error("Dump file " + dumpFile.toString()
-					+ " could not be processed: " + e.toString());
+					+ " could not be processed: " + exception.toString());
 		}
 	}
 
+	/**
+	 * Processes one dump file with the given dump file processor, writing
+	 * checkpoints to {@link #checkpointFile}. If this file holds a checkpoint
+	 * for the dump, processing resumes there.
+	 *
+	 * @param dumpFile
+	 *            the dump file to process
+	 * @param dumpFileProcessor
+	 *            the dump file processor to use; must support checkpoints
+	 * @throws IOException
+	 *             if the dump or the checkpoint could not be read
+	 */
+	private void processDumpFileWithCheckpoints(MwDumpFile dumpFile,
+			MwDumpFileProcessor dumpFileProcessor) throws IOException {
+		DumpCheckpoint checkpoint = DumpCheckpoint.load(this.checkpointFile);
+		if (checkpoint != null && !checkpoint.matches(dumpFile)) {
+			logger.warn("Ignoring " + checkpoint + " when processing "
+					+ dumpFile.toString() + ".");
+			checkpoint = null;
+		}
+
+		DumpCheckpointer checkpointer = new DumpCheckpointer(
+				this.checkpointFile, this.checkpointInterval, dumpFile,
+				getCheckpointListeners());
+		setCheckpointer(dumpFileProcessor, checkpointer);
+		try {
+			byte[] prefix = new byte[0];
+			if (checkpoint != null) {
+				logger.info("Resuming processing of " + dumpFile.toString()
+						+ " at " + checkpoint + ".");
+				if (dumpFileProcessor instanceof JsonDumpFileProcessor) {
+					prefix = JsonDumpFileProcessor.RESUME_PREFIX;
+				} else {
+					try (InputStream inputStream = dumpFile.getDumpFileStream()) {
+						prefix = MwRevisionDumpFileProcessor
+								.readXmlHeader(inputStream);
+					}
+				}
+				checkpointer.restore(checkpoint);
+			}
+
+			try (InputStream dumpStream = dumpFile
+					.getDumpFileStream(checkpoint)) {
+				long position = checkpoint == null ? 0 : checkpoint
+						.getPosition();
+				checkpointer.setDumpStream(dumpStream, position - prefix.length);
+				InputStream inputStream = dumpStream;
+				if (prefix.length > 0) {
+					inputStream = new SequenceInputStream(
+							new ByteArrayInputStream(prefix), dumpStream);
+				}
+				dumpFileProcessor.processDumpFileContents(inputStream, dumpFile);
+			}
+		} finally {
+			setCheckpointer(dumpFileProcessor, null);
+		}
+		checkpointer.finish();
+	}
+
+	/**
+	 * Processes the shard of one dump file that was set with
+	 * {@link #setShard(int, int)}.
+	 *
+	 * @param dumpFile
+	 *            the dump file to process
+	 * @param dumpFileProcessor
+	 *            the dump file processor to use
+	 * @throws IOException
+	 *             if the dump could not be read
+	 */
+	private void processDumpFileShard(MwDumpFile dumpFile,
+			MwDumpFileProcessor dumpFileProcessor) throws IOException {
+		if (!(dumpFileProcessor instanceof JsonDumpFileProcessor)) {
+			logger.error("Dump file " + dumpFile.toString()
+					+ " cannot be processed in shards; only JSON dumps can be split.");
+			return;
+		}
+		if (this.checkpointFile != null) {
+			logger.warn("Checkpoints are not written when processing shard "
+					+ this.shardIndex + " of " + this.shardCount + ".");
+		}
+
+		logger.info("Processing shard " + this.shardIndex + " of "
+				+ this.shardCount + " of " + dumpFile.toString() + ".");
+		try (InputStream shardStream = dumpFile.getDumpFileStream(
+				this.shardIndex, this.shardCount)) {
+			// the shard never contains the first line of the dump
+			InputStream inputStream = new SequenceInputStream(
+					new ByteArrayInputStream(
+							JsonDumpFileProcessor.RESUME_PREFIX), shardStream);
+			dumpFileProcessor.processDumpFileContents(inputStream, dumpFile);
+		}
+	}
+
+	/**
+	 * Sets the checkpointer of a dump file processor that supports
+	 * checkpoints.
+	 *
+	 * @param dumpFileProcessor
+	 *            the processor
+	 * @param checkpointer
+	 *            the checkpointer to set, or null to disable checkpoints
+	 */
+	private static void setCheckpointer(MwDumpFileProcessor dumpFileProcessor,
+			DumpCheckpointer checkpointer) {
+		if (dumpFileProcessor instanceof JsonDumpFileProcessor) {
+			((JsonDumpFileProcessor) dumpFileProcessor)
+					.setCheckpointer(checkpointer);
+		} else if (dumpFileProcessor instanceof MwRevisionDumpFileProcessor) {
+			((MwRevisionDumpFileProcessor) dumpFileProcessor)
+					.setCheckpointer(checkpointer);
+		}
+	}
+
+	/**
+	 * Returns all registered processors that want to be notified of
+	 * checkpoints.
+	 *
+	 * @return the list of listeners
+	 */
+	private List<DumpCheckpointListener> getCheckpointListeners() {
+		LinkedHashSet<DumpCheckpointListener> result = new LinkedHashSet<>();
+		for (List<MwRevisionProcessor> processors : this.mwRevisionProcessors
+				.values()) {
+			for (MwRevisionProcessor processor : processors) {
+				if (processor instanceof DumpCheckpointListener) {
+					result.add((DumpCheckpointListener) processor);
+				}
+			}
+		}
+		for (List<EntityDocumentProcessor> processors : this.entityDocumentProcessors
+				.values()) {
+			for (EntityDocumentProcessor processor : processors) {
+				// asynchronous wrappers wait for their queues to be processed
+				// and then notify the wrapped processor
+				processor = getAsynchronousProcessor(processor);
+				if (processor instanceof DumpCheckpointListener) {
+					result.add((DumpCheckpointListener) processor);
+				}
+			}
+		}
+		return new ArrayList<>(result);
+	}
+
 	/**
 	 * Returns a WmfDumpFileManager based on the current settings. This object
 	 * can be used to get direct access to dump files, e.g., to gather more
@@ -531,6 +1329,85 @@ public class DumpProcessingController {
 		}
 	}
 
+	/**
+	 * Creates the asynchronous wrappers of all registered entity document
+	 * processors if asynchronous processing is enabled. Must be called before
+	 * the master processors are created.
+	 */
+	private void startAsynchronousProcessing() {
+		synchronized (this.asyncProcessors) {
+			this.asyncProcessors.clear();
+			if (this.asyncQueueCapacity == 0) {
+				return;
+			}
+			for (List<EntityDocumentProcessor> processors : this.entityDocumentProcessors
+					.values()) {
+				for (EntityDocumentProcessor processor : processors) {
+					if (!this.asyncProcessors.containsKey(processor)) {
+						this.asyncProcessors.put(processor,
+								new AsyncEntityDocumentProcessor(processor,
+										this.asyncQueueCapacity,
+										this.asyncQueueFullPolicy));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until the asynchronous wrappers of the entity document processors
+	 * have processed all documents, if there are any.
+	 *
+	 * @throws RuntimeException
+	 *             if one of the processors failed
+	 */
+	private void finishAsynchronousProcessing() {
+		RuntimeException failure = null;
+		for (AsyncEntityDocumentProcessor processor : getAsynchronousProcessors()) {
+			try {
+				processor.finish();
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+			logger.info(processor.toString());
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Returns the processor that should be called for the given registered
+	 * entity document processor.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the registered processor
+	 * @return its asynchronous wrapper, or the processor itself if
+	 *         asynchronous processing is not enabled
+	 */
+	private EntityDocumentProcessor getAsynchronousProcessor(
+			EntityDocumentProcessor entityDocumentProcessor) {
+		synchronized (this.asyncProcessors) {
+			EntityDocumentProcessor result = this.asyncProcessors
+					.get(entityDocumentProcessor);
+			return result != null ? result : entityDocumentProcessor;
+		}
+	}
+
+	/**
+	 * Creates a configured factory for the XML readers of a revision dump
+	 * file processor.
+	 *
+	 * @return the new factory
+	 */
+	XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory result = this.xmlInputFactorySupplier.get();
+		MwRevisionDumpFileProcessor.configureXmlInputFactory(result);
+		return result;
+	}
+
 	/**
 	 * Return the main dump file processor that should be used to process
 	 * revisions.
@@ -538,7 +1415,17 @@ public class DumpProcessingController {
 	 * @return the main MwDumpFileProcessor for revisions
 	 */
 	MwDumpFileProcessor getRevisionDumpFileProcessor() {
-		return new MwRevisionDumpFileProcessor(getMasterMwRevisionProcessor());
+		JsonDeserializer jsonDeserializer = new JsonDeserializer(
+				Datamodel.SITE_WIKIDATA, this.filter);
+		MwRevisionDumpFileProcessor result = new MwRevisionDumpFileProcessor(
+				getMasterMwRevisionProcessor(jsonDeserializer),
+				createXmlInputFactory());
+		result.setParallelism(this.parallelism);
+		result.setOnlyCurrentRevisions(this.preferCurrent);
+		if (!this.entityDocumentProcessors.isEmpty()) {
+			result.setEntityDocumentDeserializer(jsonDeserializer);
+		}
+		return result;
 	}
 
 	/**
@@ -548,8 +1435,14 @@ public class DumpProcessingController {
 	 * @return the main MwDumpFileProcessor for JSON
 	 */
 	MwDumpFileProcessor getJsonDumpFileProcessor() {
-		return new JsonDumpFileProcessor(getMasterEntityDocumentProcessor(),
-				Datamodel.SITE_WIKIDATA);
+		JsonDumpFileProcessor result = new JsonDumpFileProcessor(
+				getMasterEntityDocumentProcessor(), Datamodel.SITE_WIKIDATA,
+				this.filter);
+		result.setParallelism(this.parallelism);
+		result.setOrderedDelivery(this.orderedDelivery);
+		result.setLazyItemDocuments(this.lazyItemDocuments);
+		result.setLineFilter(this.lineFilter);
+		return result;
 	}
 
 	/**
@@ -586,7 +1479,8 @@ public class DumpProcessingController {
 
 	/**
 	 * Returns an {@link EntityDocumentProcessor} object that calls all
-	 * registered processors and that takes filters into account if needed.
+	 * registered processors. Filters are not taken into account here, since
+	 * they are applied when parsing the documents.
 	 *
 	 * @return the master processor
 	 */
@@ -597,6 +1491,7 @@ public class DumpProcessingController {
 		for (Map.Entry<ListenerRegistration, List<EntityDocumentProcessor>> entry : this.entityDocumentProcessors
 				.entrySet()) {
 			for (EntityDocumentProcessor edp : entry.getValue()) {
+				edp = getAsynchronousProcessor(edp);
 				if (result == null) {
 					result = edp;
 				} else {
@@ -610,41 +1505,50 @@ public class DumpProcessingController {
 			}
 		}
 
-		return filterEntityDocumentProcessor(result);
-	}
-
-	/**
-	 * Wraps the given processor into a {@link EntityDocumentProcessorFilter} if
-	 * global filters are configured; otherwise just returns the processor
-	 * unchanged.
-	 *
-	 * @param processor
-	 *            the processor to wrap
-	 */
-	private EntityDocumentProcessor filterEntityDocumentProcessor(
-			EntityDocumentProcessor processor) {
-		if (this.filter.getPropertyFilter() == null
-				&& this.filter.getSiteLinkFilter() == null
-				&& this.filter.getLanguageFilter() == null) {
-			return processor;
-		} else {
-			return new EntityDocumentProcessorFilter(
-					processor, this.filter);
-		}
+		return result;
 	}
 
 	/**
 	 * Returns an {@link MwRevisionProcessor} object that calls all registered
 	 * processors and that takes filters into account if needed.
 	 *
+	 * @param jsonDeserializer
+	 *            the deserializer for the JSON of entity revisions, which
+	 *            applies the filters
 	 * @return the master processor
 	 */
-	private MwRevisionProcessor getMasterMwRevisionProcessor() {
-		MwRevisionProcessorBroker result = new MwRevisionProcessorBroker();
+	private MwRevisionProcessor getMasterMwRevisionProcessor(
+			JsonDeserializer jsonDeserializer) {
+		return registerMwRevisionProcessors(new MwRevisionProcessorBroker(
+				this.bitVectorFactory.get(), this.bitVectorFactory.get()),
+				jsonDeserializer, null);
+	}
 
+	/**
+	 * Registers all registered processors with the given broker, taking
+	 * filters into account if needed.
+	 *
+	 * @param result
+	 *            the broker to register the processors with
+	 * @param jsonDeserializer
+	 *            the deserializer for the JSON of entity revisions, which
+	 *            applies the filters
+	 * @param dumpPartProcessors
+	 *            provides the processors for one part of a dump that is
+	 *            processed concurrently with other parts, or null if the
+	 *            registered processors should be used directly
+	 * @return the broker
+	 */
+	private MwRevisionProcessorBroker registerMwRevisionProcessors(
+			MwRevisionProcessorBroker result,
+			JsonDeserializer jsonDeserializer,
+			DumpPartProcessors dumpPartProcessors) {
 		for (Entry<ListenerRegistration, List<MwRevisionProcessor>> entry : this.mwRevisionProcessors
 				.entrySet()) {
 			for (MwRevisionProcessor mrp : entry.getValue()) {
+				if (dumpPartProcessors != null) {
+					mrp = dumpPartProcessors.getPartProcessor(mrp);
+				}
 				result.registerMwRevisionProcessor(mrp, entry.getKey().model,
 						entry.getKey().onlyCurrentRevisions);
 			}
@@ -652,20 +1556,28 @@ public class DumpProcessingController {
 
 		for (Map.Entry<ListenerRegistration, List<EntityDocumentProcessor>> edpEntry : this.entityDocumentProcessors
 				.entrySet()) {
+			List<EntityDocumentProcessor> edps = new ArrayList<>();
+			for (EntityDocumentProcessor edp : edpEntry.getValue()) {
+				edp = getAsynchronousProcessor(edp);
+				if (dumpPartProcessors != null) {
+					edp = dumpPartProcessors.getPartProcessor(edp);
+				}
+				edps.add(edp);
+			}
+
 			EntityDocumentProcessor resultEdp;
-			if (edpEntry.getValue().size() == 1) {
-				resultEdp = edpEntry.getValue().get(0);
+			if (edps.size() == 1) {
+				resultEdp = edps.get(0);
 			} else {
 				EntityDocumentProcessorBroker edpb = new EntityDocumentProcessorBroker();
-				for (EntityDocumentProcessor edp : edpEntry.getValue()) {
+				for (EntityDocumentProcessor edp : edps) {
 					edpb.registerEntityDocumentProcessor(edp);
 				}
 				resultEdp = edpb;
 			}
 
 			result.registerMwRevisionProcessor(new WikibaseRevisionProcessor(
-					filterEntityDocumentProcessor(resultEdp),
-					Datamodel.SITE_WIKIDATA), edpEntry.getKey().model, edpEntry
+					resultEdp, jsonDeserializer), edpEntry.getKey().model, edpEntry
 					.getKey().onlyCurrentRevisions);
 		}
 
@@ -20,18 +20,38 @@ package org.wikidata.wdtk.dumpfiles;
  * #L%
  */
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.helpers.DocumentDataTokenFilter;
 import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
 import org.wikidata.wdtk.datamodel.interfaces.*;
+import org.wikidata.wdtk.util.DaemonThreadFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonParser.Feature;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.MappingIterator;
@@ -39,6 +59,24 @@ import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * Processor for JSON dumpfiles.
+ * <p>
+ * By default, all lines of the dump are read, deserialized and passed on to
+ * the {@link EntityDocumentProcessor} on the calling thread. If a parallelism
+ * greater than one is configured with {@link #setParallelism(int)}, then one
+ * reader thread splits the input into batches of lines, which are deserialized
+ * by a pool of worker threads. The resulting documents are still passed on to
+ * the {@link EntityDocumentProcessor} from the calling thread only, so that
+ * processors do not need to be thread-safe. Depending on
+ * {@link #setOrderedDelivery(boolean)}, documents are delivered in the order
+ * of the dump or in the order in which their batches were completed.
+ * <p>
+ * If a {@link DumpCheckpointer} is set, progress is reported after each line
+ * (or batch of lines) has been processed completely, so that processing can
+ * later be resumed after the last processed line.
+ * <p>
+ * Uncompressed local dump files can also be processed with
+ * {@link #processMappedDumpFile(Path, MwDumpFile)}, which maps the file into
+ * memory instead of reading it through a stream.
  *
  * @author Markus Kroetzsch
  *
@@ -48,16 +86,224 @@ public class JsonDumpFileProcessor implements MwDumpFileProcessor {
 	static final Logger logger = LoggerFactory
 			.getLogger(JsonDumpFileProcessor.class);
 
+	/**
+	 * Default number of lines that are deserialized together by one worker
+	 * when processing in parallel.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/**
+	 * Marker that is used by the reader thread to signal that there are no
+	 * more batches.
+	 */
+	private static final Future<LineBatch> END_OF_INPUT = CompletableFuture
+			.completedFuture(null);
+
+	/**
+	 * Content that is read before the remaining lines of a dump when resuming
+	 * at a checkpoint or processing a shard. It takes the place of the first
+	 * line, which is always skipped.
+	 */
+	static final byte[] RESUME_PREFIX = "[\n"
+			.getBytes(StandardCharsets.UTF_8);
+
 	private final ObjectReader documentReader;
 
+	private final String siteIri;
+
+	/**
+	 * Filter that is applied to the JSON tokens of each document, or null if
+	 * all data is kept.
+	 */
+	private final DocumentDataTokenFilter tokenFilter;
+
+	/**
+	 * Filter that decides which lines are parsed at all, or null if all lines
+	 * are parsed.
+	 */
+	private JsonDumpLineFilter lineFilter = null;
+
+	/**
+	 * Object that progress is reported to for writing checkpoints, or null if
+	 * no checkpoints are written.
+	 */
+	private DumpCheckpointer checkpointer = null;
+
 	private final EntityDocumentProcessor entityDocumentProcessor;
 
+	/**
+	 * Number of worker threads used for deserialization. If this is 1, all
+	 * work is done on the calling thread.
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * If true, documents are delivered in the order in which they occur in
+	 * the dump when processing in parallel.
+	 */
+	private boolean orderedDelivery = true;
+
+	/**
+	 * Number of lines that are deserialized together by one worker.
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Number of bytes of a file that are mapped into memory at a time by
+	 * {@link #processMappedDumpFile(Path, MwDumpFile)}.
+	 */
+	private int mappingWindowSize = MappedJsonDumpLineReader.DEFAULT_WINDOW_SIZE;
+
+	/**
+	 * If true, items are delivered as {@link LazyItemDocument} objects that
+	 * only parse their sections when they are accessed.
+	 */
+	private boolean lazyItemDocuments = false;
+
 	public JsonDumpFileProcessor(
 			EntityDocumentProcessor entityDocumentProcessor, String siteIri) {
+		this(entityDocumentProcessor, siteIri, null);
+	}
+
+	/**
+	 * Constructor for a processor that only keeps the data that is included
+	 * by the given filter. Excluded terms, statements and site links are
+	 * skipped while parsing, so that documents do not have to be filtered
+	 * after they have been built.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the processor that documents are passed on to
+	 * @param siteIri
+	 *            the IRI of the site that the data comes from
+	 * @param filter
+	 *            the filter to apply, or null to keep all data
+	 */
+	public JsonDumpFileProcessor(
+			EntityDocumentProcessor entityDocumentProcessor, String siteIri,
+			DocumentDataFilter filter) {
 		this.entityDocumentProcessor = entityDocumentProcessor;
+		this.siteIri = siteIri;
 		this.documentReader = new DatamodelMapper(siteIri)
 				.readerFor(EntityDocumentImpl.class)
 				.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
+		if (filter != null && !DocumentDataTokenFilter.isTrivial(filter)) {
+			this.tokenFilter = new DocumentDataTokenFilter(filter, siteIri);
+		} else {
+			this.tokenFilter = null;
+		}
+	}
+
+	/**
+	 * Sets the number of threads that are used to deserialize the JSON
+	 * documents of the dump. The default is 1, which means that all work is
+	 * done on the calling thread. For higher values, one additional thread is
+	 * used for reading the input.
+	 *
+	 * @param parallelism
+	 *            the number of worker threads, at least 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least 1, but was " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Returns the number of threads that are used to deserialize the JSON
+	 * documents of the dump.
+	 *
+	 * @return the number of worker threads
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * Sets whether documents should be delivered in the order in which they
+	 * occur in the dump when processing in parallel (default). If false,
+	 * documents are delivered batch by batch as soon as they are ready, which
+	 * avoids waiting for slow batches. In either case, the
+	 * {@link EntityDocumentProcessor} is only called from the thread that
+	 * invoked {@link #processDumpFileContents(InputStream, MwDumpFile)}.
+	 *
+	 * @param orderedDelivery
+	 *            true if the order of the dump should be preserved
+	 */
+	public void setOrderedDelivery(boolean orderedDelivery) {
+		this.orderedDelivery = orderedDelivery;
+	}
+
+	/**
+	 * Sets the number of lines that are deserialized together by one worker
+	 * when processing in parallel. The default is {@link #DEFAULT_BATCH_SIZE}.
+	 *
+	 * @param batchSize
+	 *            the number of lines per batch, at least 1
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException(
+					"Batch size must be at least 1, but was " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets whether item documents should only be parsed as far as they are
+	 * used. If true, only the id and revision id of each item are read while
+	 * processing the dump. Labels, descriptions, aliases, statements and site
+	 * links are kept as JSON and deserialized on the first call of the
+	 * corresponding getter of the document. This is much cheaper for
+	 * processors that only look at some of this data, but errors in the JSON
+	 * of a section only show when the section is accessed, and parsing then
+	 * happens on the thread that processes the document rather than on the
+	 * workers of {@link #setParallelism(int)}. Other types of entities are
+	 * always parsed completely. The default is false.
+	 *
+	 * @param lazyItemDocuments
+	 *            true if items should be parsed on demand
+	 */
+	public void setLazyItemDocuments(boolean lazyItemDocuments) {
+		this.lazyItemDocuments = lazyItemDocuments;
+	}
+
+	/**
+	 * Sets the number of bytes that are mapped into memory at a time by
+	 * {@link #processMappedDumpFile(Path, MwDumpFile)}. Only used for
+	 * testing.
+	 *
+	 * @param mappingWindowSize
+	 *            the size of the windows in bytes
+	 */
+	void setMappingWindowSize(int mappingWindowSize) {
+		this.mappingWindowSize = mappingWindowSize;
+	}
+
+	/**
+	 * Sets a filter that is used to skip lines of the dump before they are
+	 * parsed.
+	 *
+	 * @param lineFilter
+	 *            the filter to use, or null to parse all lines
+	 */
+	void setLineFilter(JsonDumpLineFilter lineFilter) {
+		if (lineFilter != null && lineFilter.isTrivial()) {
+			this.lineFilter = null;
+		} else {
+			this.lineFilter = lineFilter;
+		}
+	}
+
+	/**
+	 * Sets the object that progress is reported to for writing checkpoints.
+	 *
+	 * @param checkpointer
+	 *            the checkpointer to use, or null to disable checkpoints
+	 */
+	void setCheckpointer(DumpCheckpointer checkpointer) {
+		this.checkpointer = checkpointer;
 	}
 
 	/**
@@ -76,7 +322,11 @@ public class JsonDumpFileProcessor implements MwDumpFileProcessor {
 		logger.info("Processing JSON dump file " + dumpFile.toString());
 
 		try {
-		    processDumpFileContentsRecovery(inputStream);
+			if (this.parallelism > 1) {
+				processDumpFileContentsParallel(inputStream);
+			} else {
+				processDumpFileContentsRecovery(inputStream);
+			}
 		    /*
 			try {
 				MappingIterator<EntityDocument> documentIterator = documentReader.readValues(inputStream);
@@ -98,6 +348,60 @@ public class JsonDumpFileProcessor implements MwDumpFileProcessor {
 
 	}
 
+	/**
+	 * Processes an uncompressed JSON dump file by mapping it into memory. This
+	 * avoids copying the data through the buffers of an input stream: lines
+	 * are found directly in the mapped file, and only the lines that are
+	 * parsed are copied into an array for Jackson. With a parallelism greater
+	 * than one, the reader thread only finds the line breaks, and each worker
+	 * copies and parses the disjoint part of the file that its batch covers.
+	 * The line filter is then applied by the workers. Apart from this, the
+	 * file is processed in the same way as by
+	 * {@link #processDumpFileContents(InputStream, MwDumpFile)}, but without
+	 * writing checkpoints.
+	 *
+	 * @param path
+	 *            the path of the uncompressed dump file
+	 * @param dumpFile
+	 *            the dump file, for log messages
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public void processMappedDumpFile(Path path, MwDumpFile dumpFile)
+			throws IOException {
+		logger.info("Processing JSON dump file " + dumpFile.toString()
+				+ " mapped into memory");
+
+		try (MappedJsonDumpLineReader lineReader = new MappedJsonDumpLineReader(
+				path, this.mappingWindowSize)) {
+			if (!lineReader.nextLine()) {
+				return;
+			}
+			logSkippedFirstLine(lineReader.getLineString());
+
+			if (this.parallelism > 1) {
+				processInParallel(submitter -> readMappedBatches(lineReader,
+						submitter));
+			} else {
+				byte[] buffer = new byte[1 << 16];
+				while (lineReader.nextLine() && lineReader.getLength() > 1) {
+					int length = lineReader.getLength();
+					if (length > buffer.length) {
+						buffer = new byte[Math.max(length, 2 * buffer.length)];
+					}
+					lineReader.copyLine(buffer);
+					if (acceptLine(buffer, 0, length)) {
+						EntityDocument document = readDocument(buffer, 0,
+								length);
+						if (document != null) {
+							handleDocument(document);
+						}
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Reports the error of a JSON processing exception that was caught when
 	 * trying to read an entity.
@@ -152,40 +456,468 @@ public class JsonDumpFileProcessor implements MwDumpFileProcessor {
 		JsonDumpFileProcessor.logger
 				.warn("Entering recovery mode to parse rest of file. This might be slightly slower.");
 
-		BufferedReader br = new BufferedReader(new InputStreamReader(
-				inputStream));
+		JsonDumpLineReader lineReader = new JsonDumpLineReader(inputStream);
 
-		String line = br.readLine();
-		if (line == null) { // can happen if iterator already has consumed all
-							// the stream
+		if (!skipFirstLine(lineReader)) {
 			return;
 		}
+
+		while (lineReader.nextLine() && lineReader.getLength() > 1) {
+			EntityDocument document = null;
+			if (acceptLine(lineReader)) {
+				document = readDocument(lineReader.getBuffer(),
+						lineReader.getOffset(), lineReader.getLength());
+				if (document != null) {
+					handleDocument(document);
+				}
+			}
+			if (this.checkpointer != null) {
+				this.checkpointer.recordProgress(
+						lineReader.getNextLinePosition(),
+						document == null ? null : document.getEntityId().getId(),
+						1);
+			}
+		}
+	}
+
+	/**
+	 * Process dump file data from the given input stream using several
+	 * threads, see {@link #processInParallel(BatchReader)}. The lines are
+	 * copied into the batches by the reader thread, which also applies the
+	 * line filter.
+	 * <p>
+	 * Errors in individual lines are handled in the same way as in
+	 * {@link #processDumpFileContentsRecovery(InputStream)}.
+	 *
+	 * @param inputStream
+	 *            the stream to read from
+	 * @throws IOException
+	 *             if there is a problem reading the stream
+	 */
+	private void processDumpFileContentsParallel(InputStream inputStream)
+			throws IOException {
+		JsonDumpLineReader lineReader = new JsonDumpLineReader(inputStream);
+
+		if (!skipFirstLine(lineReader)) {
+			return;
+		}
+
+		processInParallel(submitter -> {
+			long sequence = 0;
+			LineBatch batch = new LineBatch(this.batchSize, sequence++);
+			while (lineReader.nextLine() && lineReader.getLength() > 1) {
+				batch.lineCount++;
+				batch.endPosition = lineReader.getNextLinePosition();
+				if (!acceptLine(lineReader)) {
+					continue;
+				}
+				batch.add(lineReader.getBuffer(), lineReader.getOffset(),
+						lineReader.getLength());
+				if (batch.size == this.batchSize) {
+					submitter.submit(batch);
+					batch = new LineBatch(this.batchSize, sequence++);
+				}
+			}
+			if (batch.lineCount > 0) {
+				submitter.submit(batch);
+			}
+		});
+	}
+
+	/**
+	 * Splits the remaining lines of a mapped file into batches for
+	 * {@link #processInParallel(BatchReader)}. The batches refer to ranges of
+	 * the mapped windows; a batch never spans two windows. Lines are not
+	 * filtered here, so that the workers do this on their own copies.
+	 *
+	 * @param lineReader
+	 *            the reader to read lines from
+	 * @param submitter
+	 *            the object to pass batches to
+	 * @throws IOException
+	 *             if the file could not be read
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 */
+	private void readMappedBatches(MappedJsonDumpLineReader lineReader,
+			BatchSubmitter submitter) throws IOException, InterruptedException {
+		long sequence = 0;
+		LineBatch batch = new LineBatch(this.batchSize, sequence++);
+		int windowCount = 0;
+		while (lineReader.nextLine() && lineReader.getLength() > 1) {
+			if (lineReader.getWindowCount() != windowCount) {
+				windowCount = lineReader.getWindowCount();
+				if (batch.size > 0) {
+					submitter.submit(batch);
+					batch = new LineBatch(this.batchSize, sequence++);
+				}
+			}
+			if (batch.mappedData == null) {
+				batch.mappedData = lineReader.getWindow();
+			}
+			batch.lineCount++;
+			batch.endPosition = lineReader.getNextLinePosition();
+			batch.addMapped(lineReader.getOffset(), lineReader.getLength());
+			if (batch.size == this.batchSize) {
+				submitter.submit(batch);
+				batch = new LineBatch(this.batchSize, sequence++);
+			}
+		}
+		if (batch.lineCount > 0) {
+			submitter.submit(batch);
+		}
+	}
+
+	/**
+	 * Deserializes batches of lines using a pool of {@link #parallelism}
+	 * workers, while a reader thread creates the batches. The documents are
+	 * handled on the calling thread, either in the order of the dump or in
+	 * the order in which batches are completed, depending on
+	 * {@link #orderedDelivery}. The number of batches that are in flight at
+	 * any time is bounded, so that a slow processor will eventually pause the
+	 * reader rather than fill up the memory.
+	 *
+	 * @param batchReader
+	 *            the code that the reader thread runs to create the batches
+	 * @throws IOException
+	 *             if there is a problem reading the input
+	 */
+	private void processInParallel(BatchReader batchReader) throws IOException {
+		BlockingQueue<Future<LineBatch>> pendingBatches = new ArrayBlockingQueue<>(
+				2 * this.parallelism);
+		AtomicReference<Exception> readerException = new AtomicReference<>();
+		ExecutorService workers = Executors.newFixedThreadPool(
+				this.parallelism, new DaemonThreadFactory("wdtk-json-worker"));
+		CompletionService<LineBatch> completionService = new ExecutorCompletionService<>(
+				workers);
+
+		Thread reader = new Thread(() -> {
+			try {
+				try {
+					batchReader.readBatches(batch -> pendingBatches
+							.put(completionService
+									.submit(readDocumentsTask(batch))));
+				} catch (IOException | RuntimeException e) {
+					readerException.set(e);
+				}
+				pendingBatches.put(END_OF_INPUT);
+			} catch (InterruptedException e) {
+				// processing was aborted; just stop reading
+			}
+		}, "wdtk-json-reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		// batches that are done but cannot be reported to the checkpointer
+		// yet, since an earlier batch is still being processed
+		Map<Long, LineBatch> doneBatches = new HashMap<>();
+		long nextSequence = 0;
+		// progress of the batches that have been done without gaps
+		int progressLines = 0;
+		long progressPosition = 0;
+		String progressLastId = null;
+		try {
+			Future<LineBatch> pendingBatch = pendingBatches.take();
+			while (pendingBatch != END_OF_INPUT) {
+				LineBatch batch;
+				if (this.orderedDelivery) {
+					batch = pendingBatch.get();
+				} else {
+					batch = completionService.take().get();
+				}
+				for (EntityDocument document : batch.documents) {
+					handleDocument(document);
+				}
+				batch.documents = null;
+				if (this.checkpointer != null) {
+					doneBatches.put(batch.sequence, batch);
+					while ((batch = doneBatches.remove(nextSequence)) != null) {
+						progressLines += batch.lineCount;
+						progressPosition = batch.endPosition;
+						if (batch.lastId != null) {
+							progressLastId = batch.lastId;
+						}
+						nextSequence++;
+					}
+					// with unordered delivery, later batches may have been
+					// handled already; a checkpoint must not be taken then
+					if (doneBatches.isEmpty() && progressLines > 0) {
+						this.checkpointer.recordProgress(progressPosition,
+								progressLastId, progressLines);
+						progressLines = 0;
+						progressLastId = null;
+					}
+				}
+				pendingBatch = pendingBatches.take();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while processing JSON dump", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error when reading JSON for entity: "
+					+ e.getCause().getMessage(), e.getCause());
+		} finally {
+			reader.interrupt();
+			workers.shutdownNow();
+		}
+
+		Exception e = readerException.get();
+		if (e instanceof IOException) {
+			throw (IOException) e;
+		} else if (e != null) {
+			throw (RuntimeException) e;
+		}
+	}
+
+	/**
+	 * Reads and logs the first line of the input, which is skipped in all
+	 * processing modes. In a well-formed dump, this line only contains the
+	 * opening bracket of the JSON list.
+	 *
+	 * @param lineReader
+	 *            the reader to read from
+	 * @return false if the input was empty
+	 * @throws IOException
+	 *             if there is a problem reading the stream
+	 */
+	private boolean skipFirstLine(JsonDumpLineReader lineReader)
+			throws IOException {
+		if (!lineReader.nextLine()) { // can happen if iterator already has
+										// consumed all the stream
+			return false;
+		}
+		logSkippedFirstLine(lineReader.getLineString());
+		return true;
+	}
+
+	/**
+	 * Logs the first line of the input, which is skipped.
+	 *
+	 * @param line
+	 *            the first line
+	 */
+	private static void logSkippedFirstLine(String line) {
 		if (line.length() >= 100) {
 			line = line.substring(0, 100) + "[...]"
 					+ line.substring(line.length() - 50);
 		}
 		JsonDumpFileProcessor.logger.warn("Skipping rest of current line: "
 				+ line);
+	}
 
-		line = br.readLine();
-		while (line != null && line.length() > 1) {
-			try {
-				EntityDocument document;
-				if (line.charAt(line.length() - 1) == ',') {
-					document = documentReader.readValue(line.substring(0,
-							line.length() - 1));
-				} else {
-					document = documentReader.readValue(line);
+	/**
+	 * Returns a task that deserializes the given lines. Lines that cannot be
+	 * read are logged and skipped.
+	 *
+	 * @param lines
+	 *            the lines of the dump to read
+	 * @return a task that returns the batch, with the documents found in the
+	 *         lines
+	 */
+	private Callable<LineBatch> readDocumentsTask(LineBatch lines) {
+		return () -> {
+			boolean filter = false;
+			if (lines.mappedData != null) {
+				lines.copyMappedData();
+				filter = this.lineFilter != null;
+			}
+			List<EntityDocument> documents = new ArrayList<>(lines.size);
+			for (int i = 0; i < lines.size; i++) {
+				if (filter && !this.lineFilter.accept(lines.data,
+						lines.offsets[i], lines.lengths[i])) {
+					continue;
 				}
-				handleDocument(document);
-			} catch (JsonProcessingException e) {
-				logJsonProcessingException(e);
-				JsonDumpFileProcessor.logger.error("Problematic line was: "
-						+ line.substring(0, Math.min(50, line.length()))
-						+ "...");
+				EntityDocument document = readDocument(lines.data,
+						lines.offsets[i], lines.lengths[i]);
+				if (document != null) {
+					documents.add(document);
+				}
+			}
+			if (!documents.isEmpty()) {
+				lines.lastId = documents.get(documents.size() - 1)
+						.getEntityId().getId();
+			}
+			lines.documents = documents;
+			lines.data = null;
+			return lines;
+		};
+	}
+
+	/**
+	 * Checks if the current line of the given reader passes the line filter,
+	 * if any.
+	 *
+	 * @param lineReader
+	 *            the reader whose current line is checked
+	 * @return true if the line should be parsed
+	 */
+	private boolean acceptLine(JsonDumpLineReader lineReader) {
+		return acceptLine(lineReader.getBuffer(), lineReader.getOffset(),
+				lineReader.getLength());
+	}
+
+	/**
+	 * Checks if the given line passes the line filter, if any.
+	 *
+	 * @param buffer
+	 *            the buffer that holds the line
+	 * @param offset
+	 *            the start of the line in the buffer
+	 * @param length
+	 *            the length of the line in bytes
+	 * @return true if the line should be parsed
+	 */
+	private boolean acceptLine(byte[] buffer, int offset, int length) {
+		return this.lineFilter == null
+				|| this.lineFilter.accept(buffer, offset, length);
+	}
+
+	/**
+	 * Deserializes one line of the dump, which may end with a comma. The line
+	 * is given as a range of bytes in UTF-8, which is read by Jackson without
+	 * creating intermediate strings. Errors are logged.
+	 *
+	 * @param buffer
+	 *            the buffer that holds the line
+	 * @param offset
+	 *            the start of the line in the buffer
+	 * @param length
+	 *            the length of the line in bytes, without line break
+	 * @return the document, or null if the line could not be read
+	 * @throws IOException
+	 *             if there is a problem reading the line
+	 */
+	private EntityDocument readDocument(byte[] buffer, int offset, int length)
+			throws IOException {
+		if (buffer[offset + length - 1] == ',') {
+			length--;
+		}
+		if (this.lazyItemDocuments) {
+			EntityDocument document = LazyItemDocument.create(buffer, offset,
+					length, documentReader, this.tokenFilter, this.siteIri);
+			if (document != null) {
+				return document;
+			}
+		}
+		try {
+			if (this.tokenFilter == null) {
+				return documentReader.readValue(buffer, offset, length);
+			}
+			try (JsonParser parser = this.tokenFilter.filter(
+					documentReader.createParser(buffer, offset, length))) {
+				return documentReader.readValue(parser);
+			}
+		} catch (JsonProcessingException e) {
+			logJsonProcessingException(e);
+			JsonDumpFileProcessor.logger.error("Problematic line was: "
+					+ new String(buffer, offset, Math.min(50, length),
+							StandardCharsets.UTF_8) + "...");
+			return null;
+		}
+	}
+
+	/**
+	 * Code that creates the batches of lines for
+	 * {@link JsonDumpFileProcessor#processInParallel(BatchReader)}.
+	 */
+	@FunctionalInterface
+	private interface BatchReader {
+		void readBatches(BatchSubmitter submitter) throws IOException,
+				InterruptedException;
+	}
+
+	/**
+	 * Receives the batches of lines that are deserialized in parallel.
+	 */
+	@FunctionalInterface
+	private interface BatchSubmitter {
+		void submit(LineBatch batch) throws InterruptedException;
+	}
+
+	/**
+	 * Lines of the dump that are deserialized together when processing in
+	 * parallel. The lines are copied into one shared byte array, since the
+	 * buffer of the {@link JsonDumpLineReader} is reused. When a file is
+	 * mapped into memory, the lines are given as ranges of the mapped data
+	 * instead, and are only copied by the worker. Once the lines have been
+	 * deserialized, the batch holds the resulting documents instead.
+	 */
+	static class LineBatch {
+		byte[] data;
+		int dataLength = 0;
+		/**
+		 * Mapped part of the file that the lines refer to, or null if the
+		 * lines have been copied to {@link #data}.
+		 */
+		ByteBuffer mappedData;
+		final int[] offsets;
+		final int[] lengths;
+		int size = 0;
+		/**
+		 * Number of the batch in the order of the dump.
+		 */
+		final long sequence;
+		/**
+		 * Number of lines of the dump covered by this batch, including lines
+		 * that were skipped by the line filter.
+		 */
+		int lineCount = 0;
+		/**
+		 * Position in the input stream after the last line of the batch.
+		 */
+		long endPosition = 0;
+		List<EntityDocument> documents;
+		/**
+		 * Id of the last document of the batch, or null if there is none.
+		 */
+		String lastId;
+
+		LineBatch(int capacity, long sequence) {
+			this.offsets = new int[capacity];
+			this.lengths = new int[capacity];
+			this.sequence = sequence;
+		}
+
+		void add(byte[] buffer, int offset, int length) {
+			if (this.data == null) {
+				this.data = new byte[Math.max(1 << 16, length)];
+			} else if (this.dataLength + length > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(this.dataLength
+						+ length, 2 * this.data.length));
 			}
+			System.arraycopy(buffer, offset, this.data, this.dataLength, length);
+			this.offsets[this.size] = this.dataLength;
+			this.lengths[this.size] = length;
+			this.dataLength += length;
+			this.size++;
+		}
 
-			line = br.readLine();
+		/**
+		 * Adds a line that is given as a range of {@link #mappedData}.
+		 */
+		void addMapped(int offset, int length) {
+			this.offsets[this.size] = offset;
+			this.lengths[this.size] = length;
+			this.size++;
+		}
+
+		/**
+		 * Copies the part of {@link #mappedData} that holds the lines to
+		 * {@link #data}, and adjusts the ranges of the lines.
+		 */
+		void copyMappedData() {
+			int start = this.offsets[0];
+			int end = this.offsets[this.size - 1]
+					+ this.lengths[this.size - 1];
+			ByteBuffer range = this.mappedData.duplicate();
+			range.position(start);
+			this.data = new byte[end - start];
+			range.get(this.data);
+			for (int i = 0; i < this.size; i++) {
+				this.offsets[i] -= start;
+			}
+			this.dataLength = this.data.length;
+			this.mappedData = null;
 		}
 	}
 }
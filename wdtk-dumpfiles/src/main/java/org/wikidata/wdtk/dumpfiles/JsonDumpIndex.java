@@ -0,0 +1,605 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+import org.wikidata.wdtk.util.GzipMemberInputStream;
+import org.wikidata.wdtk.util.GzipMemberInputStream.MemberPosition;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream.BlockPosition;
+import org.wikidata.wdtk.util.ZstdSeekTable;
+
+/**
+ * Index that records where each entity is found in a JSON dump file, so that
+ * single entities can be read without scanning the dump; see
+ * {@link DumpEntityLookup}. For every entity, the index stores the compressed
+ * block where decompression has to start and the position of the entity in
+ * the decompressed data of this block. Blocks are the blocks of bzip2 files,
+ * the members of gzip files, and the frames of Zstandard files in the
+ * seekable format; other files consist of a single block.
+ * <p>
+ * Only entity ids that consist of one letter and a number, such as "Q42" or
+ * "P31", are indexed. The entries are sorted by id and stored with
+ * variable-length delta encoding, which takes a few bytes per entity. To find
+ * an entity, a table of every {@value #SAMPLE_INTERVAL}th entry is searched,
+ * and at most {@value #SAMPLE_INTERVAL} entries are decoded after that.
+ * <p>
+ * Most gzip files consist of a single member, which can only be decompressed
+ * from its start. Random access to such files is as expensive as a scan of
+ * the dump up to the entity.
+ */
+public class JsonDumpIndex {
+
+	static final Logger logger = LoggerFactory.getLogger(JsonDumpIndex.class);
+
+	static final int MAGIC = 0x5744494a; // "WDIJ"
+	static final int VERSION = 1;
+
+	/**
+	 * Number of entries after which delta encoding starts over.
+	 */
+	static final int SAMPLE_INTERVAL = 64;
+
+	/**
+	 * Position of an entity in a dump file.
+	 */
+	static class Location {
+		/**
+		 * Start of the block that contains the start of the entity: the bit
+		 * offset for bzip2, the byte offset for gzip and seekable Zstandard
+		 * files, and 0 for other files.
+		 */
+		final long blockStart;
+		/**
+		 * Position of the entity in the decompressed data of the block.
+		 */
+		final long offset;
+
+		Location(long blockStart, long offset) {
+			this.blockStart = blockStart;
+			this.offset = offset;
+		}
+	}
+
+	final CompressionType compressionType;
+	/**
+	 * Starts of all blocks that contain the start of an entity, in increasing
+	 * order.
+	 */
+	final long[] blockStarts;
+	/**
+	 * Encoded entries, sorted by key.
+	 */
+	final byte[] entries;
+	final int entryCount;
+
+	/**
+	 * Key of every {@link #SAMPLE_INTERVAL}th entry.
+	 */
+	final long[] sampleKeys;
+	/**
+	 * Position of every {@link #SAMPLE_INTERVAL}th entry in
+	 * {@link #entries}.
+	 */
+	final int[] samplePositions;
+
+	JsonDumpIndex(CompressionType compressionType, long[] blockStarts,
+			byte[] entries, int entryCount) throws IOException {
+		this.compressionType = compressionType;
+		this.blockStarts = blockStarts;
+		this.entries = entries;
+		this.entryCount = entryCount;
+
+		int sampleCount = (entryCount + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL;
+		this.sampleKeys = new long[sampleCount];
+		this.samplePositions = new int[sampleCount];
+		int[] position = { 0 };
+		long key = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (i % SAMPLE_INTERVAL == 0) {
+				key = 0;
+				this.samplePositions[i / SAMPLE_INTERVAL] = position[0];
+			}
+			key += readVarLong(entries, position);
+			if (i % SAMPLE_INTERVAL == 0) {
+				this.sampleKeys[i / SAMPLE_INTERVAL] = key;
+			}
+			readVarLong(entries, position);
+			readVarLong(entries, position);
+		}
+		if (position[0] != entries.length) {
+			throw new IOException("Invalid index data");
+		}
+	}
+
+	/**
+	 * Builds the index of the given JSON dump file by reading the complete
+	 * file.
+	 *
+	 * @param directoryManager
+	 *            the directory that contains the dump file, which also
+	 *            sets the number of bzip2 decompression threads
+	 * @param fileName
+	 *            the name of the dump file; its compression type is
+	 *            determined from the file name extension
+	 * @return the index
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public static JsonDumpIndex build(DirectoryManager directoryManager,
+			String fileName) throws IOException {
+		CompressionType compressionType = WmfDumpFile
+				.getDumpFileCompressionType(fileName);
+		compressionType.checkAvailable();
+		InputStream compressed = directoryManager.getInputStreamForFile(
+				fileName, CompressionType.NONE);
+		ParallelBZip2CompressorInputStream bz2InputStream = null;
+		GzipMemberInputStream gzipInputStream = null;
+		ZstdSeekTable seekTable = null;
+		InputStream in;
+		switch (compressionType) {
+		case BZ2:
+			bz2InputStream = new ParallelBZip2CompressorInputStream(compressed,
+					Math.max(1, directoryManager.getBz2DecompressionThreads()));
+			in = bz2InputStream;
+			break;
+		case GZIP:
+			gzipInputStream = new GzipMemberInputStream(compressed);
+			in = gzipInputStream;
+			break;
+		case ZSTD:
+			seekTable = ZstdSeekTable.read(directoryManager, fileName);
+			in = new ZstdCompressorInputStream(new BufferedInputStream(
+					compressed));
+			break;
+		case XZ:
+			in = new XZCompressorInputStream(new BufferedInputStream(
+					compressed), true);
+			break;
+		default:
+			in = compressed;
+		}
+
+		Builder builder = new Builder(compressionType);
+		try (InputStream dumpInputStream = in) {
+			JsonDumpLineReader lineReader = new JsonDumpLineReader(
+					dumpInputStream);
+			while (lineReader.nextLine()) {
+				if (lineReader.getLength() <= 1) {
+					continue; // opening or closing bracket
+				}
+				String entityId = JsonDumpLineFilter.findEntityId(
+						lineReader.getBuffer(), lineReader.getOffset(),
+						lineReader.getLength());
+				long key = getKey(entityId);
+				if (key < 0) {
+					logger.warn("Not indexing entity with id " + entityId
+							+ " at position " + lineReader.getLinePosition());
+					continue;
+				}
+
+				long linePosition = lineReader.getLinePosition();
+				long blockStart;
+				long blockDataStart;
+				if (bz2InputStream != null) {
+					BlockPosition blockPosition = bz2InputStream
+							.getBlockPosition(linePosition);
+					if (blockPosition == null) {
+						throw new IOException("Unknown block at position "
+								+ linePosition);
+					}
+					blockStart = blockPosition.getBitOffset();
+					blockDataStart = blockPosition.getUncompressedOffset();
+				} else if (gzipInputStream != null) {
+					MemberPosition memberPosition = gzipInputStream
+							.getMemberPosition(linePosition);
+					if (memberPosition == null) {
+						throw new IOException("Unknown gzip member at position "
+								+ linePosition);
+					}
+					blockStart = memberPosition.getByteOffset();
+					blockDataStart = memberPosition.getUncompressedOffset();
+				} else if (seekTable != null) {
+					int frame = seekTable.findFrame(linePosition);
+					blockStart = seekTable.getCompressedOffset(frame);
+					blockDataStart = seekTable.getDecompressedOffset(frame);
+				} else {
+					blockStart = 0;
+					blockDataStart = 0;
+				}
+				builder.add(key, blockStart, linePosition - blockDataStart);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Loads an index from the given file.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the index, or null if the file does not exist
+	 * @throws IOException
+	 *             if the file could not be read or has an invalid format
+	 */
+	public static JsonDumpIndex load(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Invalid index file " + file);
+			}
+			CompressionType compressionType;
+			try {
+				compressionType = CompressionType.valueOf(in.readUTF());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid index file " + file, e);
+			}
+			long[] blockStarts = new long[in.readInt()];
+			long blockStart = 0;
+			for (int i = 0; i < blockStarts.length; i++) {
+				blockStart += in.readLong();
+				blockStarts[i] = blockStart;
+			}
+			int entryCount = in.readInt();
+			byte[] entries = new byte[in.readInt()];
+			in.readFully(entries);
+			return new JsonDumpIndex(compressionType, blockStarts, entries,
+					entryCount);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Invalid index file " + file, e);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes this index to the given file. The file is replaced atomically.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void save(Path file) throws IOException {
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(this.compressionType.name());
+			out.writeInt(this.blockStarts.length);
+			long previous = 0;
+			for (long blockStart : this.blockStarts) {
+				out.writeLong(blockStart - previous);
+				previous = blockStart;
+			}
+			out.writeInt(this.entryCount);
+			out.writeInt(this.entries.length);
+			out.write(this.entries);
+		}
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Returns the compression type of the dump file that this index was built
+	 * for.
+	 *
+	 * @return the compression type
+	 */
+	public CompressionType getCompressionType() {
+		return this.compressionType;
+	}
+
+	/**
+	 * Returns the number of entities in the index.
+	 *
+	 * @return the number of entities
+	 */
+	public int getEntityCount() {
+		return this.entryCount;
+	}
+
+	/**
+	 * Checks if the given entity is in the index.
+	 *
+	 * @param entityId
+	 *            the id of the entity, such as "Q42"
+	 * @return true if the entity has been found in the dump
+	 */
+	public boolean contains(String entityId) {
+		return find(entityId) != null;
+	}
+
+	/**
+	 * Finds the position of the given entity in the dump.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @return the location, or null if the entity is not in the index
+	 */
+	Location find(String entityId) {
+		long key = getKey(entityId);
+		if (key < 0) {
+			return null;
+		}
+		int sample = Arrays.binarySearch(this.sampleKeys, key);
+		if (sample < 0) {
+			sample = -sample - 2;
+			if (sample < 0) {
+				return null;
+			}
+		}
+
+		int[] position = { this.samplePositions[sample] };
+		int end = Math.min(this.entryCount, (sample + 1) * SAMPLE_INTERVAL);
+		long currentKey = 0;
+		long blockIndex = 0;
+		long offset = 0;
+		for (int i = sample * SAMPLE_INTERVAL; i < end; i++) {
+			currentKey += readVarLong(this.entries, position);
+			blockIndex += unzigzag(readVarLong(this.entries, position));
+			offset += unzigzag(readVarLong(this.entries, position));
+			if (currentKey == key) {
+				return new Location(this.blockStarts[(int) blockIndex], offset);
+			} else if (currentKey > key) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number that entities are sorted by in the index: the letter
+	 * of the id in the highest byte, and the number in the remaining bytes.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @return the key, or -1 if the id does not have the expected form
+	 */
+	static long getKey(String entityId) {
+		if (entityId == null || entityId.length() < 2
+				|| entityId.length() > 17) {
+			return -1;
+		}
+		char letter = entityId.charAt(0);
+		if (letter < 'A' || letter > 'Z') {
+			return -1;
+		}
+		long number = 0;
+		for (int i = 1; i < entityId.length(); i++) {
+			char c = entityId.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			number = 10 * number + (c - '0');
+		}
+		if (number >= 1L << 56) {
+			return -1;
+		}
+		return ((long) letter << 56) | number;
+	}
+
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * Decodes a variable-length number.
+	 *
+	 * @param data
+	 *            the encoded data
+	 * @param position
+	 *            array that holds the position of the number, which is
+	 *            advanced to the position after it
+	 * @return the number
+	 */
+	static long readVarLong(byte[] data, int[] position) {
+		long result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = data[position[0]++];
+			result |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		return result;
+	}
+
+	/**
+	 * Collects the entries of an index and sorts and encodes them.
+	 */
+	static class Builder {
+		final CompressionType compressionType;
+
+		long[] blockStarts = new long[1024];
+		int blockCount = 0;
+
+		long[] keys = new long[1 << 16];
+		int[] blockIndexes = new int[1 << 16];
+		long[] offsets = new long[1 << 16];
+		int size = 0;
+
+		Builder(CompressionType compressionType) {
+			this.compressionType = compressionType;
+		}
+
+		/**
+		 * Adds an entity. Blocks must be added in increasing order.
+		 */
+		void add(long key, long blockStart, long offset) {
+			if (this.blockCount == 0
+					|| this.blockStarts[this.blockCount - 1] != blockStart) {
+				if (this.blockCount == this.blockStarts.length) {
+					this.blockStarts = Arrays.copyOf(this.blockStarts,
+							2 * this.blockCount);
+				}
+				this.blockStarts[this.blockCount++] = blockStart;
+			}
+			if (this.size == this.keys.length) {
+				this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+				this.blockIndexes = Arrays.copyOf(this.blockIndexes,
+						2 * this.size);
+				this.offsets = Arrays.copyOf(this.offsets, 2 * this.size);
+			}
+			this.keys[this.size] = key;
+			this.blockIndexes[this.size] = this.blockCount - 1;
+			this.offsets[this.size] = offset;
+			this.size++;
+		}
+
+		JsonDumpIndex build() throws IOException {
+			sort(0, this.size - 1);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int entryCount = 0;
+			long previousKey = 0;
+			long previousBlockIndex = 0;
+			long previousOffset = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (i > 0 && this.keys[i] == this.keys[i - 1]) {
+					// entries with equal keys are sorted by position
+					logger.warn("Entity with key " + this.keys[i]
+							+ " occurs more than once in the dump; using the first occurrence.");
+					continue;
+				}
+				if (entryCount % SAMPLE_INTERVAL == 0) {
+					previousKey = 0;
+					previousBlockIndex = 0;
+					previousOffset = 0;
+				}
+				writeVarLong(out, this.keys[i] - previousKey);
+				writeVarLong(out, zigzag(this.blockIndexes[i]
+						- previousBlockIndex));
+				writeVarLong(out, zigzag(this.offsets[i] - previousOffset));
+				previousKey = this.keys[i];
+				previousBlockIndex = this.blockIndexes[i];
+				previousOffset = this.offsets[i];
+				entryCount++;
+			}
+			return new JsonDumpIndex(this.compressionType, Arrays.copyOf(
+					this.blockStarts, this.blockCount), out.toByteArray(),
+					entryCount);
+		}
+
+		/**
+		 * Sorts the entries by key, and entries with equal keys by position.
+		 */
+		void sort(int from, int to) {
+			while (to - from > 16) {
+				int middle = (from + to) >>> 1;
+				// median of three as pivot
+				if (compare(middle, from) < 0) {
+					swap(middle, from);
+				}
+				if (compare(to, from) < 0) {
+					swap(to, from);
+				}
+				if (compare(to, middle) < 0) {
+					swap(to, middle);
+				}
+				swap(middle, to - 1);
+				int pivot = to - 1;
+				int i = from;
+				int j = to - 1;
+				while (true) {
+					while (compare(++i, pivot) < 0) {
+					}
+					while (compare(--j, pivot) > 0) {
+					}
+					if (i >= j) {
+						break;
+					}
+					swap(i, j);
+				}
+				swap(i, to - 1);
+				// recurse into the smaller part to limit the stack depth
+				if (i - from < to - i) {
+					sort(from, i - 1);
+					from = i + 1;
+				} else {
+					sort(i + 1, to);
+					to = i - 1;
+				}
+			}
+			for (int i = from + 1; i <= to; i++) {
+				for (int j = i; j > from && compare(j, j - 1) < 0; j--) {
+					swap(j, j - 1);
+				}
+			}
+		}
+
+		int compare(int i, int j) {
+			int result = Long.compare(this.keys[i], this.keys[j]);
+			if (result == 0) {
+				result = Integer.compare(this.blockIndexes[i],
+						this.blockIndexes[j]);
+			}
+			if (result == 0) {
+				result = Long.compare(this.offsets[i], this.offsets[j]);
+			}
+			return result;
+		}
+
+		void swap(int i, int j) {
+			long key = this.keys[i];
+			this.keys[i] = this.keys[j];
+			this.keys[j] = key;
+			int blockIndex = this.blockIndexes[i];
+			this.blockIndexes[i] = this.blockIndexes[j];
+			this.blockIndexes[j] = blockIndex;
+			long offset = this.offsets[i];
+			this.offsets[i] = this.offsets[j];
+			this.offsets[j] = offset;
+		}
+	}
+}
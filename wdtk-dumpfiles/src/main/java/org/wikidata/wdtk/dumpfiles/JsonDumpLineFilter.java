@@ -0,0 +1,432 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+
+/**
+ * Cheap filter for the lines of JSON dumps, which decides if an entity should
+ * be processed based on its entity type and id before the line is parsed.
+ * Only the top-level fields "type" and "id" of the raw UTF-8 bytes are
+ * inspected; nested objects are skipped without being looked at. Lines where
+ * these fields cannot be found are accepted, so that they are handled by the
+ * regular parser.
+ */
+class JsonDumpLineFilter {
+
+	/**
+	 * Map from entity type IRIs to the type names used in JSON.
+	 */
+	static final Map<String, String> JSON_ENTITY_TYPES = new HashMap<>();
+	static {
+		JSON_ENTITY_TYPES.put(EntityIdValue.ET_ITEM, "item");
+		JSON_ENTITY_TYPES.put(EntityIdValue.ET_PROPERTY, "property");
+		JSON_ENTITY_TYPES.put(EntityIdValue.ET_LEXEME, "lexeme");
+		JSON_ENTITY_TYPES.put(EntityIdValue.ET_MEDIA_INFO, "mediainfo");
+	}
+
+	private static final byte[] TYPE_KEY = "type".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] ID_KEY = "id".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] LASTREVID_KEY = "lastrevid"
+			.getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Range of entity ids with the same prefix, such as Q100 to Q199.
+	 */
+	static class IdRange {
+		final byte[] prefix;
+		final long first;
+		final long last;
+
+		IdRange(String firstId, String lastId) {
+			int prefixLength = getPrefixLength(firstId);
+			String prefix = firstId.substring(0, prefixLength);
+			if (prefixLength == 0 || prefixLength == firstId.length()
+					|| getPrefixLength(lastId) != prefixLength
+					|| prefixLength == lastId.length()
+					|| !lastId.startsWith(prefix)) {
+				throw new IllegalArgumentException("Invalid id range "
+						+ firstId + " to " + lastId);
+			}
+			this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+			this.first = Long.parseLong(firstId.substring(prefixLength));
+			this.last = Long.parseLong(lastId.substring(prefixLength));
+			if (this.first > this.last) {
+				throw new IllegalArgumentException("Invalid id range "
+						+ firstId + " to " + lastId);
+			}
+		}
+
+		private static int getPrefixLength(String id) {
+			int i = 0;
+			while (i < id.length() && !Character.isDigit(id.charAt(i))) {
+				i++;
+			}
+			return i;
+		}
+
+		boolean contains(byte[] buffer, int offset, int length) {
+			if (length <= this.prefix.length
+					|| !regionEquals(buffer, offset, this.prefix.length, this.prefix)) {
+				return false;
+			}
+			long number = 0;
+			for (int i = offset + this.prefix.length; i < offset + length; i++) {
+				int digit = buffer[i] - '0';
+				if (digit < 0 || digit > 9 || number > Long.MAX_VALUE / 10) {
+					return false;
+				}
+				number = number * 10 + digit;
+			}
+			return number >= this.first && number <= this.last;
+		}
+	}
+
+	/**
+	 * JSON type names of the entities to accept, or null if all types are
+	 * accepted.
+	 */
+	private byte[][] entityTypes = null;
+
+	/**
+	 * Ranges of the entity ids to accept. If empty, all ids are accepted.
+	 */
+	private final List<IdRange> idRanges = new ArrayList<>();
+
+	/**
+	 * Sets the entity types that should be accepted.
+	 *
+	 * @param entityTypes
+	 *            IRIs of entity types, such as {@link EntityIdValue#ET_ITEM},
+	 *            or null to accept all types
+	 * @throws IllegalArgumentException
+	 *             if one of the types cannot occur in JSON dumps
+	 */
+	void setEntityTypes(Set<String> entityTypes) {
+		if (entityTypes == null) {
+			this.entityTypes = null;
+			return;
+		}
+		byte[][] result = new byte[entityTypes.size()][];
+		int i = 0;
+		for (String entityType : entityTypes) {
+			String jsonType = JSON_ENTITY_TYPES.get(entityType);
+			if (jsonType == null) {
+				throw new IllegalArgumentException(
+						"Unsupported entity type for filtering: " + entityType);
+			}
+			result[i++] = jsonType.getBytes(StandardCharsets.UTF_8);
+		}
+		this.entityTypes = result;
+	}
+
+	/**
+	 * Adds a range of entity ids that should be accepted. Once a range has been
+	 * added, only entities with ids in one of the ranges are accepted.
+	 *
+	 * @param firstId
+	 *            the first id of the range, such as "Q100"
+	 * @param lastId
+	 *            the last id of the range, such as "Q199"; it must use the
+	 *            same prefix as the first id
+	 * @throws IllegalArgumentException
+	 *             if the ids do not form a valid range
+	 */
+	void addIdRange(String firstId, String lastId) {
+		this.idRanges.add(new IdRange(firstId, lastId));
+	}
+
+	/**
+	 * Returns true if this filter accepts all lines.
+	 *
+	 * @return true if neither types nor id ranges are restricted
+	 */
+	boolean isTrivial() {
+		return this.entityTypes == null && this.idRanges.isEmpty();
+	}
+
+	/**
+	 * Checks if the entity serialized in the given line should be processed.
+	 *
+	 * @param buffer
+	 *            the buffer that holds the line
+	 * @param offset
+	 *            the start of the line in the buffer
+	 * @param length
+	 *            the length of the line in bytes
+	 * @return false if the line is known to contain an entity that is not
+	 *         accepted by this filter
+	 */
+	boolean accept(byte[] buffer, int offset, int length) {
+		boolean needType = this.entityTypes != null;
+		boolean needId = !this.idRanges.isEmpty();
+		int end = offset + length;
+		int depth = 0;
+		boolean expectKey = false;
+
+		int i = offset;
+		while (i < end && (needType || needId)) {
+			byte b = buffer[i];
+			if (b == '"') {
+				int keyStart = i + 1;
+				int keyEnd = skipString(buffer, keyStart, end);
+				if (keyEnd < 0) {
+					return true;
+				}
+				i = keyEnd + 1;
+				if (depth != 1 || !expectKey) {
+					continue;
+				}
+				expectKey = false;
+				int keyLength = keyEnd - keyStart;
+				boolean isType = needType
+						&& regionEquals(buffer, keyStart, keyLength, TYPE_KEY);
+				boolean isId = !isType && needId
+						&& regionEquals(buffer, keyStart, keyLength, ID_KEY);
+				if (!isType && !isId) {
+					continue;
+				}
+				int valueStart = skipWhitespace(buffer, i, end);
+				if (valueStart >= end || buffer[valueStart] != ':') {
+					continue;
+				}
+				valueStart = skipWhitespace(buffer, valueStart + 1, end);
+				if (valueStart >= end || buffer[valueStart] != '"') {
+					continue;
+				}
+				valueStart++;
+				int valueEnd = skipString(buffer, valueStart, end);
+				if (valueEnd < 0) {
+					return true;
+				}
+				if (isType) {
+					if (!acceptType(buffer, valueStart, valueEnd - valueStart)) {
+						return false;
+					}
+					needType = false;
+				} else {
+					if (!acceptId(buffer, valueStart, valueEnd - valueStart)) {
+						return false;
+					}
+					needId = false;
+				}
+				i = valueEnd + 1;
+			} else {
+				if (b == '{') {
+					depth++;
+					expectKey = true;
+				} else if (b == '[') {
+					depth++;
+				} else if (b == '}' || b == ']') {
+					depth--;
+				} else if (b == ',') {
+					expectKey = true;
+				}
+				i++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the id of the entity serialized in the given line, looking only
+	 * at the top-level field "id".
+	 *
+	 * @param buffer
+	 *            the buffer that holds the line
+	 * @param offset
+	 *            the start of the line in the buffer
+	 * @param length
+	 *            the length of the line in bytes
+	 * @return the entity id, or null if it was not found
+	 */
+	static String findEntityId(byte[] buffer, int offset, int length) {
+		int end = offset + length;
+		int valueStart = findTopLevelValue(buffer, offset, end, ID_KEY);
+		if (valueStart < 0 || buffer[valueStart] != '"') {
+			return null;
+		}
+		valueStart++;
+		int valueEnd = skipString(buffer, valueStart, end);
+		if (valueEnd < 0) {
+			return null;
+		}
+		return new String(buffer, valueStart, valueEnd - valueStart,
+				StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Finds the id of the last revision of the entity serialized in the given
+	 * line, looking only at the top-level field "lastrevid".
+	 *
+	 * @param buffer
+	 *            the buffer that holds the line
+	 * @param offset
+	 *            the start of the line in the buffer
+	 * @param length
+	 *            the length of the line in bytes
+	 * @return the revision id, or -1 if it was not found
+	 */
+	static long findLastRevisionId(byte[] buffer, int offset, int length) {
+		int end = offset + length;
+		int i = findTopLevelValue(buffer, offset, end, LASTREVID_KEY);
+		if (i < 0 || buffer[i] < '0' || buffer[i] > '9') {
+			return -1;
+		}
+		long result = 0;
+		while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+			if (result > (Long.MAX_VALUE - 9) / 10) {
+				return -1;
+			}
+			result = 10 * result + (buffer[i] - '0');
+			i++;
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the value of the given field of the top-level object in a line.
+	 *
+	 * @param buffer
+	 *            the buffer that holds the line
+	 * @param offset
+	 *            the start of the line in the buffer
+	 * @param end
+	 *            the end of the line in the buffer (exclusive)
+	 * @param key
+	 *            the UTF-8 encoded name of the field
+	 * @return the position of the first byte of the value, or -1 if the field
+	 *         was not found
+	 */
+	static int findTopLevelValue(byte[] buffer, int offset, int end,
+			byte[] key) {
+		int depth = 0;
+		boolean expectKey = false;
+
+		int i = offset;
+		while (i < end) {
+			byte b = buffer[i];
+			if (b == '"') {
+				int keyStart = i + 1;
+				int keyEnd = skipString(buffer, keyStart, end);
+				if (keyEnd < 0) {
+					return -1;
+				}
+				i = keyEnd + 1;
+				if (depth != 1 || !expectKey) {
+					continue;
+				}
+				expectKey = false;
+				if (!regionEquals(buffer, keyStart, keyEnd - keyStart, key)) {
+					continue;
+				}
+				int valueStart = skipWhitespace(buffer, i, end);
+				if (valueStart >= end || buffer[valueStart] != ':') {
+					continue;
+				}
+				valueStart = skipWhitespace(buffer, valueStart + 1, end);
+				return valueStart < end ? valueStart : -1;
+			} else {
+				if (b == '{') {
+					depth++;
+					expectKey = true;
+				} else if (b == '[') {
+					depth++;
+				} else if (b == '}' || b == ']') {
+					depth--;
+				} else if (b == ',') {
+					expectKey = true;
+				}
+				i++;
+			}
+		}
+		return -1;
+	}
+
+	private boolean acceptType(byte[] buffer, int offset, int length) {
+		for (byte[] entityType : this.entityTypes) {
+			if (regionEquals(buffer, offset, length, entityType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean acceptId(byte[] buffer, int offset, int length) {
+		for (IdRange idRange : this.idRanges) {
+			if (idRange.contains(buffer, offset, length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the closing quote of a JSON string.
+	 *
+	 * @param buffer
+	 *            the buffer to search
+	 * @param start
+	 *            the position after the opening quote
+	 * @param end
+	 *            the end of the region to search
+	 * @return position of the closing quote, or -1 if there is none
+	 */
+	static int skipString(byte[] buffer, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (buffer[i] == '\\') {
+				i++;
+			} else if (buffer[i] == '"') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	static int skipWhitespace(byte[] buffer, int start, int end) {
+		int i = start;
+		while (i < end && (buffer[i] == ' ' || buffer[i] == '\t'
+				|| buffer[i] == '\n' || buffer[i] == '\r')) {
+			i++;
+		}
+		return i;
+	}
+
+	static boolean regionEquals(byte[] buffer, int offset, int length,
+			byte[] expected) {
+		if (length != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buffer[offset + i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
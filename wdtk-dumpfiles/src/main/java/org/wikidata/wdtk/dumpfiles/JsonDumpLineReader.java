@@ -0,0 +1,218 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits the contents of a JSON dump into lines without decoding them into
+ * strings. The data is read into a reusable byte buffer, and each line is made
+ * available as a range of this buffer, which can be passed to Jackson
+ * directly. The buffer grows if a line does not fit into it. Line breaks may
+ * be given as "\n" or "\r\n"; they are not part of the line.
+ * <p>
+ * The range of the current line is only valid until the next call of
+ * {@link #nextLine()}.
+ */
+class JsonDumpLineReader {
+
+	static final int INITIAL_BUFFER_SIZE = 1 << 20;
+
+	final InputStream inputStream;
+
+	byte[] buffer;
+	/**
+	 * Number of bytes in the buffer that hold data.
+	 */
+	int bufferLength = 0;
+	/**
+	 * Start of the current line in the buffer.
+	 */
+	int lineStart = 0;
+	/**
+	 * End of the current line in the buffer (exclusive, without line break).
+	 */
+	int lineEnd = 0;
+	/**
+	 * Start of the next line in the buffer.
+	 */
+	int nextLineStart = 0;
+	/**
+	 * Position of the first byte of the buffer in the input stream.
+	 */
+	long bufferPosition = 0;
+	/**
+	 * True if the input stream has been read completely.
+	 */
+	boolean endOfInput = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param inputStream
+	 *            the stream to read from
+	 */
+	JsonDumpLineReader(InputStream inputStream) {
+		this(inputStream, INITIAL_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param inputStream
+	 *            the stream to read from
+	 * @param initialBufferSize
+	 *            initial size of the buffer in bytes
+	 */
+	JsonDumpLineReader(InputStream inputStream, int initialBufferSize) {
+		this.inputStream = inputStream;
+		this.buffer = new byte[Math.max(16, initialBufferSize)];
+	}
+
+	/**
+	 * Advances to the next line.
+	 *
+	 * @return false if there are no more lines
+	 * @throws IOException
+	 *             if there was a problem reading the input
+	 */
+	boolean nextLine() throws IOException {
+		this.lineStart = this.nextLineStart;
+		int scanPosition = this.lineStart;
+		while (true) {
+			for (int i = scanPosition; i < this.bufferLength; i++) {
+				if (this.buffer[i] == '\n') {
+					this.nextLineStart = i + 1;
+					setLineEnd(i);
+					return true;
+				}
+			}
+			scanPosition = this.bufferLength;
+
+			if (this.endOfInput) {
+				if (this.lineStart < this.bufferLength) {
+					this.nextLineStart = this.bufferLength;
+					setLineEnd(this.bufferLength);
+					return true;
+				}
+				return false;
+			}
+
+			scanPosition -= this.lineStart;
+			fillBuffer();
+		}
+	}
+
+	/**
+	 * Returns the buffer that holds the current line.
+	 *
+	 * @return the buffer
+	 */
+	byte[] getBuffer() {
+		return this.buffer;
+	}
+
+	/**
+	 * Returns the position of the current line in the buffer.
+	 *
+	 * @return start offset of the line
+	 */
+	int getOffset() {
+		return this.lineStart;
+	}
+
+	/**
+	 * Returns the length of the current line in bytes, without the line
+	 * break.
+	 *
+	 * @return length of the line
+	 */
+	int getLength() {
+		return this.lineEnd - this.lineStart;
+	}
+
+	/**
+	 * Returns the position in the input stream where the current line starts.
+	 *
+	 * @return the position in bytes
+	 */
+	long getLinePosition() {
+		return this.bufferPosition + this.lineStart;
+	}
+
+	/**
+	 * Returns the position in the input stream where the line after the
+	 * current line starts.
+	 *
+	 * @return the position in bytes
+	 */
+	long getNextLinePosition() {
+		return this.bufferPosition + this.nextLineStart;
+	}
+
+	/**
+	 * Returns the current line as a string. Only used for log messages.
+	 *
+	 * @return the current line
+	 */
+	String getLineString() {
+		return new String(this.buffer, this.lineStart, getLength(),
+				StandardCharsets.UTF_8);
+	}
+
+	void setLineEnd(int end) {
+		if (end > this.lineStart && this.buffer[end - 1] == '\r') {
+			end--;
+		}
+		this.lineEnd = end;
+	}
+
+	/**
+	 * Moves the current (incomplete) line to the beginning of the buffer and
+	 * reads more data after it, growing the buffer if it is full.
+	 *
+	 * @throws IOException
+	 *             if there was a problem reading the input
+	 */
+	void fillBuffer() throws IOException {
+		int remaining = this.bufferLength - this.lineStart;
+		if (this.lineStart > 0) {
+			System.arraycopy(this.buffer, this.lineStart, this.buffer, 0,
+					remaining);
+			this.bufferPosition += this.lineStart;
+			this.lineStart = 0;
+			this.bufferLength = remaining;
+		}
+		if (this.bufferLength == this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+		}
+		int count = this.inputStream.read(this.buffer, this.bufferLength,
+				this.buffer.length - this.bufferLength);
+		if (count == -1) {
+			this.endOfInput = true;
+		} else {
+			this.bufferLength += count;
+		}
+	}
+}
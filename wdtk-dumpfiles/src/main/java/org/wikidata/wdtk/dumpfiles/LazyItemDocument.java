@@ -0,0 +1,511 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DocumentDataTokenFilter;
+import org.wikidata.wdtk.datamodel.helpers.Equality;
+import org.wikidata.wdtk.datamodel.helpers.Hash;
+import org.wikidata.wdtk.datamodel.helpers.ToString;
+import org.wikidata.wdtk.datamodel.implementation.ItemDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.SiteLink;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * {@link ItemDocument} that keeps the JSON serialization of an item from a
+ * dump and only deserializes its sections when they are accessed. When the
+ * document is created, a structural scan of the bytes finds the id, the
+ * revision id and the ranges of the top-level fields "labels",
+ * "descriptions", "aliases", "claims" and "sitelinks". Each of these is
+ * parsed on the first call of the corresponding getter, and the result is
+ * kept for later calls. Processors that only look at some sections of each
+ * item thus avoid building objects for all the others.
+ * <p>
+ * Documents may be passed to other threads. Sections are then parsed at most
+ * a few times if they are accessed concurrently, which is harmless. Since
+ * parsing is delayed, errors in the JSON of a section are only found when it
+ * is accessed; the getter then throws a {@link RuntimeException}.
+ */
+class LazyItemDocument implements ItemDocument {
+
+	static final int LABELS = 0;
+	static final int DESCRIPTIONS = 1;
+	static final int ALIASES = 2;
+	static final int CLAIMS = 3;
+	static final int SITELINKS = 4;
+
+	/**
+	 * UTF-8 encoded names of the sections, indexed by the constants above.
+	 */
+	private static final byte[][] SECTION_KEYS = { bytes("labels"),
+			bytes("descriptions"), bytes("aliases"), bytes("claims"),
+			bytes("sitelinks") };
+
+	private static final byte[] TYPE_KEY = bytes("type");
+	private static final byte[] ID_KEY = bytes("id");
+	private static final byte[] LASTREVID_KEY = bytes("lastrevid");
+	private static final byte[] ITEM_TYPE = bytes("\"item\"");
+
+	private final ItemIdValue itemId;
+
+	private final long revisionId;
+
+	/**
+	 * Copy of the serialization of the document.
+	 */
+	private final byte[] json;
+
+	/**
+	 * Positions of the sections in {@link #json}. For each section, the field
+	 * including its name starts at {@code sectionStarts[section]} and ends at
+	 * {@code sectionEnds[section]} (exclusive). The start is -1 for sections
+	 * that do not occur.
+	 */
+	private final int[] sectionStarts;
+	private final int[] sectionEnds;
+
+	/**
+	 * Reader and filter that are used for parsing sections.
+	 */
+	private final ObjectReader documentReader;
+	private final DocumentDataTokenFilter tokenFilter;
+
+	/**
+	 * Documents that only hold the data of one section each, once the section
+	 * has been parsed.
+	 */
+	private final AtomicReferenceArray<ItemDocumentImpl> parsedSections = new AtomicReferenceArray<>(
+			SECTION_KEYS.length);
+
+	private LazyItemDocument(ItemIdValue itemId, long revisionId,
+			byte[] json, int[] sectionStarts, int[] sectionEnds,
+			ObjectReader documentReader, DocumentDataTokenFilter tokenFilter) {
+		this.itemId = itemId;
+		this.revisionId = revisionId;
+		this.json = json;
+		this.sectionStarts = sectionStarts;
+		this.sectionEnds = sectionEnds;
+		this.documentReader = documentReader;
+		this.tokenFilter = tokenFilter;
+	}
+
+	/**
+	 * Creates a lazy document for the item that is serialized in the given
+	 * line of a JSON dump. The line is copied, so the buffer may be reused
+	 * afterwards. If the line does not contain an item, or if its top-level
+	 * structure is not as expected, null is returned, and the line should be
+	 * parsed in the usual way instead.
+	 *
+	 * @param buffer
+	 *            the buffer that holds the line
+	 * @param offset
+	 *            the start of the line in the buffer
+	 * @param length
+	 *            the length of the line in bytes, without trailing comma
+	 * @param documentReader
+	 *            the reader that is used to parse the sections, which must
+	 *            read {@link org.wikidata.wdtk.datamodel.interfaces.EntityDocument}
+	 *            objects
+	 * @param tokenFilter
+	 *            the filter that is applied to the sections when parsing, or
+	 *            null if all data is kept
+	 * @param siteIri
+	 *            the IRI of the site that the data comes from
+	 * @return the document, or null if the line cannot be read lazily
+	 */
+	static LazyItemDocument create(byte[] buffer, int offset, int length,
+			ObjectReader documentReader, DocumentDataTokenFilter tokenFilter,
+			String siteIri) {
+		int end = offset + length;
+		int[] sectionStarts = new int[SECTION_KEYS.length];
+		int[] sectionEnds = new int[SECTION_KEYS.length];
+		Arrays.fill(sectionStarts, -1);
+		boolean isItem = false;
+		String id = null;
+		long revisionId = 0;
+
+		int i = JsonDumpLineFilter.skipWhitespace(buffer, offset, end);
+		if (i >= end || buffer[i] != '{') {
+			return null;
+		}
+		i = JsonDumpLineFilter.skipWhitespace(buffer, i + 1, end);
+		if (i < end && buffer[i] == '}') {
+			return null;
+		}
+		while (true) {
+			if (i >= end || buffer[i] != '"') {
+				return null;
+			}
+			int fieldStart = i;
+			int keyEnd = JsonDumpLineFilter.skipString(buffer, i + 1, end);
+			if (keyEnd < 0) {
+				return null;
+			}
+			i = JsonDumpLineFilter.skipWhitespace(buffer, keyEnd + 1, end);
+			if (i >= end || buffer[i] != ':') {
+				return null;
+			}
+			int valueStart = JsonDumpLineFilter.skipWhitespace(buffer, i + 1,
+					end);
+			int valueEnd = skipValue(buffer, valueStart, end);
+			if (valueEnd < 0) {
+				return null;
+			}
+
+			int keyStart = fieldStart + 1;
+			int keyLength = keyEnd - keyStart;
+			if (JsonDumpLineFilter.regionEquals(buffer, keyStart, keyLength,
+					TYPE_KEY)) {
+				isItem = JsonDumpLineFilter.regionEquals(buffer, valueStart,
+						valueEnd - valueStart, ITEM_TYPE);
+			} else if (JsonDumpLineFilter.regionEquals(buffer, keyStart,
+					keyLength, ID_KEY)) {
+				id = readId(buffer, valueStart, valueEnd);
+			} else if (JsonDumpLineFilter.regionEquals(buffer, keyStart,
+					keyLength, LASTREVID_KEY)) {
+				revisionId = readNumber(buffer, valueStart, valueEnd);
+			} else {
+				for (int section = 0; section < SECTION_KEYS.length; section++) {
+					if (JsonDumpLineFilter.regionEquals(buffer, keyStart,
+							keyLength, SECTION_KEYS[section])) {
+						sectionStarts[section] = fieldStart - offset;
+						sectionEnds[section] = valueEnd - offset;
+						break;
+					}
+				}
+			}
+
+			i = JsonDumpLineFilter.skipWhitespace(buffer, valueEnd, end);
+			if (i < end && buffer[i] == ',') {
+				i = JsonDumpLineFilter.skipWhitespace(buffer, i + 1, end);
+			} else if (i < end && buffer[i] == '}') {
+				break;
+			} else {
+				return null;
+			}
+		}
+
+		if (!isItem || id == null || revisionId < 0) {
+			return null;
+		}
+		ItemIdValue itemId;
+		try {
+			itemId = Datamodel.makeItemIdValue(id, siteIri);
+		} catch (IllegalArgumentException e) {
+			// let the usual parser report the error
+			return null;
+		}
+		return new LazyItemDocument(itemId, revisionId,
+				Arrays.copyOfRange(buffer, offset, end), sectionStarts,
+				sectionEnds, documentReader, tokenFilter);
+	}
+
+	/**
+	 * Checks if the given section has been parsed already. Only used for
+	 * testing.
+	 *
+	 * @param section
+	 *            one of the section constants of this class
+	 * @return true if the section has been parsed
+	 */
+	boolean isParsed(int section) {
+		return this.parsedSections.get(section) != null;
+	}
+
+	@Override
+	public ItemIdValue getEntityId() {
+		return this.itemId;
+	}
+
+	@Override
+	public long getRevisionId() {
+		return this.revisionId;
+	}
+
+	@Override
+	public Map<String, MonolingualTextValue> getLabels() {
+		ItemDocumentImpl section = getSection(LABELS);
+		return section == null ? Collections.emptyMap() : section.getLabels();
+	}
+
+	@Override
+	public Map<String, MonolingualTextValue> getDescriptions() {
+		ItemDocumentImpl section = getSection(DESCRIPTIONS);
+		return section == null ? Collections.emptyMap()
+				: section.getDescriptions();
+	}
+
+	@Override
+	public Map<String, List<MonolingualTextValue>> getAliases() {
+		ItemDocumentImpl section = getSection(ALIASES);
+		return section == null ? Collections.emptyMap() : section.getAliases();
+	}
+
+	@Override
+	public List<StatementGroup> getStatementGroups() {
+		ItemDocumentImpl section = getSection(CLAIMS);
+		return section == null ? Collections.emptyList()
+				: section.getStatementGroups();
+	}
+
+	@Override
+	public StatementGroup findStatementGroup(String propertyId) {
+		ItemDocumentImpl section = getSection(CLAIMS);
+		return section == null ? null : section.findStatementGroup(propertyId);
+	}
+
+	@Override
+	public Map<String, SiteLink> getSiteLinks() {
+		ItemDocumentImpl section = getSection(SITELINKS);
+		return section == null ? Collections.emptyMap()
+				: section.getSiteLinks();
+	}
+
+	/**
+	 * Returns a copy of this document that holds all of its data. This is
+	 * also used for serializing the document.
+	 *
+	 * @return a document with the same content
+	 */
+	@JsonValue
+	public ItemDocumentImpl toItemDocumentImpl() {
+		List<MonolingualTextValue> aliasList = new ArrayList<>();
+		for (List<MonolingualTextValue> languageAliases : getAliases()
+				.values()) {
+			aliasList.addAll(languageAliases);
+		}
+		return new ItemDocumentImpl(this.itemId,
+				new ArrayList<>(getLabels().values()),
+				new ArrayList<>(getDescriptions().values()), aliasList,
+				getStatementGroups(), new ArrayList<>(getSiteLinks().values()),
+				this.revisionId);
+	}
+
+	@Override
+	public ItemDocument withEntityId(ItemIdValue newEntityId) {
+		return toItemDocumentImpl().withEntityId(newEntityId);
+	}
+
+	@Override
+	public ItemDocument withRevisionId(long newRevisionId) {
+		return toItemDocumentImpl().withRevisionId(newRevisionId);
+	}
+
+	@Override
+	public ItemDocument withLabel(MonolingualTextValue newLabel) {
+		return toItemDocumentImpl().withLabel(newLabel);
+	}
+
+	@Override
+	public ItemDocument withDescription(MonolingualTextValue newDescription) {
+		return toItemDocumentImpl().withDescription(newDescription);
+	}
+
+	@Override
+	public ItemDocument withAliases(String language,
+			List<MonolingualTextValue> aliases) {
+		return toItemDocumentImpl().withAliases(language, aliases);
+	}
+
+	@Override
+	public ItemDocument withStatement(Statement statement) {
+		return toItemDocumentImpl().withStatement(statement);
+	}
+
+	@Override
+	public ItemDocument withoutStatementIds(Set<String> statementIds) {
+		return toItemDocumentImpl().withoutStatementIds(statementIds);
+	}
+
+	@Override
+	public int hashCode() {
+		return Hash.hashCode(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return Equality.equalsItemDocument(this, obj);
+	}
+
+	@Override
+	public String toString() {
+		return ToString.toString(this);
+	}
+
+	/**
+	 * Returns a document that holds the data of the given section, parsing
+	 * the section if this has not been done yet.
+	 *
+	 * @param section
+	 *            one of the section constants of this class
+	 * @return the document, or null if the section does not occur
+	 */
+	private ItemDocumentImpl getSection(int section) {
+		ItemDocumentImpl result = this.parsedSections.get(section);
+		if (result == null && this.sectionStarts[section] >= 0) {
+			result = parseSection(section);
+			this.parsedSections.set(section, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Parses one section of the document. The section is read as part of a
+	 * document that only consists of the type, the id and this section, so
+	 * that it is deserialized exactly like the full document would be.
+	 *
+	 * @param section
+	 *            one of the section constants of this class
+	 * @return a document that holds the data of the section
+	 */
+	private ItemDocumentImpl parseSection(int section) {
+		byte[] prefix = bytes("{\"type\":\"item\",\"id\":\""
+				+ this.itemId.getId() + "\",");
+		int start = this.sectionStarts[section];
+		int length = this.sectionEnds[section] - start;
+		byte[] document = new byte[prefix.length + length + 1];
+		System.arraycopy(prefix, 0, document, 0, prefix.length);
+		System.arraycopy(this.json, start, document, prefix.length, length);
+		document[document.length - 1] = '}';
+		try {
+			if (this.tokenFilter == null) {
+				return this.documentReader.readValue(document);
+			}
+			try (JsonParser parser = this.tokenFilter.filter(
+					this.documentReader.createParser(document))) {
+				return this.documentReader.readValue(parser);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read JSON for entity "
+					+ this.itemId.getId() + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Finds the end of the JSON value that starts at the given position.
+	 *
+	 * @param buffer
+	 *            the buffer to search
+	 * @param start
+	 *            the first byte of the value
+	 * @param end
+	 *            the end of the region to search
+	 * @return the position after the value, or -1 if it does not end in the
+	 *         region
+	 */
+	private static int skipValue(byte[] buffer, int start, int end) {
+		if (start >= end) {
+			return -1;
+		}
+		byte b = buffer[start];
+		if (b == '"') {
+			int stringEnd = JsonDumpLineFilter.skipString(buffer, start + 1,
+					end);
+			return stringEnd < 0 ? -1 : stringEnd + 1;
+		} else if (b == '{' || b == '[') {
+			int depth = 0;
+			for (int i = start; i < end; i++) {
+				b = buffer[i];
+				if (b == '"') {
+					i = JsonDumpLineFilter.skipString(buffer, i + 1, end);
+					if (i < 0) {
+						return -1;
+					}
+				} else if (b == '{' || b == '[') {
+					depth++;
+				} else if (b == '}' || b == ']') {
+					depth--;
+					if (depth == 0) {
+						return i + 1;
+					}
+				}
+			}
+			return -1;
+		} else {
+			int i = start;
+			while (i < end && buffer[i] != ',' && buffer[i] != '}'
+					&& buffer[i] != ']' && buffer[i] != ' '
+					&& buffer[i] != '\t' && buffer[i] != '\n'
+					&& buffer[i] != '\r') {
+				i++;
+			}
+			return i > start ? i : -1;
+		}
+	}
+
+	/**
+	 * Reads the string value of the "id" field, which must not contain any
+	 * escape sequences.
+	 *
+	 * @return the id, or null if the value is not a simple string
+	 */
+	private static String readId(byte[] buffer, int valueStart, int valueEnd) {
+		if (buffer[valueStart] != '"') {
+			return null;
+		}
+		for (int i = valueStart + 1; i < valueEnd - 1; i++) {
+			if (buffer[i] == '\\') {
+				return null;
+			}
+		}
+		return new String(buffer, valueStart + 1, valueEnd - valueStart - 2,
+				StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the non-negative number value of the "lastrevid" field.
+	 *
+	 * @return the number, or -1 if the value is not a plain number
+	 */
+	private static long readNumber(byte[] buffer, int valueStart, int valueEnd) {
+		long result = 0;
+		for (int i = valueStart; i < valueEnd; i++) {
+			if (buffer[i] < '0' || buffer[i] > '9'
+					|| result > (Long.MAX_VALUE - 9) / 10) {
+				return -1;
+			}
+			result = 10 * result + (buffer[i] - '0');
+		}
+		return result;
+	}
+
+	private static byte[] bytes(String string) {
+		return string.getBytes(StandardCharsets.UTF_8);
+	}
+}
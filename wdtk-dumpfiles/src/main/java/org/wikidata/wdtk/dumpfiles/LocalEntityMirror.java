@@ -0,0 +1,682 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFileManager;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManagerFactory;
+
+/**
+ * Local copy of the current JSON of all entities that is kept up to date
+ * with the incremental daily dumps, so that the latest data can be processed
+ * without downloading and decompressing a complete dump every day.
+ * <p>
+ * The mirror is a directory that holds a snapshot in the format of JSON dumps
+ * (uncompressed, one entity per line), a {@link JsonDumpIndex} for reading
+ * single entities from it, and the date of the last dump that has been
+ * applied. It is created from a JSON dump with
+ * {@link #initialize(MwDumpFile)}. Daily dumps ({@link DumpContentType#DAILY})
+ * that are newer than the mirror are then applied with {@link #update}:
+ * <ul>
+ * <li>for every entity, only the newest revision in the daily dumps is used,
+ * and only if it is newer than the "lastrevid" of the entity in the snapshot;
+ * </li>
+ * <li>entities that became redirects are removed, as in JSON dumps;</li>
+ * <li>revisions whose text is not available (hidden revisions) are ignored.
+ * </li>
+ * </ul>
+ * Daily dumps do not list deleted pages, so the ids of deleted entities, if
+ * known from elsewhere, can be given to {@link #update} explicitly.
+ * <p>
+ * The texts of the new revisions are spooled to a temporary file while the
+ * daily dumps are read, so that only their ids and positions are kept in
+ * memory. Applying them rewrites the snapshot and its index in a single
+ * sequential pass. The snapshot can be processed like any local JSON dump
+ * using {@link #getSnapshotDumpFile()}, and single entities can be read with
+ * {@link #getEntityLookup()}.
+ * <p>
+ * This class is not thread-safe, and a mirror directory must only be updated
+ * by one process at a time.
+ */
+public class LocalEntityMirror {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(LocalEntityMirror.class);
+
+	/**
+	 * Name of the file that holds the snapshot of the entities.
+	 */
+	public static final String SNAPSHOT_FILE_NAME = "entities.json";
+	/**
+	 * Name of the file that holds the index of the snapshot.
+	 */
+	public static final String INDEX_FILE_NAME = "entities.json.index";
+
+	static final String STATE_FILE_NAME = "mirror.properties";
+	static final String UPDATES_FILE_NAME = "updates.tmp";
+	static final String PROPERTY_PROJECT_NAME = "projectName";
+	static final String PROPERTY_DATE_STAMP = "dateStamp";
+
+	static final byte[] SNAPSHOT_START = "[\n".getBytes(StandardCharsets.UTF_8);
+	static final byte[] SNAPSHOT_SEPARATOR = ",\n"
+			.getBytes(StandardCharsets.UTF_8);
+	static final byte[] SNAPSHOT_END = "\n]\n".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Newest revision of an entity that was found in the daily dumps.
+	 */
+	static class EntityUpdate {
+		final long revisionId;
+		/**
+		 * Position of the JSON of the revision in the updates file, or -1 if
+		 * the entity is to be removed.
+		 */
+		final long position;
+		final int length;
+
+		EntityUpdate(long revisionId, long position, int length) {
+			this.revisionId = revisionId;
+			this.position = position;
+			this.length = length;
+		}
+
+		boolean isRemoval() {
+			return this.position < 0;
+		}
+	}
+
+	/**
+	 * Revision processor that finds the newest revision of each entity and
+	 * writes its JSON to the updates file.
+	 */
+	static class UpdateCollector implements MwRevisionProcessor {
+
+		final Map<String, EntityUpdate> updates;
+		final OutputStream out;
+		long position = 0;
+
+		UpdateCollector(Map<String, EntityUpdate> updates, OutputStream out) {
+			this.updates = updates;
+			this.out = out;
+		}
+
+		@Override
+		public void startRevisionProcessing(String siteName, String baseUrl,
+				Map<Integer, String> namespaces) {
+			// nothing to do
+		}
+
+		@Override
+		public void processRevision(MwRevision mwRevision) {
+			String model = mwRevision.getModel();
+			if (!MwRevision.MODEL_WIKIBASE_ITEM.equals(model)
+					&& !MwRevision.MODEL_WIKIBASE_PROPERTY.equals(model)
+					&& !MwRevision.MODEL_WIKIBASE_LEXEME.equals(model)) {
+				return;
+			}
+			String text = mwRevision.getText();
+			if (text == null || text.isEmpty()) {
+				return; // hidden revision
+			}
+			String entityId = mwRevision.getTitle();
+			long revisionId = mwRevision.getRevisionId();
+			EntityUpdate previous = this.updates.get(entityId);
+			if (previous != null && previous.revisionId >= revisionId) {
+				return;
+			}
+
+			// A quoted key followed by a colon cannot occur within a JSON
+			// string, so this only matches the key of redirects.
+			if (text.contains("\"redirect\":")) {
+				this.updates.put(entityId, new EntityUpdate(revisionId, -1, 0));
+				return;
+			}
+			byte[] json = getSnapshotLine(text, revisionId);
+			try {
+				this.out.write(json);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.updates.put(entityId, new EntityUpdate(revisionId,
+					this.position, json.length));
+			this.position += json.length;
+		}
+
+		@Override
+		public void finishRevisionProcessing() {
+			// nothing to do
+		}
+	}
+
+	/**
+	 * Writes a snapshot file and builds its index.
+	 */
+	static class SnapshotWriter implements Closeable {
+
+		final OutputStream out;
+		final JsonDumpIndex.Builder indexBuilder = new JsonDumpIndex.Builder(
+				CompressionType.NONE);
+		long position = 0;
+		int entityCount = 0;
+
+		SnapshotWriter(Path file) throws IOException {
+			this.out = new BufferedOutputStream(Files.newOutputStream(file),
+					1 << 16);
+			write(SNAPSHOT_START, 0, SNAPSHOT_START.length);
+		}
+
+		void writeEntity(String entityId, byte[] buffer, int offset, int length)
+				throws IOException {
+			if (this.entityCount > 0) {
+				write(SNAPSHOT_SEPARATOR, 0, SNAPSHOT_SEPARATOR.length);
+			}
+			long key = JsonDumpIndex.getKey(entityId);
+			if (key >= 0) {
+				this.indexBuilder.add(key, 0, this.position);
+			} else {
+				logger.warn("Not indexing entity with id " + entityId);
+			}
+			write(buffer, offset, length);
+			this.entityCount++;
+		}
+
+		JsonDumpIndex finish() throws IOException {
+			write(SNAPSHOT_END, 0, SNAPSHOT_END.length);
+			this.out.close();
+			return this.indexBuilder.build();
+		}
+
+		void write(byte[] buffer, int offset, int length) throws IOException {
+			this.out.write(buffer, offset, length);
+			this.position += length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.out.close();
+		}
+	}
+
+	final Path directory;
+	final String projectName;
+
+	/**
+	 * Date stamp of the last dump that was applied, or null if the mirror has
+	 * not been initialized.
+	 */
+	String dateStamp = null;
+
+	/**
+	 * Constructor. Opens the mirror in the given directory, or prepares a new
+	 * mirror there if the directory does not contain one yet.
+	 *
+	 * @param directory
+	 *            the directory of the mirror; it is created if needed
+	 * @param projectName
+	 *            the name of the project whose dumps are mirrored, e.g.,
+	 *            "wikidatawiki"
+	 * @throws IOException
+	 *             if the directory could not be created or holds a mirror of
+	 *             another project
+	 */
+	public LocalEntityMirror(Path directory, String projectName)
+			throws IOException {
+		this.directory = directory;
+		this.projectName = projectName;
+		Files.createDirectories(directory);
+
+		Path stateFile = directory.resolve(STATE_FILE_NAME);
+		if (Files.exists(stateFile)) {
+			Properties state = new Properties();
+			try (InputStream in = Files.newInputStream(stateFile)) {
+				state.load(in);
+			}
+			if (!projectName.equals(state.getProperty(PROPERTY_PROJECT_NAME))) {
+				throw new IOException("Mirror in " + directory
+						+ " is for project "
+						+ state.getProperty(PROPERTY_PROJECT_NAME));
+			}
+			this.dateStamp = state.getProperty(PROPERTY_DATE_STAMP);
+		}
+	}
+
+	/**
+	 * Returns the date stamp of the last dump that has been applied to the
+	 * mirror.
+	 *
+	 * @return the date stamp in format YYYYMMDD, or null if the mirror has
+	 *         not been initialized yet
+	 */
+	public String getDateStamp() {
+		return this.dateStamp;
+	}
+
+	/**
+	 * Replaces the content of the mirror with the entities of the given JSON
+	 * dump. This reads the complete dump.
+	 *
+	 * @param jsonDump
+	 *            a dump of type {@link DumpContentType#JSON}
+	 * @return the number of entities in the mirror
+	 * @throws IOException
+	 *             if the dump could not be read or the mirror could not be
+	 *             written
+	 */
+	public int initialize(MwDumpFile jsonDump) throws IOException {
+		if (jsonDump.getDumpContentType() != DumpContentType.JSON) {
+			throw new IllegalArgumentException(
+					"Mirrors can only be initialized from JSON dumps, not from "
+							+ jsonDump);
+		}
+		logger.info("Initializing mirror in " + this.directory + " from "
+				+ jsonDump);
+
+		Path tempFile = getTempSnapshotFile();
+		JsonDumpIndex index;
+		try (InputStream in = jsonDump.getDumpFileStream();
+				SnapshotWriter writer = new SnapshotWriter(tempFile)) {
+			JsonDumpLineReader lineReader = new JsonDumpLineReader(in);
+			while (lineReader.nextLine()) {
+				int length = getEntityLength(lineReader);
+				if (length <= 1) {
+					continue; // opening or closing bracket
+				}
+				String entityId = JsonDumpLineFilter.findEntityId(
+						lineReader.getBuffer(), lineReader.getOffset(), length);
+				writer.writeEntity(entityId, lineReader.getBuffer(),
+						lineReader.getOffset(), length);
+			}
+			index = writer.finish();
+		}
+		saveSnapshot(tempFile, index, jsonDump.getDateStamp());
+
+		logger.info("Mirror contains " + index.getEntityCount()
+				+ " entities of " + this.dateStamp);
+		return index.getEntityCount();
+	}
+
+	/**
+	 * Applies all daily dumps that are newer than the mirror. The dumps are
+	 * applied in the order of their dates up to the first dump that is not
+	 * available (yet), so that no day is left out.
+	 *
+	 * @param dumpFileManager
+	 *            the dump file manager used to find daily dumps
+	 * @return the number of entities that were added, changed, or removed
+	 * @throws IOException
+	 *             if a dump could not be read or the mirror could not be
+	 *             written
+	 */
+	public int update(WmfDumpFileManager dumpFileManager) throws IOException {
+		checkInitialized();
+		List<MwDumpFile> dailyDumps = new ArrayList<>();
+		for (MwDumpFile dumpFile : dumpFileManager
+				.findAllDumps(DumpContentType.DAILY)) {
+			if (dumpFile.getDateStamp().compareTo(this.dateStamp) > 0) {
+				dailyDumps.add(dumpFile);
+			}
+		}
+		dailyDumps.sort(new MwDumpFile.DateComparator());
+		for (int i = 0; i < dailyDumps.size(); i++) {
+			if (!dailyDumps.get(i).isAvailable()) {
+				logger.warn("Daily dump " + dailyDumps.get(i)
+						+ " is not available; not applying it or later dumps.");
+				dailyDumps = dailyDumps.subList(0, i);
+				break;
+			}
+		}
+		return update(dailyDumps, Collections.emptySet());
+	}
+
+	/**
+	 * Applies the given daily dumps to the mirror. Dumps that are not newer
+	 * than the mirror are skipped.
+	 *
+	 * @param dailyDumps
+	 *            dumps of type {@link DumpContentType#DAILY}, in any order
+	 * @param deletedEntityIds
+	 *            ids of entities that have been deleted and should be removed
+	 *            from the mirror
+	 * @return the number of entities that were added, changed, or removed
+	 * @throws IOException
+	 *             if a dump could not be read or the mirror could not be
+	 *             written
+	 */
+	public int update(List<? extends MwDumpFile> dailyDumps,
+			Collection<String> deletedEntityIds) throws IOException {
+		checkInitialized();
+		List<MwDumpFile> dumps = new ArrayList<>(dailyDumps);
+		dumps.sort(new MwDumpFile.DateComparator());
+		for (MwDumpFile dumpFile : dumps) {
+			if (dumpFile.getDumpContentType() != DumpContentType.DAILY) {
+				throw new IllegalArgumentException(
+						"Mirrors can only be updated from daily dumps, not from "
+								+ dumpFile);
+			}
+		}
+
+		Path updatesFile = this.directory.resolve(UPDATES_FILE_NAME);
+		try {
+			Map<String, EntityUpdate> updates = new HashMap<>();
+			String newDateStamp = collectUpdates(dumps, updates, updatesFile);
+			if (newDateStamp.equals(this.dateStamp)
+					&& deletedEntityIds.isEmpty()) {
+				logger.info("Mirror is up to date with dumps of "
+						+ this.dateStamp);
+				return 0;
+			}
+			return applyUpdates(updates, new HashSet<>(deletedEntityIds),
+					updatesFile, newDateStamp);
+		} finally {
+			Files.deleteIfExists(updatesFile);
+		}
+	}
+
+	/**
+	 * Returns the snapshot of the mirror as a local JSON dump file, which can
+	 * be processed with a {@link DumpProcessingController} or used to build
+	 * other indexes.
+	 *
+	 * @return the dump file
+	 */
+	public MwLocalDumpFile getSnapshotDumpFile() {
+		checkInitialized();
+		return new MwLocalDumpFile(this.directory.resolve(SNAPSHOT_FILE_NAME)
+				.toString(), DumpContentType.JSON, this.dateStamp,
+				this.projectName);
+	}
+
+	/**
+	 * Returns a lookup for reading single entities from the mirror. The
+	 * lookup must not be used after the mirror has been updated.
+	 *
+	 * @return the lookup
+	 * @throws IOException
+	 *             if the index could not be read
+	 */
+	public DumpEntityLookup getEntityLookup() throws IOException {
+		checkInitialized();
+		JsonDumpIndex index = JsonDumpIndex.load(this.directory
+				.resolve(INDEX_FILE_NAME));
+		if (index == null) {
+			throw new IOException("Index of mirror in " + this.directory
+					+ " is missing");
+		}
+		return new DumpEntityLookup(
+				DirectoryManagerFactory.createDirectoryManager(this.directory,
+						true), SNAPSHOT_FILE_NAME, index, Datamodel.SITE_WIKIDATA);
+	}
+
+	/**
+	 * Reads the given daily dumps and writes the newest revision of every
+	 * entity that occurs in them to the updates file.
+	 *
+	 * @param dailyDumps
+	 *            the dumps, sorted by date
+	 * @param updates
+	 *            map where the updates are stored
+	 * @param updatesFile
+	 *            the file to write the JSON of the revisions to
+	 * @return the date stamp of the last dump that was read, or the current
+	 *         date stamp of the mirror if no dump was read
+	 * @throws IOException
+	 *             if a dump could not be read or the file could not be
+	 *             written
+	 */
+	String collectUpdates(List<MwDumpFile> dailyDumps,
+			Map<String, EntityUpdate> updates, Path updatesFile)
+			throws IOException {
+		String result = this.dateStamp;
+		try (OutputStream out = new BufferedOutputStream(
+				Files.newOutputStream(updatesFile), 1 << 16)) {
+			UpdateCollector updateCollector = new UpdateCollector(updates, out);
+			MwRevisionDumpFileProcessor dumpFileProcessor = new MwRevisionDumpFileProcessor(
+					updateCollector);
+			for (MwDumpFile dumpFile : dailyDumps) {
+				if (dumpFile.getDateStamp().compareTo(this.dateStamp) <= 0) {
+					logger.info("Skipping " + dumpFile
+							+ " since it is not newer than the mirror.");
+					continue;
+				}
+				try (InputStream in = dumpFile.getDumpFileStream()) {
+					dumpFileProcessor.processDumpFileContents(in, dumpFile);
+				}
+				result = dumpFile.getDateStamp();
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return result;
+	}
+
+	/**
+	 * Writes a new snapshot that contains the given updates and replaces the
+	 * current snapshot with it.
+	 *
+	 * @param updates
+	 *            the newest revisions of all entities found in the daily dumps
+	 * @param deletedEntityIds
+	 *            ids of entities to remove
+	 * @param updatesFile
+	 *            the file that holds the JSON of the revisions
+	 * @param newDateStamp
+	 *            the date stamp of the mirror after the update
+	 * @return the number of entities that were added, changed, or removed
+	 * @throws IOException
+	 *             if the mirror could not be read or written
+	 */
+	int applyUpdates(Map<String, EntityUpdate> updates,
+			Set<String> deletedEntityIds, Path updatesFile, String newDateStamp)
+			throws IOException {
+		logger.info("Applying " + updates.size() + " updated and "
+				+ deletedEntityIds.size() + " deleted entities to mirror of "
+				+ this.dateStamp);
+		int changedCount = 0;
+		Path tempFile = getTempSnapshotFile();
+		JsonDumpIndex index;
+		try (FileChannel updatesChannel = FileChannel.open(updatesFile,
+				StandardOpenOption.READ);
+				InputStream in = Files.newInputStream(this.directory
+						.resolve(SNAPSHOT_FILE_NAME));
+				SnapshotWriter writer = new SnapshotWriter(tempFile)) {
+			JsonDumpLineReader lineReader = new JsonDumpLineReader(in);
+			while (lineReader.nextLine()) {
+				int length = getEntityLength(lineReader);
+				if (length <= 1) {
+					continue; // opening or closing bracket
+				}
+				byte[] buffer = lineReader.getBuffer();
+				int offset = lineReader.getOffset();
+				String entityId = JsonDumpLineFilter.findEntityId(buffer,
+						offset, length);
+				if (deletedEntityIds.contains(entityId)) {
+					changedCount++;
+					continue;
+				}
+				EntityUpdate update = updates.remove(entityId);
+				if (update == null
+						|| update.revisionId <= JsonDumpLineFilter
+								.findLastRevisionId(buffer, offset, length)) {
+					writer.writeEntity(entityId, buffer, offset, length);
+					continue;
+				}
+				changedCount++;
+				if (!update.isRemoval()) {
+					writeUpdate(writer, entityId, update, updatesChannel);
+				}
+			}
+
+			List<String> newEntityIds = new ArrayList<>(updates.keySet());
+			Collections.sort(newEntityIds);
+			for (String entityId : newEntityIds) {
+				EntityUpdate update = updates.get(entityId);
+				if (!update.isRemoval()
+						&& !deletedEntityIds.contains(entityId)) {
+					writeUpdate(writer, entityId, update, updatesChannel);
+					changedCount++;
+				}
+			}
+			index = writer.finish();
+		}
+		saveSnapshot(tempFile, index, newDateStamp);
+
+		logger.info("Mirror contains " + index.getEntityCount()
+				+ " entities of " + this.dateStamp + " after " + changedCount
+				+ " changes");
+		return changedCount;
+	}
+
+	/**
+	 * Copies the JSON of an updated entity from the updates file to the
+	 * snapshot.
+	 */
+	static void writeUpdate(SnapshotWriter writer, String entityId,
+			EntityUpdate update, FileChannel updatesChannel) throws IOException {
+		ByteBuffer json = ByteBuffer.allocate(update.length);
+		while (json.hasRemaining()) {
+			if (updatesChannel.read(json, update.position + json.position()) < 0) {
+				throw new IOException("Unexpected end of file "
+						+ UPDATES_FILE_NAME);
+			}
+		}
+		writer.writeEntity(entityId, json.array(), 0, update.length);
+	}
+
+	/**
+	 * Returns the length of the entity JSON on the current line of a JSON
+	 * dump, without the comma that separates it from the next entity.
+	 */
+	static int getEntityLength(JsonDumpLineReader lineReader) {
+		byte[] buffer = lineReader.getBuffer();
+		int offset = lineReader.getOffset();
+		int length = lineReader.getLength();
+		while (length > 0 && (buffer[offset + length - 1] == ','
+				|| buffer[offset + length - 1] == ' ')) {
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Converts the text of a revision to a line of the snapshot. Line breaks
+	 * are removed and the revision id is added as "lastrevid", as found in
+	 * JSON dumps, so that later revisions can be recognized.
+	 *
+	 * @param text
+	 *            the JSON text of the revision
+	 * @param revisionId
+	 *            the id of the revision
+	 * @return the UTF-8 encoded line
+	 */
+	static byte[] getSnapshotLine(String text, long revisionId) {
+		byte[] json = text.trim().getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < json.length; i++) {
+			// line breaks can only occur outside of JSON strings
+			if (json[i] == '\n' || json[i] == '\r') {
+				json[i] = ' ';
+			}
+		}
+		if (json.length == 0 || json[0] != '{'
+				|| JsonDumpLineFilter.findLastRevisionId(json, 0, json.length) >= 0) {
+			return json;
+		}
+
+		int next = 1;
+		while (next < json.length
+				&& (json[next] == ' ' || json[next] == '\t')) {
+			next++;
+		}
+		String field = "\"lastrevid\":" + revisionId
+				+ (next < json.length && json[next] == '}' ? "" : ",");
+		byte[] fieldBytes = field.getBytes(StandardCharsets.UTF_8);
+		byte[] result = new byte[json.length + fieldBytes.length];
+		result[0] = '{';
+		System.arraycopy(fieldBytes, 0, result, 1, fieldBytes.length);
+		System.arraycopy(json, 1, result, 1 + fieldBytes.length,
+				json.length - 1);
+		return result;
+	}
+
+	/**
+	 * Replaces the snapshot and its index with new files and records the
+	 * date of the new snapshot.
+	 */
+	void saveSnapshot(Path newSnapshotFile, JsonDumpIndex index,
+			String newDateStamp) throws IOException {
+		// the state is removed first, so that an interrupted update is
+		// detected rather than applied to the wrong snapshot
+		Path stateFile = this.directory.resolve(STATE_FILE_NAME);
+		Files.deleteIfExists(stateFile);
+		Files.move(newSnapshotFile, this.directory.resolve(SNAPSHOT_FILE_NAME),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		index.save(this.directory.resolve(INDEX_FILE_NAME));
+
+		Properties state = new Properties();
+		state.setProperty(PROPERTY_PROJECT_NAME, this.projectName);
+		state.setProperty(PROPERTY_DATE_STAMP, newDateStamp);
+		Path tempStateFile = this.directory.resolve(STATE_FILE_NAME + ".tmp");
+		try (OutputStream out = Files.newOutputStream(tempStateFile)) {
+			state.store(out, "Wikidata Toolkit entity mirror");
+		}
+		Files.move(tempStateFile, stateFile,
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		this.dateStamp = newDateStamp;
+	}
+
+	Path getTempSnapshotFile() {
+		return this.directory.resolve(SNAPSHOT_FILE_NAME + ".tmp");
+	}
+
+	void checkInitialized() {
+		if (this.dateStamp == null) {
+			throw new IllegalStateException("Mirror in " + this.directory
+					+ " has not been initialized");
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits an uncompressed JSON dump file into lines like
+ * {@link JsonDumpLineReader}, but maps the file into memory instead of
+ * reading it into a buffer. The file is mapped in large windows, and each
+ * line is made available as a range of the current window. Lines that cross
+ * the end of a window are found at the start of the next window, which is
+ * mapped from the start of the line; a window grows if a single line does
+ * not fit into it.
+ * <p>
+ * The range of the current line is only valid until the next call of
+ * {@link #nextLine()}, but the window itself remains readable as long as it
+ * is referenced, so that ranges of it can be handed to other threads.
+ */
+class MappedJsonDumpLineReader implements Closeable {
+
+	/**
+	 * Default size of the windows in which the file is mapped.
+	 */
+	static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+	final FileChannel channel;
+	final long fileSize;
+	final int windowSize;
+
+	/**
+	 * The part of the file that is currently mapped, or null before the
+	 * first line.
+	 */
+	ByteBuffer window = null;
+	/**
+	 * Position of the first byte of the window in the file.
+	 */
+	long windowPosition = 0;
+	/**
+	 * Number of times the window has been mapped.
+	 */
+	int windowCount = 0;
+	/**
+	 * Start of the current line in the window.
+	 */
+	int lineStart = 0;
+	/**
+	 * End of the current line in the window (exclusive, without line break).
+	 */
+	int lineEnd = 0;
+	/**
+	 * Start of the next line in the window.
+	 */
+	int nextLineStart = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path
+	 *            the uncompressed file to read
+	 * @param windowSize
+	 *            the number of bytes that are mapped at a time
+	 * @throws IOException
+	 *             if the file could not be opened
+	 */
+	MappedJsonDumpLineReader(Path path, int windowSize) throws IOException {
+		if (windowSize < 16) {
+			throw new IllegalArgumentException(
+					"Window size must be at least 16, but was " + windowSize);
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.fileSize = this.channel.size();
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Advances to the next line.
+	 *
+	 * @return false if there are no more lines
+	 * @throws IOException
+	 *             if there was a problem mapping the file
+	 */
+	boolean nextLine() throws IOException {
+		if (this.window == null) {
+			mapWindow(0, this.windowSize);
+		}
+		this.lineStart = this.nextLineStart;
+		int scanPosition = this.lineStart;
+		while (true) {
+			int limit = this.window.limit();
+			for (int i = scanPosition; i < limit; i++) {
+				if (this.window.get(i) == '\n') {
+					this.nextLineStart = i + 1;
+					setLineEnd(i);
+					return true;
+				}
+			}
+
+			if (this.windowPosition + limit == this.fileSize) {
+				if (this.lineStart < limit) {
+					this.nextLineStart = limit;
+					setLineEnd(limit);
+					return true;
+				}
+				return false;
+			}
+
+			// map the next window from the start of the incomplete line
+			int lineLength = limit - this.lineStart;
+			int size = this.windowSize;
+			if (lineLength >= this.windowSize / 2) {
+				size = (int) Math.min(Integer.MAX_VALUE - 8,
+						2L * Math.max(lineLength, this.windowSize));
+				if (lineLength >= size) {
+					throw new IOException("Line at position "
+							+ getLinePosition()
+							+ " is too long to be mapped into memory");
+				}
+			}
+			mapWindow(this.windowPosition + this.lineStart, size);
+			scanPosition = lineLength;
+		}
+	}
+
+	/**
+	 * Returns the window that holds the current line. Its position and limit
+	 * must not be changed; ranges can be read from a
+	 * {@link ByteBuffer#duplicate()}.
+	 *
+	 * @return the mapped part of the file
+	 */
+	ByteBuffer getWindow() {
+		return this.window;
+	}
+
+	/**
+	 * Returns the number of times a window has been mapped so far. A change
+	 * of this value means that lines of earlier windows are no longer
+	 * available from {@link #getWindow()}.
+	 *
+	 * @return the number of the current window
+	 */
+	int getWindowCount() {
+		return this.windowCount;
+	}
+
+	/**
+	 * Returns the position of the current line in the window.
+	 *
+	 * @return start offset of the line
+	 */
+	int getOffset() {
+		return this.lineStart;
+	}
+
+	/**
+	 * Returns the length of the current line in bytes, without the line
+	 * break.
+	 *
+	 * @return length of the line
+	 */
+	int getLength() {
+		return this.lineEnd - this.lineStart;
+	}
+
+	/**
+	 * Returns the position in the file where the current line starts.
+	 *
+	 * @return the position in bytes
+	 */
+	long getLinePosition() {
+		return this.windowPosition + this.lineStart;
+	}
+
+	/**
+	 * Returns the position in the file where the line after the current line
+	 * starts.
+	 *
+	 * @return the position in bytes
+	 */
+	long getNextLinePosition() {
+		return this.windowPosition + this.nextLineStart;
+	}
+
+	/**
+	 * Copies the current line into the given array, which must be large
+	 * enough.
+	 *
+	 * @param buffer
+	 *            the array to copy to, starting at index 0
+	 */
+	void copyLine(byte[] buffer) {
+		ByteBuffer line = this.window.duplicate();
+		line.position(this.lineStart);
+		line.get(buffer, 0, getLength());
+	}
+
+	/**
+	 * Returns the current line as a string. Only used for log messages.
+	 *
+	 * @return the current line
+	 */
+	String getLineString() {
+		byte[] line = new byte[getLength()];
+		copyLine(line);
+		return new String(line, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.window = null;
+		this.channel.close();
+	}
+
+	void setLineEnd(int end) {
+		if (end > this.lineStart && this.window.get(end - 1) == '\r') {
+			end--;
+		}
+		this.lineEnd = end;
+	}
+
+	/**
+	 * Maps the part of the file that starts at the given position. The
+	 * current and next line are moved accordingly.
+	 *
+	 * @param position
+	 *            the position in the file where the window starts
+	 * @param size
+	 *            the maximal size of the window
+	 * @throws IOException
+	 *             if the file could not be mapped
+	 */
+	void mapWindow(long position, int size) throws IOException {
+		int shift = (int) (position - this.windowPosition);
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY,
+				position, Math.min(size, this.fileSize - position));
+		this.windowPosition = position;
+		this.windowCount++;
+		this.lineStart -= shift;
+		this.nextLineStart = Math.max(0, this.nextLineStart - shift);
+	}
+}
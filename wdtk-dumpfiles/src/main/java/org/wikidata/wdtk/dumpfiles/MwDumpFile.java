@@ -99,6 +99,81 @@ public interface MwDumpFile {
 	 */
 	InputStream getDumpFileStream() throws IOException;
 
+	/**
+	 * Returns an input stream that provides access to the (uncompressed) text
+	 * content of the dump file while the file may still be downloading. For
+	 * online dumps that have not been downloaded yet, the download is started
+	 * and the stream delivers the data as soon as it has arrived, so that
+	 * processing does not have to wait for the complete download. Reading
+	 * waits when it catches up with the download, and fails if the download
+	 * fails. The downloaded file is kept like with
+	 * {@link #prepareDumpFile()}. By default, this is the same as
+	 * {@link #getDumpFileStream()}.
+	 * <p>
+	 * It is important to close the stream after use.
+	 *
+	 * @return an input stream to read the dump file
+	 * @throws IOException
+	 *             if the dump file contents could not be accessed
+	 */
+	default InputStream getDumpFileStreamDuringDownload() throws IOException {
+		return getDumpFileStream();
+	}
+
+	/**
+	 * Returns an input stream that provides access to the (uncompressed) text
+	 * content of the dump file, starting at the position of the given
+	 * checkpoint. By default, the content before the checkpoint is read and
+	 * discarded; implementations should override this if they can position
+	 * the stream more efficiently.
+	 * <p>
+	 * It is important to close the stream after use.
+	 *
+	 * @param checkpoint
+	 *            the checkpoint to start at, or null to start at the
+	 *            beginning of the dump
+	 * @return an input stream to read the dump file
+	 * @throws IOException
+	 *             if the dump file contents could not be accessed
+	 */
+	default InputStream getDumpFileStream(DumpCheckpoint checkpoint)
+			throws IOException {
+		InputStream inputStream = getDumpFileStream();
+		if (checkpoint != null) {
+			try {
+				ResumableDumpInputStream.skipFully(inputStream,
+						checkpoint.getPosition());
+			} catch (IOException e) {
+				inputStream.close();
+				throw e;
+			}
+		}
+		return inputStream;
+	}
+
+	/**
+	 * Returns an input stream that provides access to the lines of one shard
+	 * of the (uncompressed) text content of the dump file, as described for
+	 * {@link ShardedDumpInputStream}. By default, the whole content is read
+	 * and every n-th line is kept; implementations should override this if
+	 * they can read only the part of the file that belongs to the shard.
+	 * <p>
+	 * It is important to close the stream after use.
+	 *
+	 * @param shardIndex
+	 *            the index of the shard, starting at 0
+	 * @param shardCount
+	 *            the total number of shards
+	 * @return an input stream to read the lines of the shard
+	 * @throws IOException
+	 *             if the dump file contents could not be accessed
+	 */
+	default InputStream getDumpFileStream(int shardIndex, int shardCount)
+			throws IOException {
+		return ShardedDumpInputStream.ofLines(getDumpFileStream(), shardIndex,
+				shardCount);
+	}
+
 	/**
 	 * Returns a buffered reader that provides access to the (uncompressed) text
 	 * content of the dump file.
@@ -203,6 +203,30 @@ public class MwLocalDumpFile implements MwDumpFile {
 				WmfDumpFile.getDumpFileCompressionType(dumpFileName));
 	}
 
+	@Override
+	public InputStream getDumpFileStream(DumpCheckpoint checkpoint)
+			throws IOException {
+		if (!isAvailable()) {
+			throw new IOException("Local dump file \""
+					+ this.dumpFilePath.toString()
+					+ "\" is not available for reading.");
+		}
+		return ResumableDumpInputStream.open(this.directoryManager,
+				this.dumpFileName, checkpoint);
+	}
+
+	@Override
+	public InputStream getDumpFileStream(int shardIndex, int shardCount)
+			throws IOException {
+		if (!isAvailable()) {
+			throw new IOException("Local dump file \""
+					+ this.dumpFilePath.toString()
+					+ "\" is not available for reading.");
+		}
+		return ShardedDumpInputStream.open(this.directoryManager,
+				this.dumpFileName, shardIndex, shardCount);
+	}
+
 	@Override
 	public BufferedReader getDumpFileReader() throws IOException {
 		return new BufferedReader(new InputStreamReader(getDumpFileStream(),
@@ -233,9 +257,14 @@ public class MwLocalDumpFile implements MwDumpFile {
 			return DumpContentType.JSON;
 		} else if (lcDumpName.contains(".json.bz2")) {
 			return DumpContentType.JSON;
+		} else if (lcDumpName.contains(".json.zst")
+				|| lcDumpName.contains(".json.xz")) {
+			return DumpContentType.JSON;
 		} else if (lcDumpName.contains(".sql.gz")) {
 			return DumpContentType.SITES;
-		} else if (lcDumpName.contains(".xml.bz2")) {
+		} else if (lcDumpName.contains(".xml.bz2")
+				|| lcDumpName.contains(".xml.zst")
+				|| lcDumpName.contains(".xml.xz")) {
 			if (lcDumpName.contains("daily")) {
 				return DumpContentType.DAILY;
 			} else if (lcDumpName.contains("current")) {
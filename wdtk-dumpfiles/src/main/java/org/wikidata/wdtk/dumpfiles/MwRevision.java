@@ -20,6 +20,9 @@ package org.wikidata.wdtk.dumpfiles;
  * #L%
  */
 
+import java.io.Reader;
+import java.io.StringReader;
+
 /**
  * Representation of one revision of a page in MediaWiki.
  * 
@@ -148,11 +151,29 @@ public interface MwRevision {
 	 * The format of the text is specified by {@link #getFormat()}. To interpret
 	 * it properly, one should also know the content model, obtained from
 	 * {@link #getModel()}.
+	 * <p>
+	 * Implementations may create a new string on every call. Processors that
+	 * only need to read the text once should prefer {@link #getTextReader()}.
 	 * 
 	 * @return text content of the revision
 	 */
 	String getText();
 
+	/**
+	 * Returns a reader for the text content of the current revision, as
+	 * returned by {@link #getText()}. Implementations may read the text from
+	 * an internal buffer without creating a string for it, which saves memory
+	 * for large texts that are processed only once. Like the revision itself,
+	 * the reader is only valid while the revision is being processed.
+	 *
+	 * @return reader for the text content of the revision, or null if the
+	 *         revision has no text
+	 */
+	default Reader getTextReader() {
+		String text = getText();
+		return text == null ? null : new StringReader(text);
+	}
+
 	/**
 	 * Returns the content model of the revision. This specifies how the text
 	 * content should be interpreted. Content models are usually configured for
@@ -20,9 +20,26 @@ package org.wikidata.wdtk.dumpfiles;
  * #L%
  */
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -31,6 +48,8 @@ import javax.xml.stream.XMLStreamReader;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
+import org.wikidata.wdtk.util.DaemonThreadFactory;
 
 /**
  * This class processes MediaWiki dumpfiles that contain lists of page revisions
@@ -44,6 +63,21 @@ import org.slf4j.LoggerFactory;
  * recent one. If multiple dump files are processed in reverse chronological
  * order, the first revision that is encountered is also the most recent one
  * overall.
+ * <p>
+ * If a {@link DumpCheckpointer} is set, progress is reported at the start of
+ * each page, so that processing can later be resumed at the page after the
+ * last one that was processed completely.
+ * <p>
+ * If a parallelism greater than one is configured with
+ * {@link #setParallelism(int)}, the XML is parsed by a separate reader thread,
+ * which passes the revisions of each page on in batches. The JSON of Wikibase
+ * entities can then be deserialized by a pool of worker threads. Revisions are
+ * still passed on to the revision processor from the calling thread only, page
+ * by page in the order of the dump, so that processors see exactly the same
+ * sequence of revisions as without parallelism. If the revision processor
+ * only passes on the most current revisions, see
+ * {@link #setOnlyCurrentRevisions(boolean)}, only the newest revision of each
+ * page is passed on at all.
  * 
  * @author Markus Kroetzsch
  * 
@@ -82,6 +116,19 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 	static final Logger logger = LoggerFactory
 			.getLogger(MwRevisionDumpFileProcessor.class);
 
+	/**
+	 * Number of revisions after which the reader thread passes on the pages
+	 * it has read when processing in parallel. Pages are never split.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	/**
+	 * Marker that is used by the reader thread to signal that there are no
+	 * more batches.
+	 */
+	private static final Future<PageBatch> END_OF_INPUT = CompletableFuture
+			.completedFuture(null);
+
 	final XMLInputFactory xmlFactory;
 	XMLStreamReader xmlReader;
 
@@ -110,6 +157,57 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 	 */
 	final MwRevisionProcessor mwRevisionProcessor;
 
+	/**
+	 * Object that progress is reported to for writing checkpoints, or null if
+	 * no checkpoints are written.
+	 */
+	DumpCheckpointer checkpointer = null;
+	/**
+	 * Positions of the page start tags in the input that have been read by
+	 * the XML parser but not yet processed. Only used for checkpoints.
+	 */
+	Queue<Long> pageOffsets = null;
+	/**
+	 * True if a page has been started in the current dump.
+	 */
+	boolean pageStarted;
+
+	/**
+	 * Number of worker threads used when processing in parallel. If this is
+	 * 1, all work is done on the calling thread.
+	 */
+	int parallelism = 1;
+	/**
+	 * True if the revision processor only passes on the most current revision
+	 * of each page, so that older revisions need not be kept when processing
+	 * in parallel.
+	 */
+	boolean onlyCurrentRevisions = false;
+	/**
+	 * Deserializer that is used by the worker threads to read the entity
+	 * documents of revisions ahead of time, or null if this is not done.
+	 */
+	JsonDeserializer entityDocumentDeserializer = null;
+	/**
+	 * Batches that have been read but not yet been processed, or null if not
+	 * processing in parallel.
+	 */
+	BlockingQueue<Future<PageBatch>> pendingBatches = null;
+	/**
+	 * Workers that prepare batches, or null if there is nothing to do for
+	 * them.
+	 */
+	ExecutorService workers = null;
+	/**
+	 * Batch that the reader thread currently adds pages to, or null if not
+	 * processing in parallel.
+	 */
+	PageBatch currentBatch = null;
+	/**
+	 * Page that the reader thread currently adds revisions to.
+	 */
+	Page currentPage = null;
+
 	/**
 	 * Constructor.
 	 * 
@@ -117,13 +215,91 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 	 *            the revision processor to which all revisions will be reported
 	 */
 	public MwRevisionDumpFileProcessor(MwRevisionProcessor mwRevisionProcessor) {
-		this.xmlFactory = XMLInputFactory.newInstance();
+		this(mwRevisionProcessor, createXmlInputFactory());
+	}
+
+	/**
+	 * Constructor for using a specific StAX implementation to read the XML.
+	 * The factory is used as given; see
+	 * {@link #configureXmlInputFactory(XMLInputFactory)} for settings that
+	 * are suitable for MediaWiki dumps.
+	 *
+	 * @param mwRevisionProcessor
+	 *            the revision processor to which all revisions will be reported
+	 * @param xmlFactory
+	 *            the factory for the XML readers that are used to read dumps
+	 */
+	public MwRevisionDumpFileProcessor(MwRevisionProcessor mwRevisionProcessor,
+			XMLInputFactory xmlFactory) {
+		this.xmlFactory = xmlFactory;
 		this.namespaces = new HashMap<>();
 		this.mwRevision = new MwRevisionImpl();
+		this.mwRevision.textReleasable = true;
 		this.mwRevisionProcessor = mwRevisionProcessor;
 		reset();
 	}
 
+	/**
+	 * Creates the factory for XML readers that is used by default. This is
+	 * the StAX implementation found by {@link XMLInputFactory#newInstance()},
+	 * which can be selected with the system property
+	 * "javax.xml.stream.XMLInputFactory", configured with
+	 * {@link #configureXmlInputFactory(XMLInputFactory)}.
+	 *
+	 * @return the new factory
+	 */
+	public static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory result = XMLInputFactory.newInstance();
+		configureXmlInputFactory(result);
+		return result;
+	}
+
+	/**
+	 * Configures a factory for XML readers for reading MediaWiki dumps
+	 * quickly. Adjacent pieces of text are not coalesced, since the text of
+	 * revisions is read piece by piece anyway. DTDs, and therefore entities
+	 * other than the predefined ones that MediaWiki uses, are not supported
+	 * and no entities are expanded. Properties that the StAX implementation
+	 * does not support are left unchanged.
+	 *
+	 * @param xmlFactory
+	 *            the factory to configure
+	 */
+	public static void configureXmlInputFactory(XMLInputFactory xmlFactory) {
+		setPropertyIfSupported(xmlFactory, XMLInputFactory.IS_COALESCING,
+				false);
+		setPropertyIfSupported(xmlFactory, XMLInputFactory.IS_VALIDATING,
+				false);
+		setPropertyIfSupported(xmlFactory, XMLInputFactory.SUPPORT_DTD, false);
+		setPropertyIfSupported(xmlFactory,
+				XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		setPropertyIfSupported(xmlFactory,
+				XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+	}
+
+	/**
+	 * Sets a property of a factory for XML readers if the factory supports
+	 * it.
+	 *
+	 * @param xmlFactory
+	 *            the factory
+	 * @param property
+	 *            the name of the property
+	 * @param value
+	 *            the new value
+	 */
+	private static void setPropertyIfSupported(XMLInputFactory xmlFactory,
+			String property, Object value) {
+		if (xmlFactory.isPropertySupported(property)) {
+			try {
+				xmlFactory.setProperty(property, value);
+			} catch (IllegalArgumentException e) {
+				logger.debug("XML reader property " + property
+						+ " cannot be set to " + value + ": " + e.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * Resets the internal state of the object. All information gathered from
 	 * previously processed dumps and all related statistics will be forgotten.
@@ -138,6 +314,80 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 		this.namespaces.clear();
 	}
 
+	/**
+	 * Sets the number of threads that are used when processing dumps. The
+	 * default is 1, which means that all work is done on the calling thread.
+	 * For higher values, one additional thread is used for parsing the XML.
+	 *
+	 * @param parallelism
+	 *            the number of worker threads, at least 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least 1, but was " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Returns the number of threads that are used when processing dumps.
+	 *
+	 * @return the number of worker threads
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * Sets whether the revision processor only passes on the most current
+	 * revision of each page, as a {@link MwRevisionProcessorBroker} does if
+	 * all of its subscribers only want current revisions. When processing in
+	 * parallel, only the revision with the highest id of each page is then
+	 * collected and prepared by the workers, and the others are dropped by
+	 * the reader thread. The default is false.
+	 *
+	 * @param onlyCurrentRevisions
+	 *            true if older revisions of a page are not used
+	 */
+	void setOnlyCurrentRevisions(boolean onlyCurrentRevisions) {
+		this.onlyCurrentRevisions = onlyCurrentRevisions;
+	}
+
+	/**
+	 * Sets the deserializer that worker threads use to read the entity
+	 * documents of Wikibase revisions when processing in parallel. The
+	 * documents are only used by {@link WikibaseRevisionProcessor} objects
+	 * that use the same deserializer.
+	 *
+	 * @param entityDocumentDeserializer
+	 *            the deserializer, or null if documents should not be read
+	 *            ahead of time
+	 */
+	void setEntityDocumentDeserializer(
+			JsonDeserializer entityDocumentDeserializer) {
+		this.entityDocumentDeserializer = entityDocumentDeserializer;
+	}
+
+	/**
+	 * Sets the object that progress is reported to for writing checkpoints.
+	 * If the revision processor of this object is a
+	 * {@link DumpCheckpointListener}, it is notified of checkpoints before
+	 * all other listeners, since it may hold back revisions of the last
+	 * page.
+	 *
+	 * @param checkpointer
+	 *            the checkpointer to use, or null to disable checkpoints
+	 */
+	void setCheckpointer(DumpCheckpointer checkpointer) {
+		this.checkpointer = checkpointer;
+		if (checkpointer != null
+				&& this.mwRevisionProcessor instanceof DumpCheckpointListener) {
+			checkpointer
+					.addFirstListener((DumpCheckpointListener) this.mwRevisionProcessor);
+		}
+	}
+
 	@Override
 	public void processDumpFileContents(InputStream inputStream,
 			MwDumpFile dumpFile) {
@@ -149,7 +399,34 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 		this.baseUrl = "";
 
 		this.xmlReader = null;
+		this.pageStarted = false;
+		this.currentBatch = null;
+		this.currentPage = null;
+		if (this.checkpointer != null) {
+			PageOffsetInputStream pageOffsetInputStream = new PageOffsetInputStream(
+					inputStream);
+			this.pageOffsets = pageOffsetInputStream.pageOffsets;
+			inputStream = pageOffsetInputStream;
+		} else {
+			this.pageOffsets = null;
+		}
+
+		if (this.parallelism > 1) {
+			processXmlParallel(inputStream);
+		} else {
+			processXml(inputStream);
+		}
 
+		this.mwRevisionProcessor.finishRevisionProcessing();
+	}
+
+	/**
+	 * Parses the XML of the given stream and processes its contents.
+	 *
+	 * @param inputStream
+	 *            the stream to read from
+	 */
+	void processXml(InputStream inputStream) {
 		try {
 			this.xmlReader = this.xmlFactory.createXMLStreamReader(inputStream);
 			processXmlMediawiki();
@@ -166,8 +443,150 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 				}
 			}
 		}
+	}
 
-		this.mwRevisionProcessor.finishRevisionProcessing();
+	/**
+	 * Processes the given stream in parallel. The XML is parsed by a reader
+	 * thread, which collects the revisions of consecutive pages in batches.
+	 * The batches are prepared by the workers, if there is a deserializer for
+	 * entity documents, and then processed on the calling thread in the order
+	 * in which they have been read.
+	 *
+	 * @param inputStream
+	 *            the stream to read from
+	 */
+	void processXmlParallel(InputStream inputStream) {
+		this.pendingBatches = new ArrayBlockingQueue<>(2 * this.parallelism);
+		this.currentBatch = new PageBatch();
+		if (this.entityDocumentDeserializer != null) {
+			this.workers = Executors.newFixedThreadPool(this.parallelism,
+					new DaemonThreadFactory("wdtk-revision-worker"));
+		} else {
+			this.workers = null;
+		}
+		ExecutorService batchWorkers = this.workers;
+		BlockingQueue<Future<PageBatch>> batches = this.pendingBatches;
+
+		AtomicReference<RuntimeException> readerException = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				try {
+					processXml(inputStream);
+					submitBatch();
+				} catch (RuntimeException e) {
+					readerException.set(e);
+				}
+				batches.put(END_OF_INPUT);
+			} catch (InterruptedException e) {
+				// processing was aborted; just stop reading
+			}
+		}, "wdtk-revision-reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		String previousTitle = null;
+		try {
+			Future<PageBatch> pendingBatch = batches.take();
+			while (pendingBatch != END_OF_INPUT) {
+				PageBatch batch = pendingBatch.get();
+				if (batch.namespaces != null) {
+					this.mwRevisionProcessor.startRevisionProcessing(
+							batch.sitename, batch.baseUrl, batch.namespaces);
+				}
+				for (Page page : batch.pages) {
+					if (this.checkpointer != null && page.offset != null) {
+						if (this.pageStarted) {
+							this.checkpointer.recordProgress(page.offset,
+									previousTitle, 1);
+						}
+						this.pageStarted = true;
+					}
+					for (MwRevisionImpl mwRevision : page.revisions) {
+						this.mwRevisionProcessor.processRevision(mwRevision);
+					}
+					previousTitle = page.prefixedTitle;
+				}
+				pendingBatch = batches.take();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"Interrupted while processing revision dump", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error when preparing revisions: "
+					+ e.getCause().getMessage(), e.getCause());
+		} finally {
+			reader.interrupt();
+			if (batchWorkers != null) {
+				batchWorkers.shutdownNow();
+			}
+		}
+
+		RuntimeException e = readerException.get();
+		if (e != null) {
+			throw e;
+		}
+	}
+
+	/**
+	 * Passes on the current batch of pages to the workers, or directly to the
+	 * calling thread if there is nothing to prepare. Called from the reader
+	 * thread only.
+	 *
+	 * @throws InterruptedException
+	 *             if processing was aborted
+	 */
+	void submitBatch() throws InterruptedException {
+		PageBatch batch = this.currentBatch;
+		if (batch.pages.isEmpty() && batch.namespaces == null) {
+			return;
+		}
+		this.currentBatch = new PageBatch();
+		if (this.workers == null) {
+			this.pendingBatches.put(CompletableFuture.completedFuture(batch));
+		} else {
+			JsonDeserializer deserializer = this.entityDocumentDeserializer;
+			this.pendingBatches.put(this.workers.submit(() -> {
+				for (Page page : batch.pages) {
+					for (MwRevisionImpl mwRevision : page.revisions) {
+						WikibaseRevisionProcessor.prepareRevision(mwRevision,
+								deserializer);
+					}
+				}
+				return batch;
+			}));
+		}
+	}
+
+	/**
+	 * Starts collecting the revisions of a new page when processing in
+	 * parallel.
+	 */
+	void startPage() {
+		Long pageOffset = this.pageOffsets == null ? null : this.pageOffsets
+				.poll();
+		this.currentPage = new Page(pageOffset);
+		this.currentBatch.pages.add(this.currentPage);
+	}
+
+	/**
+	 * Finishes the current page when processing in parallel, and passes on
+	 * the current batch if it is large enough.
+	 *
+	 * @throws XMLStreamException
+	 *             if processing was aborted
+	 */
+	void endPage() throws XMLStreamException {
+		this.currentPage.prefixedTitle = this.mwRevision.getPrefixedTitle();
+		this.currentPage = null;
+		if (this.currentBatch.revisionCount >= DEFAULT_BATCH_SIZE) {
+			try {
+				submitBatch();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new XMLStreamException("Processing was aborted");
+			}
+		}
 	}
 
 	/**
@@ -195,11 +614,25 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 					break;
 				case MwRevisionDumpFileProcessor.E_SITEINFO:
 					processXmlSiteinfo();
-					this.mwRevisionProcessor.startRevisionProcessing(
-							this.sitename, this.baseUrl, this.namespaces);
+					if (this.currentBatch != null) {
+						this.currentBatch.sitename = this.sitename;
+						this.currentBatch.baseUrl = this.baseUrl;
+						this.currentBatch.namespaces = new HashMap<>(
+								this.namespaces);
+					} else {
+						this.mwRevisionProcessor.startRevisionProcessing(
+								this.sitename, this.baseUrl, this.namespaces);
+					}
 					break;
 				case MwRevisionDumpFileProcessor.E_PAGE:
-					tryProcessXmlPage();
+					if (this.currentBatch != null) {
+						startPage();
+						tryProcessXmlPage();
+						endPage();
+					} else {
+						recordPageStart();
+						tryProcessXmlPage();
+					}
 					break;
 				}
 				break;
@@ -217,6 +650,53 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 		}
 	}
 
+	/**
+	 * Reports to the checkpointer that all pages before the current one have
+	 * been processed.
+	 */
+	void recordPageStart() {
+		Long pageOffset = this.pageOffsets == null ? null : this.pageOffsets
+				.poll();
+		if (pageOffset == null) {
+			return;
+		}
+		if (this.pageStarted) {
+			// the title still belongs to the previous page
+			this.checkpointer.recordProgress(pageOffset,
+					this.mwRevision.getPrefixedTitle(), 1);
+		}
+		this.pageStarted = true;
+	}
+
+	/**
+	 * Reads the header of an XML dump, which is everything before the first
+	 * page. This includes the site information, which is needed when
+	 * resuming processing in the middle of the dump.
+	 *
+	 * @param inputStream
+	 *            the stream of the dump, positioned at its start
+	 * @return the bytes before the first page start tag
+	 * @throws IOException
+	 *             if the stream could not be read
+	 */
+	static byte[] readXmlHeader(InputStream inputStream) throws IOException {
+		PageOffsetInputStream pageOffsetInputStream = new PageOffsetInputStream(
+				inputStream);
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while (pageOffsetInputStream.pageOffsets.isEmpty()
+				&& (count = pageOffsetInputStream.read(buffer)) != -1) {
+			header.write(buffer, 0, count);
+		}
+		byte[] result = header.toByteArray();
+		Long pageOffset = pageOffsetInputStream.pageOffsets.peek();
+		if (pageOffset != null) {
+			result = Arrays.copyOf(result, pageOffset.intValue());
+		}
+		return result;
+	}
+
 	/**
 	 * Processes current XML starting from a &lt;siteinfo&gt; start tag up to
 	 * the corresponding end tag. This method uses the current state of
@@ -362,6 +842,45 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 		}
 	}
 
+	/**
+	 * Reads the text of the current element into the text buffer of
+	 * {@link #mwRevision}. This works like
+	 * {@link XMLStreamReader#getElementText()}, but the characters are copied
+	 * directly from the parser to the buffer, which is reused for all
+	 * revisions, instead of being collected in a new string.
+	 *
+	 * @throws XMLStreamException
+	 *             if there was a problem reading the XML or if the element
+	 *             does not only contain text
+	 */
+	void readRevisionText() throws XMLStreamException {
+		this.mwRevision.clearText();
+		int eventType = this.xmlReader.next();
+		while (eventType != XMLStreamConstants.END_ELEMENT) {
+			switch (eventType) {
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				this.mwRevision.appendText(this.xmlReader.getTextCharacters(),
+						this.xmlReader.getTextStart(),
+						this.xmlReader.getTextLength());
+				break;
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				char[] replacement = this.xmlReader.getText().toCharArray();
+				this.mwRevision.appendText(replacement, 0, replacement.length);
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+			case XMLStreamConstants.COMMENT:
+				break;
+			default:
+				throw new XMLStreamException(
+						"Unexpected XML event in revision text: " + eventType,
+						this.xmlReader.getLocation());
+			}
+			eventType = this.xmlReader.next();
+		}
+	}
+
 	/**
 	 * Processes current XML starting from a &lt;revision&gt; start tag up to
 	 * the corresponding end tag. This method uses the current state of
@@ -390,7 +909,7 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 					this.mwRevision.comment = this.xmlReader.getElementText();
 					break;
 				case MwRevisionDumpFileProcessor.E_REV_TEXT:
-					this.mwRevision.text = this.xmlReader.getElementText();
+					readRevisionText();
 					break;
 				case MwRevisionDumpFileProcessor.E_REV_TIMESTAMP:
 					this.mwRevision.timeStamp = this.xmlReader.getElementText();
@@ -423,7 +942,11 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 			case XMLStreamConstants.END_ELEMENT:
 				if (MwRevisionDumpFileProcessor.E_PAGE_REVISION
 						.equals(this.xmlReader.getLocalName())) {
-					this.mwRevisionProcessor.processRevision(this.mwRevision);
+					if (this.currentPage != null) {
+						addRevisionToPage();
+					} else {
+						this.mwRevisionProcessor.processRevision(this.mwRevision);
+					}
 					return;
 				}
 				break;
@@ -488,4 +1011,133 @@ public class MwRevisionDumpFileProcessor implements MwDumpFileProcessor {
 		}
 	}
 
+	/**
+	 * Adds a copy of the current revision to the current page when processing
+	 * in parallel. If only current revisions are used, the page keeps only
+	 * the revision with the highest id, so that the text of older revisions
+	 * is neither copied nor deserialized.
+	 */
+	void addRevisionToPage() {
+		List<MwRevisionImpl> revisions = this.currentPage.revisions;
+		if (this.onlyCurrentRevisions && !revisions.isEmpty()) {
+			if (this.mwRevision.getRevisionId() > revisions.get(0)
+					.getRevisionId()) {
+				revisions.set(0, copyRevision());
+			}
+		} else {
+			revisions.add(copyRevision());
+			this.currentBatch.revisionCount++;
+		}
+	}
+
+	/**
+	 * Copies the current revision for adding it to the current page. The
+	 * copy is only passed on once, so its text may be taken over.
+	 *
+	 * @return the copy
+	 */
+	MwRevisionImpl copyRevision() {
+		MwRevisionImpl copy = new MwRevisionImpl(this.mwRevision);
+		copy.textReleasable = true;
+		return copy;
+	}
+
+	/**
+	 * Revisions of one page, as passed on by the reader thread when
+	 * processing in parallel. Revisions are not modified once the page has
+	 * been passed on.
+	 */
+	static class Page {
+		/**
+		 * Position of the page start tag in the input, or null if not known.
+		 */
+		final Long offset;
+		String prefixedTitle;
+		final List<MwRevisionImpl> revisions = new ArrayList<>();
+
+		Page(Long offset) {
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * Consecutive pages that are passed on together when processing in
+	 * parallel. The first batch of a dump also holds the site information.
+	 */
+	static class PageBatch {
+		final List<Page> pages = new ArrayList<>();
+		int revisionCount = 0;
+
+		/**
+		 * Namespaces of the site, or null if the site information has been
+		 * passed on before.
+		 */
+		Map<Integer, String> namespaces = null;
+		String sitename;
+		String baseUrl;
+	}
+
+	/**
+	 * Stream that records the positions of all page start tags in the data
+	 * that is read through it. Since "&lt;" is always escaped in text, the
+	 * n-th page start tag in the bytes is the n-th page element found by the
+	 * XML parser.
+	 */
+	static class PageOffsetInputStream extends FilterInputStream {
+
+		static final byte[] PAGE_TAG = ("<" + E_PAGE + ">")
+				.getBytes(StandardCharsets.UTF_8);
+
+		final Queue<Long> pageOffsets = new ArrayDeque<>();
+		long position = 0;
+		int matched = 0;
+
+		PageOffsetInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				scan((byte) b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			for (int i = off; i < off + count; i++) {
+				scan(b[i]);
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			byte[] buffer = new byte[(int) Math.min(n, 4096)];
+			int count = read(buffer, 0, buffer.length);
+			return Math.max(count, 0);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void scan(byte b) {
+			this.position++;
+			if (b == PAGE_TAG[this.matched]) {
+				this.matched++;
+				if (this.matched == PAGE_TAG.length) {
+					this.pageOffsets.add(this.position - PAGE_TAG.length);
+					this.matched = 0;
+				}
+			} else {
+				this.matched = b == PAGE_TAG[0] ? 1 : 0;
+			}
+		}
+	}
+
 }
@@ -20,6 +20,14 @@ package org.wikidata.wdtk.dumpfiles;
  * #L%
  */
 
+import java.io.CharArrayReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+
 /**
  * Implementation of {@link MwRevision}. The implementation is meant to be used
  * as a lightweight container that is reusable and thus mutable, but only using
@@ -35,9 +43,25 @@ public class MwRevisionImpl implements MwRevision {
 	// penalty when not reusing this object and creating a 100 million
 	// additional objects when parsing a Wikidata dump.
 
+	static final char[] EMPTY_TEXT_BUFFER = new char[0];
+
 	String prefixedTitle;
 	String timeStamp;
+	/**
+	 * Text of the revision as a string, or null if the text is only stored in
+	 * {@link #textBuffer} or if there is no text.
+	 */
 	String text;
+	/**
+	 * Buffer for the text of the revision, which is reused for the following
+	 * revisions. It is only used if {@link #text} is null.
+	 */
+	char[] textBuffer = EMPTY_TEXT_BUFFER;
+	/**
+	 * Length of the text in {@link #textBuffer}, or -1 if the buffer holds no
+	 * text.
+	 */
+	int textLength = -1;
 	String model;
 	String format;
 	String comment;
@@ -48,6 +72,23 @@ public class MwRevisionImpl implements MwRevision {
 	long revisionId;
 	long parentRevisionId;
 
+	/**
+	 * Entity document that has been deserialized from the text of this
+	 * revision ahead of time, or null if this has not been done.
+	 */
+	EntityDocument entityDocument;
+	/**
+	 * Deserializer that {@link #entityDocument} was read with.
+	 */
+	JsonDeserializer entityDocumentDeserializer;
+	/**
+	 * True if processors that this revision is passed to may take over its
+	 * text, leaving the revision without text. Only set by owners that do
+	 * not use the text after passing the revision on, such as
+	 * {@link MwRevisionDumpFileProcessor}. Not copied with the revision.
+	 */
+	boolean textReleasable;
+
 	/**
 	 * Constructor.
 	 */
@@ -62,7 +103,11 @@ public class MwRevisionImpl implements MwRevision {
 	public MwRevisionImpl(MwRevision mwRevision) {
 		this.prefixedTitle = mwRevision.getPrefixedTitle();
 		this.timeStamp = mwRevision.getTimeStamp();
-		this.text = mwRevision.getText();
+		if (mwRevision instanceof MwRevisionImpl) {
+			copyText((MwRevisionImpl) mwRevision);
+		} else {
+			this.text = mwRevision.getText();
+		}
 		this.model = mwRevision.getModel();
 		this.format = mwRevision.getFormat();
 		this.comment = mwRevision.getComment();
@@ -72,6 +117,10 @@ public class MwRevisionImpl implements MwRevision {
 		this.pageId = mwRevision.getPageId();
 		this.revisionId = mwRevision.getRevisionId();
 		this.parentRevisionId = mwRevision.getParentRevisionId();
+		if (mwRevision instanceof MwRevisionImpl) {
+			this.entityDocument = ((MwRevisionImpl) mwRevision).entityDocument;
+			this.entityDocumentDeserializer = ((MwRevisionImpl) mwRevision).entityDocumentDeserializer;
+		}
 	}
 
 	@Override
@@ -116,11 +165,158 @@ public class MwRevisionImpl implements MwRevision {
 		return this.timeStamp;
 	}
 
+	/**
+	 * {@inheritDoc} If the text is only held in the text buffer, a new string
+	 * is created on every call, and the revision itself is not changed.
+	 */
 	@Override
 	public String getText() {
+		if (this.text == null && this.textLength >= 0) {
+			return new String(this.textBuffer, 0, this.textLength);
+		}
 		return this.text;
 	}
 
+	@Override
+	public Reader getTextReader() {
+		if (this.text == null && this.textLength >= 0) {
+			return new CharArrayReader(this.textBuffer, 0, this.textLength);
+		}
+		return this.text == null ? null : new StringReader(this.text);
+	}
+
+	/**
+	 * Checks if the text contains the given string, without creating a
+	 * string for the text.
+	 *
+	 * @param string
+	 *            the string to look for
+	 * @return true if the text contains the string, false if it does not or
+	 *         if there is no text
+	 */
+	boolean textContains(String string) {
+		if (this.text != null) {
+			return this.text.contains(string);
+		}
+		int last = this.textLength - string.length();
+		for (int i = 0; i <= last; i++) {
+			int j = 0;
+			while (j < string.length()
+					&& this.textBuffer[i + j] == string.charAt(j)) {
+				j++;
+			}
+			if (j == string.length()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the length of the text without creating a string for it.
+	 *
+	 * @return the number of characters of the text, or -1 if there is no text
+	 */
+	int getTextLength() {
+		if (this.text != null) {
+			return this.text.length();
+		}
+		return this.textLength;
+	}
+
+	/**
+	 * Removes the text of this revision, so that a new text can be added
+	 * with {@link #appendText(char[], int, int)}. The text buffer is kept for
+	 * reuse.
+	 */
+	void clearText() {
+		this.text = null;
+		this.textLength = 0;
+	}
+
+	/**
+	 * Appends characters to the text buffer.
+	 *
+	 * @param chars
+	 *            array that holds the characters
+	 * @param start
+	 *            index of the first character
+	 * @param length
+	 *            number of characters
+	 */
+	void appendText(char[] chars, int start, int length) {
+		ensureTextCapacity(this.textLength + length);
+		System.arraycopy(chars, start, this.textBuffer, this.textLength,
+				length);
+		this.textLength += length;
+	}
+
+	/**
+	 * Copies the text of the given revision. If the text is only stored in
+	 * the buffer of the other revision, it is copied to the buffer of this
+	 * revision, which is reused if it is large enough. No string is created
+	 * for the text.
+	 *
+	 * @param other
+	 *            the revision to copy the text from
+	 */
+	void copyText(MwRevisionImpl other) {
+		this.text = other.text;
+		if (other.text == null && other.textLength >= 0) {
+			this.textLength = 0;
+			appendText(other.textBuffer, 0, other.textLength);
+		} else {
+			this.textLength = -1;
+		}
+	}
+
+	/**
+	 * Moves all data of the given revision to this revision. The text is not
+	 * copied: if it is only stored in the buffer of the other revision, the
+	 * text buffers of both revisions are swapped, so that the other revision
+	 * reuses the previous buffer of this revision for its next text. The
+	 * other revision has no text afterwards.
+	 *
+	 * @param other
+	 *            the revision to move the data from
+	 */
+	void moveFrom(MwRevisionImpl other) {
+		this.prefixedTitle = other.prefixedTitle;
+		this.timeStamp = other.timeStamp;
+		char[] buffer = this.textBuffer;
+		this.text = other.text;
+		this.textBuffer = other.textBuffer;
+		this.textLength = other.textLength;
+		other.text = null;
+		other.textBuffer = buffer;
+		other.textLength = -1;
+		this.model = other.model;
+		this.format = other.format;
+		this.comment = other.comment;
+		this.contributor = other.contributor;
+		this.contributorId = other.contributorId;
+		this.namespace = other.namespace;
+		this.pageId = other.pageId;
+		this.revisionId = other.revisionId;
+		this.parentRevisionId = other.parentRevisionId;
+		this.entityDocument = other.entityDocument;
+		this.entityDocumentDeserializer = other.entityDocumentDeserializer;
+	}
+
+	/**
+	 * Makes sure that the text buffer can hold the given number of
+	 * characters, keeping its current contents.
+	 *
+	 * @param capacity
+	 *            the number of characters
+	 */
+	void ensureTextCapacity(int capacity) {
+		if (capacity > this.textBuffer.length) {
+			this.textBuffer = Arrays.copyOf(this.textBuffer,
+					Math.max(capacity, 2 * this.textBuffer.length));
+		}
+	}
+
 	@Override
 	public String getModel() {
 		return this.model;
@@ -169,10 +365,13 @@ public class MwRevisionImpl implements MwRevision {
 		this.revisionId = NO_REVISION_ID; // impossible as an id in MediaWiki
 		this.parentRevisionId = NO_REVISION_ID;
 		this.text = null;
+		this.textLength = -1;
 		this.comment = null;
 		this.format = null;
 		this.timeStamp = null;
 		this.model = null;
+		this.entityDocument = null;
+		this.entityDocumentDeserializer = null;
 	}
 
 	@Override
@@ -182,7 +381,7 @@ public class MwRevisionImpl implements MwRevision {
 				+ "). Created at " + this.timeStamp + " by " + this.contributor
 				+ " (" + this.contributorId + ") with comment \""
 				+ this.comment + "\". Model " + this.model + " (" + this.format
-				+ "). Text length: " + this.text.length() +
+				+ "). Text length: " + getTextLength() +
 				" Parent revision id: " + this.parentRevisionId;
 	}
 
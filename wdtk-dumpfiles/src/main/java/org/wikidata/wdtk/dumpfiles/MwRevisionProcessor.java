@@ -51,6 +51,11 @@ public interface MwRevisionProcessor {
 
 	/**
 	 * Process the given MediaWiki revision.
+	 * <p>
+	 * The given object is only valid during this call. Callers may reuse it
+	 * afterwards for other revisions, also of other pages, so that its data
+	 * changes. Processors that need the data of a revision later on must
+	 * copy it, e.g., with {@link MwRevisionImpl#MwRevisionImpl(MwRevision)}.
 	 *
 	 * @param mwRevision
 	 *            the revision to process
@@ -26,6 +26,7 @@ import java.util.Map;
 
 import org.wikidata.wdtk.storage.datastructures.BitVector;
 import org.wikidata.wdtk.storage.datastructures.BitVectorImpl;
+import org.wikidata.wdtk.storage.datastructures.CompressedBitVector;
 
 /**
  * This MwRevisionPRocessor distributes revisions to subscribers that register
@@ -39,10 +40,16 @@ import org.wikidata.wdtk.storage.datastructures.BitVectorImpl;
  * chronological order. Revisions within a single block of revisions for one
  * page do not need to be ordered in any specific way.
  * 
+ * When a checkpoint is taken, the most current revision of the last page is
+ * passed on right away, since the page will not be read again when resuming
+ * at the checkpoint. The information about pages and revisions that have
+ * been encountered before a checkpoint is not restored when resuming.
+ * 
  * @author Markus Kroetzsch
  * 
  */
-public class MwRevisionProcessorBroker implements MwRevisionProcessor {
+public class MwRevisionProcessorBroker implements MwRevisionProcessor,
+		DumpCheckpointListener {
 
 	/**
 	 * Simple data container to store information about the registered
@@ -70,9 +77,22 @@ public class MwRevisionProcessorBroker implements MwRevisionProcessor {
 	/**
 	 * Holds the most current revision found in the block of revisions that is
 	 * currently being processed. If the current page block is not the first for
-	 * that page, this will not be stored and the value is null.
+	 * that page, or if no subscriber wants current revisions, this will not be
+	 * stored and the value is null. Otherwise, it is
+	 * {@link #mostCurrentRevisionHolder}.
 	 */
 	MwRevisionImpl mostCurrentRevision;
+	/**
+	 * Object that the most current revision is moved to. It is reused for
+	 * all pages. Its text buffer is swapped with that of the revision it
+	 * takes the data from, so that the text is never copied.
+	 */
+	final MwRevisionImpl mostCurrentRevisionHolder = new MwRevisionImpl();
+	/**
+	 * True if any subscriber wants to receive only the most current
+	 * revisions.
+	 */
+	boolean hasCurrentRevisionSubscriptions = false;
 	/**
 	 * Page id of the currently processed block of page revisions. Used to
 	 * detect when the block changes.
@@ -82,13 +102,37 @@ public class MwRevisionProcessorBroker implements MwRevisionProcessor {
 	final BitVector encounteredPages;
 	final BitVector encounteredRevisions;
 
+	/**
+	 * Constructor. The ids of encountered pages and revisions are stored in
+	 * {@link CompressedBitVector} objects, which only need memory for the ids
+	 * that are actually found.
+	 */
 	public MwRevisionProcessorBroker() {
+		this(new CompressedBitVector(), new CompressedBitVector());
+	}
+
+	/**
+	 * Constructor that uses the given bit vectors to store the ids of
+	 * encountered pages and revisions. This can be used to choose another
+	 * implementation, e.g., a {@link BitVectorImpl} of the expected size
+	 * when processing a full history dump of a wiki where most ids occur.
+	 * <p>
+	 * Brokers that process the parts of one dump concurrently share their bit
+	 * vectors, so that duplicates are also filtered across parts. The bit
+	 * vectors are only accessed while holding their lock.
+	 *
+	 * @param encounteredPages
+	 *            the ids of pages that have been encountered
+	 * @param encounteredRevisions
+	 *            the ids of revisions that have been encountered
+	 */
+	public MwRevisionProcessorBroker(BitVector encounteredPages,
+			BitVector encounteredRevisions) {
 		this.revisionSubscriptions = new ArrayList<>();
 		this.mostCurrentRevision = null;
 		this.currentPageId = -1;
-		// TODO these initial sizes need to be configurable
-		encounteredPages = new BitVectorImpl(20000000);
-		encounteredRevisions = new BitVectorImpl(200000000);
+		this.encounteredPages = encounteredPages;
+		this.encounteredRevisions = encounteredRevisions;
 	}
 
 	/**
@@ -99,8 +143,9 @@ public class MwRevisionProcessorBroker implements MwRevisionProcessor {
 	 * receive is owned by this {@link MwRevisionProcessorBroker}. Its data is
 	 * valid only during the execution of
 	 * {@link MwRevisionProcessor#processRevision(MwRevision)}, but it
-	 * will not be permanent. If the data is to be retained permanently, the
-	 * revision processor needs to make its own copy.
+	 * will not be permanent. In particular, the same object is passed on for
+	 * the most current revisions of all pages. If the data is to be retained
+	 * permanently, the revision processor needs to make its own copy.
 	 * 
 	 * @param mwRevisionProcessor
 	 *            the revision processor to register
@@ -121,6 +166,7 @@ public class MwRevisionProcessorBroker implements MwRevisionProcessor {
 		rs.model = model;
 		rs.onlyCurrentRevisions = onlyCurrentRevisions;
 		this.revisionSubscriptions.add(rs);
+		this.hasCurrentRevisionSubscriptions |= onlyCurrentRevisions;
 	}
 
 	@Override
@@ -135,33 +181,72 @@ public class MwRevisionProcessorBroker implements MwRevisionProcessor {
 	@Override
 	public void processRevision(MwRevision mwRevision) {
 
-		boolean revisionIsNew = !this.encounteredRevisions.getBit(mwRevision
-				.getRevisionId());
-		if (revisionIsNew) {
-			this.encounteredRevisions.setBit(mwRevision.getRevisionId(), true);
-		} else {
+		if (!markEncountered(this.encounteredRevisions,
+				mwRevision.getRevisionId())) {
 			return;
 		}
 
+		boolean isMostCurrent;
 		if (mwRevision.getPageId() != this.currentPageId) {
 			notifyMwRevisionProcessors(this.mostCurrentRevision, true);
+			this.mostCurrentRevision = null;
 
 			this.currentPageId = mwRevision.getPageId();
-			boolean currentPageIsNew = !this.encounteredPages
-					.getBit(this.currentPageId);
-			if (currentPageIsNew) {
-				this.encounteredPages.setBit(this.currentPageId, true);
-				this.mostCurrentRevision = new MwRevisionImpl(mwRevision);
-			} else {
-				this.mostCurrentRevision = null;
-			}
-		} else if (this.mostCurrentRevision != null
-				&& mwRevision.getRevisionId() > this.mostCurrentRevision
-						.getRevisionId()) {
-			this.mostCurrentRevision = new MwRevisionImpl(mwRevision);
+			isMostCurrent = markEncountered(this.encounteredPages,
+					this.currentPageId);
+		} else {
+			isMostCurrent = this.mostCurrentRevision != null
+					&& mwRevision.getRevisionId() > this.mostCurrentRevision
+							.getRevisionId();
 		}
 
 		notifyMwRevisionProcessors(mwRevision, false);
+
+		if (isMostCurrent && this.hasCurrentRevisionSubscriptions) {
+			storeMostCurrentRevision(mwRevision);
+		}
+	}
+
+	/**
+	 * Stores the given revision in {@link #mostCurrentRevisionHolder}. If the
+	 * owner of the revision released its text (see
+	 * {@link MwRevisionImpl#textReleasable}), the text buffers of the two
+	 * objects are swapped rather than copied, so that storing a newer
+	 * revision of a page costs the same however long its text is. The given
+	 * revision has no text afterwards in this case. Other revisions are
+	 * copied and left unchanged.
+	 *
+	 * @param mwRevision
+	 *            the most current revision of the page found so far
+	 */
+	void storeMostCurrentRevision(MwRevision mwRevision) {
+		if (mwRevision instanceof MwRevisionImpl
+				&& ((MwRevisionImpl) mwRevision).textReleasable) {
+			this.mostCurrentRevisionHolder.moveFrom((MwRevisionImpl) mwRevision);
+		} else {
+			this.mostCurrentRevisionHolder.moveFrom(new MwRevisionImpl(
+					mwRevision));
+		}
+		this.mostCurrentRevision = this.mostCurrentRevisionHolder;
+	}
+
+	/**
+	 * Sets the bit of the given id in the given bit vector.
+	 *
+	 * @param bitVector
+	 *            the bit vector of encountered ids
+	 * @param id
+	 *            the id that was encountered
+	 * @return true if the id had not been encountered before
+	 */
+	static boolean markEncountered(BitVector bitVector, long id) {
+		synchronized (bitVector) {
+			if (bitVector.getBit(id)) {
+				return false;
+			}
+			bitVector.setBit(id, true);
+			return true;
+		}
 	}
 
 	/**
@@ -185,6 +270,17 @@ public class MwRevisionProcessorBroker implements MwRevisionProcessor {
 		}
 	}
 
+	@Override
+	public void saveCheckpoint(DumpCheckpoint checkpoint) {
+		notifyMwRevisionProcessors(this.mostCurrentRevision, true);
+		this.mostCurrentRevision = null;
+	}
+
+	@Override
+	public void restoreCheckpoint(DumpCheckpoint checkpoint) {
+		// nothing to restore
+	}
+
 	/**
 	 * Finalises the processing of one dump file (and hence of the current block
 	 * of pages). In particular, this means that the most current revision found
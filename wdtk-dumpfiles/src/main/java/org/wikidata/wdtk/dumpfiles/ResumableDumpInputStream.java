@@ -0,0 +1,249 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+import org.wikidata.wdtk.util.GzipMemberInputStream;
+import org.wikidata.wdtk.util.GzipMemberInputStream.MemberPosition;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream.BlockPosition;
+
+/**
+ * Stream of the uncompressed content of a dump file that starts at the
+ * position of a {@link DumpCheckpoint}. For bzip2 compressed files,
+ * decompression starts at the compressed block of the checkpoint if it is
+ * known, and the stream keeps track of block positions so that they can be
+ * stored in later checkpoints. Gzip compressed files are handled in the same
+ * way if they consist of several members, using the member of the checkpoint
+ * instead of the block. Gzip files with a single member are decompressed from
+ * their start, since the format does not allow to start in the middle of a
+ * member. Uncompressed files are positioned by skipping, which does not
+ * require reading the skipped data.
+ */
+public class ResumableDumpInputStream extends FilterInputStream {
+
+	/**
+	 * The bzip2 stream that this stream reads from, or null if the file is
+	 * not compressed with bzip2.
+	 */
+	final ParallelBZip2CompressorInputStream bz2InputStream;
+	/**
+	 * The gzip stream that this stream reads from, or null if the file is
+	 * not compressed with gzip.
+	 */
+	final GzipMemberInputStream gzipInputStream;
+
+	ResumableDumpInputStream(InputStream in,
+			ParallelBZip2CompressorInputStream bz2InputStream,
+			GzipMemberInputStream gzipInputStream) {
+		super(in);
+		this.bz2InputStream = bz2InputStream;
+		this.gzipInputStream = gzipInputStream;
+	}
+
+	/**
+	 * Opens the given dump file of the directory, positioned at the given
+	 * checkpoint.
+	 *
+	 * @param directoryManager
+	 *            the directory that contains the dump file, which also
+	 *            sets the number of bzip2 decompression threads
+	 * @param fileName
+	 *            the name of the dump file; its compression type is
+	 *            determined from the file name extension
+	 * @param checkpoint
+	 *            the checkpoint to resume at, or null to start at the
+	 *            beginning of the dump
+	 * @return the positioned stream
+	 * @throws IOException
+	 *             if the file could not be read or is shorter than expected
+	 */
+	public static ResumableDumpInputStream open(
+			DirectoryManager directoryManager, String fileName,
+			DumpCheckpoint checkpoint) throws IOException {
+		CompressionType compressionType = WmfDumpFile
+				.getDumpFileCompressionType(fileName);
+		long position = checkpoint == null ? 0 : checkpoint.getPosition();
+
+		if (compressionType == CompressionType.GZIP) {
+			return openGzip(directoryManager, fileName, checkpoint, position);
+		}
+		if (compressionType != CompressionType.BZ2) {
+			InputStream in = directoryManager.getInputStreamForFile(fileName,
+					compressionType);
+			try {
+				skipFully(in, position);
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+			return new ResumableDumpInputStream(in, null, null);
+		}
+
+		int threads = Math.max(1,
+				directoryManager.getBz2DecompressionThreads());
+		BlockPosition blockPosition = checkpoint == null ? null : checkpoint
+				.getBlockPosition();
+		if (blockPosition != null
+				&& blockPosition.getUncompressedOffset() > position) {
+			blockPosition = null;
+		}
+		InputStream compressed = directoryManager.getInputStreamForFile(
+				fileName, CompressionType.NONE);
+		ParallelBZip2CompressorInputStream bz2InputStream = null;
+		try {
+			if (blockPosition != null) {
+				skipFully(compressed, blockPosition.getBitOffset() / 8);
+				bz2InputStream = new ParallelBZip2CompressorInputStream(
+						compressed, threads, blockPosition);
+				skipFully(bz2InputStream,
+						position - blockPosition.getUncompressedOffset());
+			} else {
+				bz2InputStream = new ParallelBZip2CompressorInputStream(
+						compressed, threads);
+				skipFully(bz2InputStream, position);
+			}
+		} catch (IOException e) {
+			if (bz2InputStream != null) {
+				bz2InputStream.close();
+			} else {
+				compressed.close();
+			}
+			throw e;
+		}
+		return new ResumableDumpInputStream(bz2InputStream, bz2InputStream,
+				null);
+	}
+
+	/**
+	 * Opens the given gzip compressed dump file, positioned at the given
+	 * checkpoint. Decompression starts at the member of the checkpoint if it
+	 * is known, and at the start of the file otherwise.
+	 *
+	 * @param directoryManager
+	 *            the directory that contains the dump file
+	 * @param fileName
+	 *            the name of the dump file
+	 * @param checkpoint
+	 *            the checkpoint to resume at, or null
+	 * @param position
+	 *            the position of the checkpoint in the uncompressed dump
+	 * @return the positioned stream
+	 * @throws IOException
+	 *             if the file could not be read or is shorter than expected
+	 */
+	static ResumableDumpInputStream openGzip(
+			DirectoryManager directoryManager, String fileName,
+			DumpCheckpoint checkpoint, long position) throws IOException {
+		MemberPosition memberPosition = checkpoint == null ? null : checkpoint
+				.getMemberPosition();
+		if (memberPosition == null
+				|| memberPosition.getUncompressedOffset() > position) {
+			memberPosition = new MemberPosition(0, 0);
+		}
+		InputStream compressed = directoryManager.getInputStreamForFile(
+				fileName, CompressionType.NONE);
+		GzipMemberInputStream gzipInputStream = null;
+		try {
+			skipFully(compressed, memberPosition.getByteOffset());
+			gzipInputStream = new GzipMemberInputStream(compressed,
+					memberPosition);
+			skipFully(gzipInputStream,
+					position - memberPosition.getUncompressedOffset());
+		} catch (IOException e) {
+			if (gzipInputStream != null) {
+				gzipInputStream.close();
+			} else {
+				compressed.close();
+			}
+			throw e;
+		}
+		return new ResumableDumpInputStream(gzipInputStream, null,
+				gzipInputStream);
+	}
+
+	/**
+	 * Returns the position of the compressed block that contains the given
+	 * position of the uncompressed dump. This is only known for bzip2
+	 * compressed files, and only for positions close to the data that has
+	 * been read already.
+	 *
+	 * @param position
+	 *            a position in the uncompressed dump
+	 * @return the block position, or null if not known
+	 */
+	public BlockPosition getBlockPosition(long position) {
+		if (this.bz2InputStream == null) {
+			return null;
+		}
+		return this.bz2InputStream.getBlockPosition(position);
+	}
+
+	/**
+	 * Returns the position of the gzip member that contains the given
+	 * position of the uncompressed dump. This is only known for gzip
+	 * compressed files, and only for positions close to the data that has
+	 * been read already.
+	 *
+	 * @param position
+	 *            a position in the uncompressed dump
+	 * @return the member position, or null if not known
+	 */
+	public MemberPosition getMemberPosition(long position) {
+		if (this.gzipInputStream == null) {
+			return null;
+		}
+		return this.gzipInputStream.getMemberPosition(position);
+	}
+
+	/**
+	 * Skips the given number of bytes of the stream, failing if the stream
+	 * ends before.
+	 *
+	 * @param in
+	 *            the stream to skip
+	 * @param count
+	 *            the number of bytes to skip
+	 * @throws IOException
+	 *             if the stream could not be read or ended too early
+	 */
+	static void skipFully(InputStream in, long count) throws IOException {
+		long remaining = count;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				if (in.read() == -1) {
+					throw new EOFException("Dump ended " + remaining
+							+ " bytes before the checkpoint position");
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+}
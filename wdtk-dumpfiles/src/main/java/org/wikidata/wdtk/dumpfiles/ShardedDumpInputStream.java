@@ -0,0 +1,401 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream;
+import org.wikidata.wdtk.util.ZstdSeekTable;
+
+/**
+ * Stream of the uncompressed lines of one shard of a line-based dump file,
+ * such as a JSON dump. The file is split into a given number of shards that
+ * can be processed independently, for example on different machines. Every
+ * line of the dump except for the first one belongs to exactly one shard; the
+ * first line is skipped, since it only holds the opening bracket in JSON
+ * dumps.
+ * <p>
+ * Uncompressed and bzip2 compressed files are split into byte ranges of equal
+ * size, so that each shard only reads its own part of the file. In bzip2
+ * files, a shard consists of the compressed blocks that start in its range.
+ * Since lines do not respect range or block boundaries, a shard starts with
+ * the first line that ends after the start of its data, and ends with the
+ * line that continues past the end of its data. Zstandard files in the
+ * seekable format (see {@link org.wikidata.wdtk.util.SeekableZstdOutputStream})
+ * are split like bzip2 files, with frames in place of blocks. Gzip and xz
+ * compressed files, and Zstandard files without a seek table, cannot be split
+ * in this way; every shard reads the whole file and takes every n-th line.
+ */
+public class ShardedDumpInputStream extends FilterInputStream {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(ShardedDumpInputStream.class);
+
+	/**
+	 * The bzip2 stream that this stream reads from, or null if the file is
+	 * not compressed with bzip2.
+	 */
+	final ParallelBZip2CompressorInputStream bz2InputStream;
+	/**
+	 * Position in the input stream where the data of the shard ends, or -1 if
+	 * it is not known in advance.
+	 */
+	final long endPosition;
+	/**
+	 * Number of shards if lines are distributed round robin, or 0 if the
+	 * shard is a byte range.
+	 */
+	final int shardCount;
+	/**
+	 * Index of the shard if lines are distributed round robin.
+	 */
+	final int shardIndex;
+
+	/**
+	 * Number of bytes read from the input stream so far.
+	 */
+	long position = 0;
+	/**
+	 * Index of the current line of the input stream.
+	 */
+	long lineIndex = 0;
+	/**
+	 * True until the first end of a line has been read.
+	 */
+	boolean inFirstLine = true;
+	/**
+	 * True if all lines of the shard have been returned.
+	 */
+	boolean finished = false;
+
+	ShardedDumpInputStream(InputStream in,
+			ParallelBZip2CompressorInputStream bz2InputStream,
+			long endPosition, int shardIndex, int shardCount) {
+		super(in);
+		this.bz2InputStream = bz2InputStream;
+		this.endPosition = endPosition;
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+	}
+
+	/**
+	 * Opens the given shard of a dump file of the directory.
+	 *
+	 * @param directoryManager
+	 *            the directory that contains the dump file, which also
+	 *            sets the number of bzip2 decompression threads
+	 * @param fileName
+	 *            the name of the dump file; its compression type is
+	 *            determined from the file name extension
+	 * @param shardIndex
+	 *            the index of the shard, starting at 0
+	 * @param shardCount
+	 *            the total number of shards
+	 * @return the stream of the lines of the shard
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public static ShardedDumpInputStream open(
+			DirectoryManager directoryManager, String fileName,
+			int shardIndex, int shardCount) throws IOException {
+		checkShard(shardIndex, shardCount);
+		CompressionType compressionType = WmfDumpFile
+				.getDumpFileCompressionType(fileName);
+		compressionType.checkAvailable();
+
+		ZstdSeekTable seekTable = null;
+		if (compressionType == CompressionType.ZSTD) {
+			seekTable = ZstdSeekTable.read(directoryManager, fileName);
+		}
+		if (compressionType == CompressionType.GZIP
+				|| compressionType == CompressionType.XZ
+				|| (compressionType == CompressionType.ZSTD && seekTable == null)) {
+			logger.warn("Dump file " + fileName
+					+ " cannot be split by position; every shard will read the whole file.");
+			return ofLines(directoryManager.getInputStreamForFile(fileName,
+					compressionType), shardIndex, shardCount);
+		}
+
+		long fileSize = directoryManager.getFileSize(fileName);
+		if (seekTable != null) {
+			return openZstdFrames(directoryManager, fileName, seekTable,
+					getRangeStart(fileSize, shardIndex, shardCount),
+					getRangeStart(fileSize, shardIndex + 1, shardCount),
+					shardIndex, shardCount);
+		}
+		long startByte = getRangeStart(fileSize, shardIndex, shardCount);
+		long endByte = getRangeStart(fileSize, shardIndex + 1, shardCount);
+		InputStream in = directoryManager.getInputStreamForFile(fileName,
+				CompressionType.NONE);
+		try {
+			ResumableDumpInputStream.skipFully(in, startByte);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+
+		if (compressionType == CompressionType.BZ2) {
+			int threads = Math.max(1,
+					directoryManager.getBz2DecompressionThreads());
+			ParallelBZip2CompressorInputStream bz2InputStream = new ParallelBZip2CompressorInputStream(
+					in, threads, startByte, endByte);
+			return new ShardedDumpInputStream(bz2InputStream, bz2InputStream,
+					-1, shardIndex, 0);
+		} else {
+			long endPosition = shardIndex + 1 == shardCount ? -1 : endByte
+					- startByte;
+			return new ShardedDumpInputStream(in, null, endPosition,
+					shardIndex, 0);
+		}
+	}
+
+	/**
+	 * Opens the shard of a Zstandard file in the seekable format that
+	 * consists of the frames that start in the given byte range. Decompression
+	 * continues past these frames to complete the last line.
+	 */
+	static ShardedDumpInputStream openZstdFrames(
+			DirectoryManager directoryManager, String fileName,
+			ZstdSeekTable seekTable, long startByte, long endByte,
+			int shardIndex, int shardCount) throws IOException {
+		int startFrame = seekTable.findFrameStartingAt(startByte);
+		int endFrame = seekTable.findFrameStartingAt(endByte);
+		if (startFrame == seekTable.getFrameCount()) {
+			return new ShardedDumpInputStream(new ByteArrayInputStream(
+					new byte[0]), null, -1, shardIndex, 0);
+		}
+
+		InputStream in = directoryManager.getInputStreamForFile(fileName,
+				CompressionType.NONE);
+		try {
+			ResumableDumpInputStream.skipFully(in,
+					seekTable.getCompressedOffset(startFrame));
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		long endPosition = shardIndex + 1 == shardCount ? -1 : seekTable
+				.getDecompressedOffset(endFrame)
+				- seekTable.getDecompressedOffset(startFrame);
+		return new ShardedDumpInputStream(new ZstdCompressorInputStream(
+				new BufferedInputStream(in)), null, endPosition, shardIndex, 0);
+	}
+
+	/**
+	 * Returns a stream of the lines of the given shard of the given stream,
+	 * where lines are distributed round robin. This requires reading the whole
+	 * input.
+	 *
+	 * @param in
+	 *            the stream of the uncompressed dump
+	 * @param shardIndex
+	 *            the index of the shard, starting at 0
+	 * @param shardCount
+	 *            the total number of shards
+	 * @return the stream of the lines of the shard
+	 */
+	static ShardedDumpInputStream ofLines(InputStream in, int shardIndex,
+			int shardCount) {
+		checkShard(shardIndex, shardCount);
+		return new ShardedDumpInputStream(in, null, -1, shardIndex,
+				shardCount);
+	}
+
+	/**
+	 * Checks that the given shard exists.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the shard index is not between 0 and the number of shards
+	 */
+	static void checkShard(int shardIndex, int shardCount) {
+		if (shardIndex < 0 || shardIndex >= shardCount) {
+			throw new IllegalArgumentException("Invalid shard " + shardIndex
+					+ " of " + shardCount);
+		}
+	}
+
+	/**
+	 * Returns the first byte of the range of the given shard.
+	 *
+	 * @param fileSize
+	 *            the size of the file in bytes
+	 * @param shardIndex
+	 *            the index of the shard
+	 * @param shardCount
+	 *            the total number of shards
+	 * @return the position of the first byte
+	 */
+	static long getRangeStart(long fileSize, int shardIndex, int shardCount) {
+		// fileSize * shardIndex might overflow for very large files
+		return fileSize / shardCount * shardIndex + fileSize % shardCount
+				* shardIndex / shardCount;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (!this.finished) {
+			int count = this.in.read(b, off, len);
+			if (count == -1) {
+				this.finished = true;
+			} else {
+				int result = this.shardCount > 0 ? selectLines(b, off, count)
+						: selectRange(b, off, count);
+				if (result > 0) {
+					return result;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] buffer = new byte[(int) Math.min(n, 1 << 16)];
+		long remaining = n;
+		while (remaining > 0) {
+			int count = read(buffer, 0, (int) Math.min(remaining,
+					buffer.length));
+			if (count == -1) {
+				break;
+			}
+			remaining -= count;
+		}
+		return n - remaining;
+	}
+
+	@Override
+	public int available() {
+		return 0;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Removes the data that does not belong to the byte range of this shard
+	 * from the given part of the buffer.
+	 *
+	 * @return the number of remaining bytes, which have been moved to the
+	 *         start of the given part
+	 */
+	int selectRange(byte[] b, int off, int count) {
+		long start = this.position;
+		this.position += count;
+		int dataStart = off;
+
+		if (this.inFirstLine) {
+			int newline = indexOfNewline(b, off, off + count);
+			if (newline < 0) {
+				return 0;
+			}
+			long endPosition = getEndPosition();
+			if (endPosition >= 0 && start + (newline - off) >= endPosition) {
+				// the shard does not contain the end of any line
+				this.finished = true;
+				return 0;
+			}
+			this.inFirstLine = false;
+			dataStart = newline + 1;
+		}
+
+		int dataEnd = off + count;
+		long endPosition = getEndPosition();
+		if (endPosition >= 0 && this.position > endPosition) {
+			int from = (int) Math.max(dataStart, off + endPosition - start);
+			int newline = indexOfNewline(b, from, dataEnd);
+			if (newline >= 0) {
+				dataEnd = newline + 1;
+				this.finished = true;
+			}
+		}
+
+		if (dataStart > off) {
+			System.arraycopy(b, dataStart, b, off, dataEnd - dataStart);
+		}
+		return dataEnd - dataStart;
+	}
+
+	/**
+	 * Removes the lines that do not belong to this shard from the given part
+	 * of the buffer, when lines are distributed round robin.
+	 *
+	 * @return the number of remaining bytes, which have been moved to the
+	 *         start of the given part
+	 */
+	int selectLines(byte[] b, int off, int count) {
+		int result = 0;
+		for (int i = off; i < off + count; i++) {
+			boolean selected = this.lineIndex > 0
+					&& (this.lineIndex - 1) % this.shardCount == this.shardIndex;
+			if (selected) {
+				b[off + result++] = b[i];
+			}
+			if (b[i] == '\n') {
+				this.lineIndex++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the position in the input stream where the data of the shard
+	 * ends. For bzip2 compressed files, this is only known after reaching the
+	 * first block after the range of the shard.
+	 *
+	 * @return the end position, or -1 if not known (yet)
+	 */
+	long getEndPosition() {
+		if (this.bz2InputStream != null) {
+			return this.bz2InputStream.getRangeEndOffset();
+		}
+		return this.endPosition;
+	}
+
+	static int indexOfNewline(byte[] b, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (b[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,38 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Marker interface for {@link MwRevisionProcessor} objects that can be called
+ * from several threads at once. When the parts of a multi-part dump are
+ * processed concurrently with
+ * {@link DumpProcessingController#processDumpParts(java.util.List)}, such
+ * processors receive the revisions of all parts directly. Every part calls
+ * {@link MwRevisionProcessor#startRevisionProcessing(String, String, java.util.Map)}
+ * and {@link MwRevisionProcessor#finishRevisionProcessing()} on its own.
+ * <p>
+ * Registered processors that implement neither this interface nor
+ * {@link CombinableMwRevisionProcessor} are called by one part at a time, so
+ * that the revisions of different parts are interleaved.
+ */
+public interface ThreadSafeMwRevisionProcessor extends MwRevisionProcessor {
+
+}
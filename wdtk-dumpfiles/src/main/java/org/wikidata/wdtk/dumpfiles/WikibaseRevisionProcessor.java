@@ -62,8 +62,103 @@ public class WikibaseRevisionProcessor implements MwRevisionProcessor {
 	 */
 	public WikibaseRevisionProcessor(
 			EntityDocumentProcessor entityDocumentProcessor, String siteIri) {
+		this(entityDocumentProcessor, siteIri, null);
+	}
+
+	/**
+	 * Constructor for a processor that only keeps the data that is included
+	 * by the given filter. The filter is applied while parsing the JSON of
+	 * each revision.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the object that entity documents will be forwarded to
+	 * @param siteIri
+	 *            the IRI of the site that the data comes from, as used in
+	 *            {@link ItemIdValue#getSiteIri()}
+	 * @param filter
+	 *            the filter to apply, or null to keep all data
+	 */
+	public WikibaseRevisionProcessor(
+			EntityDocumentProcessor entityDocumentProcessor, String siteIri,
+			DocumentDataFilter filter) {
+		this(entityDocumentProcessor, new JsonDeserializer(siteIri, filter));
+	}
+
+	/**
+	 * Constructor for a processor that uses the given deserializer. Entity
+	 * documents that have already been read from a revision with the same
+	 * deserializer (see {@link #prepareRevision(MwRevisionImpl, JsonDeserializer)})
+	 * are not read again.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the object that entity documents will be forwarded to
+	 * @param jsonDeserializer
+	 *            the deserializer for the JSON of the revisions
+	 */
+	WikibaseRevisionProcessor(EntityDocumentProcessor entityDocumentProcessor,
+			JsonDeserializer jsonDeserializer) {
 		this.entityDocumentProcessor = entityDocumentProcessor;
-		this.jsonDeserializer = new JsonDeserializer(siteIri);
+		this.jsonDeserializer = jsonDeserializer;
+	}
+
+	/**
+	 * Deserializes the entity document of the given revision ahead of time,
+	 * so that this does not have to be done when the revision is processed.
+	 * This method is thread-safe. Revisions that are not Wikibase entities or
+	 * cannot be read are left unchanged; errors are logged when such
+	 * revisions are processed.
+	 *
+	 * @param mwRevision
+	 *            the revision to prepare
+	 * @param jsonDeserializer
+	 *            the deserializer to use; the document will only be used by
+	 *            processors that use the same deserializer
+	 */
+	static void prepareRevision(MwRevisionImpl mwRevision,
+			JsonDeserializer jsonDeserializer) {
+		String model = mwRevision.getModel();
+		if (!MwRevision.MODEL_WIKIBASE_ITEM.equals(model)
+				&& !MwRevision.MODEL_WIKIBASE_PROPERTY.equals(model)
+				&& !MwRevision.MODEL_WIKIBASE_LEXEME.equals(model)) {
+			return;
+		}
+		try {
+			if (isWikibaseRedirection(mwRevision)) {
+				mwRevision.entityDocument = jsonDeserializer
+						.deserializeEntityRedirectDocument(mwRevision.getTextReader());
+			} else if (MwRevision.MODEL_WIKIBASE_ITEM.equals(model)) {
+				mwRevision.entityDocument = jsonDeserializer
+						.deserializeItemDocument(mwRevision.getTextReader());
+			} else if (MwRevision.MODEL_WIKIBASE_PROPERTY.equals(model)) {
+				mwRevision.entityDocument = jsonDeserializer
+						.deserializePropertyDocument(mwRevision.getTextReader());
+			} else {
+				mwRevision.entityDocument = jsonDeserializer
+						.deserializeLexemeDocument(mwRevision.getTextReader());
+			}
+			mwRevision.entityDocumentDeserializer = jsonDeserializer;
+		} catch (IOException e) {
+			// reported when the revision is processed
+		}
+	}
+
+	/**
+	 * Returns the document of the given type that has been deserialized from
+	 * the revision ahead of time with the deserializer of this object.
+	 *
+	 * @return the document, or null if there is none
+	 */
+	private <T extends EntityDocument> T getPreparedDocument(
+			MwRevision mwRevision, Class<T> documentType) {
+		if (!(mwRevision instanceof MwRevisionImpl)) {
+			return null;
+		}
+		MwRevisionImpl mwRevisionImpl = (MwRevisionImpl) mwRevision;
+		if (mwRevisionImpl.entityDocumentDeserializer == this.jsonDeserializer
+				&& documentType.isInstance(mwRevisionImpl.entityDocument)) {
+			return documentType.cast(mwRevisionImpl.entityDocument);
+		}
+		return null;
 	}
 
 	@Override
@@ -95,7 +190,11 @@ public class WikibaseRevisionProcessor implements MwRevisionProcessor {
 		}
 
 		try {
-			ItemDocument document = jsonDeserializer.deserializeItemDocument(mwRevision.getText());
+			ItemDocument document = getPreparedDocument(mwRevision,
+					ItemDocument.class);
+			if (document == null) {
+				document = jsonDeserializer.deserializeItemDocument(mwRevision.getTextReader());
+			}
 			entityDocumentProcessor.processItemDocument(document);
 		} catch (JsonParseException e1) {
 			logger.error("Failed to parse JSON for item "
@@ -117,7 +216,11 @@ public class WikibaseRevisionProcessor implements MwRevisionProcessor {
 		}
 
 		try {
-			PropertyDocument document = jsonDeserializer.deserializePropertyDocument(mwRevision.getText());
+			PropertyDocument document = getPreparedDocument(mwRevision,
+					PropertyDocument.class);
+			if (document == null) {
+				document = jsonDeserializer.deserializePropertyDocument(mwRevision.getTextReader());
+			}
 			entityDocumentProcessor.processPropertyDocument(document);
 		} catch (JsonParseException e1) {
 			logger.error("Failed to parse JSON for property "
@@ -139,7 +242,11 @@ public class WikibaseRevisionProcessor implements MwRevisionProcessor {
 		}
 
 		try {
-			LexemeDocument document = jsonDeserializer.deserializeLexemeDocument(mwRevision.getText());
+			LexemeDocument document = getPreparedDocument(mwRevision,
+					LexemeDocument.class);
+			if (document == null) {
+				document = jsonDeserializer.deserializeLexemeDocument(mwRevision.getTextReader());
+			}
 			entityDocumentProcessor.processLexemeDocument(document);
 		} catch (JsonParseException e1) {
 			logger.error("Failed to parse JSON for lexeme "
@@ -156,7 +263,11 @@ public class WikibaseRevisionProcessor implements MwRevisionProcessor {
 
 	private void processEntityRedirectRevision(MwRevision mwRevision) {
 		try {
-			EntityRedirectDocument document = jsonDeserializer.deserializeEntityRedirectDocument(mwRevision.getText());
+			EntityRedirectDocument document = getPreparedDocument(mwRevision,
+					EntityRedirectDocument.class);
+			if (document == null) {
+				document = jsonDeserializer.deserializeEntityRedirectDocument(mwRevision.getTextReader());
+			}
 			entityDocumentProcessor.processEntityRedirectDocument(document);
 		} catch (JsonParseException e1) {
 			logger.error("Failed to parse JSON for redirect "
@@ -171,7 +282,11 @@ public class WikibaseRevisionProcessor implements MwRevisionProcessor {
 		}
 	}
 
-	private boolean isWikibaseRedirection(MwRevision mwRevision) {
+	private static boolean isWikibaseRedirection(MwRevision mwRevision) {
+		if (mwRevision instanceof MwRevisionImpl) {
+			// scans the text buffer without creating a string
+			return ((MwRevisionImpl) mwRevision).textContains("\"redirect\":");
+		}
 		return mwRevision.getText().contains("\"redirect\":"); //Hacky but fast
 	}
 
@@ -28,7 +28,10 @@ import java.net.URL;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.dumpfiles.DumpCheckpoint;
 import org.wikidata.wdtk.dumpfiles.DumpContentType;
+import org.wikidata.wdtk.dumpfiles.ResumableDumpInputStream;
+import org.wikidata.wdtk.dumpfiles.ShardedDumpInputStream;
 import org.wikidata.wdtk.util.DirectoryManager;
 import org.wikidata.wdtk.util.WebResourceFetcher;
 import org.wikidata.wdtk.util.WebResourceFetcherImpl;
@@ -84,6 +87,69 @@ public class JsonOnlineDumpFile extends WmfDumpFile {
 		return dailyDirectoryManager.getInputStreamForFile(fileName, WmfDumpFile.getDumpFileCompressionType(fileName));
 	}
 
+	@Override
+	public InputStream getDumpFileStream(DumpCheckpoint checkpoint)
+			throws IOException {
+		prepareDumpFile();
+
+		String fileName = WmfDumpFile.getDumpFileName(DumpContentType.JSON,
+				this.projectName, this.dateStamp);
+		DirectoryManager dailyDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						DumpContentType.JSON, this.dateStamp));
+
+		return ResumableDumpInputStream.open(dailyDirectoryManager,
+				fileName, checkpoint);
+	}
+
+	@Override
+	public InputStream getDumpFileStream(int shardIndex, int shardCount)
+			throws IOException {
+		prepareDumpFile();
+
+		String fileName = WmfDumpFile.getDumpFileName(DumpContentType.JSON,
+				this.projectName, this.dateStamp);
+		DirectoryManager dailyDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						DumpContentType.JSON, this.dateStamp));
+
+		return ShardedDumpInputStream.open(dailyDirectoryManager,
+				fileName, shardIndex, shardCount);
+	}
+
+	/**
+	 * Downloads the dump file and returns a stream of it that can be read
+	 * while the download is running. If the dump file has already been
+	 * prepared, it is read from disk.
+	 */
+	@Override
+	public InputStream getDumpFileStreamDuringDownload() throws IOException {
+		if (this.isPrepared) {
+			return getDumpFileStream();
+		}
+
+		String fileName = WmfDumpFile.getDumpFileName(DumpContentType.JSON,
+				this.projectName, this.dateStamp);
+		String urlString = getBaseUrl() + fileName;
+
+		logger.info("Downloading and processing JSON dump file "
+				+ fileName + " from " + urlString + " ...");
+
+		if (!isAvailable()) {
+			throw new IOException(
+					"Dump file not available (yet). Aborting dump retrieval.");
+		}
+
+		DirectoryManager dailyDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						DumpContentType.JSON, this.dateStamp));
+
+		String md5 = fetchMd5(this.webResourceFetcher, getBaseUrl()
+				+ "wikidata-" + this.dateStamp + "-md5sums.txt", fileName);
+		return dailyDirectoryManager.createFileFromUrlAndOpen(fileName,
+				urlString, this.webResourceFetcher, md5, WmfDumpFile.getDumpFileCompressionType(fileName));
+	}
+
 	@Override
 	public void prepareDumpFile() throws IOException {
 		if (this.isPrepared) {
@@ -106,10 +172,10 @@ public class JsonOnlineDumpFile extends WmfDumpFile {
 				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
 						DumpContentType.JSON, this.dateStamp));
 
-		try (InputStream inputStream = webResourceFetcher
-				.getInputStreamForUrl(urlString)) {
-			dailyDirectoryManager.createFileAtomic(fileName, inputStream);
-		}
+		String md5 = fetchMd5(this.webResourceFetcher, getBaseUrl()
+				+ "wikidata-" + this.dateStamp + "-md5sums.txt", fileName);
+		dailyDirectoryManager.createFileFromUrl(fileName, urlString,
+				this.webResourceFetcher, md5);
 
 		this.isPrepared = true;
 
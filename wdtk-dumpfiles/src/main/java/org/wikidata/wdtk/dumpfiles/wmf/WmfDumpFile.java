@@ -1,15 +1,19 @@
 package org.wikidata.wdtk.dumpfiles.wmf;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.dumpfiles.DumpContentType;
 import org.wikidata.wdtk.dumpfiles.MwDumpFile;
 import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.WebResourceFetcher;
 
 /*
  * #%L
@@ -39,6 +43,14 @@ import org.wikidata.wdtk.util.CompressionType;
  */
 public abstract class WmfDumpFile implements MwDumpFile {
 
+	static final Logger logger = LoggerFactory.getLogger(WmfDumpFile.class);
+
+	/**
+	 * Number of times that reading a published list of checksums is tried
+	 * before giving up.
+	 */
+	static final int MD5_FETCH_ATTEMPTS = 3;
+
 	/**
 	 * The default URL of the website to obtain the dump files from.
 	 */
@@ -137,6 +149,58 @@ public abstract class WmfDumpFile implements MwDumpFile {
 	 */
 	protected abstract boolean fetchIsDone();
 
+	/**
+	 * Finds the MD5 checksum of a file in a list of checksums as published
+	 * for the dumps, where each line consists of a checksum, two spaces and
+	 * a file name.
+	 *
+	 * @param webResourceFetcher
+	 *            object to use for accessing the web
+	 * @param md5sumsUrl
+	 *            the URL of the list of checksums
+	 * @param fileName
+	 *            the name of the dump file
+	 * @return the checksum, or null if no list has been published or if it
+	 *         does not contain the file, so that the download cannot be
+	 *         verified
+	 * @throws IOException
+	 *             if the list exists but could not be read after
+	 *             {@link #MD5_FETCH_ATTEMPTS} attempts
+	 */
+	static String fetchMd5(WebResourceFetcher webResourceFetcher,
+			String md5sumsUrl, String fileName) throws IOException {
+		for (int attempt = 1;; attempt++) {
+			try (BufferedReader bufferedReader = new BufferedReader(
+					new InputStreamReader(
+							webResourceFetcher.getInputStreamForUrl(md5sumsUrl),
+							StandardCharsets.UTF_8))) {
+				String inputLine;
+				while ((inputLine = bufferedReader.readLine()) != null) {
+					String[] parts = inputLine.trim().split("\\s+");
+					if (parts.length == 2 && parts[1].equals(fileName)) {
+						return parts[0];
+					}
+				}
+				logger.warn("The checksums at " + md5sumsUrl
+						+ " do not include " + fileName
+						+ ". The download will not be verified.");
+				return null;
+			} catch (FileNotFoundException e) {
+				logger.warn("No checksums found at " + md5sumsUrl
+						+ ". The download of " + fileName
+						+ " will not be verified.");
+				return null;
+			} catch (IOException e) {
+				if (attempt >= MD5_FETCH_ATTEMPTS) {
+					throw new IOException("Could not read the checksums at "
+							+ md5sumsUrl + ": " + e.getMessage(), e);
+				}
+				logger.warn("Could not read the checksums at " + md5sumsUrl
+						+ " (" + e.getMessage() + "). Trying again.");
+			}
+		}
+	}
+
 	/**
 	 * Returns the ending used by the Wikimedia-provided dumpfile names of the
 	 * given type.
@@ -202,6 +266,10 @@ public abstract class WmfDumpFile implements MwDumpFile {
 			return CompressionType.GZIP;
 		} else if (fileName.endsWith(".bz2")) {
 			return CompressionType.BZ2;
+		} else if (fileName.endsWith(".zst")) {
+			return CompressionType.ZSTD;
+		} else if (fileName.endsWith(".xz")) {
+			return CompressionType.XZ;
 		} else {
 			return CompressionType.NONE;
 		}
@@ -23,7 +23,10 @@ package org.wikidata.wdtk.dumpfiles.wmf;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.wikidata.wdtk.dumpfiles.DumpCheckpoint;
 import org.wikidata.wdtk.dumpfiles.DumpContentType;
+import org.wikidata.wdtk.dumpfiles.ResumableDumpInputStream;
+import org.wikidata.wdtk.dumpfiles.ShardedDumpInputStream;
 import org.wikidata.wdtk.util.DirectoryManager;
 
 /**
@@ -102,6 +105,26 @@ public class WmfLocalDumpFile extends WmfDumpFile {
 				dumpFileName, WmfDumpFile.getDumpFileCompressionType(dumpFileName));
 	}
 
+	@Override
+	public InputStream getDumpFileStream(DumpCheckpoint checkpoint)
+			throws IOException {
+		String dumpFileName = WmfDumpFile.getDumpFileName(this.dumpContentType,
+				this.projectName, this.dateStamp);
+
+		return ResumableDumpInputStream.open(this.localDumpfileDirectoryManager,
+				dumpFileName, checkpoint);
+	}
+
+	@Override
+	public InputStream getDumpFileStream(int shardIndex, int shardCount)
+			throws IOException {
+		String dumpFileName = WmfDumpFile.getDumpFileName(this.dumpContentType,
+				this.projectName, this.dateStamp);
+
+		return ShardedDumpInputStream.open(this.localDumpfileDirectoryManager,
+				dumpFileName, shardIndex, shardCount);
+	}
+
 	@Override
 	public void prepareDumpFile() {
 		// nothing to do
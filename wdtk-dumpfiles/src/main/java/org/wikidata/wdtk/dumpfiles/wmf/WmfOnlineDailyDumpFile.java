@@ -28,7 +28,10 @@ import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.dumpfiles.DumpCheckpoint;
 import org.wikidata.wdtk.dumpfiles.DumpContentType;
+import org.wikidata.wdtk.dumpfiles.ResumableDumpInputStream;
+import org.wikidata.wdtk.dumpfiles.ShardedDumpInputStream;
 import org.wikidata.wdtk.util.DirectoryManager;
 import org.wikidata.wdtk.util.WebResourceFetcher;
 
@@ -93,6 +96,36 @@ class WmfOnlineDailyDumpFile extends WmfDumpFile {
 				WmfDumpFile.getDumpFileCompressionType(fileName));
 	}
 
+	@Override
+	public InputStream getDumpFileStream(DumpCheckpoint checkpoint)
+			throws IOException {
+		prepareDumpFile();
+
+		String fileName = WmfDumpFile.getDumpFileName(DumpContentType.DAILY,
+				this.projectName, this.dateStamp);
+		DirectoryManager dailyDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						DumpContentType.DAILY, this.dateStamp));
+
+		return ResumableDumpInputStream.open(dailyDirectoryManager,
+				fileName, checkpoint);
+	}
+
+	@Override
+	public InputStream getDumpFileStream(int shardIndex, int shardCount)
+			throws IOException {
+		prepareDumpFile();
+
+		String fileName = WmfDumpFile.getDumpFileName(DumpContentType.DAILY,
+				this.projectName, this.dateStamp);
+		DirectoryManager dailyDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						DumpContentType.DAILY, this.dateStamp));
+
+		return ShardedDumpInputStream.open(dailyDirectoryManager,
+				fileName, shardIndex, shardCount);
+	}
+
 	@Override
 	public void prepareDumpFile() throws IOException {
 		if (this.isPrepared) {
@@ -115,12 +148,8 @@ class WmfOnlineDailyDumpFile extends WmfDumpFile {
 				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
 						DumpContentType.DAILY, this.dateStamp));
 
-		long size;
-		try (InputStream inputStream = webResourceFetcher
-				.getInputStreamForUrl(urlString)) {
-			size = dailyDirectoryManager
-					.createFileAtomic(fileName, inputStream);
-		}
+		long size = dailyDirectoryManager.createFileFromUrl(fileName,
+				urlString, this.webResourceFetcher, null);
 
 		this.isPrepared = true;
 
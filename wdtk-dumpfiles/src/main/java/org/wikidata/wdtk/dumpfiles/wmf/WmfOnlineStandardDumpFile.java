@@ -28,7 +28,10 @@ import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.dumpfiles.DumpCheckpoint;
 import org.wikidata.wdtk.dumpfiles.DumpContentType;
+import org.wikidata.wdtk.dumpfiles.ResumableDumpInputStream;
+import org.wikidata.wdtk.dumpfiles.ShardedDumpInputStream;
 import org.wikidata.wdtk.util.DirectoryManager;
 import org.wikidata.wdtk.util.WebResourceFetcher;
 
@@ -101,6 +104,72 @@ public class WmfOnlineStandardDumpFile extends WmfDumpFile {
 				WmfDumpFile.getDumpFileCompressionType(fileName));
 	}
 
+	@Override
+	public InputStream getDumpFileStream(DumpCheckpoint checkpoint)
+			throws IOException {
+		prepareDumpFile();
+
+		String fileName = WmfDumpFile.getDumpFileName(this.dumpContentType,
+				this.projectName, this.dateStamp);
+		DirectoryManager thisDumpDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						this.dumpContentType, this.dateStamp));
+
+		return ResumableDumpInputStream.open(thisDumpDirectoryManager,
+				fileName, checkpoint);
+	}
+
+	@Override
+	public InputStream getDumpFileStream(int shardIndex, int shardCount)
+			throws IOException {
+		prepareDumpFile();
+
+		String fileName = WmfDumpFile.getDumpFileName(this.dumpContentType,
+				this.projectName, this.dateStamp);
+		DirectoryManager thisDumpDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						this.dumpContentType, this.dateStamp));
+
+		return ShardedDumpInputStream.open(thisDumpDirectoryManager,
+				fileName, shardIndex, shardCount);
+	}
+
+	/**
+	 * Downloads the dump file and returns a stream of it that can be read
+	 * while the download is running. If the dump file has already been
+	 * prepared, it is read from disk.
+	 */
+	@Override
+	public InputStream getDumpFileStreamDuringDownload() throws IOException {
+		if (this.isPrepared) {
+			return getDumpFileStream();
+		}
+
+		String fileName = WmfDumpFile.getDumpFileName(this.dumpContentType,
+				this.projectName, this.dateStamp);
+		String urlString = getBaseUrl() + fileName;
+
+		logger.info("Downloading and processing "
+				+ this.dumpContentType.toString().toLowerCase() + " dump file "
+				+ fileName + " from " + urlString + " ...");
+
+		if (!isAvailable()) {
+			throw new IOException(
+					"Dump file not available (yet). Aborting dump retrieval.");
+		}
+
+		DirectoryManager thisDumpDirectoryManager = this.dumpfileDirectoryManager
+				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
+						this.dumpContentType, this.dateStamp));
+
+		String md5 = fetchMd5(this.webResourceFetcher, getBaseUrl()
+				+ this.projectName + "-" + this.dateStamp + "-md5sums.txt",
+				fileName);
+		return thisDumpDirectoryManager.createFileFromUrlAndOpen(fileName,
+				urlString, this.webResourceFetcher, md5,
+				WmfDumpFile.getDumpFileCompressionType(fileName));
+	}
+
 	@Override
 	public void prepareDumpFile() throws IOException {
 		if (this.isPrepared) {
@@ -124,12 +193,11 @@ public class WmfOnlineStandardDumpFile extends WmfDumpFile {
 				.getSubdirectoryManager(WmfDumpFile.getDumpFileDirectoryName(
 						this.dumpContentType, this.dateStamp));
 
-		long size;
-		try (InputStream inputStream = webResourceFetcher
-				.getInputStreamForUrl(urlString)) {
-			size = thisDumpDirectoryManager.createFileAtomic(fileName,
-					inputStream);
-		}
+		String md5 = fetchMd5(this.webResourceFetcher, getBaseUrl()
+				+ this.projectName + "-" + this.dateStamp + "-md5sums.txt",
+				fileName);
+		long size = thisDumpDirectoryManager.createFileFromUrl(fileName,
+				urlString, this.webResourceFetcher, md5);
 
 		this.isPrepared = true;
 
@@ -0,0 +1,206 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.dumpfiles.AsyncEntityDocumentProcessor.QueueFullPolicy;
+
+public class AsyncEntityDocumentProcessorTest {
+
+	/**
+	 * Test class that records all documents in the order they arrive, after
+	 * waiting for a latch to be released.
+	 */
+	private static class WaitingRecorder implements EntityDocumentProcessor {
+
+		final List<EntityDocument> documents = new ArrayList<>();
+		final CountDownLatch latch;
+
+		WaitingRecorder(CountDownLatch latch) {
+			this.latch = latch;
+		}
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			try {
+				this.latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.documents.add(itemDocument);
+		}
+	}
+
+	private static List<ItemDocument> makeItems(int count) {
+		List<ItemDocument> items = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			items.add(ItemDocumentBuilder
+					.forItemId(Datamodel.makeWikidataItemIdValue("Q" + i))
+					.withLabel("label " + i, "en").withRevisionId(i).build());
+		}
+		return items;
+	}
+
+	@Test
+	public void testBlockingQueue() {
+		WaitingRecorder recorder = new WaitingRecorder(new CountDownLatch(0));
+		AsyncEntityDocumentProcessor processor = new AsyncEntityDocumentProcessor(
+				recorder, 2, QueueFullPolicy.BLOCK);
+		List<ItemDocument> items = makeItems(50);
+		for (ItemDocument item : items) {
+			processor.processItemDocument(item);
+		}
+		processor.finish();
+		processor.finish();
+
+		assertEquals(items, recorder.documents);
+		assertEquals(50, processor.getProcessedDocumentCount());
+		assertEquals(0, processor.getSpilledDocumentCount());
+		assertTrue(processor.getMaxQueueDepth() <= 2);
+		assertEquals(0, processor.getQueueDepth());
+	}
+
+	@Test
+	public void testSpillingQueue() {
+		CountDownLatch latch = new CountDownLatch(1);
+		WaitingRecorder recorder = new WaitingRecorder(latch);
+		AsyncEntityDocumentProcessor processor = new AsyncEntityDocumentProcessor(
+				recorder, 3, QueueFullPolicy.SPILL);
+		List<ItemDocument> items = makeItems(20);
+		for (ItemDocument item : items) {
+			processor.processItemDocument(item);
+		}
+		assertTrue(processor.getSpilledDocumentCount() >= 16);
+		assertTrue(processor.getSpillDepth() > 0);
+		assertEquals(0, processor.getBlockedTime());
+
+		latch.countDown();
+		processor.finish();
+
+		assertEquals(items, recorder.documents);
+		assertEquals(20, processor.getProcessedDocumentCount());
+		assertEquals(0, processor.getSpillDepth());
+	}
+
+	@Test
+	public void testCheckpointWaitsForQueuedDocuments() throws Exception {
+		List<Integer> countsAtCheckpoints = new ArrayList<>();
+		class CheckpointedRecorder extends WaitingRecorder implements
+				DumpCheckpointListener {
+			CheckpointedRecorder() {
+				super(new CountDownLatch(0));
+			}
+
+			@Override
+			public void processItemDocument(ItemDocument itemDocument) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.processItemDocument(itemDocument);
+			}
+
+			@Override
+			public void saveCheckpoint(DumpCheckpoint checkpoint) {
+				countsAtCheckpoints.add(this.documents.size());
+			}
+
+			@Override
+			public void restoreCheckpoint(DumpCheckpoint checkpoint) {
+			}
+		}
+		CheckpointedRecorder recorder = new CheckpointedRecorder();
+		AsyncEntityDocumentProcessor processor = new AsyncEntityDocumentProcessor(
+				recorder, 2, QueueFullPolicy.SPILL);
+		List<ItemDocument> items = makeItems(20);
+		for (int i = 0; i < items.size(); i++) {
+			processor.processItemDocument(items.get(i));
+			if (i == 9) {
+				processor.saveCheckpoint(null);
+				assertEquals(0, processor.getQueueDepth());
+				assertEquals(0, processor.getSpillDepth());
+				assertEquals(10, processor.getProcessedDocumentCount());
+			}
+		}
+		processor.saveCheckpoint(null);
+		processor.finish();
+
+		assertEquals(Arrays.asList(10, 20), countsAtCheckpoints);
+		assertEquals(items, recorder.documents);
+	}
+
+	@Test
+	public void testDiscardedDocumentsAreNotCounted() {
+		AsyncEntityDocumentProcessor processor = new AsyncEntityDocumentProcessor(
+				new EntityDocumentProcessor() {
+					@Override
+					public void processItemDocument(ItemDocument itemDocument) {
+						throw new IllegalStateException("Simulated failure");
+					}
+				}, 10, QueueFullPolicy.BLOCK);
+		try {
+			// the failure is reported by whichever call comes after it
+			for (ItemDocument item : makeItems(5)) {
+				processor.processItemDocument(item);
+			}
+			processor.finish();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, processor.getProcessedDocumentCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testProcessorFailure() {
+		AsyncEntityDocumentProcessor processor = new AsyncEntityDocumentProcessor(
+				new EntityDocumentProcessor() {
+					@Override
+					public void processItemDocument(ItemDocument itemDocument) {
+						throw new IllegalStateException("Simulated failure");
+					}
+				}, 1, QueueFullPolicy.BLOCK);
+		for (ItemDocument item : makeItems(5)) {
+			processor.processItemDocument(item);
+		}
+		processor.finish();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new AsyncEntityDocumentProcessor(new EntityDocumentProcessor() {
+		}, 0, QueueFullPolicy.BLOCK);
+	}
+
+}
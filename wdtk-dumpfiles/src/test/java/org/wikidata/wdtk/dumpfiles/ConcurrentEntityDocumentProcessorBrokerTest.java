@@ -0,0 +1,146 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.PropertyDocumentBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+public class ConcurrentEntityDocumentProcessorBrokerTest {
+
+	/**
+	 * Test class that records all documents and the threads that processed
+	 * them.
+	 */
+	private static class ThreadRecorder implements EntityDocumentProcessor {
+
+		final List<EntityDocument> documents = new ArrayList<>();
+		final List<Thread> threads = new ArrayList<>();
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			record(itemDocument);
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			record(propertyDocument);
+		}
+
+		void record(EntityDocument document) {
+			this.documents.add(document);
+			if (!this.threads.contains(Thread.currentThread())) {
+				this.threads.add(Thread.currentThread());
+			}
+		}
+	}
+
+	private static List<EntityDocument> deliverDocuments(
+			EntityDocumentProcessor processor) {
+		List<EntityDocument> documents = new ArrayList<>();
+		for (int i = 1; i <= 100; i++) {
+			if (i % 10 == 0) {
+				PropertyDocument propertyDocument = PropertyDocumentBuilder
+						.forPropertyIdAndDatatype(
+								Datamodel.makeWikidataPropertyIdValue("P" + i),
+								DatatypeIdValue.DT_ITEM).build();
+				processor.processPropertyDocument(propertyDocument);
+				documents.add(propertyDocument);
+			} else {
+				ItemDocument itemDocument = ItemDocumentBuilder.forItemId(
+						Datamodel.makeWikidataItemIdValue("Q" + i)).build();
+				processor.processItemDocument(itemDocument);
+				documents.add(itemDocument);
+			}
+		}
+		return documents;
+	}
+
+	@Test
+	public void testConcurrentProcessing() {
+		ThreadRecorder recorder1 = new ThreadRecorder();
+		ThreadRecorder recorder2 = new ThreadRecorder();
+		ConcurrentEntityDocumentProcessorBroker broker = new ConcurrentEntityDocumentProcessorBroker(
+				4);
+		broker.registerEntityDocumentProcessor(recorder1);
+		broker.registerEntityDocumentProcessor(recorder2);
+		broker.registerEntityDocumentProcessor(recorder1);
+		assertEquals(2, broker.getAsynchronousProcessors().size());
+
+		List<EntityDocument> documents = deliverDocuments(broker);
+		broker.close();
+		broker.close();
+
+		assertEquals(documents, recorder1.documents);
+		assertEquals(documents, recorder2.documents);
+		assertEquals(1, recorder1.threads.size());
+		assertEquals(1, recorder2.threads.size());
+		assertNotEquals(recorder1.threads.get(0), recorder2.threads.get(0));
+		assertNotEquals(Thread.currentThread(), recorder1.threads.get(0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFailingProcessor() {
+		ThreadRecorder recorder = new ThreadRecorder();
+		ConcurrentEntityDocumentProcessorBroker broker = new ConcurrentEntityDocumentProcessorBroker();
+		broker.registerEntityDocumentProcessor(new EntityDocumentProcessor() {
+			@Override
+			public void processPropertyDocument(
+					PropertyDocument propertyDocument) {
+				throw new IllegalStateException("Simulated failure");
+			}
+		});
+		broker.registerEntityDocumentProcessor(recorder);
+		deliverDocuments(broker);
+		try {
+			broker.close();
+		} finally {
+			// the other processor is finished nevertheless
+			assertEquals(100, recorder.documents.size());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testProcessingAfterClose() {
+		ConcurrentEntityDocumentProcessorBroker broker = new ConcurrentEntityDocumentProcessorBroker();
+		broker.registerEntityDocumentProcessor(new ThreadRecorder());
+		broker.close();
+		deliverDocuments(broker);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new ConcurrentEntityDocumentProcessorBroker(0);
+	}
+
+}
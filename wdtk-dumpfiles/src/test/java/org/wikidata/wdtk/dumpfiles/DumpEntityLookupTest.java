@@ -0,0 +1,244 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+import org.wikidata.wdtk.util.CompressionType;
+
+public class DumpEntityLookupTest {
+
+	static final int ITEM_COUNT = 12000;
+
+	MockDirectoryManager dm;
+	Path dmPath;
+
+	@Before
+	public void setUp() throws IOException {
+		this.dmPath = Paths.get(System.getProperty("user.dir"));
+		this.dm = new MockDirectoryManager(this.dmPath, true, true);
+	}
+
+	/**
+	 * Creates the lines of a dump with items in random order, large enough
+	 * for several bzip2 blocks of 900k.
+	 */
+	private List<String> makeDumpLines() {
+		Random random = new Random(42);
+		List<Integer> ids = new ArrayList<>();
+		for (int id = 1; id <= ITEM_COUNT; id++) {
+			ids.add(id);
+		}
+		Collections.shuffle(ids, random);
+
+		List<String> lines = new ArrayList<>();
+		lines.add("{\"type\":\"property\",\"id\":\"P31\",\"datatype\":\"wikibase-item\","
+				+ "\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"instance of\"}}}");
+		for (int id : ids) {
+			StringBuilder label = new StringBuilder();
+			while (label.length() < 200) {
+				label.append(Long.toString(random.nextLong(), 36));
+			}
+			lines.add("{\"type\":\"item\",\"id\":\"Q" + id
+					+ "\",\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Q"
+					+ id + " " + label + "\"}},\"descriptions\":{},"
+					+ "\"aliases\":{},\"claims\":{},\"sitelinks\":{}}");
+		}
+		return lines;
+	}
+
+	private String makeDumpContents(List<String> lines) {
+		return "[\n" + String.join(",\n", lines) + "\n]\n";
+	}
+
+	private void checkLookup(String fileName) throws IOException {
+		JsonDumpIndex index = JsonDumpIndex.build(this.dm, fileName);
+		assertEquals(ITEM_COUNT + 1, index.getEntityCount());
+		checkLookup(new DumpEntityLookup(this.dm, fileName, index,
+				Datamodel.SITE_WIKIDATA));
+	}
+
+	private void checkLookup(DumpEntityLookup lookup) throws IOException {
+		for (int id : new int[] { 1, 2, 63, 64, 65, 1000, 5555, ITEM_COUNT }) {
+			EntityDocument document = lookup.getEntityDocument("Q" + id);
+			assertTrue(document instanceof ItemDocument);
+			assertEquals("Q" + id, document.getEntityId().getId());
+			assertTrue(((ItemDocument) document).findLabel("en").startsWith(
+					"Q" + id + " "));
+		}
+		assertTrue(lookup.getEntityDocument("P31") instanceof PropertyDocument);
+
+		assertNull(lookup.getEntityDocument("Q" + (ITEM_COUNT + 1)));
+		assertNull(lookup.getEntityDocument("Q0"));
+		assertNull(lookup.getEntityDocument("P1"));
+		assertNull(lookup.getEntityDocument("L1-F1"));
+		assertFalse(lookup.getIndex().contains("Q" + (ITEM_COUNT + 1)));
+	}
+
+	@Test
+	public void testBz2Lookup() throws IOException {
+		String contents = makeDumpContents(makeDumpLines());
+		assertTrue(contents.length() > 2000000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.bz2"),
+				contents, CompressionType.BZ2);
+		checkLookup("dump.json.bz2");
+	}
+
+	@Test
+	public void testGzipLookup() throws IOException {
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.gz"),
+				makeDumpContents(makeDumpLines()), CompressionType.GZIP);
+		checkLookup("dump.json.gz");
+	}
+
+	@Test
+	public void testMultiMemberGzipLookup() throws IOException {
+		List<String> lines = makeDumpLines();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int linesPerMember = 100;
+		for (int i = 0; i <= lines.size(); i += linesPerMember) {
+			StringBuilder member = new StringBuilder(i == 0 ? "[\n" : "");
+			for (int j = i; j < Math.min(lines.size(), i + linesPerMember); j++) {
+				member.append(lines.get(j)).append(
+						j + 1 < lines.size() ? ",\n" : "\n]\n");
+			}
+			try (GZIPOutputStream gzipOut = new GZIPOutputStream(out) {
+				@Override
+				public void close() throws IOException {
+					finish();
+				}
+			}) {
+				gzipOut.write(member.toString().getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		MockDirectoryManager.files.put(this.dmPath.resolve("dump.json.gz"),
+				out.toByteArray());
+		checkLookup("dump.json.gz");
+
+		JsonDumpIndex index = JsonDumpIndex.build(this.dm, "dump.json.gz");
+		assertTrue(index.blockStarts.length > 100);
+	}
+
+	@Test
+	public void testSeekableZstdLookup() throws IOException {
+		this.dm = new MockDirectoryManager(this.dmPath, true, false);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"),
+				makeDumpContents(makeDumpLines()));
+		DumpFileRecompressor.recompress(this.dm, "dump.json", "dump.json.zst",
+				3, 1 << 16);
+		checkLookup("dump.json.zst");
+
+		JsonDumpIndex index = JsonDumpIndex.build(this.dm, "dump.json.zst");
+		assertTrue(index.blockStarts.length > 40);
+	}
+
+	@Test
+	public void testXzLookup() throws IOException {
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.xz"),
+				makeDumpContents(makeDumpLines()), CompressionType.XZ);
+		checkLookup("dump.json.xz");
+	}
+
+	@Test
+	public void testUncompressedLookup() throws IOException {
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"),
+				makeDumpContents(makeDumpLines()));
+		checkLookup("dump.json");
+	}
+
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.bz2"),
+				makeDumpContents(makeDumpLines()), CompressionType.BZ2);
+		JsonDumpIndex index = JsonDumpIndex.build(this.dm, "dump.json.bz2");
+
+		Path indexFile = Files.createTempFile("wdtk-index", ".idx");
+		try {
+			index.save(indexFile);
+			// a few bytes per entity
+			assertTrue(Files.size(indexFile) < 8 * index.getEntityCount());
+			JsonDumpIndex loaded = JsonDumpIndex.load(indexFile);
+			assertEquals(index.getEntityCount(), loaded.getEntityCount());
+			checkLookup(new DumpEntityLookup(this.dm, "dump.json.bz2", loaded,
+					Datamodel.SITE_WIKIDATA));
+		} finally {
+			Files.deleteIfExists(indexFile);
+		}
+		assertNull(JsonDumpIndex.load(indexFile));
+	}
+
+	@Test(expected = IOException.class)
+	public void testIndexOfOtherDump() throws IOException {
+		List<String> lines = makeDumpLines();
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"),
+				makeDumpContents(lines));
+		JsonDumpIndex index = JsonDumpIndex.build(this.dm, "dump.json");
+
+		Collections.reverse(lines);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"),
+				makeDumpContents(lines));
+		new DumpEntityLookup(this.dm, "dump.json", index,
+				Datamodel.SITE_WIKIDATA).getEntityDocument("Q42");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongCompressionType() throws IOException {
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"),
+				makeDumpContents(makeDumpLines()));
+		JsonDumpIndex index = JsonDumpIndex.build(this.dm, "dump.json");
+		new DumpEntityLookup(this.dm, "dump.json.bz2", index,
+				Datamodel.SITE_WIKIDATA);
+	}
+
+	@Test
+	public void testKeys() {
+		assertTrue(JsonDumpIndex.getKey("Q42") < JsonDumpIndex.getKey("Q43"));
+		assertTrue(JsonDumpIndex.getKey("Q99") < JsonDumpIndex.getKey("Q100"));
+		assertTrue(JsonDumpIndex.getKey("P100") < JsonDumpIndex.getKey("Q1"));
+		assertEquals(-1, JsonDumpIndex.getKey("q42"));
+		assertEquals(-1, JsonDumpIndex.getKey("Q"));
+		assertEquals(-1, JsonDumpIndex.getKey("L1-F1"));
+		assertEquals(-1, JsonDumpIndex.getKey("Q99999999999999999"));
+		assertEquals(-1, JsonDumpIndex.getKey(null));
+	}
+}
@@ -0,0 +1,103 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.ZstdSeekTable;
+
+public class DumpFileRecompressorTest {
+
+	MockDirectoryManager dm;
+	Path dmPath;
+
+	@Before
+	public void setUp() throws IOException {
+		this.dmPath = Paths.get(System.getProperty("user.dir"));
+		this.dm = new MockDirectoryManager(this.dmPath, true, false);
+	}
+
+	private String readAll(String fileName, CompressionType compressionType)
+			throws IOException {
+		try (InputStream in = this.dm.getInputStreamForFile(fileName,
+				compressionType)) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void testFramesEndAtLineBreaks() throws IOException {
+		StringBuilder sb = new StringBuilder("[\n");
+		for (int i = 1; i <= 1000; i++) {
+			sb.append("{\"id\":\"Q").append(i).append("\"},\n");
+		}
+		// a line that does not fit into a frame
+		for (int i = 0; i < 500; i++) {
+			sb.append("long line ");
+		}
+		String contents = sb.append("\n]").toString();
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.bz2"),
+				contents, CompressionType.BZ2);
+
+		assertEquals(contents.length(), DumpFileRecompressor.recompress(
+				this.dm, "dump.json.bz2", "dump.json.zst", 3, 1000));
+		assertEquals(contents, readAll("dump.json.zst", CompressionType.ZSTD));
+
+		ZstdSeekTable seekTable = ZstdSeekTable.read(this.dm, "dump.json.zst");
+		assertTrue(seekTable.getFrameCount() > 20);
+		int longLineStart = contents.indexOf("long line");
+		int longLineEnd = contents.indexOf('\n', longLineStart);
+		for (int frame = 1; frame < seekTable.getFrameCount(); frame++) {
+			int start = (int) seekTable.getDecompressedOffset(frame);
+			assertTrue(start - seekTable.getDecompressedOffset(frame - 1) <= 1000);
+			if (start <= longLineStart || start > longLineEnd) {
+				assertEquals('\n', contents.charAt(start - 1));
+			}
+		}
+	}
+
+	@Test
+	public void testTargetFileName() {
+		assertEquals("dump.json.zst",
+				DumpFileRecompressor.getTargetFileName("dump.json.gz"));
+		assertEquals("dump.json.zst",
+				DumpFileRecompressor.getTargetFileName("dump.json.bz2"));
+		assertEquals("dump.json.zst",
+				DumpFileRecompressor.getTargetFileName("dump.json"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRecompressZstd() throws IOException {
+		DumpFileRecompressor.recompress(Paths.get("dump.json.zst"));
+	}
+}
@@ -21,20 +21,42 @@ package org.wikidata.wdtk.dumpfiles;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
 
 import org.junit.Ignore;
 import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelFilter;
+import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.dumpfiles.AsyncEntityDocumentProcessor.QueueFullPolicy;
 import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
 import org.wikidata.wdtk.testing.MockDirectoryManager;
 import org.wikidata.wdtk.testing.MockStringContentFactory;
+import org.wikidata.wdtk.util.DirectoryManagerFactory;
+import org.wikidata.wdtk.util.DirectoryManagerImpl;
 import org.wikidata.wdtk.util.Timer;
 
 public class JsonDumpFileProcessingTest {
@@ -68,6 +90,84 @@ public class JsonDumpFileProcessingTest {
 
 	}
 
+	/**
+	 * Test class that records the ids of all entities in the order they
+	 * arrive.
+	 */
+	private static class EntityIdRecorder implements EntityDocumentProcessor {
+
+		final List<String> entityIds = new ArrayList<>();
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			entityIds.add(itemDocument.getEntityId().getId());
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			entityIds.add(propertyDocument.getEntityId().getId());
+		}
+
+	}
+
+	/**
+	 * Test class that records entity ids, saves the number of recorded ids
+	 * with each checkpoint, and crashes after a given number of ids.
+	 */
+	private static class CheckpointedIdRecorder extends EntityIdRecorder
+			implements DumpCheckpointListener {
+
+		int crashAfter = -1;
+		int savedCount = 0;
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			checkCrash();
+			super.processItemDocument(itemDocument);
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			checkCrash();
+			super.processPropertyDocument(propertyDocument);
+		}
+
+		private void checkCrash() {
+			if (entityIds.size() == crashAfter) {
+				throw new IllegalStateException("Simulated crash");
+			}
+		}
+
+		@Override
+		public void saveCheckpoint(DumpCheckpoint checkpoint) {
+			savedCount = entityIds.size();
+		}
+
+		@Override
+		public void restoreCheckpoint(DumpCheckpoint checkpoint) {
+			entityIds.subList(savedCount, entityIds.size()).clear();
+		}
+	}
+
+	/**
+	 * Test class that records all documents in the order they arrive.
+	 */
+	private static class DocumentRecorder implements EntityDocumentProcessor {
+
+		final List<EntityDocument> documents = new ArrayList<>();
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			documents.add(itemDocument);
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			documents.add(propertyDocument);
+		}
+
+	}
+
 	@Test
 	public void testRegularJsonProcessing() throws IOException {
 		Path dmPath = Paths.get(System.getProperty("user.dir"));
@@ -159,6 +259,430 @@ public class JsonDumpFileProcessingTest {
 		assertEquals(101, timer.entityCount);
 	}
 
+	@Test
+	public void testParallelJsonProcessing() throws IOException {
+		List<String> sequentialIds = processLongDump(1, true);
+		List<String> orderedIds = processLongDump(4, true);
+		List<String> unorderedIds = processLongDump(4, false);
+
+		assertEquals(101, sequentialIds.size());
+		assertEquals(sequentialIds, orderedIds);
+		assertEquals(sequentialIds.size(), unorderedIds.size());
+		assertEquals(new HashSet<>(sequentialIds), new HashSet<>(unorderedIds));
+	}
+
+	@Test
+	public void testAsynchronousJsonProcessing() throws IOException {
+		List<String> sequentialIds = processLongDump(1, true);
+
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		setLocalJsonDumpFile("mock-dump-for-long-testing.json", "20150223", dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+		dpc.setParallelism(2);
+		dpc.setAsynchronousProcessing(2, QueueFullPolicy.SPILL);
+
+		EntityIdRecorder recorder = new EntityIdRecorder();
+		dpc.registerEntityDocumentProcessor(recorder, null, true);
+		dpc.processMostRecentJsonDump();
+
+		assertEquals(sequentialIds, recorder.entityIds);
+		assertEquals(1, dpc.getAsynchronousProcessors().size());
+		AsyncEntityDocumentProcessor asyncProcessor = dpc
+				.getAsynchronousProcessors().get(0);
+		assertEquals(recorder, asyncProcessor.getEntityDocumentProcessor());
+		assertEquals(101, asyncProcessor.getProcessedDocumentCount());
+		assertEquals(0, asyncProcessor.getSpillDepth());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeAsynchronousQueueCapacity() {
+		new DumpProcessingController("wikidatawiki").setAsynchronousProcessing(
+				-1, QueueFullPolicy.BLOCK);
+	}
+
+	@Test
+	public void testParallelBuggyJsonProcessing() throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		setLocalJsonDumpFile("mock-dump-with-bugs.json", "20150223", dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+		dpc.setParallelism(3);
+
+		EntityTimerProcessor timer = new EntityTimerProcessor(0);
+		dpc.registerEntityDocumentProcessor(timer, null, true);
+
+		timer.open();
+		dpc.processMostRecentJsonDump();
+		timer.close();
+
+		assertTrue(timer.entityCount >= 3);
+	}
+
+	@Test
+	public void testFilteredJsonProcessing() throws IOException {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(new HashSet<>(Arrays.asList("en", "de")));
+		filter.setPropertyFilter(Collections.singleton(
+				Datamodel.makeWikidataPropertyIdValue("P31")));
+		filter.setSiteLinkFilter(Collections.emptySet());
+		DatamodelFilter datamodelFilter = new DatamodelFilter(
+				new DataObjectFactoryImpl(), filter);
+
+		List<EntityDocument> expected = new ArrayList<>();
+		for (EntityDocument document : processLongDumpDocuments(null)) {
+			if (document instanceof ItemDocument) {
+				expected.add(datamodelFilter.filter((ItemDocument) document));
+			} else {
+				expected.add(datamodelFilter.filter((PropertyDocument) document));
+			}
+		}
+
+		assertEquals(101, expected.size());
+		assertEquals(expected, processLongDumpDocuments(filter));
+	}
+
+	@Test
+	public void testLazyItemDocuments() throws IOException {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(new HashSet<>(Arrays.asList("en", "de")));
+		filter.setSiteLinkFilter(Collections.emptySet());
+
+		List<EntityDocument> documents = processLongDumpDocuments(null, true);
+		assertTrue(documents.get(0) instanceof LazyItemDocument);
+		assertEquals(processLongDumpDocuments(null, false), documents);
+		assertEquals(processLongDumpDocuments(filter, false),
+				processLongDumpDocuments(filter, true));
+	}
+
+	@Test
+	public void testEntityTypeFilter() throws IOException {
+		DumpProcessingController dpc = makeLongDumpController();
+		dpc.setEntityTypeFilter(Collections.singleton(EntityIdValue.ET_PROPERTY));
+
+		List<String> ids = recordEntityIds(dpc);
+		assertEquals(46, ids.size());
+		for (String id : ids) {
+			assertTrue(id.startsWith("P"));
+		}
+	}
+
+	@Test
+	public void testEntityIdRangeFilter() throws IOException {
+		DumpProcessingController dpc = makeLongDumpController();
+		dpc.addEntityIdRange("Q100", "Q150");
+		dpc.addEntityIdRange("P30", "P40");
+
+		assertEquals(Arrays.asList("P31", "P35", "P36", "P37", "P39", "Q100",
+				"Q102", "Q103", "Q125", "Q129", "Q136", "Q140", "Q144", "Q147",
+				"Q148"), recordEntityIds(dpc));
+	}
+
+	@Test
+	public void testParallelEntityTypeAndIdRangeFilter() throws IOException {
+		DumpProcessingController dpc = makeLongDumpController();
+		dpc.setParallelism(3);
+		dpc.setEntityTypeFilter(Collections.singleton(EntityIdValue.ET_ITEM));
+		dpc.addEntityIdRange("Q100", "Q150");
+		dpc.addEntityIdRange("P30", "P40");
+
+		assertEquals(Arrays.asList("Q100", "Q102", "Q103", "Q125", "Q129",
+				"Q136", "Q140", "Q144", "Q147", "Q148"), recordEntityIds(dpc));
+	}
+
+	@Test
+	public void testMappedJsonProcessing() throws IOException {
+		List<String> expectedIds = processLongDump(1, true);
+
+		assertEquals(expectedIds, processLongDumpMapped(1, 1 << 20));
+		// small windows, so that lines and batches cross window boundaries
+		assertEquals(expectedIds, processLongDumpMapped(1, 1000));
+		assertEquals(expectedIds, processLongDumpMapped(3, 1000));
+	}
+
+	@Test
+	public void testParallelMappedJsonProcessingWithFilter() throws IOException {
+		Path file = copyLongDumpToFile();
+		try {
+			DumpProcessingController dpc = new DumpProcessingController(
+					"wikidatawiki");
+			dpc.setOfflineMode(true);
+			dpc.setMemoryMapping(true);
+			dpc.setParallelism(3);
+			dpc.setEntityTypeFilter(Collections
+					.singleton(EntityIdValue.ET_ITEM));
+			dpc.addEntityIdRange("Q100", "Q150");
+
+			EntityIdRecorder recorder = new EntityIdRecorder();
+			dpc.registerEntityDocumentProcessor(recorder, null, true);
+			dpc.processDump(new MwLocalDumpFile(file.toString(),
+					DumpContentType.JSON, "20150223", "wikidatawiki"));
+
+			assertEquals(Arrays.asList("Q100", "Q102", "Q103", "Q125",
+					"Q129", "Q136", "Q140", "Q144", "Q147", "Q148"),
+					new ArrayList<>(new TreeSet<>(recorder.entityIds)));
+			assertEquals(10, recorder.entityIds.size());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidEntityTypeFilter() {
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.setEntityTypeFilter(Collections.singleton(EntityIdValue.ET_FORM));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() {
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.setParallelism(0);
+	}
+
+	@Test
+	public void testResumeAtCheckpoint() throws IOException {
+		List<String> expectedIds = processLongDump(1, true);
+		Path checkpointFile = Files.createTempFile("wdtk-checkpoint", ".properties");
+		Files.delete(checkpointFile);
+		try {
+			CheckpointedIdRecorder recorder = new CheckpointedIdRecorder();
+			recorder.crashAfter = 35;
+
+			DumpProcessingController dpc = makeLongDumpController();
+			dpc.setCheckpointFile(checkpointFile);
+			dpc.setCheckpointInterval(10);
+			dpc.registerEntityDocumentProcessor(recorder, null, true);
+			try {
+				dpc.processMostRecentJsonDump();
+				fail("Processing should have crashed");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+
+			DumpCheckpoint checkpoint = DumpCheckpoint.load(checkpointFile);
+			assertNotNull(checkpoint);
+			assertEquals(30, checkpoint.getRecordCount());
+			assertEquals(expectedIds.get(29), checkpoint.getLastRecord());
+			assertEquals(30, recorder.savedCount);
+
+			recorder.crashAfter = -1;
+			dpc = makeLongDumpController();
+			dpc.setCheckpointFile(checkpointFile);
+			dpc.setCheckpointInterval(10);
+			dpc.registerEntityDocumentProcessor(recorder, null, true);
+			dpc.processMostRecentJsonDump();
+
+			assertEquals(expectedIds, recorder.entityIds);
+			assertFalse(Files.exists(checkpointFile));
+		} finally {
+			Files.deleteIfExists(checkpointFile);
+		}
+	}
+
+	@Test
+	public void testParallelResumeAtCheckpoint() throws IOException {
+		List<String> expectedIds = processLongDump(1, true);
+		assertEquals(expectedIds, resumeLongDumpInParallel(true));
+
+		List<String> unorderedIds = resumeLongDumpInParallel(false);
+		unorderedIds.sort(null);
+		expectedIds.sort(null);
+		assertEquals(expectedIds, unorderedIds);
+	}
+
+	@Test
+	public void testShardedProcessing() throws IOException {
+		List<String> expectedIds = processLongDump(1, true);
+		List<String> shardedIds = new ArrayList<>();
+		for (int shard = 0; shard < 3; shard++) {
+			DumpProcessingController dpc = makeLongDumpController();
+			dpc.setShard(shard, 3);
+			EntityIdRecorder recorder = new EntityIdRecorder();
+			dpc.registerEntityDocumentProcessor(recorder, null, true);
+			dpc.processMostRecentJsonDump();
+			assertFalse(recorder.entityIds.isEmpty());
+			shardedIds.addAll(recorder.entityIds);
+		}
+
+		shardedIds.sort(null);
+		expectedIds.sort(null);
+		assertEquals(expectedIds, shardedIds);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidShard() {
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.setShard(3, 3);
+	}
+
+	private List<String> resumeLongDumpInParallel(boolean orderedDelivery)
+			throws IOException {
+		Path checkpointFile = Files.createTempFile("wdtk-checkpoint", ".properties");
+		Files.delete(checkpointFile);
+		try {
+			DumpProcessingController dpc = makeLongDumpController();
+			dpc.setCheckpointFile(checkpointFile);
+			dpc.setCheckpointInterval(20);
+			CheckpointedIdRecorder recorder = new CheckpointedIdRecorder();
+			dpc.registerEntityDocumentProcessor(recorder, null, true);
+			MwDumpFile dumpFile = dpc.getMostRecentDump(DumpContentType.JSON);
+			JsonDumpFileProcessor processor = new JsonDumpFileProcessor(
+					recorder, Datamodel.SITE_WIKIDATA);
+			processor.setParallelism(3);
+			processor.setOrderedDelivery(orderedDelivery);
+			processor.setBatchSize(7);
+
+			recorder.crashAfter = 50;
+			try {
+				dpc.processDumpFile(dumpFile, processor);
+				fail("Processing should have crashed");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			DumpCheckpoint checkpoint = DumpCheckpoint.load(checkpointFile);
+			if (orderedDelivery) {
+				// checkpoints are taken after complete batches of 7 lines
+				assertEquals(42, checkpoint.getRecordCount());
+			}
+			if (checkpoint == null) {
+				// processing starts over without restoring anything
+				recorder.entityIds.clear();
+			} else {
+				assertEquals(checkpoint.getRecordCount(), recorder.savedCount);
+			}
+
+			recorder.crashAfter = -1;
+			dpc.processDumpFile(dumpFile, processor);
+			assertFalse(Files.exists(checkpointFile));
+			return recorder.entityIds;
+		} finally {
+			Files.deleteIfExists(checkpointFile);
+		}
+	}
+
+	private List<String> processLongDump(int parallelism,
+			boolean orderedDelivery) throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		setLocalJsonDumpFile("mock-dump-for-long-testing.json", "20150223", dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+		dpc.setParallelism(parallelism);
+		dpc.setOrderedDelivery(orderedDelivery);
+
+		EntityIdRecorder recorder = new EntityIdRecorder();
+		dpc.registerEntityDocumentProcessor(recorder, null, true);
+
+		JsonDumpFileProcessor jsonDumpFileProcessor = (JsonDumpFileProcessor) dpc
+				.getJsonDumpFileProcessor();
+		jsonDumpFileProcessor.setBatchSize(7);
+		dpc.processDumpFile(dpc.getMostRecentDump(DumpContentType.JSON),
+				jsonDumpFileProcessor);
+
+		return recorder.entityIds;
+	}
+
+	private Path copyLongDumpToFile() throws IOException {
+		DirectoryManagerFactory
+				.setDirectoryManagerClass(DirectoryManagerImpl.class);
+		Path file = Files.createTempFile("wdtk-mapped", ".json");
+		try (InputStream in = JsonDumpFileProcessingTest.class
+				.getResourceAsStream("/mock-dump-for-long-testing.json")) {
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return file;
+	}
+
+	private List<String> processLongDumpMapped(int parallelism,
+			int windowSize) throws IOException {
+		Path file = copyLongDumpToFile();
+		try {
+			EntityIdRecorder recorder = new EntityIdRecorder();
+			JsonDumpFileProcessor jsonDumpFileProcessor = new JsonDumpFileProcessor(
+					recorder, Datamodel.SITE_WIKIDATA);
+			jsonDumpFileProcessor.setParallelism(parallelism);
+			jsonDumpFileProcessor.setBatchSize(7);
+			jsonDumpFileProcessor.setMappingWindowSize(windowSize);
+			jsonDumpFileProcessor.processMappedDumpFile(file,
+					new MwLocalDumpFile(file.toString()));
+			return recorder.entityIds;
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private List<EntityDocument> processLongDumpDocuments(
+			DocumentDataFilter filter) throws IOException {
+		return processLongDumpDocuments(filter, false);
+	}
+
+	private List<EntityDocument> processLongDumpDocuments(
+			DocumentDataFilter filter, boolean lazyItemDocuments)
+			throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		setLocalJsonDumpFile("mock-dump-for-long-testing.json", "20150223", dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+		if (filter != null) {
+			dpc.setLanguageFilter(filter.getLanguageFilter());
+			dpc.setPropertyFilter(filter.getPropertyFilter());
+			dpc.setSiteLinkFilter(filter.getSiteLinkFilter());
+		}
+		dpc.setLazyItemDocuments(lazyItemDocuments);
+
+		DocumentRecorder recorder = new DocumentRecorder();
+		dpc.registerEntityDocumentProcessor(recorder, null, true);
+		dpc.processMostRecentJsonDump();
+
+		return recorder.documents;
+	}
+
+	private DumpProcessingController makeLongDumpController()
+			throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		setLocalJsonDumpFile("mock-dump-for-long-testing.json", "20150223", dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+		return dpc;
+	}
+
+	private List<String> recordEntityIds(DumpProcessingController dpc) {
+		EntityIdRecorder recorder = new EntityIdRecorder();
+		dpc.registerEntityDocumentProcessor(recorder, null, true);
+		dpc.processMostRecentJsonDump();
+		recorder.entityIds.sort((id1, id2) -> {
+			int result = id1.substring(0, 1).compareTo(id2.substring(0, 1));
+			if (result == 0) {
+				result = Integer.compare(Integer.parseInt(id1.substring(1)),
+						Integer.parseInt(id2.substring(1)));
+			}
+			return result;
+		});
+		return recorder.entityIds;
+	}
+
 	private void setLocalJsonDumpFile(String fileName, String dateStamp,
 			MockDirectoryManager dm) throws IOException {
 
@@ -0,0 +1,141 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+
+public class JsonDumpLineFilterTest {
+
+	private boolean accept(JsonDumpLineFilter filter, String line) {
+		byte[] bytes = ("xx" + line + "yy").getBytes(StandardCharsets.UTF_8);
+		return filter.accept(bytes, 2, bytes.length - 4);
+	}
+
+	@Test
+	public void testTrivialFilter() {
+		JsonDumpLineFilter filter = new JsonDumpLineFilter();
+		assertTrue(filter.isTrivial());
+		filter.setEntityTypes(null);
+		assertTrue(filter.isTrivial());
+		filter.setEntityTypes(Collections.singleton(EntityIdValue.ET_ITEM));
+		assertFalse(filter.isTrivial());
+	}
+
+	@Test
+	public void testEntityTypes() {
+		JsonDumpLineFilter filter = new JsonDumpLineFilter();
+		filter.setEntityTypes(new HashSet<>(Arrays.asList(
+				EntityIdValue.ET_LEXEME, EntityIdValue.ET_PROPERTY)));
+
+		assertFalse(accept(filter, "{\"type\":\"item\",\"id\":\"Q1\"},"));
+		assertTrue(accept(filter, "{\"type\":\"property\",\"id\":\"P1\"},"));
+		assertTrue(accept(filter, "{ \"id\" : \"L1\" , \"type\" : \"lexeme\" }"));
+		assertFalse(accept(filter, "{\"type\":\"lexemes\"}"));
+	}
+
+	@Test
+	public void testNestedFieldsAreIgnored() {
+		JsonDumpLineFilter filter = new JsonDumpLineFilter();
+		filter.setEntityTypes(Collections.singleton(EntityIdValue.ET_ITEM));
+		filter.addIdRange("Q10", "Q20");
+
+		assertTrue(accept(filter, "{\"claims\":{\"P31\":[{\"type\":\"statement\","
+				+ "\"id\":\"Q1$abc\",\"x\":[\"type\",\"id\"]}]},"
+				+ "\"type\":\"item\",\"id\":\"Q15\"}"));
+		assertFalse(accept(filter, "{\"claims\":{\"type\":\"item\",\"id\":\"Q15\"},"
+				+ "\"type\":\"item\",\"id\":\"Q25\"}"));
+		assertTrue(accept(filter, "{\"labels\":{\"en\":{\"value\":\"\\\"id\\\":\\\"Q1\"}},"
+				+ "\"type\":\"item\",\"id\":\"Q15\"}"));
+	}
+
+	@Test
+	public void testIdRanges() {
+		JsonDumpLineFilter filter = new JsonDumpLineFilter();
+		filter.addIdRange("Q10", "Q20");
+		filter.addIdRange("P5", "P5");
+
+		assertTrue(accept(filter, "{\"type\":\"item\",\"id\":\"Q10\"}"));
+		assertTrue(accept(filter, "{\"type\":\"item\",\"id\":\"Q20\"}"));
+		assertFalse(accept(filter, "{\"type\":\"item\",\"id\":\"Q21\"}"));
+		assertFalse(accept(filter, "{\"type\":\"item\",\"id\":\"Q9\"}"));
+		assertFalse(accept(filter, "{\"type\":\"property\",\"id\":\"Q\"}"));
+		assertTrue(accept(filter, "{\"type\":\"property\",\"id\":\"P5\"}"));
+		assertFalse(accept(filter, "{\"type\":\"property\",\"id\":\"P15\"}"));
+		assertFalse(accept(filter, "{\"type\":\"lexeme\",\"id\":\"L15\"}"));
+		assertFalse(accept(filter, "{\"id\":\"Q99999999999999999999999\"}"));
+	}
+
+	@Test
+	public void testIncompleteLinesAreAccepted() {
+		JsonDumpLineFilter filter = new JsonDumpLineFilter();
+		filter.setEntityTypes(Collections.singleton(EntityIdValue.ET_ITEM));
+		filter.addIdRange("Q10", "Q20");
+
+		assertTrue(accept(filter, "{\"type\":\"item\"}"));
+		assertTrue(accept(filter, "{\"type\":\"ite"));
+		assertTrue(accept(filter, "{\"type\":1,\"id\":null}"));
+		assertTrue(accept(filter, "["));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedEntityType() {
+		new JsonDumpLineFilter().setEntityTypes(
+				Collections.singleton(EntityIdValue.ET_SENSE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRangeWithDifferentPrefixes() {
+		new JsonDumpLineFilter().addIdRange("Q1", "P10");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRangeWithoutNumber() {
+		new JsonDumpLineFilter().addIdRange("Q", "Q10");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyRange() {
+		new JsonDumpLineFilter().addIdRange("Q10", "Q1");
+	}
+
+	@Test
+	public void testLastRevisionId() {
+		byte[] line = "{\"id\":\"Q1\",\"claims\":{\"lastrevid\":5},\"lastrevid\":42}"
+				.getBytes(StandardCharsets.UTF_8);
+		assertEquals(42, JsonDumpLineFilter.findLastRevisionId(line, 0,
+				line.length));
+		line = "{\"id\":\"Q1\"}".getBytes(StandardCharsets.UTF_8);
+		assertEquals(-1, JsonDumpLineFilter.findLastRevisionId(line, 0,
+				line.length));
+		assertTrue(JsonDumpLineFilter.findTopLevelValue(line, 0, line.length,
+				"id".getBytes(StandardCharsets.UTF_8)) > 0);
+	}
+}
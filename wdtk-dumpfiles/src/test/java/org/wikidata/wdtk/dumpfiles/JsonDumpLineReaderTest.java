@@ -0,0 +1,102 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class JsonDumpLineReaderTest {
+
+	private JsonDumpLineReader getLineReader(String contents,
+			int initialBufferSize) {
+		return new JsonDumpLineReader(new ByteArrayInputStream(
+				contents.getBytes(StandardCharsets.UTF_8)), initialBufferSize);
+	}
+
+	@Test
+	public void testLines() throws IOException {
+		JsonDumpLineReader lineReader = getLineReader(
+				"[\n{\"id\":\"Q1\"},\r\n\n{\"id\":\"Q2\"}\n]", 1024);
+
+		assertTrue(lineReader.nextLine());
+		assertEquals("[", lineReader.getLineString());
+		assertTrue(lineReader.nextLine());
+		assertEquals("{\"id\":\"Q1\"},", lineReader.getLineString());
+		assertTrue(lineReader.nextLine());
+		assertEquals(0, lineReader.getLength());
+		assertTrue(lineReader.nextLine());
+		assertEquals("{\"id\":\"Q2\"}", lineReader.getLineString());
+		assertTrue(lineReader.nextLine());
+		assertEquals("]", lineReader.getLineString());
+		assertFalse(lineReader.nextLine());
+		assertFalse(lineReader.nextLine());
+	}
+
+	@Test
+	public void testLinesLongerThanBuffer() throws IOException {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			longLine.append("Glück ").append(i);
+		}
+		JsonDumpLineReader lineReader = getLineReader("short\n" + longLine
+				+ "\n" + longLine + "\nend\n", 16);
+
+		assertTrue(lineReader.nextLine());
+		assertEquals("short", lineReader.getLineString());
+		assertTrue(lineReader.nextLine());
+		assertEquals(longLine.toString(), lineReader.getLineString());
+		assertTrue(lineReader.nextLine());
+		assertEquals(longLine.toString(), lineReader.getLineString());
+		assertTrue(lineReader.nextLine());
+		assertEquals("end", lineReader.getLineString());
+		assertFalse(lineReader.nextLine());
+	}
+
+	@Test
+	public void testEmptyInput() throws IOException {
+		JsonDumpLineReader lineReader = getLineReader("", 16);
+		assertFalse(lineReader.nextLine());
+	}
+
+	@Test
+	public void testNextLinePositions() throws IOException {
+		String contents = "[\n{\"id\":\"Q1\"},\r\n{\"id\":\"Q2\"}\n]";
+		JsonDumpLineReader lineReader = getLineReader(contents, 16);
+
+		int expectedPosition = 0;
+		while (lineReader.nextLine()) {
+			expectedPosition = contents.indexOf('\n', expectedPosition) + 1;
+			if (expectedPosition == 0) {
+				expectedPosition = contents.length();
+			}
+			assertEquals(expectedPosition, lineReader.getNextLinePosition());
+		}
+		assertEquals(contents.length(), expectedPosition);
+	}
+
+}
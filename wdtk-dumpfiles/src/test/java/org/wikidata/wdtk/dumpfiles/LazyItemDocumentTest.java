@@ -0,0 +1,151 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.helpers.DocumentDataTokenFilter;
+import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+public class LazyItemDocumentTest {
+
+	static final String ITEM_JSON = "{\"type\":\"item\",\"id\":\"Q42\","
+			+ "\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Douglas Adams\"},"
+			+ "\"de\":{\"language\":\"de\",\"value\":\"Douglas Adams\"}},"
+			+ "\"descriptions\":[],"
+			+ "\"aliases\":{\"en\":[{\"language\":\"en\",\"value\":\"DNA\"}]},"
+			+ "\"claims\":{\"P31\":[{\"rank\":\"normal\",\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\","
+			+ "\"datavalue\":{\"type\":\"wikibase-entityid\",\"value\":{\"entity-type\":\"item\",\"numeric-id\":5}},"
+			+ "\"datatype\":\"wikibase-item\"},\"id\":\"Q42$1\",\"type\":\"statement\"}]},"
+			+ "\"sitelinks\":{\"enwiki\":{\"site\":\"enwiki\",\"title\":\"Douglas Adams\",\"badges\":[]}},"
+			+ "\"lastrevid\" : 1234 }";
+
+	final ObjectReader documentReader = new DatamodelMapper(
+			Datamodel.SITE_WIKIDATA).readerFor(EntityDocumentImpl.class).with(
+			DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
+
+	LazyItemDocument createDocument(String json,
+			DocumentDataTokenFilter tokenFilter) {
+		byte[] buffer = ("xx" + json + "yy").getBytes(StandardCharsets.UTF_8);
+		return LazyItemDocument.create(buffer, 2, buffer.length - 4,
+				this.documentReader, tokenFilter, Datamodel.SITE_WIKIDATA);
+	}
+
+	@Test
+	public void testSameContentAsEagerDocument() throws IOException {
+		EntityDocument expected = this.documentReader.readValue(ITEM_JSON);
+		LazyItemDocument document = createDocument(ITEM_JSON, null);
+
+		assertEquals(expected, document);
+		assertEquals(document, expected);
+		assertEquals(expected.hashCode(), document.hashCode());
+		assertEquals(1234, document.getRevisionId());
+		assertEquals(expected, document.toItemDocumentImpl());
+	}
+
+	@Test
+	public void testSectionsAreParsedOnAccess() {
+		LazyItemDocument document = createDocument(ITEM_JSON, null);
+		assertEquals(Datamodel.makeWikidataItemIdValue("Q42"),
+				document.getEntityId());
+		assertFalse(document.isParsed(LazyItemDocument.LABELS));
+		assertFalse(document.isParsed(LazyItemDocument.CLAIMS));
+
+		assertEquals("Douglas Adams", document.findLabel("en"));
+		assertTrue(document.isParsed(LazyItemDocument.LABELS));
+		assertFalse(document.isParsed(LazyItemDocument.CLAIMS));
+		assertFalse(document.isParsed(LazyItemDocument.SITELINKS));
+
+		assertTrue(document.hasStatementValue("P31",
+				Collections.singleton(Datamodel.makeWikidataItemIdValue("Q5"))));
+		assertTrue(document.isParsed(LazyItemDocument.CLAIMS));
+		assertFalse(document.isParsed(LazyItemDocument.SITELINKS));
+		assertTrue(document.getDescriptions().isEmpty());
+	}
+
+	@Test
+	public void testErrorsOnlyAffectAccessedSections() {
+		LazyItemDocument document = createDocument(ITEM_JSON.replace(
+				"\"numeric-id\":5", "\"numeric-id\":\"five\""), null);
+		assertNotNull(document);
+		assertEquals("Douglas Adams", document.findLabel("de"));
+		try {
+			document.getStatementGroups();
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("Q42"));
+			return;
+		}
+		throw new AssertionError("Reading statements should fail");
+	}
+
+	@Test
+	public void testTokenFilterIsApplied() throws IOException {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(Collections.singleton("de"));
+		filter.setSiteLinkFilter(Collections.emptySet());
+		LazyItemDocument document = createDocument(ITEM_JSON,
+				new DocumentDataTokenFilter(filter, Datamodel.SITE_WIKIDATA));
+
+		assertEquals(Collections.singleton("de"), document.getLabels()
+				.keySet());
+		assertTrue(document.getAliases().isEmpty());
+		assertTrue(document.getSiteLinks().isEmpty());
+		assertEquals(1, document.getStatementGroups().size());
+	}
+
+	@Test
+	public void testOtherLinesAreNotReadLazily() {
+		assertNull(createDocument(ITEM_JSON.replace("\"item\"",
+				"\"property\""), null));
+		assertNull(createDocument(ITEM_JSON.replace("\"Q42\"", "\"Q42x\""),
+				null));
+		assertNull(createDocument(ITEM_JSON.replace("1234 }", "1234 "), null));
+		assertNull(createDocument("{}", null));
+	}
+
+	@Test
+	public void testMissingSections() {
+		ItemDocument document = createDocument(
+				"{\"id\":\"Q1\",\"type\":\"item\"}", null);
+		assertEquals(0, document.getRevisionId());
+		assertTrue(document.getLabels().isEmpty());
+		assertTrue(document.getStatementGroups().isEmpty());
+		assertTrue(document.getSiteLinks().isEmpty());
+		assertNull(document.findStatementGroup("P31"));
+	}
+}
@@ -0,0 +1,225 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.testing.MockStringContentFactory;
+import org.wikidata.wdtk.util.DirectoryManagerFactory;
+import org.wikidata.wdtk.util.DirectoryManagerImpl;
+
+public class LocalEntityMirrorTest {
+
+	Path tempDirectory;
+
+	@Before
+	public void setUp() throws IOException {
+		DirectoryManagerFactory
+				.setDirectoryManagerClass(DirectoryManagerImpl.class);
+		this.tempDirectory = Files.createTempDirectory("wdtk-mirror");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(this.tempDirectory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(
+					Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static String itemJson(String id, long revisionId, String label) {
+		return "{\"type\":\"item\",\"id\":\"" + id + "\",\"lastrevid\":"
+				+ revisionId + ",\"labels\":{\"en\":{\"language\":\"en\","
+				+ "\"value\":\"" + label + "\"}},\"descriptions\":{},"
+				+ "\"aliases\":{},\"claims\":{},\"sitelinks\":{}}";
+	}
+
+	private static String revisionJson(String id, String label) {
+		return "{\"type\":\"item\",\"id\":\"" + id + "\",\"labels\":{\"en\":"
+				+ "{\"language\":\"en\",\"value\":\"" + label + "\"}},"
+				+ "\"descriptions\":[],\"aliases\":[],\"claims\":[],"
+				+ "\"sitelinks\":[]}";
+	}
+
+	private MwLocalDumpFile writeJsonDump(String dateStamp,
+			String... entities) throws IOException {
+		Path file = this.tempDirectory.resolve("wikidatawiki-" + dateStamp
+				+ "-all.json");
+		Files.write(file, ("[\n" + String.join(",\n", entities) + "\n]\n")
+				.getBytes(StandardCharsets.UTF_8));
+		return new MwLocalDumpFile(file.toString(), DumpContentType.JSON,
+				dateStamp, "wikidatawiki");
+	}
+
+	/**
+	 * Writes a daily dump with one revision per page; the revisions are given
+	 * as triples of title, revision id, and JSON text.
+	 */
+	private MwLocalDumpFile writeDailyDump(String dateStamp,
+			String... revisions) throws IOException {
+		URL resourceUrl = LocalEntityMirrorTest.class
+				.getResource("/mock-dump-header.xml");
+		StringBuilder contents = new StringBuilder(
+				MockStringContentFactory.getStringFromUrl(resourceUrl));
+		for (int i = 0; i < revisions.length; i += 3) {
+			contents.append("  <page>\n    <title>").append(revisions[i])
+					.append("</title>\n    <ns>0</ns>\n    <id>")
+					.append(1000 + i).append("</id>\n    <revision>\n")
+					.append("      <id>").append(revisions[i + 1])
+					.append("</id>\n")
+					.append("      <timestamp>2026-01-01T00:00:00Z</timestamp>\n")
+					.append("      <contributor><ip>127.0.0.1</ip></contributor>\n")
+					.append("      <text xml:space=\"preserve\">")
+					.append(revisions[i + 2].replace("&", "&amp;")
+							.replace("\"", "&quot;"))
+					.append("</text>\n")
+					.append("      <model>wikibase-item</model>\n")
+					.append("      <format>application/json</format>\n")
+					.append("    </revision>\n  </page>\n");
+		}
+		contents.append("</mediawiki>\n");
+
+		Path file = this.tempDirectory.resolve("wikidatawiki-" + dateStamp
+				+ "-pages-meta-hist-incr.xml");
+		Files.write(file, contents.toString().getBytes(StandardCharsets.UTF_8));
+		return new MwLocalDumpFile(file.toString(), DumpContentType.DAILY,
+				dateStamp, "wikidatawiki");
+	}
+
+	private static String getLabel(DumpEntityLookup lookup, String id)
+			throws IOException {
+		EntityDocument document = lookup.getEntityDocument(id);
+		return document == null ? null : ((ItemDocument) document)
+				.findLabel("en");
+	}
+
+	@Test
+	public void testInitializeAndUpdate() throws IOException {
+		Path mirrorDirectory = this.tempDirectory.resolve("mirror");
+		LocalEntityMirror mirror = new LocalEntityMirror(mirrorDirectory,
+				"wikidatawiki");
+		assertNull(mirror.getDateStamp());
+
+		assertEquals(4, mirror.initialize(writeJsonDump("20260101",
+				itemJson("Q1", 10, "one"), itemJson("Q2", 20, "two"),
+				itemJson("Q3", 30, "three"), itemJson("Q5", 50, "five"))));
+		assertEquals("20260101", mirror.getDateStamp());
+		assertEquals("one", getLabel(mirror.getEntityLookup(), "Q1"));
+
+		List<MwDumpFile> dailyDumps = new ArrayList<>();
+		dailyDumps.add(writeDailyDump("20260103",
+				"Q1", "13", revisionJson("Q1", "one & newest"),
+				"Q4", "39", revisionJson("Q4", "four (old)")));
+		dailyDumps.add(writeDailyDump("20260102",
+				"Q1", "12", revisionJson("Q1", "one (old)"),
+				"Q2", "15", revisionJson("Q2", "two (older than base)"),
+				"Q3", "31", "{\"entity\":\"Q3\",\"redirect\":\"Q2\"}",
+				"Q4", "40", revisionJson("Q4", "four")));
+
+		// Q1 changed, Q3 redirected, Q4 added, Q5 deleted
+		assertEquals(4, mirror.update(dailyDumps,
+				Collections.singleton("Q5")));
+		assertEquals("20260103", mirror.getDateStamp());
+
+		DumpEntityLookup lookup = mirror.getEntityLookup();
+		assertEquals(3, lookup.getIndex().getEntityCount());
+		assertEquals("one & newest", getLabel(lookup, "Q1"));
+		assertEquals(13, lookup.getEntityDocument("Q1").getRevisionId());
+		assertEquals("two", getLabel(lookup, "Q2"));
+		assertFalse(lookup.getIndex().contains("Q3"));
+		assertEquals("four", getLabel(lookup, "Q4"));
+		assertEquals(40, lookup.getEntityDocument("Q4").getRevisionId());
+		assertFalse(lookup.getIndex().contains("Q5"));
+
+		// the state is kept, and dumps are not applied twice
+		mirror = new LocalEntityMirror(mirrorDirectory, "wikidatawiki");
+		assertEquals("20260103", mirror.getDateStamp());
+		assertEquals(0, mirror.update(dailyDumps, Collections.emptySet()));
+		assertFalse(Files.exists(mirrorDirectory
+				.resolve(LocalEntityMirror.UPDATES_FILE_NAME)));
+
+		// the snapshot can be processed like a JSON dump
+		List<String> ids = new ArrayList<>();
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.setOfflineMode(true);
+		dpc.registerEntityDocumentProcessor(new EntityDocumentProcessor() {
+			@Override
+			public void processItemDocument(ItemDocument itemDocument) {
+				ids.add(itemDocument.getEntityId().getId());
+			}
+		}, null, true);
+		dpc.processDump(mirror.getSnapshotDumpFile());
+		assertEquals(Arrays.asList("Q1", "Q2", "Q4"), ids);
+	}
+
+	@Test
+	public void testSnapshotLine() {
+		assertEquals("{\"lastrevid\":7,\"id\":\"Q1\"}", new String(
+				LocalEntityMirror.getSnapshotLine("{\"id\":\"Q1\"}", 7),
+				StandardCharsets.UTF_8));
+		assertEquals("{\"lastrevid\":7 }", new String(
+				LocalEntityMirror.getSnapshotLine("{ }", 7),
+				StandardCharsets.UTF_8));
+		assertEquals("{\"id\":\"Q1\",\"lastrevid\":3}", new String(
+				LocalEntityMirror.getSnapshotLine(
+						"{\"id\":\"Q1\",\"lastrevid\":3}", 7),
+				StandardCharsets.UTF_8));
+		assertEquals("{\"id\":  \"Q1\"}", new String(
+				LocalEntityMirror.getSnapshotLine("{\"id\":\n\r\"Q1\"}", 7),
+				StandardCharsets.UTF_8).replace("\"lastrevid\":7,", ""));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUpdateWithoutInitialization() throws IOException {
+		new LocalEntityMirror(this.tempDirectory, "wikidatawiki").update(
+				Collections.emptyList(), Collections.emptySet());
+	}
+
+	@Test(expected = IOException.class)
+	public void testOtherProject() throws IOException {
+		new LocalEntityMirror(this.tempDirectory, "wikidatawiki")
+				.initialize(writeJsonDump("20260101", itemJson("Q1", 1, "one")));
+		new LocalEntityMirror(this.tempDirectory, "commonswiki");
+	}
+}
@@ -0,0 +1,109 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedJsonDumpLineReaderTest {
+
+	Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = Files.createTempFile("wdtk-mapped", ".json");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.delete(this.file);
+	}
+
+	private MappedJsonDumpLineReader getLineReader(String contents,
+			int windowSize) throws IOException {
+		Files.write(this.file, contents.getBytes(StandardCharsets.UTF_8));
+		return new MappedJsonDumpLineReader(this.file, windowSize);
+	}
+
+	@Test
+	public void testLines() throws IOException {
+		try (MappedJsonDumpLineReader lineReader = getLineReader(
+				"[\n{\"id\":\"Q1\"},\r\n\n{\"id\":\"Q2\"}\n]", 1024)) {
+			assertTrue(lineReader.nextLine());
+			assertEquals("[", lineReader.getLineString());
+			assertTrue(lineReader.nextLine());
+			assertEquals("{\"id\":\"Q1\"},", lineReader.getLineString());
+			assertEquals(2, lineReader.getLinePosition());
+			assertEquals(16, lineReader.getNextLinePosition());
+			assertTrue(lineReader.nextLine());
+			assertEquals(0, lineReader.getLength());
+			assertTrue(lineReader.nextLine());
+			assertEquals("{\"id\":\"Q2\"}", lineReader.getLineString());
+			assertTrue(lineReader.nextLine());
+			assertEquals("]", lineReader.getLineString());
+			assertFalse(lineReader.nextLine());
+			assertFalse(lineReader.nextLine());
+			assertEquals(1, lineReader.getWindowCount());
+		}
+	}
+
+	@Test
+	public void testLinesLongerThanWindow() throws IOException {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			longLine.append("Glück ").append(i);
+		}
+		String contents = "short\n" + longLine + "\n" + longLine + "\nend\n";
+		try (MappedJsonDumpLineReader lineReader = getLineReader(contents, 16)) {
+			assertTrue(lineReader.nextLine());
+			assertEquals("short", lineReader.getLineString());
+			assertTrue(lineReader.nextLine());
+			assertEquals(longLine.toString(), lineReader.getLineString());
+			assertEquals(6, lineReader.getLinePosition());
+			assertTrue(lineReader.nextLine());
+			assertEquals(longLine.toString(), lineReader.getLineString());
+			assertTrue(lineReader.nextLine());
+			assertEquals("end", lineReader.getLineString());
+			assertEquals(contents.getBytes(StandardCharsets.UTF_8).length,
+					lineReader.getNextLinePosition());
+			assertFalse(lineReader.nextLine());
+			assertTrue(lineReader.getWindowCount() > 1);
+		}
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		try (MappedJsonDumpLineReader lineReader = getLineReader("", 16)) {
+			assertFalse(lineReader.nextLine());
+		}
+	}
+
+}
@@ -21,14 +21,28 @@ package org.wikidata.wdtk.dumpfiles;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.xml.stream.XMLInputFactory;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -38,6 +52,8 @@ import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
 import org.wikidata.wdtk.dumpfiles.wmf.WmfDumpFile;
 import org.wikidata.wdtk.dumpfiles.wmf.WmfLocalDumpFile;
+import org.wikidata.wdtk.storage.datastructures.BitVector;
+import org.wikidata.wdtk.storage.datastructures.BitVectorImpl;
 import org.wikidata.wdtk.testing.MockDirectoryManager;
 import org.wikidata.wdtk.testing.MockStringContentFactory;
 import org.wikidata.wdtk.util.DirectoryManagerFactory;
@@ -76,6 +92,37 @@ public class MwDumpFileProcessingTest {
 
 	}
 
+	/**
+	 * Helper class that stores revisions like {@link TestMwRevisionProcessor},
+	 * saves the number of stored revisions with each checkpoint, and crashes
+	 * after a given number of revisions.
+	 */
+	static class CheckpointedMwRevisionProcessor extends
+			TestMwRevisionProcessor implements DumpCheckpointListener {
+
+		int crashAfter = -1;
+		int savedCount = 0;
+
+		@Override
+		public void processRevision(MwRevision mwRevision) {
+			if (this.revisions.size() == this.crashAfter) {
+				throw new IllegalStateException("Simulated crash");
+			}
+			super.processRevision(mwRevision);
+		}
+
+		@Override
+		public void saveCheckpoint(DumpCheckpoint checkpoint) {
+			this.savedCount = this.revisions.size();
+		}
+
+		@Override
+		public void restoreCheckpoint(DumpCheckpoint checkpoint) {
+			this.revisions.subList(this.savedCount, this.revisions.size())
+					.clear();
+		}
+	}
+
 	/**
 	 * Helper class that counts how many items it gets.
 	 *
@@ -99,6 +146,50 @@ public class MwDumpFileProcessingTest {
 
 	}
 
+	/**
+	 * Helper class that counts revisions from several threads.
+	 */
+	static class ThreadSafeCountingMwRevisionProcessor implements
+			ThreadSafeMwRevisionProcessor {
+
+		final AtomicInteger revisionCount = new AtomicInteger();
+
+		@Override
+		public void startRevisionProcessing(String siteName, String baseUrl,
+				Map<Integer, String> namespaces) {
+		}
+
+		@Override
+		public void processRevision(MwRevision mwRevision) {
+			this.revisionCount.incrementAndGet();
+		}
+
+		@Override
+		public void finishRevisionProcessing() {
+		}
+	}
+
+	/**
+	 * Helper class that stores revisions with one instance per dump part.
+	 */
+	static class CombinableTestMwRevisionProcessor extends
+			TestMwRevisionProcessor implements
+			CombinableMwRevisionProcessor<TestMwRevisionProcessor> {
+
+		int partCount = 0;
+
+		@Override
+		public TestMwRevisionProcessor createPartProcessor() {
+			return new TestMwRevisionProcessor();
+		}
+
+		@Override
+		public void combine(TestMwRevisionProcessor partProcessor) {
+			this.partCount++;
+			this.revisions.addAll(partProcessor.revisions);
+		}
+	}
+
 	@Before
 	public void configureDirectoryManager() {
 		DirectoryManagerFactory
@@ -371,6 +462,15 @@ public class MwDumpFileProcessingTest {
 
 	@Test
 	public void testMwDailyDumpFileProcessing() throws IOException {
+		processDailyDump(1);
+	}
+
+	@Test
+	public void testParallelMwDailyDumpFileProcessing() throws IOException {
+		processDailyDump(4);
+	}
+
+	private void processDailyDump(int parallelism) throws IOException {
 		Path dmPath = Paths.get(System.getProperty("user.dir"));
 		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
 		setLocalDumpFile("20140420", DumpContentType.DAILY, dm);
@@ -379,6 +479,7 @@ public class MwDumpFileProcessingTest {
 				"wikidatawiki");
 		dpc.downloadDirectoryManager = dm;
 		dpc.setOfflineMode(true);
+		dpc.setParallelism(parallelism);
 
 		StatisticsMwRevisionProcessor mwrpAllStats = new StatisticsMwRevisionProcessor(
 				"all", 2);
@@ -483,6 +584,17 @@ public class MwDumpFileProcessingTest {
 
 	@Test
 	public void testMwRecentFullDumpFileProcessing() throws IOException {
+		processRecentFullDumps(null);
+	}
+
+	@Test
+	public void testMwRecentFullDumpFileProcessingWithBitVectorImpl()
+			throws IOException {
+		processRecentFullDumps(BitVectorImpl::new);
+	}
+
+	private void processRecentFullDumps(
+			Supplier<? extends BitVector> bitVectorFactory) throws IOException {
 		Path dmPath = Paths.get(System.getProperty("user.dir"));
 		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
 		mockLocalDumpFile("20140420", 4, DumpContentType.DAILY, dm);
@@ -495,6 +607,9 @@ public class MwDumpFileProcessingTest {
 				"wikidatawiki");
 		dpc.downloadDirectoryManager = dm;
 		dpc.setOfflineMode(true);
+		if (bitVectorFactory != null) {
+			dpc.setBitVectorFactory(bitVectorFactory);
+		}
 
 		StatisticsMwRevisionProcessor mwrpStats = new StatisticsMwRevisionProcessor(
 				"stats", 2);
@@ -527,4 +642,294 @@ public class MwDumpFileProcessingTest {
 		assertEquals(9, mwrpStats.getCurrentRevisionCount());
 	}
 
+	@Test
+	public void testRevisionTextReader() throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		mockLocalDumpFile("20140418", 2, DumpContentType.FULL, dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+
+		List<String> texts = new ArrayList<>();
+		dpc.registerMwRevisionProcessor(new TestMwRevisionProcessor() {
+			@Override
+			public void processRevision(MwRevision mwRevision) {
+				// the text is read without creating a string first
+				assertNull(((MwRevisionImpl) mwRevision).text);
+				StringBuilder text = new StringBuilder();
+				try (Reader reader = mwRevision.getTextReader()) {
+					int c;
+					while ((c = reader.read()) != -1) {
+						text.append((char) c);
+					}
+				} catch (IOException e) {
+					fail(e.toString());
+				}
+				texts.add(text.toString());
+				assertEquals(text.toString(), mwRevision.getText());
+			}
+		}, null, false);
+		TestMwRevisionProcessor tmrpCurrent = new TestMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(tmrpCurrent, null, true);
+
+		dpc.processMostRecentMainDump();
+
+		assertEquals(9, texts.size());
+		assertEquals("{\"label\":{\"en\":\"Revision 2003\"}}", texts.get(0));
+		assertEquals(3, tmrpCurrent.revisions.size());
+		for (MwRevision revision : tmrpCurrent.revisions) {
+			assertEquals("{\"label\":{\"en\":\"Revision "
+					+ revision.getRevisionId() + "\"}}", revision.getText());
+			// the newest of the three revisions of each page
+			assertEquals(5, revision.getRevisionId() % 1000);
+		}
+	}
+
+	@Test
+	public void testParallelProcessingOfCurrentRevisionsOnly()
+			throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		mockLocalDumpFile("20140418", 2, DumpContentType.FULL, dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+		MwDumpFile dumpFile = dpc.getMostRecentDump(DumpContentType.FULL);
+
+		TestMwRevisionProcessor tmrp = new TestMwRevisionProcessor();
+		MwRevisionDumpFileProcessor dumpFileProcessor = new MwRevisionDumpFileProcessor(
+				tmrp);
+		dumpFileProcessor.setParallelism(2);
+		dumpFileProcessor.setOnlyCurrentRevisions(true);
+		try (InputStream inputStream = dumpFile.getDumpFileStream()) {
+			dumpFileProcessor.processDumpFileContents(inputStream, dumpFile);
+		}
+
+		// older revisions are dropped before they reach the broker
+		assertEquals(3, tmrp.revisions.size());
+		for (MwRevision revision : tmrp.revisions) {
+			assertEquals(5, revision.getRevisionId() % 1000);
+			assertEquals("{\"label\":{\"en\":\"Revision "
+					+ revision.getRevisionId() + "\"}}", revision.getText());
+		}
+	}
+
+	@Test
+	public void testCurrentRevisionTextIsMoved() {
+		MwRevisionProcessorBroker broker = new MwRevisionProcessorBroker();
+		List<String> texts = new ArrayList<>();
+		broker.registerMwRevisionProcessor(new TestMwRevisionProcessor() {
+			@Override
+			public void processRevision(MwRevision mwRevision) {
+				texts.add(mwRevision.getText());
+			}
+		}, null, true);
+
+		MwRevisionImpl mwRevision = new MwRevisionImpl();
+		mwRevision.pageId = 1;
+		mwRevision.textReleasable = true;
+		char[] textBuffer = null;
+		for (int i = 1; i <= 3; i++) {
+			mwRevision.revisionId = i;
+			mwRevision.clearText();
+			char[] chars = ("text " + i).toCharArray();
+			mwRevision.appendText(chars, 0, chars.length);
+			textBuffer = mwRevision.textBuffer;
+			broker.processRevision(mwRevision);
+			// the holder took the buffer instead of copying the text
+			assertSame(textBuffer, broker.mostCurrentRevisionHolder.textBuffer);
+			assertNotSame(textBuffer, mwRevision.textBuffer);
+		}
+		broker.finishRevisionProcessing();
+
+		assertEquals(Collections.singletonList("text 3"), texts);
+	}
+
+	@Test
+	public void testCurrentRevisionTextIsCopiedIfNotReleased() {
+		MwRevisionProcessorBroker broker = new MwRevisionProcessorBroker();
+		List<String> texts = new ArrayList<>();
+		broker.registerMwRevisionProcessor(new TestMwRevisionProcessor() {
+			@Override
+			public void processRevision(MwRevision mwRevision) {
+				texts.add(mwRevision.getText());
+			}
+		}, null, true);
+
+		MwRevisionImpl mwRevision = new MwRevisionImpl();
+		mwRevision.pageId = 1;
+		mwRevision.revisionId = 1;
+		mwRevision.clearText();
+		char[] chars = "text 1".toCharArray();
+		mwRevision.appendText(chars, 0, chars.length);
+		broker.processRevision(mwRevision);
+		// the caller still owns its revision
+		assertEquals("text 1", mwRevision.getText());
+		assertNotSame(mwRevision.textBuffer,
+				broker.mostCurrentRevisionHolder.textBuffer);
+		broker.finishRevisionProcessing();
+
+		assertEquals(Collections.singletonList("text 1"), texts);
+	}
+
+	@Test
+	public void testXmlInputFactorySupplier() throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		mockLocalDumpFile("20140418", 2, DumpContentType.FULL, dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+
+		List<XMLInputFactory> factories = new ArrayList<>();
+		dpc.setXmlInputFactorySupplier(() -> {
+			XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			factories.add(factory);
+			return factory;
+		});
+		TestMwRevisionProcessor tmrpAll = new TestMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(tmrpAll, null, false);
+
+		dpc.processMostRecentMainDump();
+
+		assertEquals(1, factories.size());
+		assertEquals(false,
+				factories.get(0).getProperty(XMLInputFactory.IS_COALESCING));
+		assertEquals(9, tmrpAll.revisions.size());
+		for (MwRevision revision : tmrpAll.revisions) {
+			assertEquals("{\"label\":{\"en\":\"Revision "
+					+ revision.getRevisionId() + "\"}}", revision.getText());
+		}
+	}
+
+	@Test
+	public void testDumpPartProcessing() throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		List<MwDumpFile> dumpParts = new ArrayList<>();
+		String[] dateStamps = { "20140418", "20140419", "20140420" };
+		for (int i = 0; i < dateStamps.length; i++) {
+			// parts with pages 1-3, 4-6 and 7-9
+			mockLocalDumpFile(dateStamps[i], 3 * i + 1, DumpContentType.FULL,
+					dm);
+			dumpParts.add(new MwLocalDumpFile(dmPath.resolve("dumpfiles")
+					.resolve("wikidatawiki").resolve("full-" + dateStamps[i])
+					.resolve("wikidatawiki-" + dateStamps[i]
+							+ WmfDumpFile.getDumpFilePostfix(DumpContentType.FULL))
+					.toString(), DumpContentType.FULL, dateStamps[i],
+					"wikidatawiki"));
+		}
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.setPartParallelism(2);
+		dpc.setParallelism(2);
+
+		TestMwRevisionProcessor tmrpAll = new TestMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(tmrpAll, null, false);
+		TestMwRevisionProcessor tmrpCurrent = new TestMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(tmrpCurrent, null, true);
+		ThreadSafeCountingMwRevisionProcessor tsmrp = new ThreadSafeCountingMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(tsmrp, null, false);
+		CombinableTestMwRevisionProcessor cmrp = new CombinableTestMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(cmrp, null, true);
+		dpc.processDumpParts(dumpParts);
+
+		assertEquals(27, tmrpAll.revisions.size());
+		assertEquals(27, tsmrp.revisionCount.get());
+		assertEquals(9, tmrpCurrent.revisions.size());
+		assertEquals(3, cmrp.partCount);
+		assertEquals(9, cmrp.revisions.size());
+		// the part instances are combined in the order of the parts
+		for (int i = 0; i < 9; i++) {
+			assertEquals("Q" + (i + 1), cmrp.revisions.get(i).getPrefixedTitle());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPartParallelism() {
+		new DumpProcessingController("wikidatawiki").setPartParallelism(0);
+	}
+
+	@Test
+	public void testResumeAtCheckpoint() throws IOException {
+		checkResumeAtCheckpoint(1);
+	}
+
+	@Test
+	public void testParallelResumeAtCheckpoint() throws IOException {
+		checkResumeAtCheckpoint(3);
+	}
+
+	private void checkResumeAtCheckpoint(int parallelism) throws IOException {
+		Path dmPath = Paths.get(System.getProperty("user.dir"));
+		MockDirectoryManager dm = new MockDirectoryManager(dmPath, true, true);
+		setLocalDumpFile("20140420", DumpContentType.DAILY, dm);
+
+		DumpProcessingController dpc = new DumpProcessingController(
+				"wikidatawiki");
+		dpc.downloadDirectoryManager = dm;
+		dpc.setOfflineMode(true);
+		TestMwRevisionProcessor expectedAll = new TestMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(expectedAll, null, false);
+		TestMwRevisionProcessor expectedCurrent = new TestMwRevisionProcessor();
+		dpc.registerMwRevisionProcessor(expectedCurrent, null, true);
+		dpc.processDump(dpc.getMostRecentDump(DumpContentType.DAILY));
+
+		Path checkpointFile = Files.createTempFile("wdtk-checkpoint",
+				".properties");
+		Files.delete(checkpointFile);
+		try {
+			CheckpointedMwRevisionProcessor all = new CheckpointedMwRevisionProcessor();
+			CheckpointedMwRevisionProcessor current = new CheckpointedMwRevisionProcessor();
+			all.crashAfter = 7;
+
+			dpc = new DumpProcessingController("wikidatawiki");
+			dpc.downloadDirectoryManager = dm;
+			dpc.setOfflineMode(true);
+			dpc.setCheckpointFile(checkpointFile);
+			dpc.setCheckpointInterval(1);
+			dpc.setParallelism(parallelism);
+			dpc.registerMwRevisionProcessor(all, null, false);
+			dpc.registerMwRevisionProcessor(current, null, true);
+			try {
+				dpc.processDump(dpc.getMostRecentDump(DumpContentType.DAILY));
+				fail("Processing should have crashed");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			DumpCheckpoint checkpoint = DumpCheckpoint.load(checkpointFile);
+			assertNotNull(checkpoint);
+			assertNotNull(checkpoint.getBlockPosition());
+
+			all.crashAfter = -1;
+			dpc = new DumpProcessingController("wikidatawiki");
+			dpc.downloadDirectoryManager = dm;
+			dpc.setOfflineMode(true);
+			dpc.setCheckpointFile(checkpointFile);
+			dpc.setCheckpointInterval(1);
+			dpc.setParallelism(parallelism);
+			dpc.registerMwRevisionProcessor(all, null, false);
+			dpc.registerMwRevisionProcessor(current, null, true);
+			dpc.processDump(dpc.getMostRecentDump(DumpContentType.DAILY));
+
+			assertEquals("Wikidata Toolkit Test", all.siteName);
+			assertEqualRevisionLists(expectedAll.revisions, all.revisions,
+					"all-resumed");
+			assertEqualRevisionLists(expectedCurrent.revisions,
+					current.revisions, "current-resumed");
+			assertFalse(Files.exists(checkpointFile));
+		} finally {
+			Files.deleteIfExists(checkpointFile);
+		}
+	}
+
 }
@@ -0,0 +1,190 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.GzipMemberInputStream.MemberPosition;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream.BlockPosition;
+
+public class ResumableDumpInputStreamTest {
+
+	MockDirectoryManager dm;
+	Path dmPath;
+
+	@Before
+	public void setUp() throws IOException {
+		this.dmPath = Paths.get(System.getProperty("user.dir"));
+		this.dm = new MockDirectoryManager(this.dmPath, true, true);
+	}
+
+	private String makeDumpContents(int size) {
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder("[\n");
+		int id = 1;
+		while (sb.length() < size) {
+			sb.append("{\"type\":\"item\",\"id\":\"Q").append(id++)
+					.append("\",\"value\":").append(random.nextInt())
+					.append("},\n");
+		}
+		return sb.append("]\n").toString();
+	}
+
+	private DumpCheckpoint makeCheckpoint(long position,
+			BlockPosition blockPosition) {
+		return new DumpCheckpoint("wikidatawiki", "20150223",
+				DumpContentType.JSON, position, 0, null, blockPosition, null);
+	}
+
+	private DumpCheckpoint makeGzipCheckpoint(long position,
+			MemberPosition memberPosition) {
+		return new DumpCheckpoint("wikidatawiki", "20150223",
+				DumpContentType.JSON, position, 0, null, null, memberPosition);
+	}
+
+	private String read(InputStream in) throws IOException {
+		return IOUtils.toString(in, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testUncompressedResume() throws IOException {
+		String contents = makeDumpContents(10000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"), contents);
+
+		try (ResumableDumpInputStream in = ResumableDumpInputStream.open(
+				this.dm, "dump.json", makeCheckpoint(1234, null))) {
+			assertEquals(contents.substring(1234), read(in));
+			assertNull(in.getBlockPosition(1234));
+		}
+	}
+
+	@Test
+	public void testGzipResume() throws IOException {
+		String contents = makeDumpContents(10000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.gz"),
+				contents, CompressionType.GZIP);
+
+		try (ResumableDumpInputStream in = ResumableDumpInputStream.open(
+				this.dm, "dump.json.gz", makeGzipCheckpoint(4321, null))) {
+			assertEquals(contents.substring(4321), read(in));
+			assertEquals(0, in.getMemberPosition(4321).getByteOffset());
+		}
+	}
+
+	@Test
+	public void testGzipResumeAtMember() throws IOException {
+		String contents = makeDumpContents(100000);
+		byte[] data = contents.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int memberSize = 10000;
+		for (int from = 0; from < data.length; from += memberSize) {
+			try (GZIPOutputStream gzipOut = new GZIPOutputStream(out) {
+				@Override
+				public void close() throws IOException {
+					finish();
+				}
+			}) {
+				gzipOut.write(data, from, Math.min(memberSize, data.length
+						- from));
+			}
+		}
+		MockDirectoryManager.files.put(this.dmPath.resolve("dump.json.gz"),
+				out.toByteArray());
+		int position = 55555;
+
+		MemberPosition memberPosition;
+		try (ResumableDumpInputStream in = ResumableDumpInputStream.open(
+				this.dm, "dump.json.gz", null)) {
+			ResumableDumpInputStream.skipFully(in, position);
+			memberPosition = in.getMemberPosition(position);
+		}
+		assertNotNull(memberPosition);
+		assertEquals(50000, memberPosition.getUncompressedOffset());
+		assertTrue(memberPosition.getByteOffset() > 0);
+
+		try (ResumableDumpInputStream in = ResumableDumpInputStream.open(
+				this.dm, "dump.json.gz",
+				makeGzipCheckpoint(position, memberPosition))) {
+			assertEquals(contents.substring(position), read(in));
+		}
+	}
+
+	@Test
+	public void testBz2ResumeAtBlock() throws IOException {
+		// large enough for several bzip2 blocks of 900k
+		String contents = makeDumpContents(2500000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.bz2"),
+				contents, CompressionType.BZ2);
+		int position = 2000000;
+
+		BlockPosition blockPosition;
+		try (ResumableDumpInputStream in = ResumableDumpInputStream.open(
+				this.dm, "dump.json.bz2", null)) {
+			ResumableDumpInputStream.skipFully(in, position);
+			blockPosition = in.getBlockPosition(position);
+		}
+		assertNotNull(blockPosition);
+		assertTrue(blockPosition.getUncompressedOffset() > 0);
+		assertTrue(blockPosition.getBitOffset() > 0);
+
+		try (ResumableDumpInputStream in = ResumableDumpInputStream.open(
+				this.dm, "dump.json.bz2",
+				makeCheckpoint(position, blockPosition))) {
+			assertEquals(contents.substring(position), read(in));
+		}
+	}
+
+	@Test
+	public void testBz2ResumeWithoutBlock() throws IOException {
+		String contents = makeDumpContents(10000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.bz2"),
+				contents, CompressionType.BZ2);
+
+		try (ResumableDumpInputStream in = ResumableDumpInputStream.open(
+				this.dm, "dump.json.bz2", makeCheckpoint(5000, null))) {
+			assertEquals(contents.substring(5000), read(in));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testPositionBeyondEnd() throws IOException {
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"), "[\n]\n");
+		ResumableDumpInputStream.open(this.dm, "dump.json",
+				makeCheckpoint(100, null)).close();
+	}
+}
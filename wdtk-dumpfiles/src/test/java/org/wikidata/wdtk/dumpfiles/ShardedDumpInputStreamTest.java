@@ -0,0 +1,162 @@
+package org.wikidata.wdtk.dumpfiles;
+
+/*
+ * #%L
+ * Wikidata Toolkit Dump File Handling
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+import org.wikidata.wdtk.util.CompressionType;
+
+public class ShardedDumpInputStreamTest {
+
+	MockDirectoryManager dm;
+	Path dmPath;
+
+	@Before
+	public void setUp() throws IOException {
+		this.dmPath = Paths.get(System.getProperty("user.dir"));
+		this.dm = new MockDirectoryManager(this.dmPath, true, true);
+	}
+
+	private String makeDumpContents(int size) {
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder("[\n");
+		int id = 1;
+		while (sb.length() < size) {
+			sb.append("{\"type\":\"item\",\"id\":\"Q").append(id++)
+					.append("\",\"value\":").append(random.nextInt())
+					.append("},\n");
+		}
+		return sb.append("]\n").toString();
+	}
+
+	private String readShards(String fileName, int shardCount)
+			throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int shard = 0; shard < shardCount; shard++) {
+			try (InputStream in = ShardedDumpInputStream.open(this.dm,
+					fileName, shard, shardCount)) {
+				String shardContents = IOUtils.toString(in,
+						StandardCharsets.UTF_8);
+				if (!shardContents.isEmpty()) {
+					assertEquals('\n',
+							shardContents.charAt(shardContents.length() - 1));
+				}
+				sb.append(shardContents);
+			}
+		}
+		return sb.toString();
+	}
+
+	private List<String> sortedLines(String contents) {
+		List<String> lines = new ArrayList<>(Arrays.asList(contents
+				.split("\n")));
+		lines.sort(null);
+		return lines;
+	}
+
+	@Test
+	public void testUncompressedShards() throws IOException {
+		String contents = makeDumpContents(10000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"), contents);
+
+		for (int shardCount : new int[] { 1, 3, 7, 1000 }) {
+			assertEquals(contents.substring(2),
+					readShards("dump.json", shardCount));
+		}
+	}
+
+	@Test
+	public void testBz2Shards() throws IOException {
+		// large enough for several bzip2 blocks of 900k
+		String contents = makeDumpContents(2500000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.bz2"),
+				contents, CompressionType.BZ2);
+
+		for (int shardCount : new int[] { 1, 2, 5 }) {
+			assertEquals(contents.substring(2),
+					readShards("dump.json.bz2", shardCount));
+		}
+	}
+
+	@Test
+	public void testGzipShards() throws IOException {
+		String contents = makeDumpContents(10000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.gz"),
+				contents, CompressionType.GZIP);
+
+		assertEquals(sortedLines(contents.substring(2)),
+				sortedLines(readShards("dump.json.gz", 3)));
+	}
+
+	@Test
+	public void testSeekableZstdShards() throws IOException {
+		this.dm = new MockDirectoryManager(this.dmPath, true, false);
+		String contents = makeDumpContents(100000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"), contents);
+		DumpFileRecompressor.recompress(this.dm, "dump.json", "dump.json.zst",
+				3, 4000);
+
+		for (int shardCount : new int[] { 1, 3, 7, 1000 }) {
+			assertEquals(contents.substring(2),
+					readShards("dump.json.zst", shardCount));
+		}
+	}
+
+	@Test
+	public void testXzShards() throws IOException {
+		String contents = makeDumpContents(10000);
+		this.dm.setFileContents(this.dmPath.resolve("dump.json.xz"),
+				contents, CompressionType.XZ);
+
+		assertEquals(sortedLines(contents.substring(2)),
+				sortedLines(readShards("dump.json.xz", 3)));
+	}
+
+	@Test
+	public void testRangeStart() {
+		assertEquals(0, ShardedDumpInputStream.getRangeStart(10, 0, 3));
+		assertEquals(3, ShardedDumpInputStream.getRangeStart(10, 1, 3));
+		assertEquals(6, ShardedDumpInputStream.getRangeStart(10, 2, 3));
+		assertEquals(10, ShardedDumpInputStream.getRangeStart(10, 3, 3));
+		assertEquals(Long.MAX_VALUE / 2, ShardedDumpInputStream.getRangeStart(
+				Long.MAX_VALUE, 1, 2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidShard() throws IOException {
+		this.dm.setFileContents(this.dmPath.resolve("dump.json"), "[\n]\n");
+		ShardedDumpInputStream.open(this.dm, "dump.json", 2, 2).close();
+	}
+}
@@ -31,6 +31,8 @@ public class WmfDumpFileTest {
 	public void getDumpFileCompressionType() {
 		assertEquals(WmfDumpFile.getDumpFileCompressionType("foo.tar.gz"), CompressionType.GZIP);
 		assertEquals(WmfDumpFile.getDumpFileCompressionType("bar.txt.bz2"), CompressionType.BZ2);
+		assertEquals(WmfDumpFile.getDumpFileCompressionType("baz.json.zst"), CompressionType.ZSTD);
+		assertEquals(WmfDumpFile.getDumpFileCompressionType("baz.json.xz"), CompressionType.XZ);
 		assertEquals(WmfDumpFile.getDumpFileCompressionType("baz.txt"), CompressionType.NONE);
 		assertEquals(WmfDumpFile.getDumpFileCompressionType("bat.txt"), CompressionType.NONE);
 	}
@@ -22,6 +22,9 @@ package org.wikidata.wdtk.dumpfiles.wmf;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 
 import org.junit.Before;
@@ -29,8 +32,10 @@ import org.junit.Test;
 import org.wikidata.wdtk.dumpfiles.DumpContentType;
 import org.wikidata.wdtk.dumpfiles.MwDumpFile;
 import org.wikidata.wdtk.testing.MockDirectoryManager;
+import org.wikidata.wdtk.testing.MockStringContentFactory;
 import org.wikidata.wdtk.testing.MockWebResourceFetcher;
 import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.Md5VerifyingInputStream;
 
 import static org.junit.Assert.*;
 
@@ -47,6 +52,17 @@ public class WmfOnlineStandardDumpFileTest {
 		wrf = new MockWebResourceFetcher();
 	}
 
+	/**
+	 * Publishes the checksum of the mocked dump file, as found on the dump
+	 * servers.
+	 */
+	private void publishMd5(String md5sumsUrl, String baseUrl, String fileName)
+			throws IOException {
+		String md5 = Md5VerifyingInputStream.toHex(Md5VerifyingInputStream
+				.newMd5Digest().digest(wrf.webResources.get(baseUrl + fileName)));
+		wrf.setWebResourceContents(md5sumsUrl, md5 + "  " + fileName + "\n");
+	}
+
 	@Test
 	public void validCurrentDumpPropertiesOldFormat() throws IOException {
 		wrf.setWebResourceContentsFromResource(
@@ -55,9 +71,10 @@ public class WmfOnlineStandardDumpFileTest {
 		wrf.setWebResourceContents(
 				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-pages-meta-current.xml.bz2",
 				"Line1", CompressionType.BZ2);
-		wrf.setWebResourceContentsFromResource(
+		publishMd5(
 				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-md5sums.txt",
-				"/wikidatawiki-20140210-md5sums.txt", this.getClass());
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/",
+				"wikidatawiki-20140210-pages-meta-current.xml.bz2");
 		MwDumpFile dump = new WmfOnlineStandardDumpFile("20140210",
 				"wikidatawiki", wrf, dm, DumpContentType.CURRENT);
 
@@ -78,9 +95,10 @@ public class WmfOnlineStandardDumpFileTest {
 		wrf.setWebResourceContents(
 				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-pages-meta-current.xml.bz2",
 				"Line1", CompressionType.BZ2);
-		wrf.setWebResourceContentsFromResource(
+		publishMd5(
 				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-md5sums.txt",
-				"/wikidatawiki-20140210-md5sums.txt", this.getClass());
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/",
+				"wikidatawiki-20140210-pages-meta-current.xml.bz2");
 		MwDumpFile dump = new WmfOnlineStandardDumpFile("20140210",
 				"wikidatawiki", wrf, dm, DumpContentType.CURRENT);
 
@@ -93,6 +111,95 @@ public class WmfOnlineStandardDumpFileTest {
 		assertEquals(DumpContentType.CURRENT, dump.getDumpContentType());
 	}
 
+	@Test
+	public void readDumpDuringDownload() throws IOException {
+		wrf.setWebResourceContentsFromResource(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/",
+				"/wikidatawiki-20140508-index.html", this.getClass());
+		wrf.setWebResourceContents(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-pages-meta-current.xml.bz2",
+				"Line1", CompressionType.BZ2);
+		publishMd5(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-md5sums.txt",
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/",
+				"wikidatawiki-20140210-pages-meta-current.xml.bz2");
+		MwDumpFile dump = new WmfOnlineStandardDumpFile("20140210",
+				"wikidatawiki", wrf, dm, DumpContentType.CURRENT);
+
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(
+				dump.getDumpFileStreamDuringDownload(),
+				StandardCharsets.UTF_8))) {
+			assertEquals("Line1", br.readLine());
+			assertNull(br.readLine());
+		}
+		assertTrue(dm.getSubdirectoryManager("current-20140210").hasFile(
+				"wikidatawiki-20140210-pages-meta-current.xml.bz2"));
+	}
+
+	@Test
+	public void downloadWrongMd5sum() throws IOException {
+		wrf.setWebResourceContentsFromResource(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/",
+				"/wikidatawiki-20140508-index.html", this.getClass());
+		wrf.setWebResourceContents(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-pages-meta-current.xml.bz2",
+				"Line1", CompressionType.BZ2);
+		// the published checksum is that of the real dump
+		wrf.setWebResourceContentsFromResource(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-md5sums.txt",
+				"/wikidatawiki-20140210-md5sums.txt", this.getClass());
+		MwDumpFile dump = new WmfOnlineStandardDumpFile("20140210",
+				"wikidatawiki", wrf, dm, DumpContentType.CURRENT);
+
+		try {
+			dump.prepareDumpFile();
+			fail("Download with wrong checksum should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("09f0c38c6409ac4765c19b7c771710ca"));
+		}
+		assertFalse(dm.getSubdirectoryManager("current-20140210")
+				.hasFile("wikidatawiki-20140210-pages-meta-current.xml.bz2"));
+	}
+
+	@Test
+	public void downloadUnreadableMd5sums() throws IOException {
+		String md5sumsUrl = "https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-md5sums.txt";
+		int[] md5sumsRequests = { 0 };
+		wrf = new MockWebResourceFetcher() {
+			@Override
+			public InputStream getInputStreamForUrl(String urlString)
+					throws IOException {
+				// the list can be read when checking if the dump is available,
+				// but not when fetching the checksum
+				if (md5sumsUrl.equals(urlString) && md5sumsRequests[0]++ > 0) {
+					return MockStringContentFactory.getFailingInputStream();
+				}
+				return super.getInputStreamForUrl(urlString);
+			}
+		};
+		wrf.setWebResourceContentsFromResource(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/",
+				"/wikidatawiki-20140508-index.html", this.getClass());
+		wrf.setWebResourceContents(
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/wikidatawiki-20140210-pages-meta-current.xml.bz2",
+				"Line1", CompressionType.BZ2);
+		publishMd5(md5sumsUrl,
+				"https://dumps.wikimedia.org/wikidatawiki/20140210/",
+				"wikidatawiki-20140210-pages-meta-current.xml.bz2");
+		MwDumpFile dump = new WmfOnlineStandardDumpFile("20140210",
+				"wikidatawiki", wrf, dm, DumpContentType.CURRENT);
+
+		try {
+			dump.prepareDumpFile();
+			fail("Download with unreadable checksums should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains(md5sumsUrl));
+		}
+		assertEquals(1 + WmfDumpFile.MD5_FETCH_ATTEMPTS, md5sumsRequests[0]);
+		assertFalse(dm.getSubdirectoryManager("current-20140210")
+				.hasFile("wikidatawiki-20140210-pages-meta-current.xml.bz2"));
+	}
+
 	@Test
 	public void missingFullDumpProperties() {
 		MwDumpFile dump = new WmfOnlineStandardDumpFile("20140210",
@@ -48,6 +48,14 @@ public class LocalDumpFileExample {
 		// Note that the project name "wikidatawiki" is only for online access;
 		// not relevant here.
 
+		// Optional: only process one shard of the dump, so that the work can
+		// be shared by several machines that run this program with arguments
+		// "0 4", "1 4", "2 4", and "3 4":
+		if (args.length == 2) {
+			dumpProcessingController.setShard(Integer.parseInt(args[0]),
+					Integer.parseInt(args[1]));
+		}
+
 		EntityTimerProcessor entityTimerProcessor = new EntityTimerProcessor(0);
 		dumpProcessingController.registerEntityDocumentProcessor(
 				entityTimerProcessor, null, true);
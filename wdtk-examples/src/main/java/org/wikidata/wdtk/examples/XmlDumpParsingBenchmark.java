@@ -0,0 +1,333 @@
+package org.wikidata.wdtk.examples;
+
+/*
+ * #%L
+ * Wikidata Toolkit Examples
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.wikidata.wdtk.dumpfiles.DumpContentType;
+import org.wikidata.wdtk.dumpfiles.MwLocalDumpFile;
+import org.wikidata.wdtk.dumpfiles.MwRevision;
+import org.wikidata.wdtk.dumpfiles.MwRevisionDumpFileProcessor;
+import org.wikidata.wdtk.dumpfiles.MwRevisionProcessor;
+
+/**
+ * This program measures how fast XML revision dumps are read with different
+ * StAX implementations. It writes a synthetic uncompressed history dump to a
+ * temporary file and reads it several times with each XML input factory,
+ * reporting the best throughput. The default StAX implementation of the JVM
+ * is measured with its default settings and with the settings of
+ * {@link MwRevisionDumpFileProcessor#configureXmlInputFactory(XMLInputFactory)}.
+ * <p>
+ * Further implementations can be measured by putting them on the classpath and
+ * giving the names of their XMLInputFactory classes as arguments, e.g.,
+ * "com.fasterxml.aalto.stax.InputFactoryImpl" for Aalto or
+ * "com.ctc.wstx.stax.WstxInputFactory" for Woodstox. The first argument may
+ * be a number to set how many pages the synthetic dump has.
+ */
+public class XmlDumpParsingBenchmark {
+
+	/**
+	 * Number of pages in the synthetic dump if no other number is given.
+	 */
+	static final int DEFAULT_PAGE_COUNT = 5000;
+
+	/**
+	 * Number of revisions of each page in the synthetic dump.
+	 */
+	static final int REVISIONS_PER_PAGE = 10;
+
+	/**
+	 * Number of times the dump is read with each factory. The first round is
+	 * not measured, so that the JVM can warm up.
+	 */
+	static final int ROUNDS = 4;
+
+	/**
+	 * Revision processor that only counts revisions and characters, so that
+	 * the measurement is dominated by reading XML.
+	 */
+	static class CountingMwRevisionProcessor implements MwRevisionProcessor {
+
+		long revisionCount = 0;
+		long characterCount = 0;
+
+		@Override
+		public void startRevisionProcessing(String siteName, String baseUrl,
+				Map<Integer, String> namespaces) {
+		}
+
+		@Override
+		public void processRevision(MwRevision mwRevision) {
+			this.revisionCount++;
+			this.characterCount += mwRevision.getText().length();
+		}
+
+		@Override
+		public void finishRevisionProcessing() {
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		ExampleHelpers.configureLogging();
+		printDocumentation();
+
+		int pageCount = DEFAULT_PAGE_COUNT;
+		int firstFactoryArg = 0;
+		if (args.length > 0 && args[0].matches("[0-9]+")) {
+			pageCount = Integer.parseInt(args[0]);
+			firstFactoryArg = 1;
+		}
+
+		Path dumpFile = Files.createTempFile("wdtk-benchmark-pages-meta-history",
+				".xml");
+		try {
+			writeSyntheticDump(dumpFile, pageCount);
+			long fileSize = Files.size(dumpFile);
+			System.out.println("*** Synthetic dump with " + pageCount
+					+ " pages and " + (pageCount * REVISIONS_PER_PAGE)
+					+ " revisions (" + (fileSize / 1024 / 1024) + " MB)");
+			System.out.println();
+
+			runBenchmark("JVM default (untuned)", dumpFile, fileSize,
+					XMLInputFactory::newInstance);
+			runBenchmark("JVM default (tuned)", dumpFile, fileSize,
+					MwRevisionDumpFileProcessor::createXmlInputFactory);
+			for (int i = firstFactoryArg; i < args.length; i++) {
+				String className = args[i];
+				runBenchmark(className + " (tuned)", dumpFile, fileSize, () -> {
+					XMLInputFactory result = createXmlInputFactory(className);
+					MwRevisionDumpFileProcessor.configureXmlInputFactory(result);
+					return result;
+				});
+			}
+		} finally {
+			Files.deleteIfExists(dumpFile);
+		}
+	}
+
+	/**
+	 * Creates an XML input factory of the given class.
+	 *
+	 * @param className
+	 *            the name of a subclass of {@link XMLInputFactory}
+	 * @return the new factory
+	 * @throws IllegalArgumentException
+	 *             if no factory of this class can be created
+	 */
+	static XMLInputFactory createXmlInputFactory(String className) {
+		try {
+			return Class.forName(className).asSubclass(XMLInputFactory.class)
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalArgumentException("Cannot create factory "
+					+ className + ": " + e, e);
+		}
+	}
+
+	/**
+	 * Reads the dump several times with XML readers from the given factory
+	 * and prints the best time.
+	 *
+	 * @param name
+	 *            the name of the configuration for the report
+	 * @param dumpFile
+	 *            the dump to read
+	 * @param fileSize
+	 *            the size of the dump in bytes
+	 * @param xmlInputFactorySupplier
+	 *            creates the factory to measure
+	 * @throws IOException
+	 *             if the dump could not be read
+	 */
+	static void runBenchmark(String name, Path dumpFile, long fileSize,
+			Supplier<XMLInputFactory> xmlInputFactorySupplier)
+			throws IOException {
+		XMLInputFactory xmlInputFactory;
+		try {
+			xmlInputFactory = xmlInputFactorySupplier.get();
+		} catch (RuntimeException e) {
+			System.out.println(name + ": not available (" + e.getMessage()
+					+ ")");
+			return;
+		}
+
+		MwLocalDumpFile mwDumpFile = new MwLocalDumpFile(dumpFile.toString(),
+				DumpContentType.FULL, "20260101", "wikidatawiki");
+		long bestTime = Long.MAX_VALUE;
+		CountingMwRevisionProcessor processor = null;
+		for (int round = 0; round < ROUNDS; round++) {
+			processor = new CountingMwRevisionProcessor();
+			MwRevisionDumpFileProcessor dumpFileProcessor = new MwRevisionDumpFileProcessor(
+					processor, xmlInputFactory);
+			long start = System.nanoTime();
+			try (InputStream inputStream = new BufferedInputStream(
+					Files.newInputStream(dumpFile), 1 << 16)) {
+				dumpFileProcessor.processDumpFileContents(inputStream,
+						mwDumpFile);
+			}
+			long time = System.nanoTime() - start;
+			if (round > 0) {
+				bestTime = Math.min(bestTime, time);
+			}
+		}
+
+		double seconds = bestTime / 1000000000.0;
+		System.out.println(String.format(
+				"%s: %d revisions (%d characters of text) in %.3f s, %.1f MB/s",
+				name, processor.revisionCount, processor.characterCount,
+				seconds, fileSize / 1024.0 / 1024.0 / seconds));
+	}
+
+	/**
+	 * Writes an uncompressed history dump with the given number of pages.
+	 * Every page is an item with several revisions whose text resembles the
+	 * JSON of a small item, escaped like in real dumps.
+	 *
+	 * @param dumpFile
+	 *            the file to write to
+	 * @param pageCount
+	 *            the number of pages to write
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	static void writeSyntheticDump(Path dumpFile, int pageCount)
+			throws IOException {
+		try (Writer out = new BufferedWriter(Files.newBufferedWriter(dumpFile,
+				StandardCharsets.UTF_8), 1 << 16)) {
+			out.write("<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" version=\"0.10\" xml:lang=\"en\">\n");
+			out.write("  <siteinfo>\n");
+			out.write("    <sitename>Wikidata</sitename>\n");
+			out.write("    <base>https://www.wikidata.org/wiki/Wikidata:Main_Page</base>\n");
+			out.write("    <generator>MediaWiki 1.43</generator>\n");
+			out.write("    <case>first-letter</case>\n");
+			out.write("    <namespaces>\n");
+			out.write("      <namespace key=\"0\" case=\"first-letter\" />\n");
+			out.write("      <namespace key=\"1\" case=\"first-letter\">Talk</namespace>\n");
+			out.write("      <namespace key=\"120\" case=\"first-letter\">Property</namespace>\n");
+			out.write("    </namespaces>\n");
+			out.write("  </siteinfo>\n");
+			for (int page = 1; page <= pageCount; page++) {
+				out.write("  <page>\n");
+				out.write("    <title>Q" + page + "</title>\n");
+				out.write("    <ns>0</ns>\n");
+				out.write("    <id>" + page + "</id>\n");
+				for (int revision = 1; revision <= REVISIONS_PER_PAGE; revision++) {
+					long revisionId = (long) page * REVISIONS_PER_PAGE
+							+ revision;
+					out.write("    <revision>\n");
+					out.write("      <id>" + revisionId + "</id>\n");
+					if (revision > 1) {
+						out.write("      <parentid>" + (revisionId - 1)
+								+ "</parentid>\n");
+					}
+					out.write("      <timestamp>2026-01-01T00:00:00Z</timestamp>\n");
+					out.write("      <contributor>\n");
+					out.write("        <username>Benchmark</username>\n");
+					out.write("        <id>" + (revision % 7) + "</id>\n");
+					out.write("      </contributor>\n");
+					out.write("      <comment>/* wbsetlabel-add:1|en */ revision "
+							+ revision + "</comment>\n");
+					out.write("      <model>wikibase-item</model>\n");
+					out.write("      <format>application/json</format>\n");
+					out.write("      <text bytes=\"0\" xml:space=\"preserve\">");
+					writeRevisionText(out, page, revision);
+					out.write("</text>\n");
+					out.write("      <sha1>0</sha1>\n");
+					out.write("    </revision>\n");
+				}
+				out.write("  </page>\n");
+			}
+			out.write("</mediawiki>\n");
+		}
+	}
+
+	/**
+	 * Writes the escaped JSON text of one revision. Later revisions have more
+	 * labels and statements, as is typical for history dumps.
+	 *
+	 * @param out
+	 *            the writer for the dump
+	 * @param page
+	 *            the number of the page
+	 * @param revision
+	 *            the number of the revision within the page
+	 * @throws IOException
+	 *             if the text could not be written
+	 */
+	static void writeRevisionText(Writer out, int page, int revision)
+			throws IOException {
+		out.write("{&quot;type&quot;:&quot;item&quot;,&quot;id&quot;:&quot;Q"
+				+ page + "&quot;,&quot;labels&quot;:{");
+		for (int i = 0; i < revision; i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			String language = "l" + i;
+			out.write("&quot;" + language + "&quot;:{&quot;language&quot;:&quot;"
+					+ language + "&quot;,&quot;value&quot;:&quot;Label "
+					+ page + " &amp; " + i + "&quot;}");
+		}
+		out.write("},&quot;claims&quot;:{&quot;P31&quot;:[");
+		for (int i = 0; i < revision; i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			out.write("{&quot;mainsnak&quot;:{&quot;snaktype&quot;:&quot;value&quot;,"
+					+ "&quot;property&quot;:&quot;P31&quot;,&quot;datavalue&quot;:"
+					+ "{&quot;value&quot;:{&quot;entity-type&quot;:&quot;item&quot;,"
+					+ "&quot;numeric-id&quot;:" + (i + 5)
+					+ "},&quot;type&quot;:&quot;wikibase-entityid&quot;}},"
+					+ "&quot;type&quot;:&quot;statement&quot;,&quot;id&quot;:&quot;Q"
+					+ page + "$" + i + "&quot;,&quot;rank&quot;:&quot;normal&quot;}");
+		}
+		out.write("]}}");
+	}
+
+	/**
+	 * Prints some basic documentation about this program.
+	 */
+	public static void printDocumentation() {
+		System.out
+				.println("********************************************************************");
+		System.out.println("*** Wikidata Toolkit: XmlDumpParsingBenchmark");
+		System.out.println("*** ");
+		System.out
+				.println("*** This program measures how fast XML revision dumps are read");
+		System.out
+				.println("*** with different StAX implementations. Give the names of");
+		System.out
+				.println("*** XMLInputFactory classes on the classpath as arguments to");
+		System.out.println("*** compare them with the default implementation.");
+		System.out
+				.println("********************************************************************");
+	}
+}
@@ -0,0 +1,498 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Storage
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Implementation of {@link BitVector} for sparse bit vectors, in the style of
+ * Roaring bitmaps. The positions are split into chunks of 2<sup>16</sup>
+ * bits, and only chunks that contain <code>true</code> bits are stored. A
+ * chunk with few <code>true</code> bits stores their positions in a sorted
+ * array, while other chunks use a bitmap of 8 KB. Chunks are found by binary
+ * search, with a shortcut for repeated accesses to the same chunk.
+ * <p>
+ * The memory needed is therefore proportional to the number of
+ * <code>true</code> bits (at most two bytes each) rather than to the largest
+ * position, and the vector grows without copying its bits. Like
+ * {@link BitVectorImpl}, this bit vector is <i>flexible</i>: bits can be set
+ * at any non-negative position, and positions outside the bit vector contain
+ * <code>false</code>.
+ */
+public class CompressedBitVector implements BitVector, Iterable<Boolean> {
+
+	static final int LG_CHUNK_SIZE = 16;
+	static final int CHUNK_MASK = (1 << LG_CHUNK_SIZE) - 1;
+	static final int LG_WORD_SIZE = 6;
+	static final int WORD_MASK = 0x3F;
+	static final int WORDS_PER_CHUNK = 1 << (LG_CHUNK_SIZE - LG_WORD_SIZE);
+	/**
+	 * Maximal number of positions in an array chunk. An array of this size
+	 * takes as much memory as a bitmap.
+	 */
+	static final int MAX_ARRAY_CHUNK_SIZE = 4096;
+	static final int INITIAL_CHUNK_CAPACITY = 4;
+
+	/**
+	 * Part of a bit vector for 2<sup>16</sup> consecutive positions.
+	 */
+	abstract static class Chunk {
+
+		/**
+		 * @param position
+		 *            position within the chunk
+		 * @return value of the bit at the given position
+		 */
+		abstract boolean getBit(int position);
+
+		/**
+		 * Sets the bit at the given position to <code>true</code>.
+		 *
+		 * @param position
+		 *            position within the chunk
+		 * @return the chunk that contains the result, which is either this
+		 *         chunk or a new one
+		 */
+		abstract Chunk setBit(int position);
+
+		/**
+		 * Sets the bit at the given position to <code>false</code>.
+		 *
+		 * @param position
+		 *            position within the chunk
+		 * @return the chunk that contains the result, which is either this
+		 *         chunk or a new one
+		 */
+		abstract Chunk clearBit(int position);
+
+		/**
+		 * @return number of <code>true</code> bits in the chunk
+		 */
+		abstract int cardinality();
+
+		/**
+		 * Copies the bits of the chunk to the given array of
+		 * {@link #WORDS_PER_CHUNK} words, least significant bit first.
+		 *
+		 * @param words
+		 *            the array to fill
+		 */
+		abstract void toWords(long[] words);
+	}
+
+	/**
+	 * Chunk that stores the sorted positions of its <code>true</code> bits.
+	 */
+	static class ArrayChunk extends Chunk {
+
+		char[] positions;
+		int size;
+
+		ArrayChunk(int capacity) {
+			this.positions = new char[capacity];
+		}
+
+		@Override
+		boolean getBit(int position) {
+			return Arrays.binarySearch(this.positions, 0, this.size,
+					(char) position) >= 0;
+		}
+
+		@Override
+		Chunk setBit(int position) {
+			int index = Arrays.binarySearch(this.positions, 0, this.size,
+					(char) position);
+			if (index >= 0) {
+				return this;
+			}
+			if (this.size == MAX_ARRAY_CHUNK_SIZE) {
+				return new BitmapChunk(this).setBit(position);
+			}
+			index = -index - 1;
+			if (this.size == this.positions.length) {
+				this.positions = Arrays.copyOf(this.positions,
+						Math.min(MAX_ARRAY_CHUNK_SIZE, 2 * this.size));
+			}
+			System.arraycopy(this.positions, index, this.positions, index + 1,
+					this.size - index);
+			this.positions[index] = (char) position;
+			this.size++;
+			return this;
+		}
+
+		@Override
+		Chunk clearBit(int position) {
+			int index = Arrays.binarySearch(this.positions, 0, this.size,
+					(char) position);
+			if (index >= 0) {
+				System.arraycopy(this.positions, index + 1, this.positions,
+						index, this.size - index - 1);
+				this.size--;
+			}
+			return this;
+		}
+
+		@Override
+		int cardinality() {
+			return this.size;
+		}
+
+		@Override
+		void toWords(long[] words) {
+			Arrays.fill(words, 0);
+			for (int i = 0; i < this.size; i++) {
+				int position = this.positions[i];
+				words[position >> LG_WORD_SIZE] |= 1L << (position & WORD_MASK);
+			}
+		}
+	}
+
+	/**
+	 * Chunk that stores all of its bits.
+	 */
+	static class BitmapChunk extends Chunk {
+
+		final long[] words = new long[WORDS_PER_CHUNK];
+		int cardinality;
+
+		BitmapChunk(ArrayChunk arrayChunk) {
+			arrayChunk.toWords(this.words);
+			this.cardinality = arrayChunk.size;
+		}
+
+		@Override
+		boolean getBit(int position) {
+			return ((this.words[position >> LG_WORD_SIZE] >>> (position & WORD_MASK)) & 1) == 1;
+		}
+
+		@Override
+		Chunk setBit(int position) {
+			long mask = 1L << (position & WORD_MASK);
+			int wordIndex = position >> LG_WORD_SIZE;
+			if ((this.words[wordIndex] & mask) == 0) {
+				this.words[wordIndex] |= mask;
+				this.cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Chunk clearBit(int position) {
+			long mask = 1L << (position & WORD_MASK);
+			int wordIndex = position >> LG_WORD_SIZE;
+			if ((this.words[wordIndex] & mask) != 0) {
+				this.words[wordIndex] &= ~mask;
+				this.cardinality--;
+				if (this.cardinality <= MAX_ARRAY_CHUNK_SIZE / 2) {
+					ArrayChunk result = new ArrayChunk(MAX_ARRAY_CHUNK_SIZE);
+					for (int i = 0; i < WORDS_PER_CHUNK; i++) {
+						long word = this.words[i];
+						while (word != 0) {
+							result.positions[result.size++] = (char) ((i << LG_WORD_SIZE) + Long
+									.numberOfTrailingZeros(word));
+							word &= word - 1;
+						}
+					}
+					return result;
+				}
+			}
+			return this;
+		}
+
+		@Override
+		int cardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		void toWords(long[] words) {
+			System.arraycopy(this.words, 0, words, 0, WORDS_PER_CHUNK);
+		}
+	}
+
+	/**
+	 * Indexes of the stored chunks, i.e., their first position shifted by
+	 * {@link #LG_CHUNK_SIZE}, in ascending order.
+	 */
+	long[] chunkKeys;
+	Chunk[] chunks;
+	int chunkCount;
+	/**
+	 * Index of the chunk that was used last, or -1.
+	 */
+	int lastChunk = -1;
+
+	long size;
+	int hashCode;
+	boolean validHashCode = false;
+
+	/**
+	 * Constructor of a bit vector of size 0.
+	 */
+	public CompressedBitVector() {
+		this(0);
+	}
+
+	/**
+	 * Constructor of a bit vector of size <i>initialSize</i>. The bit vector
+	 * contains <code>false</code> at all indexes. No memory is reserved for
+	 * these bits.
+	 *
+	 * @param initialSize
+	 *            initial size of this bit vector
+	 */
+	public CompressedBitVector(long initialSize) {
+		if (initialSize < 0) {
+			throw new IllegalArgumentException("Wrong bit vector size '"
+					+ initialSize + "'. Bit vector size must be non-negative.");
+		}
+		this.chunkKeys = new long[INITIAL_CHUNK_CAPACITY];
+		this.chunks = new Chunk[INITIAL_CHUNK_CAPACITY];
+		this.size = initialSize;
+	}
+
+	/**
+	 * Copy constructor of a bit vector.
+	 *
+	 * @param bitVector
+	 *            bit vector
+	 */
+	public CompressedBitVector(BitVector bitVector) {
+		this(Validate.notNull(bitVector, "Bit vector cannot be null.").size());
+		for (long position = 0; position < bitVector.size(); position++) {
+			if (bitVector.getBit(position)) {
+				setBit(position, true);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of <code>true</code> bits in this bit vector
+	 */
+	public long countBits() {
+		long result = 0;
+		for (int i = 0; i < this.chunkCount; i++) {
+			result += this.chunks[i].cardinality();
+		}
+		return result;
+	}
+
+	@Override
+	public boolean addBit(boolean bit) {
+		setBit(this.size, bit);
+		return true;
+	}
+
+	@Override
+	public boolean getBit(long position) {
+		assertNonNegativePosition(position);
+		int index = findChunk(position >>> LG_CHUNK_SIZE);
+		return index >= 0
+				&& this.chunks[index].getBit((int) (position & CHUNK_MASK));
+	}
+
+	@Override
+	public void setBit(long position, boolean bit) {
+		assertNonNegativePosition(position);
+		if (position >= this.size) {
+			this.size = position + 1;
+		}
+		this.validHashCode = false;
+
+		long key = position >>> LG_CHUNK_SIZE;
+		int chunkPosition = (int) (position & CHUNK_MASK);
+		int index = findChunk(key);
+		if (index >= 0) {
+			if (bit) {
+				this.chunks[index] = this.chunks[index].setBit(chunkPosition);
+			} else {
+				this.chunks[index] = this.chunks[index]
+						.clearBit(chunkPosition);
+				if (this.chunks[index].cardinality() == 0) {
+					removeChunk(index);
+				}
+			}
+		} else if (bit) {
+			index = -index - 1;
+			insertChunk(index, key);
+			this.chunks[index] = this.chunks[index].setBit(chunkPosition);
+		}
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public Iterator<Boolean> iterator() {
+		return new BitVectorIterator(this);
+	}
+
+	/**
+	 * Computes the same hash code as {@link BitVectorImpl#hashCode()}, so
+	 * that equal bit vectors of both implementations have equal hash codes.
+	 */
+	@Override
+	public int hashCode() {
+		if (!this.validHashCode) {
+			int result = (int) this.size;
+			long[] words = new long[WORDS_PER_CHUNK];
+			for (int i = 0; i < this.chunkCount; i++) {
+				this.chunks[i].toWords(words);
+				for (long word : words) {
+					result += (int) (0x1F * word);
+				}
+			}
+			this.hashCode = result;
+			this.validHashCode = true;
+		}
+		return this.hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BitVector)) {
+			return false;
+		}
+		BitVector other = (BitVector) obj;
+		if (this.size != other.size()) {
+			return false;
+		}
+
+		if (other instanceof CompressedBitVector) {
+			CompressedBitVector otherVector = (CompressedBitVector) other;
+			if (this.chunkCount != otherVector.chunkCount) {
+				return false;
+			}
+			long[] words = new long[WORDS_PER_CHUNK];
+			long[] otherWords = new long[WORDS_PER_CHUNK];
+			for (int i = 0; i < this.chunkCount; i++) {
+				if (this.chunkKeys[i] != otherVector.chunkKeys[i]) {
+					return false;
+				}
+				this.chunks[i].toWords(words);
+				otherVector.chunks[i].toWords(otherWords);
+				if (!Arrays.equals(words, otherWords)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		for (long i = 0; i < this.size; i++) {
+			if (getBit(i) != other.getBit(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (long position = 0; position < this.size; position++) {
+			sb.append(getBit(position) ? "1" : "0");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param position
+	 *            position
+	 * @throws IndexOutOfBoundsException
+	 *             if the position is a negative number
+	 */
+	void assertNonNegativePosition(long position) {
+		if (position < 0) {
+			throw new IndexOutOfBoundsException("Position " + position
+					+ " is out of bounds.");
+		}
+	}
+
+	/**
+	 * Finds the chunk with the given key.
+	 *
+	 * @param key
+	 *            the key of the chunk
+	 * @return the index of the chunk, or (-(insertion point) - 1) if there is
+	 *         no such chunk
+	 */
+	int findChunk(long key) {
+		int last = this.lastChunk;
+		if (last >= 0 && last < this.chunkCount
+				&& this.chunkKeys[last] == key) {
+			return last;
+		}
+		int index = Arrays.binarySearch(this.chunkKeys, 0, this.chunkCount,
+				key);
+		if (index >= 0) {
+			this.lastChunk = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Inserts an empty chunk with the given key at the given index.
+	 *
+	 * @param index
+	 *            the index of the new chunk
+	 * @param key
+	 *            the key of the new chunk
+	 */
+	void insertChunk(int index, long key) {
+		if (this.chunkCount == this.chunkKeys.length) {
+			this.chunkKeys = Arrays.copyOf(this.chunkKeys, 2 * this.chunkCount);
+			this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunkCount);
+		}
+		System.arraycopy(this.chunkKeys, index, this.chunkKeys, index + 1,
+				this.chunkCount - index);
+		System.arraycopy(this.chunks, index, this.chunks, index + 1,
+				this.chunkCount - index);
+		this.chunkKeys[index] = key;
+		this.chunks[index] = new ArrayChunk(INITIAL_CHUNK_CAPACITY);
+		this.chunkCount++;
+		this.lastChunk = index;
+	}
+
+	/**
+	 * Removes the chunk at the given index.
+	 *
+	 * @param index
+	 *            the index of the chunk
+	 */
+	void removeChunk(int index) {
+		System.arraycopy(this.chunkKeys, index + 1, this.chunkKeys, index,
+				this.chunkCount - index - 1);
+		System.arraycopy(this.chunks, index + 1, this.chunks, index,
+				this.chunkCount - index - 1);
+		this.chunkCount--;
+		this.chunks[this.chunkCount] = null;
+		this.lastChunk = -1;
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Storage
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for {@link CompressedBitVector}.
+ */
+public class CompressedBitVectorTest {
+
+	void assertEqualsForBitVector(BitVector bv0, BitVector bv1) {
+		Assert.assertEquals(bv0, bv1);
+		Assert.assertEquals(bv1, bv0);
+		Assert.assertEquals(bv0.hashCode(), bv1.hashCode());
+	}
+
+	@Test
+	public void testEmptyBitVector() {
+		CompressedBitVector bv = new CompressedBitVector();
+		Assert.assertEquals(0, bv.size());
+		Assert.assertFalse(bv.getBit(0));
+		Assert.assertFalse(bv.getBit(Long.MAX_VALUE));
+		assertEqualsForBitVector(new BitVectorImpl(), bv);
+
+		CompressedBitVector sized = new CompressedBitVector(200000000);
+		Assert.assertEquals(200000000, sized.size());
+		Assert.assertEquals(0, sized.chunkCount);
+		assertEqualsForBitVector(new CompressedBitVector(200000000), sized);
+	}
+
+	@Test
+	public void testAdd() {
+		CompressedBitVector bv = new CompressedBitVector();
+		BitVectorImpl expected = new BitVectorImpl();
+		PseudorandomBooleanGenerator generator = new PseudorandomBooleanGenerator(
+				0x1234);
+		for (int i = 0; i < 0x3000; i++) {
+			boolean bit = generator.getPseudorandomBoolean();
+			bv.addBit(bit);
+			expected.addBit(bit);
+			Assert.assertEquals(bit, bv.getBit(i));
+		}
+		assertEqualsForBitVector(expected, bv);
+		Assert.assertEquals(expected.toString(), bv.toString());
+
+		Iterator<Boolean> it = bv.iterator();
+		for (Boolean bit : expected) {
+			Assert.assertEquals(bit, it.next());
+		}
+		Assert.assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void testRandomSetAndClear() {
+		Random random = new Random(7);
+		CompressedBitVector bv = new CompressedBitVector();
+		BitVectorImpl expected = new BitVectorImpl();
+		for (int i = 0; i < 200000; i++) {
+			// dense in the first chunks, sparse later on
+			long position = random.nextBoolean() ? random.nextInt(200000)
+					: random.nextInt(5000000);
+			boolean bit = random.nextInt(3) > 0;
+			bv.setBit(position, bit);
+			expected.setBit(position, bit);
+		}
+		for (long position = 0; position < expected.size(); position++) {
+			Assert.assertEquals(expected.getBit(position), bv.getBit(position));
+		}
+		assertEqualsForBitVector(expected, bv);
+		assertEqualsForBitVector(new CompressedBitVector(expected), bv);
+
+		bv.setBit(expected.size() + 10, false);
+		Assert.assertNotEquals(expected, bv);
+	}
+
+	@Test
+	public void testChunkConversion() {
+		CompressedBitVector bv = new CompressedBitVector();
+		for (int i = 0; i < CompressedBitVector.MAX_ARRAY_CHUNK_SIZE; i++) {
+			bv.setBit(2 * i, true);
+		}
+		Assert.assertTrue(bv.chunks[0] instanceof CompressedBitVector.ArrayChunk);
+		bv.setBit(1, true);
+		Assert.assertTrue(bv.chunks[0] instanceof CompressedBitVector.BitmapChunk);
+		Assert.assertEquals(CompressedBitVector.MAX_ARRAY_CHUNK_SIZE + 1,
+				bv.countBits());
+
+		for (int i = 0; i < CompressedBitVector.MAX_ARRAY_CHUNK_SIZE; i++) {
+			bv.setBit(2 * i, false);
+		}
+		Assert.assertTrue(bv.chunks[0] instanceof CompressedBitVector.ArrayChunk);
+		Assert.assertEquals(1, bv.countBits());
+		Assert.assertTrue(bv.getBit(1));
+
+		bv.setBit(1, false);
+		Assert.assertEquals(0, bv.chunkCount);
+		Assert.assertEquals(2 * CompressedBitVector.MAX_ARRAY_CHUNK_SIZE - 1,
+				bv.size());
+	}
+
+	@Test
+	public void testLargePositions() {
+		CompressedBitVector bv = new CompressedBitVector();
+		long[] positions = { 5, 3000000000L, 3000000001L, 1L << 40,
+				Long.MAX_VALUE - 1 };
+		for (int i = positions.length - 1; i >= 0; i--) {
+			bv.setBit(positions[i], true);
+		}
+		for (long position : positions) {
+			Assert.assertTrue(bv.getBit(position));
+			Assert.assertFalse(bv.getBit(position - 2));
+		}
+		Assert.assertEquals(Long.MAX_VALUE, bv.size());
+		Assert.assertEquals(positions.length, bv.countBits());
+		Assert.assertEquals(4, bv.chunkCount);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidPositionGet() {
+		new CompressedBitVector().getBit(-1);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidPositionSet() {
+		new CompressedBitVector().setBit(-1, true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidInitialSize() {
+		new CompressedBitVector(-1);
+	}
+
+}
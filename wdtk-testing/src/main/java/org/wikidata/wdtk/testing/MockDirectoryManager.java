@@ -38,6 +38,8 @@ import java.util.List;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
 import org.wikidata.wdtk.util.CompressionType;
 import org.wikidata.wdtk.util.DirectoryManager;
 
@@ -299,11 +301,27 @@ public class MockDirectoryManager implements DirectoryManager {
 		} else if (compressionType == CompressionType.BZ2) {
 			return new BZip2CompressorInputStream(
 					getInputStreamForMockFile(fileName));
+		} else if (compressionType == CompressionType.ZSTD) {
+			return new ZstdCompressorInputStream(
+					getInputStreamForMockFile(fileName));
+		} else if (compressionType == CompressionType.XZ) {
+			return new XZCompressorInputStream(
+					getInputStreamForMockFile(fileName), true);
 		} else {
 			return getInputStreamForMockFile(fileName);
 		}
 	}
 
+	@Override
+	public long getFileSize(String fileName) throws IOException {
+		if (!hasFile(fileName)) {
+			throw new FileNotFoundException("Could not find file \"" + fileName
+					+ "\" in current directory \"" + this.directory.toString()
+					+ "\"");
+		}
+		return files.get(this.directory.resolve(fileName)).length;
+	}
+
 	/**
 	 * Get an input stream for the mocked contents of the given file, or throw
 	 * an exception if the file does not exist.
@@ -32,8 +32,10 @@ import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.mockito.Mockito;
 import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.SeekableZstdOutputStream;
 
 /**
  * Helper class to create BufferedReaders and InputStreams with predefined
@@ -166,12 +168,20 @@ public class MockStringContentFactory {
 			return string.getBytes(StandardCharsets.UTF_8);
 		case BZ2:
 		case GZIP:
+		case ZSTD:
+		case XZ:
 			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			OutputStreamWriter ow;
 			if (compressionType == CompressionType.GZIP) {
 				ow = new OutputStreamWriter(
 						new GzipCompressorOutputStream(out),
 						StandardCharsets.UTF_8);
+			} else if (compressionType == CompressionType.ZSTD) {
+				ow = new OutputStreamWriter(new SeekableZstdOutputStream(out),
+						StandardCharsets.UTF_8);
+			} else if (compressionType == CompressionType.XZ) {
+				ow = new OutputStreamWriter(new XZCompressorOutputStream(out),
+						StandardCharsets.UTF_8);
 			} else {
 				ow = new OutputStreamWriter(
 						new BZip2CompressorOutputStream(out),
@@ -20,6 +20,7 @@ package org.wikidata.wdtk.testing;
  * #L%
  */
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -155,7 +156,8 @@ public class MockWebResourceFetcher implements WebResourceFetcher {
 	InputStream getInputStreamForMockWebResource(String urlString)
 			throws IOException {
 		if (!this.webResources.containsKey(urlString)) {
-			throw new IOException("Inaccessible URL (not mocked): " + urlString);
+			throw new FileNotFoundException("Inaccessible URL (not mocked): "
+					+ urlString);
 		}
 
 		if (this.returnFailingReaders) {
@@ -20,6 +20,10 @@ package org.wikidata.wdtk.util;
  * #L%
  */
 
+import java.io.IOException;
+
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
 /**
  * Enum for denoting several basic file types for which we provide transparent
  * decompression.
@@ -28,5 +32,30 @@ package org.wikidata.wdtk.util;
  * 
  */
 public enum CompressionType {
-	NONE, GZIP, BZ2
+	NONE, GZIP, BZ2,
+	/**
+	 * Zstandard, which decompresses much faster than the other formats. Files
+	 * written with {@link SeekableZstdOutputStream} can be read starting at
+	 * any of their frames. This needs the library com.github.luben:zstd-jni,
+	 * which is an optional dependency that applications must add themselves.
+	 */
+	ZSTD,
+	/**
+	 * The xz format (LZMA2).
+	 */
+	XZ;
+
+	/**
+	 * Checks that files of this type can be read and written, which is not
+	 * the case for {@link #ZSTD} if the optional zstd-jni library is missing.
+	 *
+	 * @throws IOException
+	 *             if the compression type is not available
+	 */
+	public void checkAvailable() throws IOException {
+		if (this == ZSTD && !ZstdUtils.isZstdCompressionAvailable()) {
+			throw new IOException(
+					"Zstandard compression requires the library com.github.luben:zstd-jni, which must be added to the dependencies of the application.");
+		}
+	}
 }
@@ -0,0 +1,54 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simple {@link ThreadFactory} for the worker threads that are used to speed
+ * up the processing of large inputs. Threads are numbered and created as
+ * daemon threads, so that a failed run cannot keep the JVM alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	final String namePrefix;
+	final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param namePrefix
+	 *            the prefix of the names of all created threads; a running
+	 *            number will be appended to it
+	 */
+	public DaemonThreadFactory(String namePrefix) {
+		this.namePrefix = namePrefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, this.namePrefix + "-"
+				+ this.threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
@@ -51,6 +51,19 @@ public interface DirectoryManager {
 	DirectoryManager getSubdirectoryManager(String subdirectoryName)
 			throws IOException;
 
+	/**
+	 * Returns the number of threads that are used to decompress bzip2 files
+	 * of this directory. Code that decompresses files of the directory by
+	 * itself, rather than with
+	 * {@link #getInputStreamForFile(String, CompressionType)}, should use
+	 * this setting as well. The default implementation returns 1.
+	 *
+	 * @return the number of decompression threads, at least 1
+	 */
+	default int getBz2DecompressionThreads() {
+		return 1;
+	}
+
 	/**
 	 * Checks if there is a subdirectory of the given name.
 	 *
@@ -108,6 +121,76 @@ public interface DirectoryManager {
 	long createFileAtomic(String fileName, InputStream inputStream)
 			throws IOException;
 
+	/**
+	 * Downloads the document at the given URL into a new file in the current
+	 * directory. Like {@link #createFileAtomic(String, InputStream)}, the file
+	 * only appears under its name once the download is complete and, if a
+	 * checksum is given, has been verified.
+	 * <p>
+	 * The default implementation reads the document through the given
+	 * fetcher in a single stream. Implementations may download parts of the
+	 * document in parallel and resume interrupted downloads, as
+	 * {@link DirectoryManagerImpl} does for HTTP downloads.
+	 *
+	 * @param fileName
+	 *            the name of the file
+	 * @param urlString
+	 *            the URL of the document
+	 * @param webResourceFetcher
+	 *            the object to use for accessing the web
+	 * @param md5
+	 *            the expected MD5 checksum of the document as a hexadecimal
+	 *            string, or null if it should not be verified
+	 * @return size of the new file in bytes
+	 * @throws IOException
+	 *             if the download failed or the checksum does not match
+	 */
+	default long createFileFromUrl(String fileName, String urlString,
+			WebResourceFetcher webResourceFetcher, String md5)
+			throws IOException {
+		try (InputStream inputStream = webResourceFetcher
+				.getInputStreamForUrl(urlString)) {
+			return createFileAtomic(fileName, md5 == null ? inputStream
+					: new Md5VerifyingInputStream(inputStream, md5));
+		}
+	}
+
+	/**
+	 * Downloads the document at the given URL into a new file like
+	 * {@link #createFileFromUrl(String, String, WebResourceFetcher, String)},
+	 * and returns a stream of its contents, possibly uncompressed, like
+	 * {@link #getInputStreamForFile(String, CompressionType)}.
+	 * <p>
+	 * The default implementation completes the download before opening the
+	 * file. Implementations may return a stream that can be read while the
+	 * download is still running, as {@link DirectoryManagerImpl} does, so
+	 * that the time for processing the document overlaps with the time for
+	 * downloading it. Reading then waits whenever it reaches the end of the
+	 * data downloaded so far, and fails if the download fails.
+	 *
+	 * @param fileName
+	 *            the name of the file
+	 * @param urlString
+	 *            the URL of the document
+	 * @param webResourceFetcher
+	 *            the object to use for accessing the web
+	 * @param md5
+	 *            the expected MD5 checksum of the document as a hexadecimal
+	 *            string, or null if it should not be verified
+	 * @param compressionType
+	 *            the compression of the document; the returned stream
+	 *            provides the uncompressed content
+	 * @return an InputStream to fetch data from the file
+	 * @throws IOException
+	 *             if the download could not be started or failed
+	 */
+	default InputStream createFileFromUrlAndOpen(String fileName,
+			String urlString, WebResourceFetcher webResourceFetcher,
+			String md5, CompressionType compressionType) throws IOException {
+		createFileFromUrl(fileName, urlString, webResourceFetcher, md5);
+		return getInputStreamForFile(fileName, compressionType);
+	}
+
 	/**
 	 * Creates a new file in the current directory, and fill it with the given
 	 * data, encoded in UTF-8. Should only be used for short pieces of data.
@@ -151,6 +234,30 @@ public interface DirectoryManager {
 	InputStream getInputStreamForFile(String fileName,
 			CompressionType compressionType) throws IOException;
 
+	/**
+	 * Returns the size of the file of the given name within the current
+	 * directory. For compressed files, this is the size of the compressed
+	 * data. The default implementation reads through the whole file;
+	 * implementations should override this if they can do better.
+	 * @param fileName
+	 *            the name of the file
+	 * @return size of the file in bytes
+	 * @throws IOException
+	 *             if the file could not be accessed
+	 */
+	default long getFileSize(String fileName) throws IOException {
+		long size = 0;
+		try (InputStream inputStream = getInputStreamForFile(fileName,
+				CompressionType.NONE)) {
+			byte[] buffer = new byte[1 << 16];
+			int count;
+			while ((count = inputStream.read(buffer)) != -1) {
+				size += count;
+			}
+		}
+		return size;
+	}
+
 	/**
 	 * Returns a list of the names of all subdirectories of the base directory.
 	 * The glob pattern can be used to filter the names; "*" should be used if
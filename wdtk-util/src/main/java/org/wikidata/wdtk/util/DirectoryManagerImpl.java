@@ -33,12 +33,15 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
 
 /**
  * Class to read and write files from one directory. It is guaranteed that the
@@ -54,6 +57,12 @@ public class DirectoryManagerImpl implements DirectoryManager {
 	 */
 	final Path directory;
 
+	/**
+	 * The number of threads used to decompress bzip2 files. Set before the
+	 * manager is shared with other threads.
+	 */
+	int bz2DecompressionThreads = 1;
+
 	/**
 	 * If false, the directory manager will attempt to create directories when
 	 * changing to a location that does not exist.
@@ -79,6 +88,30 @@ public class DirectoryManagerImpl implements DirectoryManager {
 		createDirectory(this.directory);
 	}
 
+	@Override
+	public int getBz2DecompressionThreads() {
+		return this.bz2DecompressionThreads;
+	}
+
+	/**
+	 * Sets the number of threads that are used to decompress bzip2 files. By
+	 * default, only one thread is used. For higher values, files are
+	 * decompressed with {@link ParallelBZip2CompressorInputStream}, which
+	 * decompresses several blocks at once. The setting applies to all input
+	 * streams of this manager that are opened afterwards, and to the managers
+	 * of subdirectories that are created afterwards.
+	 *
+	 * @param threads
+	 *            the number of decompression threads, at least 1
+	 */
+	public void setBz2DecompressionThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be at least 1, but was " + threads);
+		}
+		this.bz2DecompressionThreads = threads;
+	}
+
 	@Override
 	public String toString() {
 		return this.directory.toString();
@@ -87,8 +120,10 @@ public class DirectoryManagerImpl implements DirectoryManager {
 	@Override
 	public DirectoryManager getSubdirectoryManager(String subdirectoryName)
 			throws IOException {
-		return new DirectoryManagerImpl(directory.resolve(subdirectoryName),
-				this.readOnly);
+		DirectoryManagerImpl result = new DirectoryManagerImpl(
+				directory.resolve(subdirectoryName), this.readOnly);
+		result.bz2DecompressionThreads = this.bz2DecompressionThreads;
+		return result;
 	}
 
 	@Override
@@ -129,20 +164,61 @@ public class DirectoryManagerImpl implements DirectoryManager {
 
 		Path fileTempPath = this.directory.resolve(fileName + ".part");
 
-		try (ReadableByteChannel readableByteChannel = Channels
-				.newChannel(inputStream);
-				FileChannel fc = FileChannel.open(fileTempPath,
-						StandardOpenOption.WRITE,
-						StandardOpenOption.TRUNCATE_EXISTING,
-						StandardOpenOption.CREATE)) {
-			fileSize = fc.transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-		}
+		// FileChannel.transferFrom() would hide read errors, such as a broken
+		// connection, after the first bytes
+		fileSize = Files.copy(inputStream, fileTempPath,
+				StandardCopyOption.REPLACE_EXISTING);
 
 		Files.move(fileTempPath, filePath);
 
 		return fileSize;
 	}
 
+	/**
+	 * Downloads the document at the given URL into a new file. HTTP
+	 * documents that are fetched with a {@link WebResourceFetcherImpl} are
+	 * downloaded with a {@link SegmentedDownload}, which uses
+	 * {@link WebResourceFetcherImpl#getDownloadConnections()} connections in
+	 * parallel and resumes interrupted downloads.
+	 */
+	@Override
+	public long createFileFromUrl(String fileName, String urlString,
+			WebResourceFetcher webResourceFetcher, String md5)
+			throws IOException {
+		if (!(webResourceFetcher instanceof WebResourceFetcherImpl)
+				|| !(urlString.startsWith("http://") || urlString
+						.startsWith("https://"))) {
+			return DirectoryManager.super.createFileFromUrl(fileName,
+					urlString, webResourceFetcher, md5);
+		}
+		Path filePath = this.directory.resolve(fileName);
+		ensureWritePermission(filePath);
+		return new SegmentedDownload(urlString, filePath,
+				WebResourceFetcherImpl.getDownloadConnections(),
+				WebResourceFetcherImpl.getDownloadSegmentSize()).download(md5);
+	}
+
+	/**
+	 * Downloads the document at the given URL with a
+	 * {@link StreamingDownload}, so that the returned stream can be read
+	 * while the download is still running.
+	 */
+	@Override
+	public InputStream createFileFromUrlAndOpen(String fileName,
+			String urlString, WebResourceFetcher webResourceFetcher,
+			String md5, CompressionType compressionType) throws IOException {
+		Path filePath = this.directory.resolve(fileName);
+		ensureWritePermission(filePath);
+		InputStream inputStream = new StreamingDownload(urlString,
+				webResourceFetcher, filePath).start(md5);
+		try {
+			return getCompressorInputStream(inputStream, compressionType);
+		} catch (IOException e) {
+			inputStream.close();
+			throw e;
+		}
+	}
+
 	@Override
 	public void createFile(String fileName, String fileContents)
 			throws IOException {
@@ -176,6 +252,11 @@ public class DirectoryManagerImpl implements DirectoryManager {
 		return getCompressorInputStream(fileInputStream, compressionType);
 	}
 
+	@Override
+	public long getFileSize(String fileName) throws IOException {
+		return Files.size(this.directory.resolve(fileName));
+	}
+
 	/**
 	 * Returns an input stream that applies the required decompression to the
 	 * given input stream.
@@ -196,8 +277,19 @@ public class DirectoryManagerImpl implements DirectoryManager {
 		case GZIP:
 			return new GZIPInputStream(inputStream);
 		case BZ2:
+			if (this.bz2DecompressionThreads > 1) {
+				return new ParallelBZip2CompressorInputStream(inputStream,
+						this.bz2DecompressionThreads);
+			}
 			return new BZip2CompressorInputStream(new BufferedInputStream(
 					inputStream));
+		case ZSTD:
+			compressionType.checkAvailable();
+			return new ZstdCompressorInputStream(new BufferedInputStream(
+					inputStream));
+		case XZ:
+			return new XZCompressorInputStream(new BufferedInputStream(
+					inputStream), true);
 		default:
 			throw new IllegalArgumentException("Unsupported compression type: "
 					+ compressionType);
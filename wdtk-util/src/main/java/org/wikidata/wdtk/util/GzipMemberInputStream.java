@@ -0,0 +1,372 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream that decompresses gzip data, which may consist of several
+ * concatenated members, and keeps track of where each member starts. Every
+ * member of a gzip file can be decompressed on its own, so files that consist
+ * of many small members can be read starting at any member, similar to the
+ * blocks of bzip2 files. The stream remembers the positions of the most recent
+ * members that it has returned data of; see {@link #getMemberPosition(long)}.
+ * <p>
+ * Files that consist of a single member (which is what most tools produce)
+ * can only be read from their start.
+ */
+public class GzipMemberInputStream extends InputStream {
+
+	static final int GZIP_MAGIC_1 = 0x1f;
+	static final int GZIP_MAGIC_2 = 0x8b;
+	static final int DEFLATE_METHOD = 8;
+
+	static final int FLAG_HEADER_CRC = 2;
+	static final int FLAG_EXTRA = 4;
+	static final int FLAG_NAME = 8;
+	static final int FLAG_COMMENT = 16;
+
+	/**
+	 * Number of member positions that are remembered for
+	 * {@link #getMemberPosition(long)}.
+	 */
+	static final int MEMBER_POSITION_HISTORY = 1024;
+
+	/**
+	 * Position of a gzip member in the input, together with the position of
+	 * its decompressed data in the output.
+	 */
+	public static class MemberPosition {
+		final long byteOffset;
+		final long uncompressedOffset;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param byteOffset
+		 *            position of the first byte of the member in the
+		 *            compressed input
+		 * @param uncompressedOffset
+		 *            position of the data of the member in the decompressed
+		 *            output
+		 */
+		public MemberPosition(long byteOffset, long uncompressedOffset) {
+			this.byteOffset = byteOffset;
+			this.uncompressedOffset = uncompressedOffset;
+		}
+
+		/**
+		 * Returns the position of the first byte of the member (the start of
+		 * its header) in the compressed input.
+		 *
+		 * @return the byte offset of the member
+		 */
+		public long getByteOffset() {
+			return this.byteOffset;
+		}
+
+		/**
+		 * Returns the position in the decompressed output where the data of
+		 * the member starts.
+		 *
+		 * @return the uncompressed offset of the member
+		 */
+		public long getUncompressedOffset() {
+			return this.uncompressedOffset;
+		}
+	}
+
+	final InputStream in;
+	final Inflater inflater = new Inflater(true);
+	final CRC32 crc = new CRC32();
+
+	final byte[] inputBuffer = new byte[1 << 16];
+	int inputLength = 0;
+	int inputPosition = 0;
+	/**
+	 * Position of the first byte of {@link #inputBuffer} in the input.
+	 */
+	long inputOffset;
+
+	/**
+	 * True while the data of a member is being decompressed.
+	 */
+	boolean inMember = false;
+	/**
+	 * Number of bytes that have been returned so far.
+	 */
+	long uncompressedPosition;
+	/**
+	 * True if all members have been read.
+	 */
+	boolean finished = false;
+
+	/**
+	 * Positions of the most recent members, used as a ring buffer.
+	 */
+	final MemberPosition[] memberPositions = new MemberPosition[MEMBER_POSITION_HISTORY];
+	/**
+	 * Total number of members that have been started.
+	 */
+	long memberCount = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in
+	 *            the stream of compressed data
+	 */
+	public GzipMemberInputStream(InputStream in) {
+		this(in, new MemberPosition(0, 0));
+	}
+
+	/**
+	 * Constructor for starting decompression at a member in the middle of a
+	 * gzip file. The given input stream must be positioned at the start of
+	 * the member. Positions that are reported by
+	 * {@link #getMemberPosition(long)} refer to the complete file.
+	 *
+	 * @param in
+	 *            the stream of compressed data, positioned at the member
+	 * @param memberPosition
+	 *            the position of the member to start at
+	 */
+	public GzipMemberInputStream(InputStream in, MemberPosition memberPosition) {
+		this.in = in;
+		this.inputOffset = memberPosition.getByteOffset();
+		this.uncompressedPosition = memberPosition.getUncompressedOffset();
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (!this.finished) {
+			if (!this.inMember) {
+				if (!startMember()) {
+					this.finished = true;
+					break;
+				}
+			}
+			int count = inflate(b, off, len);
+			if (count > 0) {
+				this.crc.update(b, off, count);
+				this.uncompressedPosition += count;
+				return count;
+			}
+			if (this.inflater.finished()) {
+				endMember();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the position of the member whose decompressed data contains the
+	 * given position of the output. Only the positions of the most recent
+	 * members are remembered, so this only works for positions that are not
+	 * too far behind the data that has been read already.
+	 *
+	 * @param uncompressedOffset
+	 *            a position in the decompressed output
+	 * @return the position of the member that contains the given position, or
+	 *         null if it is not known
+	 */
+	public MemberPosition getMemberPosition(long uncompressedOffset) {
+		if (uncompressedOffset > this.uncompressedPosition) {
+			return null;
+		}
+		long oldestMember = Math.max(0, this.memberCount
+				- MEMBER_POSITION_HISTORY);
+		for (long member = this.memberCount - 1; member >= oldestMember; member--) {
+			MemberPosition memberPosition = this.memberPositions[(int) (member % MEMBER_POSITION_HISTORY)];
+			if (memberPosition.getUncompressedOffset() <= uncompressedOffset) {
+				return memberPosition;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.finished = true;
+		this.inflater.end();
+		this.in.close();
+	}
+
+	/**
+	 * Decompresses data of the current member, reading more input if needed.
+	 *
+	 * @return the number of bytes, which may be 0 if more input is needed or
+	 *         the member has ended
+	 */
+	int inflate(byte[] b, int off, int len) throws IOException {
+		if (this.inflater.needsInput()) {
+			if (!fillInput()) {
+				throw new EOFException("Unexpected end of gzip input");
+			}
+			this.inflater.setInput(this.inputBuffer, this.inputPosition,
+					this.inputLength - this.inputPosition);
+		}
+		try {
+			int count = this.inflater.inflate(b, off, len);
+			if (this.inflater.needsDictionary()) {
+				throw new ZipException("Corrupted gzip input");
+			}
+			return count;
+		} catch (DataFormatException e) {
+			throw new ZipException("Corrupted gzip input: " + e.getMessage());
+		} finally {
+			this.inputPosition = this.inputLength
+					- this.inflater.getRemaining();
+		}
+	}
+
+	/**
+	 * Reads the header of the next member, if there is one.
+	 *
+	 * @return false if the input has ended
+	 */
+	boolean startMember() throws IOException {
+		long memberStart = this.inputOffset + this.inputPosition;
+		int magic1 = readInputByte();
+		if (magic1 == -1) {
+			return false;
+		}
+		int magic2 = readInputByte();
+		if (magic1 != GZIP_MAGIC_1 || magic2 != GZIP_MAGIC_2) {
+			if (this.memberCount > 0) {
+				// trailing garbage is ignored, like in GZIPInputStream
+				return false;
+			}
+			throw new ZipException("Not in gzip format");
+		}
+		if (readInputByte() != DEFLATE_METHOD) {
+			throw new ZipException("Unsupported gzip compression method");
+		}
+		int flags = readInputByte();
+		skipInput(6); // modification time, extra flags, operating system
+		if ((flags & FLAG_EXTRA) != 0) {
+			skipInput(readInputByte() | (readInputByte() << 8));
+		}
+		if ((flags & FLAG_NAME) != 0) {
+			skipZeroTerminated();
+		}
+		if ((flags & FLAG_COMMENT) != 0) {
+			skipZeroTerminated();
+		}
+		if ((flags & FLAG_HEADER_CRC) != 0) {
+			skipInput(2);
+		}
+
+		this.memberPositions[(int) (this.memberCount % MEMBER_POSITION_HISTORY)] = new MemberPosition(
+				memberStart, this.uncompressedPosition);
+		this.memberCount++;
+		this.inflater.reset();
+		this.crc.reset();
+		this.inMember = true;
+		return true;
+	}
+
+	/**
+	 * Reads and checks the trailer of the current member.
+	 */
+	void endMember() throws IOException {
+		long storedCrc = readInputInt();
+		long storedSize = readInputInt();
+		if (storedCrc != this.crc.getValue()) {
+			throw new ZipException("Corrupted gzip input: CRC mismatch");
+		}
+		if (storedSize != (this.inflater.getBytesWritten() & 0xffffffffL)) {
+			throw new ZipException("Corrupted gzip input: size mismatch");
+		}
+		this.inMember = false;
+	}
+
+	long readInputInt() throws IOException {
+		long result = 0;
+		for (int i = 0; i < 4; i++) {
+			int b = readInputByte();
+			if (b == -1) {
+				throw new EOFException("Unexpected end of gzip input");
+			}
+			result |= ((long) b) << (8 * i);
+		}
+		return result;
+	}
+
+	void skipInput(int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			if (readInputByte() == -1) {
+				throw new EOFException("Unexpected end of gzip input");
+			}
+		}
+	}
+
+	void skipZeroTerminated() throws IOException {
+		int b;
+		while ((b = readInputByte()) != 0) {
+			if (b == -1) {
+				throw new EOFException("Unexpected end of gzip input");
+			}
+		}
+	}
+
+	int readInputByte() throws IOException {
+		if (this.inputPosition == this.inputLength && !fillInput()) {
+			return -1;
+		}
+		return this.inputBuffer[this.inputPosition++] & 0xff;
+	}
+
+	/**
+	 * Reads more input into the buffer if all of it has been consumed.
+	 *
+	 * @return false if the input has ended
+	 */
+	boolean fillInput() throws IOException {
+		if (this.inputPosition < this.inputLength) {
+			return true;
+		}
+		this.inputOffset += this.inputLength;
+		this.inputPosition = 0;
+		this.inputLength = 0;
+		int count = this.in.read(this.inputBuffer);
+		if (count <= 0) {
+			return false;
+		}
+		this.inputLength = count;
+		return true;
+	}
+}
@@ -0,0 +1,115 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Input stream that computes the MD5 checksum of the data that is read and
+ * compares it to an expected value at the end of the data. If they differ,
+ * reading the end of the stream fails with an {@link IOException}, so that
+ * data that was copied from the stream, e.g., with
+ * {@link DirectoryManager#createFileAtomic(String, InputStream)}, is not
+ * used.
+ */
+public class Md5VerifyingInputStream extends DigestInputStream {
+
+	final String expectedMd5;
+	boolean verified = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in
+	 *            the stream to read from
+	 * @param expectedMd5
+	 *            the expected checksum as a hexadecimal string
+	 */
+	public Md5VerifyingInputStream(InputStream in, String expectedMd5) {
+		super(in, newMd5Digest());
+		this.expectedMd5 = expectedMd5;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int result = super.read();
+		if (result == -1) {
+			verify();
+		}
+		return result;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int result = super.read(b, off, len);
+		if (result == -1) {
+			verify();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new MD5 digest.
+	 *
+	 * @return the digest
+	 */
+	public static MessageDigest newMd5Digest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support MD5
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the given checksum as a hexadecimal string.
+	 *
+	 * @param digest
+	 *            the bytes of the checksum
+	 * @return the lowercase hexadecimal representation
+	 */
+	public static String toHex(byte[] digest) {
+		StringBuilder sb = new StringBuilder(2 * digest.length);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	void verify() throws IOException {
+		if (this.verified) {
+			return;
+		}
+		this.verified = true;
+		String md5 = toHex(getMessageDigest().digest());
+		if (!md5.equalsIgnoreCase(this.expectedMd5)) {
+			throw new IOException("MD5 checksum " + md5
+					+ " does not match the expected checksum "
+					+ this.expectedMd5);
+		}
+	}
+}
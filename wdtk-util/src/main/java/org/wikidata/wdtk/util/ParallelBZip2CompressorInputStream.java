@@ -0,0 +1,899 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Input stream that decompresses bzip2 data using several threads. This
+ * produces the same output as {@link BZip2CompressorInputStream} for
+ * (possibly concatenated) bzip2 streams, but is considerably faster on
+ * machines with several cores.
+ * <p>
+ * The bzip2 format compresses data in independent blocks of at most 900k of
+ * input, each starting with a 48 bit magic number. These blocks are not
+ * aligned to byte boundaries. A scanner thread reads the compressed input,
+ * locates the block boundaries, and passes each block on to a pool of
+ * workers. Every worker wraps its block into a small bzip2 stream of its own,
+ * which is then decompressed with {@link BZip2CompressorInputStream}. The
+ * decompressed blocks are returned in their original order.
+ * <p>
+ * The block magic number may also occur by chance inside of compressed data.
+ * If a block cannot be decompressed for this reason, it is joined with the
+ * following block and decompressed again.
+ * <p>
+ * Since blocks are independent, decompression can also start at any block
+ * boundary in the middle of a stream. The stream remembers the positions of
+ * the most recent blocks that it has returned, so that callers can find out
+ * where to resume reading later on; see {@link #getBlockPosition(long)}.
+ * Likewise, the blocks that start in a given range of bytes of the compressed
+ * input can be decompressed without reading the rest of the file, which
+ * allows several machines to share the work of processing one large file.
+ */
+public class ParallelBZip2CompressorInputStream extends InputStream {
+
+	/**
+	 * Magic number at the start of every compressed block (BCD of pi).
+	 */
+	static final long BLOCK_MAGIC = 0x314159265359L;
+
+	/**
+	 * Magic number at the end of every stream (BCD of sqrt(pi)).
+	 */
+	static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+	static final long MAGIC_MASK = 0xffffffffffffL;
+
+	/**
+	 * Header used for the streams that are created for decompressing single
+	 * blocks. The block size 9 is the largest possible, so that blocks of all
+	 * streams can be decompressed.
+	 */
+	static final byte[] SINGLE_BLOCK_STREAM_HEADER = { 'B', 'Z', 'h', '9' };
+
+	/**
+	 * Marker that is used by the scanner thread to signal that there are no
+	 * more blocks.
+	 */
+	private static final Future<DecodedBlock> END_OF_INPUT = CompletableFuture
+			.completedFuture(null);
+
+	/**
+	 * Number of block positions that are remembered for
+	 * {@link #getBlockPosition(long)}.
+	 */
+	static final int BLOCK_POSITION_HISTORY = 1024;
+
+	/**
+	 * Position of a compressed block in the input, together with the position
+	 * of its decompressed data in the output.
+	 */
+	public static class BlockPosition {
+		final long bitOffset;
+		final long uncompressedOffset;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param bitOffset
+		 *            position of the first bit of the block in the compressed
+		 *            input
+		 * @param uncompressedOffset
+		 *            position of the data of the block in the decompressed
+		 *            output
+		 */
+		public BlockPosition(long bitOffset, long uncompressedOffset) {
+			this.bitOffset = bitOffset;
+			this.uncompressedOffset = uncompressedOffset;
+		}
+
+		/**
+		 * Returns the position of the first bit of the block (the start of
+		 * its magic number) in the compressed input.
+		 *
+		 * @return the bit offset of the block
+		 */
+		public long getBitOffset() {
+			return this.bitOffset;
+		}
+
+		/**
+		 * Returns the position in the decompressed output where the data of
+		 * the block starts.
+		 *
+		 * @return the uncompressed offset of the block
+		 */
+		public long getUncompressedOffset() {
+			return this.uncompressedOffset;
+		}
+	}
+
+	/**
+	 * Sequence of bits of one compressed block, starting with the block
+	 * magic. The bits are stored left-aligned, starting at the highest bit of
+	 * the first byte.
+	 */
+	static class BlockBits {
+		final byte[] bits;
+		final long bitLength;
+		/**
+		 * Position of the first bit in the compressed input.
+		 */
+		final long bitOffset;
+
+		BlockBits(byte[] bits, long bitLength, long bitOffset) {
+			this.bits = bits;
+			this.bitLength = bitLength;
+			this.bitOffset = bitOffset;
+		}
+
+		/**
+		 * Returns the CRC of the uncompressed block, which is stored right
+		 * after the block magic.
+		 *
+		 * @return the stored block CRC
+		 */
+		long getStoredCrc() {
+			long crc = 0;
+			for (int i = 6; i < 10; i++) {
+				crc = (crc << 8) | (this.bits[i] & 0xff);
+			}
+			return crc;
+		}
+
+		/**
+		 * Returns the bits of this block followed by the bits of the given
+		 * block.
+		 *
+		 * @param other
+		 *            the block to append
+		 * @return the joined bits
+		 */
+		BlockBits append(BlockBits other) {
+			BitOutput bitOutput = new BitOutput(this.bits.length
+					+ other.bits.length);
+			bitOutput.writeBits(this.bits, this.bitLength);
+			bitOutput.writeBits(other.bits, other.bitLength);
+			return new BlockBits(bitOutput.toByteArray(), this.bitLength
+					+ other.bitLength, this.bitOffset);
+		}
+	}
+
+	/**
+	 * Result of decompressing one block. If this failed, the data is null and
+	 * the error is set.
+	 */
+	static class DecodedBlock {
+		final BlockBits blockBits;
+		final byte[] data;
+		final IOException error;
+
+		DecodedBlock(BlockBits blockBits, byte[] data, IOException error) {
+			this.blockBits = blockBits;
+			this.data = data;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Simple growable buffer for writing individual bits.
+	 */
+	static class BitOutput {
+		byte[] buffer;
+		int length = 0;
+		int pendingBits = 0;
+		int pendingBitCount = 0;
+
+		BitOutput(int initialCapacity) {
+			this.buffer = new byte[Math.max(16, initialCapacity)];
+		}
+
+		void writeBits(long value, int bitCount) {
+			for (int i = bitCount - 1; i >= 0; i--) {
+				this.pendingBits = (this.pendingBits << 1)
+						| (int) ((value >>> i) & 1);
+				this.pendingBitCount++;
+				if (this.pendingBitCount == 8) {
+					writeByte((byte) this.pendingBits);
+					this.pendingBits = 0;
+					this.pendingBitCount = 0;
+				}
+			}
+		}
+
+		void writeBits(byte[] bits, long bitLength) {
+			int fullBytes = (int) (bitLength / 8);
+			if (this.pendingBitCount == 0) {
+				ensureCapacity(this.length + fullBytes);
+				System.arraycopy(bits, 0, this.buffer, this.length, fullBytes);
+				this.length += fullBytes;
+			} else {
+				for (int i = 0; i < fullBytes; i++) {
+					writeBits(bits[i] & 0xff, 8);
+				}
+			}
+			int remainingBits = (int) (bitLength % 8);
+			if (remainingBits > 0) {
+				writeBits((bits[fullBytes] & 0xff) >>> (8 - remainingBits),
+						remainingBits);
+			}
+		}
+
+		void writeByte(byte b) {
+			ensureCapacity(this.length + 1);
+			this.buffer[this.length++] = b;
+		}
+
+		void ensureCapacity(int capacity) {
+			if (capacity > this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer,
+						Math.max(capacity, 2 * this.buffer.length));
+			}
+		}
+
+		byte[] toByteArray() {
+			byte[] result = Arrays.copyOf(this.buffer, this.length
+					+ (this.pendingBitCount > 0 ? 1 : 0));
+			if (this.pendingBitCount > 0) {
+				result[this.length] = (byte) (this.pendingBits << (8 - this.pendingBitCount));
+			}
+			return result;
+		}
+	}
+
+	final InputStream in;
+	final ExecutorService workers;
+	final BlockingQueue<Future<DecodedBlock>> pendingBlocks;
+	final AtomicReference<IOException> scannerException = new AtomicReference<>();
+	final Thread scanner;
+
+	/**
+	 * Decompressed data of the current block.
+	 */
+	byte[] currentData = new byte[0];
+	/**
+	 * Position of the next byte to return in {@link #currentData}.
+	 */
+	int currentPosition = 0;
+	/**
+	 * Position of the first byte of {@link #currentData} in the decompressed
+	 * output.
+	 */
+	long currentDataOffset;
+	/**
+	 * True if all blocks have been returned.
+	 */
+	boolean finished = false;
+
+	/**
+	 * Positions of the most recent blocks, used as a ring buffer.
+	 */
+	final BlockPosition[] blockPositions = new BlockPosition[BLOCK_POSITION_HISTORY];
+	/**
+	 * Total number of blocks that have been returned.
+	 */
+	long blockCount = 0;
+
+	/**
+	 * Bit position in the compressed input where the range of blocks to
+	 * decompress ends, or {@link Long#MAX_VALUE} if the whole input is read.
+	 */
+	final long rangeEndBit;
+	/**
+	 * Position in the decompressed output where the data of the first block
+	 * after the range starts, or -1 if this block has not been reached yet.
+	 */
+	long rangeEndOffset = -1;
+	/**
+	 * True if blocks that cannot be decompressed should be skipped rather than
+	 * joined with the following block. This is the case at the start of a
+	 * range, where the first block that was found may just be a random
+	 * occurrence of the block magic number.
+	 */
+	boolean skipInvalidBlocks;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in
+	 *            the stream of compressed data
+	 * @param threads
+	 *            the number of threads used for decompression; one more
+	 *            thread is used for finding blocks in the input
+	 */
+	public ParallelBZip2CompressorInputStream(InputStream in, int threads) {
+		this(in, threads, null);
+	}
+
+	/**
+	 * Constructor for resuming decompression at a block in the middle of a
+	 * bzip2 file. The given input stream must be positioned at the byte that
+	 * contains the first bit of the block, that is, at byte
+	 * <code>bitOffset / 8</code> of the file. The stream header of the file is
+	 * not needed. Positions that are reported by
+	 * {@link #getBlockPosition(long)} refer to the complete file.
+	 *
+	 * @param in
+	 *            the stream of compressed data, positioned at the block
+	 * @param threads
+	 *            the number of threads used for decompression
+	 * @param blockPosition
+	 *            the position of the block to start at, as previously
+	 *            returned by {@link #getBlockPosition(long)}; if null, the
+	 *            stream is read from its start
+	 */
+	public ParallelBZip2CompressorInputStream(InputStream in, int threads,
+			BlockPosition blockPosition) {
+		this(in, threads, blockPosition == null ? 0 : blockPosition
+				.getBitOffset() / 8, blockPosition == null ? 0 : blockPosition
+				.getUncompressedOffset(), Long.MAX_VALUE, false);
+	}
+
+	/**
+	 * Constructor for decompressing the blocks that start in a given range of
+	 * bytes of a bzip2 file. The given input stream must be positioned at the
+	 * first byte of the range. Decompression starts at the first block that
+	 * starts in the range; since the block magic number might also occur by
+	 * chance at this point, blocks that cannot be decompressed are skipped
+	 * until the first valid block is found.
+	 * <p>
+	 * The stream does not end with the last block of the range, so that
+	 * callers can read on to the end of a record that continues in the next
+	 * block. {@link #getRangeEndOffset()} tells where the data of the range
+	 * ends. Positions in the decompressed output are counted from the start
+	 * of the first block of the range.
+	 *
+	 * @param in
+	 *            the stream of compressed data, positioned at the start of
+	 *            the range
+	 * @param threads
+	 *            the number of threads used for decompression
+	 * @param startByte
+	 *            the position of the first byte of the range in the file
+	 * @param endByte
+	 *            the position of the first byte after the range in the file
+	 */
+	public ParallelBZip2CompressorInputStream(InputStream in, int threads,
+			long startByte, long endByte) {
+		this(in, threads, startByte, 0, 8 * endByte, startByte > 0);
+	}
+
+	private ParallelBZip2CompressorInputStream(InputStream in, int threads,
+			long startByte, long uncompressedOffset, long rangeEndBit,
+			boolean skipInvalidBlocks) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be at least 1, but was " + threads);
+		}
+		this.in = in;
+		this.workers = Executors.newFixedThreadPool(threads,
+				new DaemonThreadFactory("wdtk-bzip2-worker"));
+		this.pendingBlocks = new ArrayBlockingQueue<>(2 * threads);
+		this.currentDataOffset = uncompressedOffset;
+		this.rangeEndBit = rangeEndBit;
+		this.skipInvalidBlocks = skipInvalidBlocks;
+		BlockScanner blockScanner = new BlockScanner(startByte);
+		this.scanner = new Thread(() -> runScanner(blockScanner),
+				"wdtk-bzip2-scanner");
+		this.scanner.setDaemon(true);
+		this.scanner.start();
+	}
+
+	/**
+	 * Returns a stream that decompresses a bzip2 file sequentially, starting
+	 * at the given block. Unlike this class, the returned stream does not
+	 * decompress any blocks ahead of time, so this is the cheapest way of
+	 * reading a small amount of data from the middle of a file. The stream
+	 * must not be read past the end of the bzip2 stream that contains the
+	 * block, since the checksum of the whole stream cannot be verified then.
+	 *
+	 * @param in
+	 *            the stream of compressed data, positioned at the byte that
+	 *            contains the first bit of the block
+	 * @param bitOffset
+	 *            the position of the first bit of the block in the file
+	 * @return the stream of decompressed data, starting with the data of the
+	 *         block
+	 * @throws IOException
+	 *             if the input could not be read
+	 */
+	public static InputStream openAtBlock(InputStream in, long bitOffset)
+			throws IOException {
+		int shift = (int) (bitOffset % 8);
+		InputStream blocks = shift == 0 ? in : new BitShiftingInputStream(in,
+				shift);
+		return new BZip2CompressorInputStream(new SequenceInputStream(
+				new ByteArrayInputStream(SINGLE_BLOCK_STREAM_HEADER), blocks));
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureData()) {
+			return -1;
+		}
+		return this.currentData[this.currentPosition++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureData()) {
+			return -1;
+		}
+		int count = Math.min(len, this.currentData.length
+				- this.currentPosition);
+		System.arraycopy(this.currentData, this.currentPosition, b, off, count);
+		this.currentPosition += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return this.currentData.length - this.currentPosition;
+	}
+
+	/**
+	 * Returns the position of the block whose decompressed data contains the
+	 * given position of the output. Only the positions of the most recently
+	 * returned blocks are remembered, so this only works for positions that
+	 * are not too far behind the data that has been read already.
+	 * <p>
+	 * This method may be called from other threads than the one that reads
+	 * from this stream.
+	 *
+	 * @param uncompressedOffset
+	 *            a position in the decompressed output
+	 * @return the position of the block that contains the given position, or
+	 *         null if it is not known
+	 */
+	public synchronized BlockPosition getBlockPosition(long uncompressedOffset) {
+		long oldestBlock = Math.max(0, this.blockCount - BLOCK_POSITION_HISTORY);
+		for (long block = this.blockCount - 1; block >= oldestBlock; block--) {
+			BlockPosition blockPosition = this.blockPositions[(int) (block % BLOCK_POSITION_HISTORY)];
+			if (blockPosition.getUncompressedOffset() <= uncompressedOffset) {
+				if (block == this.blockCount - 1
+						&& uncompressedOffset > this.currentDataOffset
+								+ this.currentData.length) {
+					return null; // beyond the data that is known so far
+				}
+				return blockPosition;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the position in the decompressed output where the data of the
+	 * first block after the range of blocks that was given in the constructor
+	 * starts. This is only known once this block has been reached, that is,
+	 * when all data of the range has been read.
+	 *
+	 * @return the position where the data after the range starts, or -1 if it
+	 *         is not known yet or if no range was given
+	 */
+	public long getRangeEndOffset() {
+		return this.rangeEndOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.finished = true;
+		this.scanner.interrupt();
+		this.workers.shutdownNow();
+		this.in.close();
+	}
+
+	/**
+	 * Makes sure that there is some data left in {@link #currentData},
+	 * fetching the next block if necessary.
+	 *
+	 * @return false if the end of the input has been reached
+	 * @throws IOException
+	 *             if the input could not be read or decompressed
+	 */
+	boolean ensureData() throws IOException {
+		while (this.currentPosition == this.currentData.length) {
+			if (this.finished || !nextBlock()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Fetches the next decompressed block. Blocks that could not be
+	 * decompressed are joined with the blocks that follow them until
+	 * decompression succeeds, unless they are the first blocks of a range.
+	 *
+	 * @return false if there were no more blocks
+	 * @throws IOException
+	 *             if the input could not be read or decompressed
+	 */
+	boolean nextBlock() throws IOException {
+		DecodedBlock block = takeBlock();
+		while (this.skipInvalidBlocks && block != null && block.data == null) {
+			block = takeBlock();
+		}
+		if (block == null) {
+			return false;
+		}
+		this.skipInvalidBlocks = false;
+		while (block.data == null) {
+			DecodedBlock nextBlock = takeBlock();
+			if (nextBlock == null) {
+				throw new IOException("Corrupted bzip2 input: "
+						+ block.error.getMessage(), block.error);
+			}
+			block = decode(block.blockBits.append(nextBlock.blockBits));
+		}
+		synchronized (this) {
+			this.currentDataOffset += this.currentData.length;
+			this.currentData = block.data;
+			this.currentPosition = 0;
+			this.blockPositions[(int) (this.blockCount % BLOCK_POSITION_HISTORY)] = new BlockPosition(
+					block.blockBits.bitOffset, this.currentDataOffset);
+			this.blockCount++;
+			if (this.rangeEndOffset < 0
+					&& block.blockBits.bitOffset >= this.rangeEndBit) {
+				this.rangeEndOffset = this.currentDataOffset;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the next block from the queue of pending blocks, waiting for it
+	 * if necessary.
+	 *
+	 * @return the next block or null if there are no more blocks
+	 * @throws IOException
+	 *             if the scanner failed to read the input
+	 */
+	DecodedBlock takeBlock() throws IOException {
+		try {
+			Future<DecodedBlock> pendingBlock = this.pendingBlocks.take();
+			if (pendingBlock == END_OF_INPUT) {
+				this.finished = true;
+				if (this.scannerException.get() != null) {
+					throw this.scannerException.get();
+				}
+				return null;
+			}
+			return pendingBlock.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting for bzip2 block");
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause().toString(), e.getCause());
+		}
+	}
+
+	/**
+	 * Decompresses the given block by wrapping it into a stream of its own.
+	 *
+	 * @param blockBits
+	 *            the compressed block
+	 * @return the result of decompression
+	 */
+	static DecodedBlock decode(BlockBits blockBits) {
+		BitOutput stream = new BitOutput(blockBits.bits.length + 16);
+		for (byte b : SINGLE_BLOCK_STREAM_HEADER) {
+			stream.writeByte(b);
+		}
+		stream.writeBits(blockBits.bits, blockBits.bitLength);
+		stream.writeBits(END_OF_STREAM_MAGIC, 48);
+		// The combined CRC of a stream with only one block is the block CRC
+		stream.writeBits(blockBits.getStoredCrc(), 32);
+
+		try (BZip2CompressorInputStream bzIn = new BZip2CompressorInputStream(
+				new ByteArrayInputStream(stream.toByteArray()), false)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(
+					4 * blockBits.bits.length);
+			byte[] buffer = new byte[1 << 16];
+			int count;
+			while ((count = bzIn.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			return new DecodedBlock(blockBits, out.toByteArray(), null);
+		} catch (IOException | RuntimeException e) {
+			IOException error = e instanceof IOException ? (IOException) e
+					: new IOException(e.toString(), e);
+			return new DecodedBlock(blockBits, null, error);
+		}
+	}
+
+	/**
+	 * Main method of the scanner thread.
+	 */
+	void runScanner(BlockScanner blockScanner) {
+		try {
+			try {
+				blockScanner.scan();
+			} catch (IOException e) {
+				this.scannerException.set(e);
+			}
+			this.pendingBlocks.put(END_OF_INPUT);
+		} catch (InterruptedException | RejectedExecutionException e) {
+			// the stream was closed; just stop reading
+		}
+	}
+
+	/**
+	 * Helper that finds block boundaries in the compressed input. All bytes of
+	 * the current block are kept in a buffer, so that the bits of the block
+	 * can be copied once the block has ended.
+	 */
+	class BlockScanner {
+		/**
+		 * Bytes read from the input, starting at byte position
+		 * {@link #bufferStart}.
+		 */
+		byte[] buffer = new byte[1 << 20];
+		int bufferLength = 0;
+		long bufferStart;
+
+		/**
+		 * Bit position where the current block starts, or -1 if no block has
+		 * been found yet.
+		 */
+		long blockStart = -1;
+		/**
+		 * Bit position of the last end-of-stream magic found after the start
+		 * of the current block, or -1 if there was none. This is where the
+		 * current block ends if it turns out to be the last block of its
+		 * stream.
+		 */
+		long endOfStream = -1;
+		/**
+		 * Bit position of the last end-of-stream magic in a sequence of
+		 * streams that starts at {@link #endOfStream}. This differs from
+		 * {@link #endOfStream} only if empty streams follow the stream of the
+		 * current block.
+		 */
+		long lastEndOfStream = -1;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param startByte
+		 *            the position of the first byte of the input in the
+		 *            compressed file
+		 */
+		BlockScanner(long startByte) {
+			this.bufferStart = startByte;
+		}
+
+		void scan() throws IOException, InterruptedException {
+			byte[] readBuffer = new byte[1 << 16];
+			long window = 0;
+			long bitPosition = 8 * this.bufferStart;
+			int count;
+			while ((count = in.read(readBuffer)) != -1) {
+				for (int i = 0; i < count; i++) {
+					int b = readBuffer[i];
+					append((byte) b);
+					for (int bit = 7; bit >= 0; bit--) {
+						window = ((window << 1) | ((b >>> bit) & 1))
+								& MAGIC_MASK;
+						bitPosition++;
+						if (window == BLOCK_MAGIC) {
+							startBlock(bitPosition - 48);
+						} else if (window == END_OF_STREAM_MAGIC
+								&& this.blockStart >= 0) {
+							long position = bitPosition - 48;
+							if (this.lastEndOfStream < 0
+									|| !isStreamStart(this.lastEndOfStream,
+											position)) {
+								this.endOfStream = position;
+							}
+							this.lastEndOfStream = position;
+						}
+					}
+				}
+				if (this.blockStart < 0) {
+					discardBefore(bitPosition / 8 - 8);
+				}
+			}
+
+			if (this.blockStart >= 0) {
+				if (this.lastEndOfStream >= 0
+						&& bitPosition == alignToByte(this.lastEndOfStream + 80)) {
+					submit(this.blockStart, this.endOfStream);
+				} else {
+					submit(this.blockStart, bitPosition);
+				}
+			}
+		}
+
+		/**
+		 * Starts a new block at the given position, submitting the previous
+		 * block for decompression if there was one.
+		 */
+		void startBlock(long position) throws InterruptedException {
+			if (this.blockStart >= 0) {
+				if (this.lastEndOfStream >= 0
+						&& isStreamStart(this.lastEndOfStream, position)) {
+					submit(this.blockStart, this.endOfStream);
+				} else {
+					submit(this.blockStart, position);
+				}
+			}
+			this.blockStart = position;
+			this.endOfStream = -1;
+			this.lastEndOfStream = -1;
+			discardBefore(position / 8);
+		}
+
+		/**
+		 * Checks if the given position is exactly where the first block (or
+		 * end of stream) of a new stream would start if the previous stream
+		 * ended at the given end-of-stream position. A stream ends with the
+		 * end-of-stream magic, a 32 bit CRC, and padding to a full byte; a new
+		 * stream starts with a four byte header "BZh1" to "BZh9".
+		 */
+		boolean isStreamStart(long endOfStreamPosition, long position) {
+			long headerPosition = alignToByte(endOfStreamPosition + 80);
+			if (position != headerPosition + 32) {
+				return false;
+			}
+			int offset = (int) (headerPosition / 8 - this.bufferStart);
+			return this.buffer[offset] == 'B'
+					&& this.buffer[offset + 1] == 'Z'
+					&& this.buffer[offset + 2] == 'h'
+					&& this.buffer[offset + 3] >= '1'
+					&& this.buffer[offset + 3] <= '9';
+		}
+
+		void submit(long start, long end) throws InterruptedException {
+			BlockBits blockBits = extractBits(start, end);
+			pendingBlocks.put(workers.submit(() -> decode(blockBits)));
+		}
+
+		BlockBits extractBits(long start, long end) {
+			long bitLength = end - start;
+			byte[] bits = new byte[(int) ((bitLength + 7) / 8)];
+			int offset = (int) (start / 8 - this.bufferStart);
+			int shift = (int) (start % 8);
+			if (shift == 0) {
+				System.arraycopy(this.buffer, offset, bits, 0, bits.length);
+			} else {
+				for (int i = 0; i < bits.length; i++) {
+					int high = this.buffer[offset + i] & 0xff;
+					int low = offset + i + 1 < this.bufferLength ? this.buffer[offset
+							+ i + 1] & 0xff
+							: 0;
+					bits[i] = (byte) ((high << shift) | (low >>> (8 - shift)));
+				}
+			}
+			return new BlockBits(bits, bitLength, start);
+		}
+
+		void append(byte b) {
+			if (this.bufferLength == this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+			}
+			this.buffer[this.bufferLength++] = b;
+		}
+
+		void discardBefore(long bytePosition) {
+			int discard = (int) (bytePosition - this.bufferStart);
+			if (discard <= 0) {
+				return;
+			}
+			System.arraycopy(this.buffer, discard, this.buffer, 0,
+					this.bufferLength - discard);
+			this.bufferLength -= discard;
+			this.bufferStart = bytePosition;
+		}
+	}
+
+	/**
+	 * Stream that drops the given number of leading bits of its input, so
+	 * that data that does not start at a byte boundary can be read.
+	 */
+	static class BitShiftingInputStream extends FilterInputStream {
+		final int shift;
+		/**
+		 * The next byte of the input, -1 at the end of the input, or -2 if
+		 * nothing has been read yet.
+		 */
+		int nextByte = -2;
+
+		BitShiftingInputStream(InputStream in, int shift) {
+			super(in);
+			this.shift = shift;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.nextByte == -2) {
+				this.nextByte = this.in.read();
+			}
+			if (this.nextByte == -1) {
+				return -1;
+			}
+			int current = this.nextByte;
+			this.nextByte = this.in.read();
+			int low = this.nextByte == -1 ? 0 : this.nextByte >>> (8 - this.shift);
+			return ((current << this.shift) | low) & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int count = 0;
+			int value;
+			while (count < len && (value = read()) != -1) {
+				b[off + count++] = (byte) value;
+				if (this.in.available() == 0) {
+					break;
+				}
+			}
+			return count == 0 ? -1 : count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = 0;
+			while (skipped < n && read() != -1) {
+				skipped++;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return 0;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+
+	static long alignToByte(long bitPosition) {
+		return (bitPosition + 7) / 8 * 8;
+	}
+}
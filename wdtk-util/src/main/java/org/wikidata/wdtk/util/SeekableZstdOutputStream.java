@@ -0,0 +1,230 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.github.luben.zstd.Zstd;
+
+/**
+ * Output stream that writes data in the seekable Zstandard format. The data
+ * is split into frames that are compressed independently, and a seek table at
+ * the end of the file records the compressed and decompressed size of every
+ * frame; see {@link ZstdSeekTable}. Readers can thus start decompression at
+ * any frame, which allows reading parts of a file in parallel and random
+ * access, similar to the blocks of bzip2 files. The seek table is stored in a
+ * skippable frame, so the file remains a valid Zstandard file for all other
+ * tools.
+ * <p>
+ * A frame ends when it reaches the configured frame size, or when
+ * {@link #endFrame()} is called. Callers can use the latter to let frames end
+ * at line breaks.
+ */
+public class SeekableZstdOutputStream extends OutputStream {
+
+	/**
+	 * Default size of the uncompressed data of a frame.
+	 */
+	public static final int DEFAULT_FRAME_SIZE = 1 << 22;
+
+	/**
+	 * Default compression level.
+	 */
+	public static final int DEFAULT_LEVEL = 6;
+
+	final OutputStream out;
+	final int level;
+
+	/**
+	 * Uncompressed data of the current frame.
+	 */
+	final byte[] frame;
+	int frameLength = 0;
+	/**
+	 * Buffer for the compressed data of a frame.
+	 */
+	final byte[] compressed;
+
+	/**
+	 * Compressed and decompressed size of each frame that has been written.
+	 */
+	int[] compressedSizes = new int[64];
+	int[] decompressedSizes = new int[64];
+	int frameCount = 0;
+
+	boolean closed = false;
+
+	/**
+	 * Constructor that uses the default frame size and compression level.
+	 *
+	 * @param out
+	 *            the stream to write the compressed data to
+	 */
+	public SeekableZstdOutputStream(OutputStream out) {
+		this(out, DEFAULT_LEVEL, DEFAULT_FRAME_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out
+	 *            the stream to write the compressed data to
+	 * @param level
+	 *            the Zstandard compression level, usually between 1 and 19
+	 * @param frameSize
+	 *            the maximal size of the uncompressed data of a frame
+	 */
+	public SeekableZstdOutputStream(OutputStream out, int level, int frameSize) {
+		if (frameSize < 1) {
+			throw new IllegalArgumentException(
+					"Frame size must be at least 1, but was " + frameSize);
+		}
+		this.out = out;
+		this.level = level;
+		this.frame = new byte[frameSize];
+		this.compressed = new byte[(int) Zstd.compressBound(frameSize)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			int count = Math.min(len, this.frame.length - this.frameLength);
+			System.arraycopy(b, off, this.frame, this.frameLength, count);
+			this.frameLength += count;
+			off += count;
+			len -= count;
+			if (this.frameLength == this.frame.length) {
+				endFrame();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes that have been written to the current
+	 * frame.
+	 *
+	 * @return the uncompressed size of the current frame
+	 */
+	public int getFrameLength() {
+		return this.frameLength;
+	}
+
+	/**
+	 * Returns the number of frames that have been completed.
+	 *
+	 * @return the number of frames
+	 */
+	public int getFrameCount() {
+		return this.frameCount;
+	}
+
+	/**
+	 * Compresses the current frame and writes it. Later data goes to a new
+	 * frame. Does nothing if the current frame is empty.
+	 *
+	 * @throws IOException
+	 *             if the data could not be written
+	 */
+	public void endFrame() throws IOException {
+		checkOpen();
+		if (this.frameLength == 0) {
+			return;
+		}
+		long size = Zstd.compressByteArray(this.compressed, 0,
+				this.compressed.length, this.frame, 0, this.frameLength,
+				this.level);
+		if (Zstd.isError(size)) {
+			throw new IOException("Zstandard compression failed: "
+					+ Zstd.getErrorName(size));
+		}
+		this.out.write(this.compressed, 0, (int) size);
+
+		if (this.frameCount == this.compressedSizes.length) {
+			this.compressedSizes = Arrays.copyOf(this.compressedSizes,
+					2 * this.frameCount);
+			this.decompressedSizes = Arrays.copyOf(this.decompressedSizes,
+					2 * this.frameCount);
+		}
+		this.compressedSizes[this.frameCount] = (int) size;
+		this.decompressedSizes[this.frameCount] = this.frameLength;
+		this.frameCount++;
+		this.frameLength = 0;
+	}
+
+	/**
+	 * Flushes the compressed data that has been written so far. This does not
+	 * end the current frame.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+
+	/**
+	 * Writes the last frame and the seek table, and closes the underlying
+	 * stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		try {
+			endFrame();
+			writeSeekTable();
+		} finally {
+			this.closed = true;
+			this.out.close();
+		}
+	}
+
+	void writeSeekTable() throws IOException {
+		int contentSize = this.frameCount * 8 + ZstdSeekTable.FOOTER_SIZE;
+		ByteBuffer table = ByteBuffer.allocate(8 + contentSize).order(
+				ByteOrder.LITTLE_ENDIAN);
+		table.putInt(ZstdSeekTable.SKIPPABLE_FRAME_MAGIC);
+		table.putInt(contentSize);
+		for (int i = 0; i < this.frameCount; i++) {
+			table.putInt(this.compressedSizes[i]);
+			table.putInt(this.decompressedSizes[i]);
+		}
+		table.putInt(this.frameCount);
+		table.put((byte) 0); // no checksums
+		table.putInt(ZstdSeekTable.SEEKABLE_MAGIC);
+		this.out.write(table.array());
+	}
+
+	void checkOpen() throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream has been closed");
+		}
+	}
+}
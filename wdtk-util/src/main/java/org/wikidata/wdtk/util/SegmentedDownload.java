@@ -0,0 +1,395 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a document over HTTP in segments of fixed size, using several
+ * connections in parallel. The segments are written to their position in a
+ * preallocated temporary file (the name of the target file with the suffix
+ * ".part"). Completed segments are recorded in a second file (with the
+ * suffix ".part.segments"), so that a download that was interrupted only
+ * fetches the missing segments when it is started again. Once all segments
+ * are complete, the checksum of the file is verified, if given, and the file
+ * is moved to its final name.
+ * <p>
+ * A download only resumes if the size of the document and its ETag or
+ * modification date are unchanged. Servers that do not support range
+ * requests, or do not report the size of the document, are read in a single
+ * stream.
+ */
+public class SegmentedDownload {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(SegmentedDownload.class);
+
+	/**
+	 * Default size of the segments.
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 1L << 26;
+
+	/**
+	 * Number of times the download of a segment is attempted before the
+	 * download fails.
+	 */
+	static final int MAX_ATTEMPTS = 3;
+
+	final String urlString;
+	final Path file;
+	final Path partFile;
+	final Path segmentsFile;
+	final int connections;
+	final long segmentSize;
+
+	/**
+	 * Size of the document.
+	 */
+	long length;
+	/**
+	 * ETag or modification date of the document, used to make sure that the
+	 * segments of a resumed download belong to the same document.
+	 */
+	String validator;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param urlString
+	 *            the URL of the document
+	 * @param file
+	 *            the file to create
+	 * @param connections
+	 *            the maximal number of segments that are downloaded in
+	 *            parallel
+	 * @param segmentSize
+	 *            the size of the segments in bytes
+	 */
+	public SegmentedDownload(String urlString, Path file, int connections,
+			long segmentSize) {
+		if (connections < 1) {
+			throw new IllegalArgumentException(
+					"Number of connections must be at least 1, but was "
+							+ connections);
+		}
+		if (segmentSize < 1) {
+			throw new IllegalArgumentException(
+					"Segment size must be at least 1, but was " + segmentSize);
+		}
+		this.urlString = urlString;
+		this.file = file;
+		this.partFile = file.resolveSibling(file.getFileName() + ".part");
+		this.segmentsFile = file.resolveSibling(file.getFileName()
+				+ ".part.segments");
+		this.connections = connections;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Downloads the document, resuming an earlier download if possible.
+	 *
+	 * @param md5
+	 *            the expected MD5 checksum of the document as a hexadecimal
+	 *            string, or null if it should not be verified
+	 * @return the size of the document in bytes
+	 * @throws IOException
+	 *             if the download failed or the checksum does not match
+	 */
+	public long download(String md5) throws IOException {
+		HttpURLConnection connection = openConnection();
+		connection.setRequestMethod("HEAD");
+		checkResponse(connection, HttpURLConnection.HTTP_OK);
+		this.length = connection.getContentLengthLong();
+		this.validator = connection.getHeaderField("ETag");
+		if (this.validator == null) {
+			this.validator = connection.getHeaderField("Last-Modified");
+		}
+		boolean acceptsRanges = "bytes".equalsIgnoreCase(connection
+				.getHeaderField("Accept-Ranges"));
+		connection.disconnect();
+
+		if (this.length < 0 || !acceptsRanges) {
+			logger.info("Server does not support range requests for "
+					+ this.urlString + "; downloading in a single stream.");
+			return downloadStream(md5);
+		}
+
+		BitSet completed = prepareFiles();
+		int segmentCount = (int) ((this.length + this.segmentSize - 1)
+				/ this.segmentSize);
+		int[] pending = new int[segmentCount - completed.cardinality()];
+		int segment = completed.nextClearBit(0);
+		for (int i = 0; i < pending.length; i++) {
+			pending[i] = segment;
+			segment = completed.nextClearBit(segment + 1);
+		}
+		if (pending.length < segmentCount) {
+			logger.info("Resuming download of " + this.urlString + " with "
+					+ pending.length + " of " + segmentCount
+					+ " segments remaining.");
+		}
+
+		try (FileChannel channel = FileChannel.open(this.partFile,
+				StandardOpenOption.WRITE);
+				BufferedWriter segmentsWriter = Files.newBufferedWriter(
+						this.segmentsFile, StandardCharsets.UTF_8,
+						StandardOpenOption.APPEND)) {
+			downloadSegments(pending, channel, segmentsWriter);
+			channel.force(false);
+		}
+
+		if (md5 != null) {
+			verifyPartFile(md5);
+		}
+		Files.move(this.partFile, this.file);
+		Files.delete(this.segmentsFile);
+		return this.length;
+	}
+
+	/**
+	 * Returns the header of the segments file, which identifies the
+	 * document.
+	 *
+	 * @return the header line
+	 */
+	String getSegmentsHeader() {
+		return this.length + " " + this.segmentSize + " "
+				+ (this.validator == null ? "-" : this.validator);
+	}
+
+	/**
+	 * Reads the completed segments of an earlier download of the same
+	 * document, or creates new files if there is none.
+	 *
+	 * @return the indexes of the completed segments
+	 */
+	BitSet prepareFiles() throws IOException {
+		BitSet completed = new BitSet();
+		if (Files.exists(this.partFile) && Files.exists(this.segmentsFile)
+				&& Files.size(this.partFile) == this.length) {
+			String[] lines = new String(Files.readAllBytes(this.segmentsFile),
+					StandardCharsets.UTF_8).split("\n", -1);
+			if (lines[0].equals(getSegmentsHeader())) {
+				// the last element is empty unless a line was cut off
+				for (int i = 1; i < lines.length - 1; i++) {
+					completed.set(Integer.parseInt(lines[i]));
+				}
+				return completed;
+			}
+		}
+
+		try (RandomAccessFile partFile = new RandomAccessFile(
+				this.partFile.toFile(), "rw")) {
+			partFile.setLength(0);
+			partFile.setLength(this.length);
+		}
+		Files.write(this.segmentsFile,
+				(getSegmentsHeader() + "\n").getBytes(StandardCharsets.UTF_8));
+		return completed;
+	}
+
+	/**
+	 * Downloads the given segments in parallel.
+	 */
+	void downloadSegments(int[] pending, FileChannel channel,
+			BufferedWriter segmentsWriter) throws IOException {
+		if (pending.length == 0) {
+			return;
+		}
+		AtomicInteger next = new AtomicInteger();
+		int threads = Math.min(this.connections, pending.length);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			tasks.add(() -> {
+				int index;
+				while ((index = next.getAndIncrement()) < pending.length) {
+					downloadSegment(pending[index], channel);
+					synchronized (segmentsWriter) {
+						segmentsWriter.write(pending[index] + "\n");
+						segmentsWriter.flush();
+					}
+				}
+				return null;
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new DaemonThreadFactory("wdtk-download"));
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while downloading "
+					+ this.urlString);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Error when downloading "
+					+ this.urlString + ": " + e.getCause().getMessage(),
+					e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Downloads the given segment and writes it to its position in the file.
+	 * Failed attempts are repeated up to {@link #MAX_ATTEMPTS} times.
+	 */
+	void downloadSegment(int segment, FileChannel channel) throws IOException {
+		long start = segment * this.segmentSize;
+		long end = Math.min(this.length, start + this.segmentSize);
+		for (int attempt = 1;; attempt++) {
+			try {
+				downloadRange(start, end, channel);
+				return;
+			} catch (IOException e) {
+				if (attempt == MAX_ATTEMPTS) {
+					throw e;
+				}
+				logger.warn("Failed to download segment " + segment + " of "
+						+ this.urlString + " (" + e.getMessage()
+						+ "); trying again.");
+			}
+		}
+	}
+
+	void downloadRange(long start, long end, FileChannel channel)
+			throws IOException {
+		HttpURLConnection connection = openConnection();
+		connection.setRequestProperty("Range", "bytes=" + start + "-"
+				+ (end - 1));
+		if (this.validator != null) {
+			// the server sends the whole document if it has changed
+			connection.setRequestProperty("If-Range", this.validator);
+		}
+		checkResponse(connection, HttpURLConnection.HTTP_PARTIAL);
+
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long position = start;
+		try (InputStream in = connection.getInputStream()) {
+			int count;
+			while (position < end
+					&& (count = in.read(buffer.array(), 0, (int) Math.min(
+							buffer.capacity(), end - position))) != -1) {
+				buffer.limit(count);
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				buffer.clear();
+			}
+		}
+		if (position != end) {
+			throw new IOException("Incomplete response for bytes " + start
+					+ "-" + (end - 1) + " of " + this.urlString);
+		}
+	}
+
+	/**
+	 * Downloads the document in a single stream.
+	 */
+	long downloadStream(String md5) throws IOException {
+		HttpURLConnection connection = openConnection();
+		checkResponse(connection, HttpURLConnection.HTTP_OK);
+		try (InputStream in = connection.getInputStream()) {
+			Files.copy(md5 == null ? in : new Md5VerifyingInputStream(in, md5),
+					this.partFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.deleteIfExists(this.segmentsFile);
+		Files.move(this.partFile, this.file);
+		return Files.size(this.file);
+	}
+
+	/**
+	 * Computes the checksum of the downloaded file. If it does not match,
+	 * the file is deleted, since it is not known which segments are broken.
+	 */
+	void verifyPartFile(String md5) throws IOException {
+		MessageDigest digest = Md5VerifyingInputStream.newMd5Digest();
+		try (FileChannel channel = FileChannel.open(this.partFile,
+				StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		String actualMd5 = Md5VerifyingInputStream.toHex(digest.digest());
+		if (!actualMd5.equalsIgnoreCase(md5)) {
+			Files.delete(this.partFile);
+			Files.delete(this.segmentsFile);
+			throw new IOException("MD5 checksum " + actualMd5 + " of "
+					+ this.urlString
+					+ " does not match the expected checksum " + md5);
+		}
+	}
+
+	HttpURLConnection openConnection() throws IOException {
+		URLConnection connection = WebResourceFetcherImpl
+				.getUrlConnection(new URL(this.urlString));
+		if (!(connection instanceof HttpURLConnection)) {
+			throw new IOException("Not an HTTP URL: " + this.urlString);
+		}
+		return (HttpURLConnection) connection;
+	}
+
+	void checkResponse(HttpURLConnection connection, int expectedCode)
+			throws IOException {
+		int responseCode = connection.getResponseCode();
+		if (responseCode != expectedCode) {
+			connection.disconnect();
+			throw new IOException("Unexpected response " + responseCode
+					+ " when downloading " + this.urlString);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a document into a file in a background thread while the
+ * downloaded data can already be read. The data is written to a temporary
+ * file (the name of the target file with the suffix ".part"), which is moved
+ * to its final name once the download is complete and its checksum, if
+ * given, has been verified. The stream returned by {@link #start(String)}
+ * reads the temporary file from the start. When it reaches the end of the
+ * data written so far, it waits for the download to continue, and it fails
+ * if the download fails. A reader that is faster than the network therefore
+ * follows the download, while the download is never slowed down by a slow
+ * reader, so that the file on disk is complete as early as possible.
+ */
+public class StreamingDownload {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(StreamingDownload.class);
+
+	static final DaemonThreadFactory threadFactory = new DaemonThreadFactory(
+			"wdtk-streaming-download");
+
+	final String urlString;
+	final WebResourceFetcher webResourceFetcher;
+	final Path file;
+	final Path partFile;
+
+	/**
+	 * Number of bytes that have been written to the temporary file.
+	 */
+	long written = 0;
+	/**
+	 * True once the download has completed or failed.
+	 */
+	boolean finished = false;
+	/**
+	 * The exception that made the download fail, if any.
+	 */
+	IOException failure = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param urlString
+	 *            the URL of the document
+	 * @param webResourceFetcher
+	 *            the object to use for accessing the web
+	 * @param file
+	 *            the file to create
+	 */
+	public StreamingDownload(String urlString,
+			WebResourceFetcher webResourceFetcher, Path file) {
+		this.urlString = urlString;
+		this.webResourceFetcher = webResourceFetcher;
+		this.file = file;
+		this.partFile = file.resolveSibling(file.getFileName() + ".part");
+	}
+
+	/**
+	 * Starts the download and returns a stream of the downloaded data. The
+	 * stream is owned by the caller and must be closed after use. Closing it
+	 * early does not stop the download.
+	 *
+	 * @param md5
+	 *            the expected MD5 checksum of the document as a hexadecimal
+	 *            string, or null if it should not be verified
+	 * @return the stream of the document
+	 * @throws IOException
+	 *             if the download could not be started
+	 */
+	public InputStream start(String md5) throws IOException {
+		InputStream source = this.webResourceFetcher
+				.getInputStreamForUrl(this.urlString);
+		InputStream verifiedSource = md5 == null ? source
+				: new Md5VerifyingInputStream(source, md5);
+		OutputStream out;
+		FileChannel channel;
+		try {
+			// segments of an interrupted download with a
+			// SegmentedDownload do not fit the new temporary file
+			Files.deleteIfExists(this.partFile.resolveSibling(this.partFile
+					.getFileName() + ".segments"));
+			out = Files.newOutputStream(this.partFile);
+			channel = FileChannel.open(this.partFile, StandardOpenOption.READ);
+		} catch (IOException e) {
+			source.close();
+			throw e;
+		}
+		threadFactory.newThread(() -> download(verifiedSource, out)).start();
+		return new FollowingInputStream(channel);
+	}
+
+	void download(InputStream source, OutputStream out) {
+		IOException failure = null;
+		try (InputStream in = source; OutputStream o = out) {
+			byte[] buffer = new byte[1 << 16];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				o.write(buffer, 0, count);
+				// the written data must be visible to the reader
+				o.flush();
+				synchronized (this) {
+					this.written += count;
+					notifyAll();
+				}
+			}
+		} catch (IOException e) {
+			failure = e;
+		}
+		if (failure == null) {
+			try {
+				Files.move(this.partFile, this.file);
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			logger.error("Download of " + this.urlString + " failed: "
+					+ failure.getMessage());
+		}
+		synchronized (this) {
+			this.failure = failure;
+			this.finished = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until more than the given number of bytes have been downloaded,
+	 * or the download has finished.
+	 *
+	 * @param position
+	 *            the number of bytes that have been read
+	 * @return false if the download has completed and no more data will
+	 *         follow
+	 * @throws IOException
+	 *             if the download failed or waiting was interrupted
+	 */
+	synchronized boolean awaitData(long position) throws IOException {
+		while (this.written <= position && !this.finished) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for "
+						+ this.urlString, e);
+			}
+		}
+		if (this.failure != null) {
+			throw new IOException("Download of " + this.urlString
+					+ " failed", this.failure);
+		}
+		return this.written > position;
+	}
+
+	/**
+	 * Stream that reads the temporary file while it is being written.
+	 */
+	class FollowingInputStream extends InputStream {
+
+		final FileChannel channel;
+		long position = 0;
+
+		FollowingInputStream(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			while (true) {
+				int count = this.channel.read(ByteBuffer.wrap(b, off, len),
+						this.position);
+				if (count > 0) {
+					this.position += count;
+					return count;
+				}
+				if (!awaitData(this.position)) {
+					return -1;
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
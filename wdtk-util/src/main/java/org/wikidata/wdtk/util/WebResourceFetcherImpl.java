@@ -40,6 +40,10 @@ public class WebResourceFetcherImpl implements WebResourceFetcher {
 
 	protected static Proxy proxy = null;
 
+	protected static int downloadConnections = 2;
+
+	protected static long downloadSegmentSize = SegmentedDownload.DEFAULT_SEGMENT_SIZE;
+
 	/**
 	 * Returns the proxy that will be used for all requests made by Wikidata
 	 * Toolkit.
@@ -93,6 +97,61 @@ public class WebResourceFetcherImpl implements WebResourceFetcher {
 		WebResourceFetcherImpl.userAgent = userAgent;
 	}
 
+	/**
+	 * Returns the number of connections that are used in parallel when
+	 * downloading files with
+	 * {@link DirectoryManager#createFileFromUrl(String, String, WebResourceFetcher, String)}.
+	 *
+	 * @return the number of connections
+	 */
+	public static int getDownloadConnections() {
+		return downloadConnections;
+	}
+
+	/**
+	 * Sets the number of connections that are used in parallel when
+	 * downloading files. The default is 2; more connections can speed up
+	 * downloads from servers that limit the bandwidth per connection, but
+	 * many servers also limit the number of concurrent connections per
+	 * client.
+	 *
+	 * @param downloadConnections
+	 *            the number of connections, at least 1
+	 */
+	public static void setDownloadConnections(int downloadConnections) {
+		if (downloadConnections < 1) {
+			throw new IllegalArgumentException(
+					"Number of connections must be at least 1, but was "
+							+ downloadConnections);
+		}
+		WebResourceFetcherImpl.downloadConnections = downloadConnections;
+	}
+
+	/**
+	 * Returns the size of the segments in which files are downloaded.
+	 *
+	 * @return the segment size in bytes
+	 */
+	public static long getDownloadSegmentSize() {
+		return downloadSegmentSize;
+	}
+
+	/**
+	 * Sets the size of the segments in which files are downloaded. An
+	 * interrupted download is resumed at the first incomplete segment.
+	 *
+	 * @param downloadSegmentSize
+	 *            the segment size in bytes
+	 */
+	public static void setDownloadSegmentSize(long downloadSegmentSize) {
+		if (downloadSegmentSize < 1) {
+			throw new IllegalArgumentException(
+					"Segment size must be at least 1, but was "
+							+ downloadSegmentSize);
+		}
+		WebResourceFetcherImpl.downloadSegmentSize = downloadSegmentSize;
+	}
+
 	/**
 	 * Opens a basic URL connection for the given URL and performs basic
 	 * configurations. In particular, it will set the User-Agent. The current
@@ -0,0 +1,217 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Seek table of a Zstandard file in the seekable format, as written by
+ * {@link SeekableZstdOutputStream} and the seekable format tools of the
+ * Zstandard project. The table lists the compressed and decompressed size of
+ * every frame, so that the frame holding a given part of the decompressed data
+ * can be found, and decompression can start there.
+ * <p>
+ * The table is stored in a skippable frame at the end of the file, which is
+ * followed by a footer of {@value #FOOTER_SIZE} bytes with the number of
+ * frames, a descriptor, and a magic number. Checksums of the frames are
+ * allowed but not used.
+ */
+public class ZstdSeekTable {
+
+	static final int SKIPPABLE_FRAME_MAGIC = 0x184D2A5E;
+	static final int SEEKABLE_MAGIC = 0x8F92EAB1;
+	static final int FOOTER_SIZE = 9;
+	static final int CHECKSUM_FLAG = 0x80;
+
+	/**
+	 * Start of every frame in the compressed file, followed by the end of the
+	 * last frame.
+	 */
+	final long[] compressedOffsets;
+	/**
+	 * Start of the data of every frame in the decompressed data, followed by
+	 * the total size of the data.
+	 */
+	final long[] decompressedOffsets;
+
+	ZstdSeekTable(long[] compressedOffsets, long[] decompressedOffsets) {
+		this.compressedOffsets = compressedOffsets;
+		this.decompressedOffsets = decompressedOffsets;
+	}
+
+	/**
+	 * Reads the seek table of the given file.
+	 *
+	 * @param directoryManager
+	 *            the directory that contains the file
+	 * @param fileName
+	 *            the name of the compressed file
+	 * @return the seek table, or null if the file is not in the seekable
+	 *         format
+	 * @throws IOException
+	 *             if the file could not be read or its seek table is invalid
+	 */
+	public static ZstdSeekTable read(DirectoryManager directoryManager,
+			String fileName) throws IOException {
+		long fileSize = directoryManager.getFileSize(fileName);
+		if (fileSize < 8 + FOOTER_SIZE) {
+			return null;
+		}
+
+		ByteBuffer footer = ByteBuffer.wrap(readBytes(directoryManager,
+				fileName, fileSize - FOOTER_SIZE, FOOTER_SIZE)).order(
+				ByteOrder.LITTLE_ENDIAN);
+		long frameCount = footer.getInt(0) & 0xffffffffL;
+		int descriptor = footer.get(4) & 0xff;
+		if (footer.getInt(5) != SEEKABLE_MAGIC) {
+			return null;
+		}
+		int entrySize = (descriptor & CHECKSUM_FLAG) != 0 ? 12 : 8;
+		long tableSize = 8 + frameCount * entrySize + FOOTER_SIZE;
+		if (tableSize > fileSize || frameCount > Integer.MAX_VALUE - 1) {
+			throw new IOException("Invalid seek table in " + fileName);
+		}
+
+		ByteBuffer table = ByteBuffer.wrap(readBytes(directoryManager,
+				fileName, fileSize - tableSize, (int) tableSize)).order(
+				ByteOrder.LITTLE_ENDIAN);
+		if (table.getInt() != SKIPPABLE_FRAME_MAGIC
+				|| table.getInt() != tableSize - 8) {
+			throw new IOException("Invalid seek table in " + fileName);
+		}
+		long[] compressedOffsets = new long[(int) frameCount + 1];
+		long[] decompressedOffsets = new long[(int) frameCount + 1];
+		for (int i = 0; i < frameCount; i++) {
+			compressedOffsets[i + 1] = compressedOffsets[i]
+					+ (table.getInt() & 0xffffffffL);
+			decompressedOffsets[i + 1] = decompressedOffsets[i]
+					+ (table.getInt() & 0xffffffffL);
+			if (entrySize == 12) {
+				table.getInt();
+			}
+		}
+		if (compressedOffsets[(int) frameCount] != fileSize - tableSize) {
+			throw new IOException("Seek table does not match the size of "
+					+ fileName);
+		}
+		return new ZstdSeekTable(compressedOffsets, decompressedOffsets);
+	}
+
+	/**
+	 * Returns the number of frames.
+	 *
+	 * @return the number of frames
+	 */
+	public int getFrameCount() {
+		return this.compressedOffsets.length - 1;
+	}
+
+	/**
+	 * Returns the position in the file where the given frame starts. For the
+	 * index {@link #getFrameCount()}, this is the end of the last frame.
+	 *
+	 * @param frame
+	 *            the index of the frame
+	 * @return the byte offset of the frame
+	 */
+	public long getCompressedOffset(int frame) {
+		return this.compressedOffsets[frame];
+	}
+
+	/**
+	 * Returns the position in the decompressed data where the data of the
+	 * given frame starts. For the index {@link #getFrameCount()}, this is the
+	 * total size of the decompressed data.
+	 *
+	 * @param frame
+	 *            the index of the frame
+	 * @return the uncompressed offset of the frame
+	 */
+	public long getDecompressedOffset(int frame) {
+		return this.decompressedOffsets[frame];
+	}
+
+	/**
+	 * Finds the frame that holds the given position of the decompressed data.
+	 *
+	 * @param decompressedOffset
+	 *            the position in the decompressed data
+	 * @return the index of the frame, or {@link #getFrameCount()} if the
+	 *         position is after the end of the data
+	 */
+	public int findFrame(long decompressedOffset) {
+		int index = Arrays.binarySearch(this.decompressedOffsets,
+				decompressedOffset);
+		if (index < 0) {
+			return -index - 2;
+		}
+		// skip empty frames
+		while (index < getFrameCount()
+				&& this.decompressedOffsets[index + 1] == decompressedOffset) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Finds the first frame that starts at or after the given position of
+	 * the file.
+	 *
+	 * @param compressedOffset
+	 *            the position in the file
+	 * @return the index of the frame, or {@link #getFrameCount()} if no frame
+	 *         starts there or later
+	 */
+	public int findFrameStartingAt(long compressedOffset) {
+		int index = Arrays.binarySearch(this.compressedOffsets,
+				compressedOffset);
+		if (index < 0) {
+			return Math.min(-index - 1, getFrameCount());
+		}
+		return Math.min(index, getFrameCount());
+	}
+
+	static byte[] readBytes(DirectoryManager directoryManager,
+			String fileName, long position, int length) throws IOException {
+		try (InputStream in = directoryManager.getInputStreamForFile(
+				fileName, CompressionType.NONE)) {
+			long remaining = position;
+			while (remaining > 0) {
+				long skipped = in.skip(remaining);
+				if (skipped <= 0) {
+					if (in.read() == -1) {
+						throw new IOException("Unexpected end of " + fileName);
+					}
+					skipped = 1;
+				}
+				remaining -= skipped;
+			}
+			byte[] result = new byte[length];
+			new DataInputStream(in).readFully(result);
+			return result;
+		}
+	}
+}
@@ -21,6 +21,7 @@ package org.wikidata.wdtk.util;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -35,6 +36,8 @@ import java.nio.file.Paths;
 
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -126,4 +129,61 @@ public class DirectoryManagerTest {
 		assertEquals("Test data",
 				new BufferedReader(new InputStreamReader(cin)).readLine());
 	}
+
+	@Test
+	public void getCompressionInputStreamXz() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputStreamWriter ow = new OutputStreamWriter(
+				new XZCompressorOutputStream(out), StandardCharsets.UTF_8);
+		ow.write("Test data");
+		ow.close();
+
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		InputStream cin = dm.getCompressorInputStream(in, CompressionType.XZ);
+
+		assertEquals("Test data",
+				new BufferedReader(new InputStreamReader(cin)).readLine());
+	}
+
+	@Test
+	public void getCompressionInputStreamZstd() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputStreamWriter ow = new OutputStreamWriter(
+				new ZstdCompressorOutputStream(out), StandardCharsets.UTF_8);
+		ow.write("Test data");
+		ow.close();
+
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		InputStream cin = dm.getCompressorInputStream(in, CompressionType.ZSTD);
+
+		assertEquals("Test data",
+				new BufferedReader(new InputStreamReader(cin)).readLine());
+	}
+
+	@Test
+	public void getCompressionInputStreamParallelBz2() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputStreamWriter ow = new OutputStreamWriter(
+				new BZip2CompressorOutputStream(out), StandardCharsets.UTF_8);
+		ow.write("Test data");
+		ow.close();
+
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		dm.setBz2DecompressionThreads(2);
+		InputStream cin = dm.getCompressorInputStream(in, CompressionType.BZ2);
+
+		assertTrue(cin instanceof ParallelBZip2CompressorInputStream);
+		assertEquals("Test data",
+				new BufferedReader(new InputStreamReader(cin)).readLine());
+	}
+
+	@Test
+	public void bz2DecompressionThreadsOfSubdirectories() throws IOException {
+		dm.setBz2DecompressionThreads(3);
+		assertEquals(3, dm.getSubdirectoryManager("src")
+				.getBz2DecompressionThreads());
+		assertEquals(1, new DirectoryManagerImpl(
+				Paths.get(System.getProperty("user.dir")), true)
+				.getBz2DecompressionThreads());
+	}
 }
@@ -0,0 +1,116 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+public class GzipMemberInputStreamTest {
+
+	static byte[] compress(byte[] data, int from, int to) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+			gzipOut.write(data, from, to - from);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testSingleMember() throws IOException {
+		byte[] data = ParallelBZip2CompressorInputStreamTest.makeTestData(
+				300000, 1);
+		byte[] compressed = compress(data, 0, data.length);
+
+		try (GzipMemberInputStream in = new GzipMemberInputStream(
+				new ByteArrayInputStream(compressed))) {
+			assertArrayEquals(data,
+					ParallelBZip2CompressorInputStreamTest.readAll(in));
+			assertEquals(0, in.getMemberPosition(data.length / 2)
+					.getByteOffset());
+		}
+	}
+
+	@Test
+	public void testMembers() throws IOException {
+		byte[] data = ParallelBZip2CompressorInputStreamTest.makeTestData(
+				100000, 2);
+		int memberSize = 7000;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int from = 0; from < data.length; from += memberSize) {
+			out.write(compress(data, from,
+					Math.min(data.length, from + memberSize)));
+		}
+		byte[] compressed = out.toByteArray();
+
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(
+				compressed))) {
+			assertArrayEquals(data,
+					ParallelBZip2CompressorInputStreamTest.readAll(in));
+		}
+
+		GzipMemberInputStream.MemberPosition memberPosition;
+		try (GzipMemberInputStream in = new GzipMemberInputStream(
+				new ByteArrayInputStream(compressed))) {
+			assertNull(in.getMemberPosition(0));
+			assertArrayEquals(data,
+					ParallelBZip2CompressorInputStreamTest.readAll(in));
+			memberPosition = in.getMemberPosition(5 * memberSize + 10);
+			assertNotNull(memberPosition);
+		}
+		assertEquals(5 * memberSize, memberPosition.getUncompressedOffset());
+
+		int startByte = (int) memberPosition.getByteOffset();
+		try (GzipMemberInputStream in = new GzipMemberInputStream(
+				new ByteArrayInputStream(compressed, startByte,
+						compressed.length - startByte), memberPosition)) {
+			assertArrayEquals(Arrays.copyOfRange(data, 5 * memberSize,
+					data.length),
+					ParallelBZip2CompressorInputStreamTest.readAll(in));
+			assertEquals(startByte, in.getMemberPosition(5 * memberSize)
+					.getByteOffset());
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void testCorruptedInput() throws IOException {
+		byte[] data = ParallelBZip2CompressorInputStreamTest.makeTestData(
+				10000, 3);
+		byte[] compressed = compress(data, 0, data.length);
+		compressed[compressed.length - 6] ^= 0x55;
+		try (InputStream in = new GzipMemberInputStream(
+				new ByteArrayInputStream(compressed))) {
+			ParallelBZip2CompressorInputStreamTest.readAll(in);
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+import org.wikidata.wdtk.util.ParallelBZip2CompressorInputStream.BlockPosition;
+
+public class ParallelBZip2CompressorInputStreamTest {
+
+	static final String[] WORDS = { "{\"type\":\"item\",", "\"id\":\"Q",
+			"\"labels\":{", "\"en\"", "\"value\":", "Universe", "Glück",
+			"},", "\"claims\":[", "]", "\n" };
+
+	/**
+	 * Creates some text-like test data that is large enough to fill several
+	 * bzip2 blocks.
+	 */
+	static byte[] makeTestData(int size, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(size + 100);
+		while (sb.length() < size) {
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+			sb.append(random.nextInt(100000));
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	static byte[] compress(byte[] data, int blockSize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (BZip2CompressorOutputStream bzOut = new BZip2CompressorOutputStream(
+				out, blockSize)) {
+			bzOut.write(data);
+		}
+		return out.toByteArray();
+	}
+
+	static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while ((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testSingleBlock() throws IOException {
+		byte[] data = "Test data".getBytes(StandardCharsets.UTF_8);
+		try (InputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compress(data, 9)), 2)) {
+			assertArrayEquals(data, readAll(in));
+		}
+	}
+
+	@Test
+	public void testManyBlocks() throws IOException {
+		byte[] data = makeTestData(1500000, 42);
+		try (InputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compress(data, 1)), 4)) {
+			assertArrayEquals(data, readAll(in));
+		}
+	}
+
+	@Test
+	public void testConcatenatedStreams() throws IOException {
+		byte[] data1 = makeTestData(250000, 1);
+		byte[] data2 = makeTestData(120000, 2);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		compressed.write(compress(data1, 1));
+		compressed.write(compress(new byte[0], 9));
+		compressed.write(compress(data2, 3));
+
+		byte[] expected = Arrays.copyOf(data1, data1.length + data2.length);
+		System.arraycopy(data2, 0, expected, data1.length, data2.length);
+
+		try (InputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compressed.toByteArray()), 3)) {
+			assertArrayEquals(expected, readAll(in));
+		}
+	}
+
+	@Test
+	public void testSingleByteReads() throws IOException {
+		byte[] data = makeTestData(300000, 7);
+		try (InputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compress(data, 1)), 2)) {
+			for (byte b : data) {
+				assertEquals(b & 0xff, in.read());
+			}
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testEmptyInput() throws IOException {
+		try (InputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(new byte[0]), 2)) {
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testJoinedBlockBits() {
+		byte[] bits = { (byte) 0xff, (byte) 0x80 };
+		ParallelBZip2CompressorInputStream.BlockBits first = new ParallelBZip2CompressorInputStream.BlockBits(
+				bits, 9, 100);
+		ParallelBZip2CompressorInputStream.BlockBits second = new ParallelBZip2CompressorInputStream.BlockBits(
+				new byte[] { (byte) 0x0f }, 8, 109);
+		ParallelBZip2CompressorInputStream.BlockBits joined = first
+				.append(second);
+
+		assertEquals(17, joined.bitLength);
+		assertEquals(100, joined.bitOffset);
+		assertArrayEquals(new byte[] { (byte) 0xff, (byte) 0x87,
+				(byte) 0x80 }, joined.bits);
+	}
+
+	@Test
+	public void testResumeAtBlockPosition() throws IOException {
+		byte[] data = makeTestData(1000000, 11);
+		byte[] compressed = compress(data, 1);
+		long resumeOffset = 700000;
+
+		ParallelBZip2CompressorInputStream.BlockPosition blockPosition;
+		try (ParallelBZip2CompressorInputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compressed), 2)) {
+			assertNull(in.getBlockPosition(0));
+			byte[] buffer = new byte[(int) resumeOffset];
+			int read = 0;
+			while (read < buffer.length) {
+				read += in.read(buffer, read, buffer.length - read);
+			}
+			blockPosition = in.getBlockPosition(resumeOffset);
+			assertNotNull(blockPosition);
+			assertNotNull(in.getBlockPosition(0));
+			assertNull(in.getBlockPosition(data.length));
+		}
+		assertTrue(blockPosition.getUncompressedOffset() > 0);
+		assertTrue(blockPosition.getUncompressedOffset() <= resumeOffset);
+
+		int startByte = (int) (blockPosition.getBitOffset() / 8);
+		try (ParallelBZip2CompressorInputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compressed, startByte,
+						compressed.length - startByte), 2, blockPosition)) {
+			byte[] rest = readAll(in);
+			assertArrayEquals(Arrays.copyOfRange(data,
+					(int) blockPosition.getUncompressedOffset(), data.length),
+					rest);
+			assertEquals(blockPosition.getBitOffset(), in
+					.getBlockPosition(blockPosition.getUncompressedOffset())
+					.getBitOffset());
+		}
+	}
+
+	@Test
+	public void testOpenAtBlock() throws IOException {
+		byte[] data = makeTestData(1000000, 17);
+		byte[] compressed = compress(data, 1);
+
+		List<BlockPosition> blockPositions = new ArrayList<>();
+		try (ParallelBZip2CompressorInputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compressed), 2)) {
+			assertArrayEquals(data, readAll(in));
+			long offset = 0;
+			BlockPosition blockPosition;
+			while ((blockPosition = in.getBlockPosition(offset)) != null
+					&& offset < data.length) {
+				if (blockPositions.isEmpty()
+						|| blockPositions.get(blockPositions.size() - 1)
+								.getBitOffset() != blockPosition.getBitOffset()) {
+					blockPositions.add(blockPosition);
+				}
+				offset += 10000;
+			}
+		}
+		assertTrue(blockPositions.size() > 2);
+
+		for (BlockPosition blockPosition : blockPositions) {
+			int startByte = (int) (blockPosition.getBitOffset() / 8);
+			int start = (int) blockPosition.getUncompressedOffset();
+			// read beyond the end of the block, but not to the end of the file
+			int length = Math.min(150000, data.length - start - 1);
+			try (InputStream in = ParallelBZip2CompressorInputStream
+					.openAtBlock(new BufferedInputStream(
+							new ByteArrayInputStream(compressed, startByte,
+									compressed.length - startByte)),
+							blockPosition.getBitOffset())) {
+				byte[] buffer = new byte[length];
+				int read = 0;
+				while (read < length) {
+					read += in.read(buffer, read, length - read);
+				}
+				assertArrayEquals(
+						Arrays.copyOfRange(data, start, start + length),
+						buffer);
+			}
+		}
+	}
+
+	@Test
+	public void testByteRanges() throws IOException {
+		byte[] data = makeTestData(1000000, 13);
+		byte[] compressed = compress(data, 1);
+		int ranges = 3;
+
+		ByteArrayOutputStream joined = new ByteArrayOutputStream();
+		for (int i = 0; i < ranges; i++) {
+			int startByte = compressed.length * i / ranges;
+			int endByte = compressed.length * (i + 1) / ranges;
+			try (ParallelBZip2CompressorInputStream in = new ParallelBZip2CompressorInputStream(
+					new ByteArrayInputStream(compressed, startByte,
+							compressed.length - startByte), 2, startByte,
+					endByte)) {
+				ByteArrayOutputStream rangeData = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int count;
+				while (in.getRangeEndOffset() < 0
+						&& (count = in.read(buffer)) != -1) {
+					rangeData.write(buffer, 0, count);
+				}
+				long rangeEnd = in.getRangeEndOffset() < 0 ? rangeData.size()
+						: in.getRangeEndOffset();
+				joined.write(rangeData.toByteArray(), 0, (int) rangeEnd);
+			}
+		}
+		assertArrayEquals(data, joined.toByteArray());
+	}
+
+	@Test(expected = IOException.class)
+	public void testCorruptedInput() throws IOException {
+		byte[] compressed = compress(makeTestData(250000, 3), 1);
+		compressed[compressed.length / 2] ^= 0x55;
+		try (InputStream in = new ParallelBZip2CompressorInputStream(
+				new ByteArrayInputStream(compressed), 2)) {
+			readAll(in);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SeekableZstdOutputStreamTest {
+
+	Path directory;
+	DirectoryManagerImpl dm;
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("wdtk-zstd");
+		this.dm = new DirectoryManagerImpl(this.directory, false);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.list(this.directory)) {
+			for (Path file : files.toArray(Path[]::new)) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(this.directory);
+	}
+
+	@Test
+	public void testFramesAndSeekTable() throws IOException {
+		byte[] data = Arrays.copyOf(
+				ParallelBZip2CompressorInputStreamTest.makeTestData(100000, 3),
+				100000);
+		try (SeekableZstdOutputStream out = new SeekableZstdOutputStream(
+				this.dm.getOutputStreamForFile("test.zst"), 3, 30000)) {
+			out.write(data, 0, 1000);
+			out.endFrame();
+			out.endFrame(); // no empty frames
+			out.write(data, 1000, data.length - 1000);
+			assertEquals(4, out.getFrameCount());
+			assertEquals(9000, out.getFrameLength());
+		}
+
+		// the file can be read like any other Zstandard file
+		try (InputStream in = this.dm.getInputStreamForFile("test.zst",
+				CompressionType.ZSTD)) {
+			assertArrayEquals(data,
+					ParallelBZip2CompressorInputStreamTest.readAll(in));
+		}
+
+		ZstdSeekTable seekTable = ZstdSeekTable.read(this.dm, "test.zst");
+		assertEquals(5, seekTable.getFrameCount());
+		assertEquals(0, seekTable.getDecompressedOffset(0));
+		assertEquals(1000, seekTable.getDecompressedOffset(1));
+		assertEquals(31000, seekTable.getDecompressedOffset(2));
+		assertEquals(data.length, seekTable.getDecompressedOffset(5));
+		assertEquals(0, seekTable.findFrame(999));
+		assertEquals(1, seekTable.findFrame(1000));
+		assertEquals(4, seekTable.findFrame(data.length - 1));
+		assertEquals(5, seekTable.findFrame(data.length));
+		assertEquals(0, seekTable.findFrameStartingAt(0));
+		assertEquals(1, seekTable.findFrameStartingAt(1));
+		assertEquals(5, seekTable.findFrameStartingAt(seekTable
+				.getCompressedOffset(4) + 1));
+
+		// decompression can start at every frame
+		for (int frame = 0; frame < seekTable.getFrameCount(); frame++) {
+			try (InputStream in = this.dm.getInputStreamForFile("test.zst",
+					CompressionType.NONE)) {
+				long skip = seekTable.getCompressedOffset(frame);
+				while (skip > 0) {
+					skip -= in.skip(skip);
+				}
+				int from = (int) seekTable.getDecompressedOffset(frame);
+				assertArrayEquals(Arrays.copyOfRange(data, from, data.length),
+						ParallelBZip2CompressorInputStreamTest
+								.readAll(new ZstdCompressorInputStream(in)));
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyStream() throws IOException {
+		new SeekableZstdOutputStream(this.dm.getOutputStreamForFile("empty.zst"))
+				.close();
+		assertEquals(0, ZstdSeekTable.read(this.dm, "empty.zst")
+				.getFrameCount());
+	}
+
+	@Test
+	public void testNotSeekable() throws IOException {
+		try (OutputStream out = this.dm.getOutputStreamForFile("plain.zst")) {
+			out.write(new byte[100]);
+		}
+		assertNull(ZstdSeekTable.read(this.dm, "plain.zst"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testWriteAfterClose() throws IOException {
+		SeekableZstdOutputStream out = new SeekableZstdOutputStream(
+				this.dm.getOutputStreamForFile("closed.zst"));
+		out.close();
+		out.write(1);
+	}
+
+}
@@ -0,0 +1,226 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class SegmentedDownloadTest {
+
+	static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+	HttpServer server;
+	String url;
+	Path directory;
+
+	byte[] data;
+	/**
+	 * Whether the server answers range requests.
+	 */
+	boolean supportsRanges = true;
+	/**
+	 * Number of range requests that are answered before the server fails.
+	 */
+	int rangeRequestsUntilFailure = Integer.MAX_VALUE;
+	final AtomicInteger rangeRequests = new AtomicInteger();
+
+	@Before
+	public void setUp() throws IOException {
+		this.data = Arrays.copyOf(
+				ParallelBZip2CompressorInputStreamTest.makeTestData(10000, 5),
+				10000);
+		this.server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), 0), 0);
+		this.server.createContext("/dump", this::handle);
+		this.server.start();
+		this.url = "http://localhost:" + this.server.getAddress().getPort()
+				+ "/dump";
+		this.directory = Files.createTempDirectory("wdtk-download");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		this.server.stop(0);
+		try (Stream<Path> files = Files.list(this.directory)) {
+			for (Path file : files.toArray(Path[]::new)) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(this.directory);
+	}
+
+	void handle(HttpExchange exchange) throws IOException {
+		if (this.supportsRanges) {
+			exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+		}
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		if ("HEAD".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().add("Content-Length",
+					Integer.toString(this.data.length));
+			exchange.sendResponseHeaders(200, -1);
+		} else if (this.supportsRanges && range != null) {
+			if (this.rangeRequests.incrementAndGet() > this.rangeRequestsUntilFailure) {
+				exchange.sendResponseHeaders(503, -1);
+			} else {
+				Matcher matcher = RANGE.matcher(range);
+				assertTrue(matcher.matches());
+				int start = Integer.parseInt(matcher.group(1));
+				int end = Integer.parseInt(matcher.group(2)) + 1;
+				exchange.getResponseHeaders().add("Content-Range", "bytes "
+						+ start + "-" + (end - 1) + "/" + this.data.length);
+				exchange.sendResponseHeaders(206, end - start);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(this.data, start, end - start);
+				}
+			}
+		} else {
+			exchange.sendResponseHeaders(200, this.data.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(this.data);
+			}
+		}
+		exchange.close();
+	}
+
+	String md5(byte[] bytes) {
+		return Md5VerifyingInputStream.toHex(Md5VerifyingInputStream
+				.newMd5Digest().digest(bytes));
+	}
+
+	@Test
+	public void testParallelDownload() throws IOException {
+		Path file = this.directory.resolve("dump.bz2");
+		assertEquals(this.data.length, new SegmentedDownload(this.url, file,
+				3, 1000).download(md5(this.data)));
+
+		assertArrayEquals(this.data, Files.readAllBytes(file));
+		assertEquals(10, this.rangeRequests.get());
+		assertFalse(Files.exists(this.directory.resolve("dump.bz2.part")));
+		assertFalse(Files.exists(this.directory
+				.resolve("dump.bz2.part.segments")));
+	}
+
+	@Test
+	public void testResumeDownload() throws IOException {
+		Path file = this.directory.resolve("dump.bz2");
+		this.rangeRequestsUntilFailure = 4;
+		try {
+			new SegmentedDownload(this.url, file, 1, 1000).download(null);
+			fail("Download should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		assertFalse(Files.exists(file));
+		assertEquals(4 + SegmentedDownload.MAX_ATTEMPTS,
+				this.rangeRequests.get());
+
+		this.rangeRequestsUntilFailure = Integer.MAX_VALUE;
+		this.rangeRequests.set(0);
+		new SegmentedDownload(this.url, file, 2, 1000).download(md5(this.data));
+		assertArrayEquals(this.data, Files.readAllBytes(file));
+		assertEquals(6, this.rangeRequests.get());
+	}
+
+	@Test
+	public void testChangedSegmentSizeRestartsDownload() throws IOException {
+		Path file = this.directory.resolve("dump.bz2");
+		this.rangeRequestsUntilFailure = 4;
+		try {
+			new SegmentedDownload(this.url, file, 1, 1000).download(null);
+			fail("Download should fail");
+		} catch (IOException e) {
+			// expected
+		}
+
+		this.rangeRequestsUntilFailure = Integer.MAX_VALUE;
+		this.rangeRequests.set(0);
+		new SegmentedDownload(this.url, file, 2, 3000).download(null);
+		assertArrayEquals(this.data, Files.readAllBytes(file));
+		assertEquals(4, this.rangeRequests.get());
+	}
+
+	@Test
+	public void testWrongChecksum() throws IOException {
+		Path file = this.directory.resolve("dump.bz2");
+		try {
+			new SegmentedDownload(this.url, file, 2, 1000)
+					.download(md5(new byte[0]));
+			fail("Download should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains(md5(this.data)));
+		}
+		assertFalse(Files.exists(file));
+		assertFalse(Files.exists(this.directory.resolve("dump.bz2.part")));
+	}
+
+	@Test
+	public void testServerWithoutRanges() throws IOException {
+		this.supportsRanges = false;
+		Path file = this.directory.resolve("dump.bz2");
+		new SegmentedDownload(this.url, file, 2, 1000).download(md5(this.data));
+		assertArrayEquals(this.data, Files.readAllBytes(file));
+		assertEquals(0, this.rangeRequests.get());
+	}
+
+	@Test
+	public void testDirectoryManagerDownload() throws IOException {
+		DirectoryManagerImpl dm = new DirectoryManagerImpl(this.directory,
+				false);
+		assertEquals(this.data.length, dm.createFileFromUrl("dump.bz2",
+				this.url, new WebResourceFetcherImpl(), md5(this.data)));
+		assertArrayEquals(this.data,
+				Files.readAllBytes(this.directory.resolve("dump.bz2")));
+	}
+
+	@Test(expected = IOException.class)
+	public void testDirectoryManagerDownloadWithWrongChecksum()
+			throws IOException {
+		DirectoryManagerImpl dm = new DirectoryManagerImpl(this.directory,
+				false);
+		// other fetchers are read in a single stream
+		dm.createFileFromUrl("dump.bz2", this.url,
+				urlString -> new WebResourceFetcherImpl()
+						.getInputStreamForUrl(urlString), md5(new byte[0]));
+	}
+}
@@ -0,0 +1,175 @@
+package org.wikidata.wdtk.util;
+
+/*
+ * #%L
+ * Wikidata Toolkit Utilities
+ * %%
+ * Copyright (C) 2014 - 2026 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class StreamingDownloadTest {
+
+	HttpServer server;
+	String url;
+	Path directory;
+
+	byte[] data;
+	/**
+	 * Released by the test to let the server send the second half of the
+	 * data.
+	 */
+	final CountDownLatch secondHalf = new CountDownLatch(1);
+
+	@Before
+	public void setUp() throws IOException {
+		this.data = Arrays.copyOf(
+				ParallelBZip2CompressorInputStreamTest.makeTestData(10000, 7),
+				10000);
+		this.server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), 0), 0);
+		this.server.createContext("/dump", this::handle);
+		this.server.start();
+		this.url = "http://localhost:" + this.server.getAddress().getPort()
+				+ "/dump";
+		this.directory = Files.createTempDirectory("wdtk-download");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		this.secondHalf.countDown();
+		this.server.stop(0);
+		try (Stream<Path> files = Files.list(this.directory)) {
+			for (Path file : files.toArray(Path[]::new)) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(this.directory);
+	}
+
+	void handle(HttpExchange exchange) throws IOException {
+		int half = this.data.length / 2;
+		exchange.sendResponseHeaders(200, this.data.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(this.data, 0, half);
+			out.flush();
+			try {
+				this.secondHalf.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			out.write(this.data, half, this.data.length - half);
+		}
+		exchange.close();
+	}
+
+	String md5(byte[] bytes) {
+		return Md5VerifyingInputStream.toHex(Md5VerifyingInputStream
+				.newMd5Digest().digest(bytes));
+	}
+
+	Path awaitFile(String fileName) throws InterruptedException {
+		Path file = this.directory.resolve(fileName);
+		for (int i = 0; i < 100 && !Files.exists(file); i++) {
+			Thread.sleep(50);
+		}
+		return file;
+	}
+
+	@Test
+	public void testReadDuringDownload() throws IOException,
+			InterruptedException {
+		Path file = this.directory.resolve("dump.json");
+		try (InputStream in = new StreamingDownload(this.url,
+				new WebResourceFetcherImpl(), file).start(md5(this.data))) {
+			byte[] firstHalf = new byte[this.data.length / 2];
+			// succeeds before the server sends the rest of the data
+			IOUtils.readFully(in, firstHalf);
+			assertArrayEquals(Arrays.copyOf(this.data, firstHalf.length),
+					firstHalf);
+			assertFalse(Files.exists(file));
+
+			this.secondHalf.countDown();
+			byte[] rest = IOUtils.toByteArray(in);
+			assertEquals(this.data.length - firstHalf.length, rest.length);
+		}
+		assertArrayEquals(this.data, Files.readAllBytes(awaitFile("dump.json")));
+		assertFalse(Files.exists(this.directory.resolve("dump.json.part")));
+	}
+
+	@Test
+	public void testWrongChecksum() throws IOException {
+		this.secondHalf.countDown();
+		Path file = this.directory.resolve("dump.json");
+		try (InputStream in = new StreamingDownload(this.url,
+				new WebResourceFetcherImpl(), file).start(md5(new byte[0]))) {
+			IOUtils.toByteArray(in);
+			fail("Reading should fail");
+		} catch (IOException e) {
+			assertTrue(e.getCause().getMessage().contains(md5(this.data)));
+		}
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	public void testDirectoryManagerDecompressesDuringDownload()
+			throws IOException, InterruptedException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(this.data);
+		}
+		byte[] uncompressed = this.data;
+		this.data = compressed.toByteArray();
+		this.secondHalf.countDown();
+
+		DirectoryManagerImpl dm = new DirectoryManagerImpl(this.directory,
+				false);
+		try (InputStream in = dm.createFileFromUrlAndOpen("dump.json.gz",
+				this.url, new WebResourceFetcherImpl(), md5(this.data),
+				CompressionType.GZIP)) {
+			assertArrayEquals(uncompressed, IOUtils.toByteArray(in));
+		}
+		assertArrayEquals(this.data,
+				Files.readAllBytes(awaitFile("dump.json.gz")));
+	}
+}
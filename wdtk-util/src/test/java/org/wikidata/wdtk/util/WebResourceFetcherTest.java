@@ -21,6 +21,7 @@ package org.wikidata.wdtk.util;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.net.InetSocketAddress;
@@ -43,5 +44,8 @@ public class WebResourceFetcherTest {
 		WebResourceFetcherImpl.setProxy(proxy);
 		assertTrue(WebResourceFetcherImpl.hasProxy());
 		assertEquals(proxy, WebResourceFetcherImpl.getProxy());
+		// the proxy must not be used by the download tests
+		WebResourceFetcherImpl.setProxy(null);
+		assertFalse(WebResourceFetcherImpl.hasProxy());
 	}
 }